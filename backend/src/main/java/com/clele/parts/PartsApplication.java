@@ -2,8 +2,10 @@ package com.clele.parts;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class PartsApplication {
     public static void main(String[] args) {
         SpringApplication.run(PartsApplication.class, args);
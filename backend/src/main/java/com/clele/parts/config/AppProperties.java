@@ -17,6 +17,8 @@ public class AppProperties {
 
     private final Mail mail = new Mail();
 
+    private final Storage storage = new Storage();
+
     /**
      * The name of the product as the outside world knows it. "Clele" is the internal code name —
      * it lives in package names, the repo and the database, and must never reach a screen or a
@@ -39,7 +41,7 @@ public class AppProperties {
         private String symbol = "€";
     }
 
-    /** Outgoing mail. Only invitations are sent today. */
+    /** Outgoing mail: invitations and low-stock alerts. */
     @Data
     public static class Mail {
         /**
@@ -50,16 +52,32 @@ public class AppProperties {
          * unconfigured and logs — so an install that sent mail before still does, unchanged.
          */
         private String provider = "smtp";
-        /** From address on invitation mails. */
+        /** From address on every mail the app sends. */
         private String from = "no-reply@sortiment.local";
         /** Display name for the sender; blank to send the address alone. */
         private String fromName = "Sortiment";
         /** How long an invitation stays valid. */
         private int invitationExpiryDays = 14;
+        /** Mail an organisation's administrators when a part drops below a stock threshold. */
+        private boolean stockAlerts = true;
 
         private final Mailersend mailersend = new Mailersend();
     }
 
+    /** Where attachment content is kept (see {@code BlobStore}). */
+    @Data
+    public static class Storage {
+        /**
+         * Directory of the file-system blob store. Relative paths resolve against the working
+         * directory. Back it up with the database: a row without its blob is a broken attachment.
+         */
+        private String blobDir = "data/blobs";
+        /** Directory of the image proxy's cache (see {@code ImageProxyCache}); cleared at startup. */
+        private String imageCacheDir = "data/image-cache";
+        /** What the image proxy's cache may hold on disk before the least recently used go. */
+        private long imageCacheMaxMb = 256;
+    }
+
     /** Settings for the MailerSend HTTP provider (used when {@code app.mail.provider=mailersend}). */
     @Data
     public static class Mailersend {
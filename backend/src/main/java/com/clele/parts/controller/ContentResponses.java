@@ -0,0 +1,44 @@
+package com.clele.parts.controller;
+
+import com.clele.parts.service.PartAttachmentService.AttachmentContent;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * The response for stored content — attachments and kit template images alike.
+ *
+ * <p>The ETag is the content's hash, so a browser revalidating a datasheet it already holds gets a
+ * 304 from Spring's conditional-request handling instead of the file again. A {@link Resource} body
+ * gets {@code Accept-Ranges} and {@code 206 Partial Content} from Spring too, which is what lets a
+ * PDF viewer show the first page of a 40 MB datasheet before the rest has arrived.
+ *
+ * <p>What Spring does not do is honour {@code If-Range}: a range of something other than the copy
+ * the client holds would be spliced into it. A request whose {@code If-Range} names a different
+ * ETag — or a date, which these responses never give — is answered with the whole content, as the
+ * header asks. Spring only serves ranges of a {@code Resource} it can reopen, so the full body goes
+ * out as a one-shot stream.
+ */
+final class ContentResponses {
+
+    private ContentResponses() {}
+
+    static ResponseEntity<Resource> body(ResponseEntity.BodyBuilder builder, AttachmentContent content,
+                                         String ifRange) {
+        if (content.etag() != null) {
+            builder.eTag(content.etag());
+        }
+        Resource body = content.content();
+        if (ifRange != null && !ifRange.equals("\"" + content.etag() + "\"")) {
+            try {
+                body = new InputStreamResource(body.getInputStream());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return builder.body(body);
+    }
+}
@@ -1,12 +1,7 @@
 package com.clele.parts.controller;
 
 import com.clele.parts.dto.DashboardDTO;
-import com.clele.parts.repository.CategoryRepository;
-import com.clele.parts.service.CurrentOrganisationService;
-import com.clele.parts.service.LocationService;
-import com.clele.parts.service.PartService;
-import com.clele.parts.service.StockEntryService;
-import com.clele.parts.service.StockThresholdService;
+import com.clele.parts.service.DashboardService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
@@ -20,24 +15,11 @@ import org.springframework.web.bind.annotation.RestController;
 @Tag(name = "Dashboard", description = "Summary statistics")
 public class DashboardController {
 
-    private final PartService partService;
-    private final LocationService locationService;
-    private final StockEntryService stockEntryService;
-    private final StockThresholdService stockThresholdService;
-    private final CategoryRepository categoryRepository;
-    private final CurrentOrganisationService currentOrganisationService;
+    private final DashboardService dashboardService;
 
     @GetMapping
     @Operation(summary = "Get dashboard summary stats")
     public DashboardDTO getDashboard() {
-        return DashboardDTO.builder()
-                .totalParts(partService.countAll())
-                .totalLocations(locationService.countAll())
-                .totalCategories(categoryRepository.countByOrganisationId(currentOrganisationService.currentId()))
-                .lowStockCount(stockThresholdService.countLowStock())
-                .sparseSpecCount(partService.countSparseSpecs())
-                .totalStockValue(stockEntryService.totalStockValue())
-                .perLocation(locationService.perLocationStats())
-                .build();
+        return dashboardService.getDashboard();
     }
 }
@@ -1,12 +1,12 @@
 package com.clele.parts.controller;
 
+import org.springframework.core.io.Resource;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.web.server.ResponseStatusException;
 
+import com.clele.parts.service.ImageProxyCache;
 import com.clele.parts.util.UrlSafety;
 
 import java.net.URI;
@@ -14,44 +14,29 @@ import java.net.URI;
 /**
  * Proxies external image URLs through the backend so the browser is not subject
  * to third-party hotlink restrictions or rate-limiting (e.g. Wikimedia Commons).
+ * What is fetched is cached, and concurrent requests for one URL share its fetch
+ * (see {@link ImageProxyCache}).
  */
 @RestController
 public class ImageProxyController {
 
-    private final RestTemplate restTemplate;
+    private final ImageProxyCache cache;
 
-    public ImageProxyController(RestTemplate restTemplate) {
-        this.restTemplate = restTemplate;
+    public ImageProxyController(ImageProxyCache cache) {
+        this.cache = cache;
     }
 
     @GetMapping("/api/image-proxy")
-    public ResponseEntity<byte[]> proxy(@RequestParam String url) {
+    public ResponseEntity<Resource> proxy(@RequestParam String url) {
         // Reject non-HTTP(S) URLs and any host resolving to a private/loopback/metadata address (SSRF).
         URI uri = UrlSafety.validateExternalHttpUrl(url);
 
-        HttpHeaders outgoing = new HttpHeaders();
-        outgoing.set("User-Agent",
-                "Mozilla/5.0 (X11; Linux x86_64; rv:124.0) Gecko/20100101 Firefox/124.0");
-        outgoing.set("Accept", "image/*, */*;q=0.8");
-        outgoing.set("Accept-Language", "en-US,en;q=0.5");
-        outgoing.set("Referer", uri.getScheme() + "://" + uri.getHost() + "/");
-
-        ResponseEntity<byte[]> upstream;
-        try {
-            upstream = restTemplate.exchange(uri, HttpMethod.GET,
-                    new HttpEntity<>(outgoing), byte[].class);
-        } catch (Exception e) {
-            throw new ResponseStatusException(HttpStatus.BAD_GATEWAY,
-                    "Failed to fetch image: " + e.getMessage());
-        }
-
-        MediaType contentType = upstream.getHeaders().getContentType();
-        if (contentType == null) contentType = MediaType.APPLICATION_OCTET_STREAM;
+        ImageProxyCache.Served served = cache.get(uri);
 
         HttpHeaders response = new HttpHeaders();
-        response.setContentType(contentType);
+        response.setContentType(served.contentType());
         response.setCacheControl(CacheControl.maxAge(java.time.Duration.ofDays(7)));
 
-        return new ResponseEntity<>(upstream.getBody(), response, HttpStatus.OK);
+        return new ResponseEntity<>(served.content(), response, HttpStatus.OK);
     }
 }
@@ -2,6 +2,8 @@ package com.clele.parts.controller;
 
 import com.clele.parts.dto.LocationDTO;
 import com.clele.parts.dto.LocationMergeRequest;
+import com.clele.parts.dto.LocationRelocateRequest;
+import com.clele.parts.dto.LocationRelocateResultDTO;
 import com.clele.parts.dto.LocationRequest;
 import com.clele.parts.dto.LocationStatsDTO;
 import com.clele.parts.dto.LocationTreeDTO;
@@ -73,6 +75,13 @@ public class LocationController {
         return ResponseEntity.noContent().build();
     }
 
+    @PostMapping("/{id}/relocate")
+    @Operation(summary = "Move all the stock in a location and its sub-locations to another location")
+    public LocationRelocateResultDTO relocate(@PathVariable Long id,
+                                              @Valid @RequestBody LocationRelocateRequest request) {
+        return locationService.relocate(id, request);
+    }
+
     @DeleteMapping("/{id}")
     @Operation(summary = "Delete a location")
     public ResponseEntity<Void> delete(@PathVariable Long id) {
@@ -0,0 +1,28 @@
+package com.clele.parts.controller;
+
+import com.clele.parts.service.CurrentOrganisationService;
+import com.clele.parts.service.NotificationService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/api/notifications")
+@RequiredArgsConstructor
+@Tag(name = "Notifications", description = "Server-sent events for the current organisation")
+public class NotificationController {
+
+    private final NotificationService notificationService;
+    private final CurrentOrganisationService currentOrganisationService;
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Open a notification stream for the current organisation; events: stock-alert, stock-change")
+    public SseEmitter stream() {
+        return notificationService.open(currentOrganisationService.currentId());
+    }
+}
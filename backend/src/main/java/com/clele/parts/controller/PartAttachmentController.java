@@ -3,10 +3,12 @@ package com.clele.parts.controller;
 import com.clele.parts.dto.AttachmentFromUrlRequest;
 import com.clele.parts.dto.PartAttachmentDTO;
 import com.clele.parts.model.AttachmentType;
+import com.clele.parts.model.ImageVariant;
 import com.clele.parts.model.Permissions;
 import com.clele.parts.service.PartAttachmentService;
 import com.clele.parts.service.PartAttachmentService.AttachmentContent;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.Resource;
 import org.springframework.http.CacheControl;
 import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
@@ -16,6 +18,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.util.List;
 import java.util.concurrent.TimeUnit;
@@ -33,9 +36,16 @@ public class PartAttachmentController {
         return partAttachmentService.list(partId, type);
     }
 
+    /**
+     * The content; {@code ?size=thumb} or {@code ?size=medium} asks for a photo's rendition instead
+     * of the original, which is what lists and the part page show. Conditional and range requests
+     * are answered as {@link ContentResponses} describes.
+     */
     @GetMapping("/{attachmentId}")
-    public ResponseEntity<byte[]> get(@PathVariable Long partId, @PathVariable Long attachmentId) {
-        AttachmentContent content = partAttachmentService.getContent(partId, attachmentId);
+    public ResponseEntity<Resource> get(@PathVariable Long partId, @PathVariable Long attachmentId,
+                                        @RequestParam(value = "size", required = false) String size,
+                                        @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange) {
+        AttachmentContent content = partAttachmentService.getContent(partId, attachmentId, parseSize(size));
         MediaType mediaType = effectiveMediaType(content.contentType(), content.filename());
 
         ResponseEntity.BodyBuilder builder = ResponseEntity.ok().contentType(mediaType);
@@ -50,11 +60,22 @@ public class PartAttachmentController {
             // Datasheets/attachments must revalidate so a changed server response (e.g. a fix to the
             // disposition/content-type) takes effect instead of being pinned by a long browser cache.
             builder.cacheControl(CacheControl.maxAge(7, TimeUnit.DAYS).cachePublic().mustRevalidate());
+        } else if (content.standIn()) {
+            // The original in place of a rendition still being made; the next request gets the rendition.
+            builder.cacheControl(CacheControl.noCache());
         } else {
             // Photos never change in place — keep them long and immutable.
             builder.cacheControl(CacheControl.maxAge(7, TimeUnit.DAYS));
         }
-        return builder.body(content.data());
+        return ContentResponses.body(builder, content, ifRange);
+    }
+
+    private static ImageVariant parseSize(String size) {
+        try {
+            return ImageVariant.fromParam(size);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
     }
 
     /** Content types browsers can render directly, so they should open in-tab rather than download. */
@@ -1,14 +1,16 @@
 package com.clele.parts.controller;
 
+import com.clele.parts.dto.DatasheetContentHitDTO;
 import com.clele.parts.dto.PartCreateRequest;
 import com.clele.parts.dto.PartDTO;
 import com.clele.parts.dto.PartRequest;
 import com.clele.parts.dto.StockEntryDTO;
 import com.clele.parts.dto.StockMovementDTO;
 import com.clele.parts.model.Permissions;
+import com.clele.parts.service.DatasheetSearchService;
 import com.clele.parts.service.PartService;
 import com.clele.parts.service.StockEntryService;
-import com.clele.parts.service.StockMovementService;
+import com.clele.parts.service.StockMovementHistoryService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
@@ -29,7 +31,8 @@ public class PartController {
 
     private final PartService partService;
     private final StockEntryService stockEntryService;
-    private final StockMovementService stockMovementService;
+    private final StockMovementHistoryService stockMovementHistoryService;
+    private final DatasheetSearchService datasheetSearchService;
 
     @GetMapping
     @Operation(summary = "List / search parts")
@@ -53,6 +56,12 @@ public class PartController {
         return partService.fuzzyByPartNumber(q);
     }
 
+    @GetMapping("/datasheet-search")
+    @Operation(summary = "Search the text of stored datasheets; parts with their best matching pages")
+    public List<DatasheetContentHitDTO> searchDatasheets(@RequestParam String q) {
+        return datasheetSearchService.search(q);
+    }
+
     @GetMapping("/{id}")
     @Operation(summary = "Get part by ID")
     public PartDTO getById(@PathVariable Long id) {
@@ -66,9 +75,10 @@ public class PartController {
     }
 
     @GetMapping("/{id}/movements")
-    @Operation(summary = "Get the stock movement history for a part (most recent first)")
+    @Operation(summary = "Get the whole stock movement history for a part (most recent first); "
+            + "prefer the paginated GET /api/movements?partId=", deprecated = true)
     public List<StockMovementDTO> getMovementsForPart(@PathVariable Long id) {
-        return stockMovementService.findByPartId(id);
+        return stockMovementHistoryService.allForPart(id);
     }
 
     @PostMapping
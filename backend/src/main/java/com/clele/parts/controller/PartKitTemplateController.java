@@ -15,7 +15,9 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.Resource;
 import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -83,12 +85,12 @@ public class PartKitTemplateController {
 
     @GetMapping("/{id}/images/{attachmentId}")
     @Operation(summary = "Serve one template image")
-    public ResponseEntity<byte[]> image(@PathVariable Long id, @PathVariable Long attachmentId) {
+    public ResponseEntity<Resource> image(@PathVariable Long id, @PathVariable Long attachmentId,
+                                          @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange) {
         AttachmentContent content = imageService.getContent(id, attachmentId);
-        return ResponseEntity.ok()
+        return ContentResponses.body(ResponseEntity.ok()
                 .contentType(MediaType.parseMediaType(content.contentType()))
-                .cacheControl(CacheControl.maxAge(7, TimeUnit.DAYS))
-                .body(content.data());
+                .cacheControl(CacheControl.maxAge(7, TimeUnit.DAYS)), content, ifRange);
     }
 
     @PostMapping(value = "/{id}/images", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
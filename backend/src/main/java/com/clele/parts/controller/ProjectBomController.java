@@ -3,12 +3,14 @@ package com.clele.parts.controller;
 import com.clele.parts.dto.*;
 import com.clele.parts.model.Permissions;
 import com.clele.parts.model.ProjectBom;
+import com.clele.parts.service.bom.ProjectBomExportService;
 import com.clele.parts.service.bom.ProjectBomImportService;
 import com.clele.parts.service.bom.ProjectBomService;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.*;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -16,7 +18,9 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 /**
@@ -37,6 +41,7 @@ public class ProjectBomController {
 
     private final ProjectBomService bomService;
     private final ProjectBomImportService importService;
+    private final ProjectBomExportService exportService;
     private final ObjectMapper objectMapper;
 
     @GetMapping
@@ -81,6 +86,29 @@ public class ProjectBomController {
                 .body(bom.getData());
     }
 
+    /**
+     * The BOM as a cost and pick list, streamed as it is read: one row per line per location that
+     * holds its part, in shelf order. {@code format=excel} adds the byte-order mark Excel needs to
+     * open UTF-8 correctly; the columns are the same.
+     */
+    @GetMapping("/export")
+    @Operation(summary = "Export the BOM with stock locations and costs as CSV (streamed)")
+    public void export(@PathVariable Long projectId,
+                       @RequestParam(value = "format", defaultValue = "csv") String format,
+                       HttpServletResponse response) throws IOException {
+        ProjectBomExportService.Format f;
+        try {
+            f = ProjectBomExportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown export format: " + format);
+        }
+        ProjectBomExportService.Export export = exportService.prepare(projectId);
+        response.setContentType("text/csv;charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(export.filename()).build().toString());
+        exportService.write(export, f, response.getOutputStream());
+    }
+
     @GetMapping("/lines/{lineId}/candidates")
     @Operation(summary = "Ranked part suggestions for one BOM line")
     public List<BomCandidateDTO> candidates(@PathVariable Long projectId, @PathVariable Long lineId) {
@@ -81,6 +81,25 @@ public class ProjectController {
         return ResponseEntity.noContent().build();
     }
 
+    // ------------------------------------------------------------------
+    // Reservations
+    // ------------------------------------------------------------------
+
+    @PostMapping("/{id}/reservations")
+    @Operation(summary = "Reserve stock at a location for the project (PLANNING or BUILDING)")
+    public ResponseEntity<StockReservationDTO> reserveStock(
+            @PathVariable Long id,
+            @Valid @RequestBody ReserveStockRequest request) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(projectService.reserveStock(id, request));
+    }
+
+    @DeleteMapping("/{id}/reservations/{reservationId}")
+    @Operation(summary = "Release a reservation")
+    public ResponseEntity<Void> releaseReservation(@PathVariable Long id, @PathVariable Long reservationId) {
+        projectService.releaseReservation(id, reservationId);
+        return ResponseEntity.noContent().build();
+    }
+
     // ------------------------------------------------------------------
     // State transitions
     // ------------------------------------------------------------------
@@ -1,21 +1,30 @@
 package com.clele.parts.controller;
 
 import com.clele.parts.dto.StockAdjustRequest;
+import com.clele.parts.dto.StockAsOfDTO;
+import com.clele.parts.dto.StockConsumptionDTO;
 import com.clele.parts.dto.StockEntryDTO;
 import com.clele.parts.dto.StockEntryRequest;
 import com.clele.parts.dto.StockMoveRequest;
+import com.clele.parts.dto.StockReceiptRequest;
+import com.clele.parts.dto.StockReceiptResultDTO;
+import com.clele.parts.dto.StockReconcileResultDTO;
+import com.clele.parts.dto.StockValuationDTO;
+import com.clele.parts.service.StockAsOfService;
 import com.clele.parts.service.StockEntryService;
+import com.clele.parts.service.StockValuationService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Map;
 
 @RestController
 @RequestMapping("/api/stock")
@@ -24,6 +33,8 @@ import java.util.Map;
 public class StockEntryController {
 
     private final StockEntryService stockEntryService;
+    private final StockAsOfService stockAsOfService;
+    private final StockValuationService stockValuationService;
 
     @GetMapping
     @Operation(summary = "List all stock entries")
@@ -31,6 +42,27 @@ public class StockEntryController {
         return stockEntryService.findAll();
     }
 
+    @GetMapping("/as-of")
+    @Operation(summary = "Stock and its value as they stood at a moment in the past, from the ledger")
+    public StockAsOfDTO asOf(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        return stockAsOfService.report(at);
+    }
+
+    @GetMapping("/valuation")
+    @Operation(summary = "What the stock on hand cost, per part, by weighted average and by FIFO")
+    public StockValuationDTO valuation() {
+        return stockValuationService.valuation();
+    }
+
+    @GetMapping("/valuation/consumed")
+    @Operation(summary = "Cost of the stock that went out in a period, per project, part and movement type")
+    public StockConsumptionDTO consumed(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Long projectId) {
+        return stockValuationService.consumption(from, to, projectId);
+    }
+
     @GetMapping("/{id}")
     @Operation(summary = "Get stock entry by ID")
     public StockEntryDTO getById(@PathVariable Long id) {
@@ -55,6 +87,12 @@ public class StockEntryController {
         return stockEntryService.addStock(request);
     }
 
+    @PostMapping("/receive")
+    @Operation(summary = "Book in a whole shipment: many adds in one request, with a result per line")
+    public StockReceiptResultDTO receive(@Valid @RequestBody StockReceiptRequest request) {
+        return stockEntryService.receive(request);
+    }
+
     @PostMapping("/take")
     @Operation(summary = "Take a quantity of stock from a location")
     public StockEntryDTO take(@Valid @RequestBody StockAdjustRequest request) {
@@ -77,8 +115,8 @@ public class StockEntryController {
 
     @PostMapping("/reconcile")
     @PreAuthorize("hasAuthority('PARTS_EDIT')")
-    @Operation(summary = "Realign every stock entry's on-hand quantity to its ledger")
-    public Map<String, Integer> reconcile() {
-        return Map.of("corrected", stockEntryService.reconcile());
+    @Operation(summary = "Realign every stock entry's on-hand quantity to its ledger, and list ledger stock with no entry")
+    public StockReconcileResultDTO reconcile() {
+        return stockEntryService.reconcile();
     }
 }
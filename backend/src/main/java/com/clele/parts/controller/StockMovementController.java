@@ -0,0 +1,37 @@
+package com.clele.parts.controller;
+
+import com.clele.parts.dto.StockMovementPageDTO;
+import com.clele.parts.service.StockMovementHistoryService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDateTime;
+
+@RestController
+@RequestMapping("/api/movements")
+@RequiredArgsConstructor
+@Tag(name = "Stock movements", description = "Paginated stock movement history")
+public class StockMovementController {
+
+    private final StockMovementHistoryService historyService;
+
+    @GetMapping
+    @Operation(summary = "Stock movement history, newest first, one page at a time; filter by part, "
+            + "location, project and time range, and pass nextCursor back as cursor for the next page")
+    public StockMovementPageDTO page(
+            @RequestParam(required = false) Long partId,
+            @RequestParam(required = false) Long locationId,
+            @RequestParam(required = false) Long projectId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        return historyService.page(partId, locationId, projectId, from, to, cursor, limit);
+    }
+}
@@ -8,7 +8,7 @@ import lombok.Data;
 @Builder
 public class BomImportLinePreviewDTO {
 
-    /** ADDED / UPDATED / UNCHANGED / REMOVED. */
+    /** ADDED / UPDATED / REMOVED. Unchanged lines are counted, not listed. */
     private String action;
 
     private String designators;
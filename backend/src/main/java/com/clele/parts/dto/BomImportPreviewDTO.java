@@ -44,6 +44,9 @@ public class BomImportPreviewDTO {
     /** How many lines this import matched to a part on its own. */
     private int autoMatched;
 
-    /** Every line, with what committing would do to it. Includes the REMOVED ones. */
+    /**
+     * The delta: every line committing would add, update or remove. Unchanged lines are only
+     * counted in {@link #unchanged} — on a small revision of a big BOM they are nearly all of it.
+     */
     private List<BomImportLinePreviewDTO> lines;
 }
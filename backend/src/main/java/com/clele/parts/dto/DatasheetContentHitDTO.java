@@ -0,0 +1,38 @@
+package com.clele.parts.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * A part whose stored datasheet matched a full-text search, with the pages that matched best. In
+ * each snippet the matching words are wrapped in {@link #HIT_START} and {@link #HIT_END}; the rest
+ * is the page's text as extracted, not markup.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DatasheetContentHitDTO {
+
+    public static final String HIT_START = "«";
+    public static final String HIT_END = "»";
+
+    private Long partId;
+    private String partNumber;
+    private String description;
+    private String manufacturer;
+    private List<Page> pages;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Page {
+        private Long attachmentId;
+        private String filename;
+        /** 1-based, as the PDF viewer counts. */
+        private int page;
+        private String snippet;
+    }
+}
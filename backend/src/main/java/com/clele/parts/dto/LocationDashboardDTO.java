@@ -16,7 +16,7 @@ import java.math.BigDecimal;
 public class LocationDashboardDTO {
     private Long locationId;
     private String locationName;
-    /** Locations in this root's subtree, including the root itself. */
+    /** Locations below this root, not counting the root itself. */
     private Long locations;
     private Long parts;
     private Long totalQuantity;
@@ -0,0 +1,21 @@
+package com.clele.parts.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+/**
+ * Move all the stock in a location and its sub-locations to another location, as {@code MOVE}
+ * ledger movements. Unlike a merge, nothing is deleted: the locations stay, empty. The target must
+ * not be one of the locations being emptied.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LocationRelocateRequest {
+
+    @NotNull(message = "Target location ID is required")
+    private Long targetId;
+
+    /** Stored on every movement the relocation writes. */
+    private String comments;
+}
@@ -0,0 +1,15 @@
+package com.clele.parts.dto;
+
+import lombok.*;
+
+/** What a relocation moved. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LocationRelocateResultDTO {
+    /** Stock entries emptied, across the whole subtree. */
+    private int entries;
+    /** Units moved, reserved ones included. */
+    private long quantity;
+}
@@ -30,6 +30,8 @@ public class PartDTO {
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     private Long totalQuantity;
+    /** Part of {@link #totalQuantity} held by project reservations. */
+    private Long reservedQuantity;
     /** Id of the part's first PHOTO attachment (for a list thumbnail); null when it has no photo. */
     private Long thumbnailId;
     private List<String> tags;
@@ -14,5 +14,7 @@ public class ProjectBomEntryDTO {
     private int qtyPerInstance;
     private int totalNeeded;
     private int pulledTotal;
+    /** Still reserved for this project across all locations — set aside, not yet pulled. */
+    private int reservedTotal;
     private String notes;
 }
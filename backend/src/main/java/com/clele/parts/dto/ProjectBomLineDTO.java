@@ -45,6 +45,9 @@ public class ProjectBomLineDTO {
     /** On-hand across the whole organisation for the matched part; null when unmatched. */
     private Long onHand;
 
+    /** Part of {@link #onHand} already reserved by projects (this one included); null when unmatched. */
+    private Long reserved;
+
     /** {@code quantity × project.instanceCount} — what the whole build needs. */
     private int totalNeeded;
 }
@@ -28,4 +28,6 @@ public class ProjectDTO {
     private List<ProjectBomEntryDTO> bom;
     /** Populated only by the detail endpoint (null in list responses). */
     private List<ProjectStockEntryDTO> stock;
+    /** Populated only by the detail endpoint (null in list responses). */
+    private List<StockReservationDTO> reservations;
 }
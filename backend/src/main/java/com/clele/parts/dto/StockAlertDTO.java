@@ -0,0 +1,24 @@
+package com.clele.parts.dto;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/** A stock threshold crossing its minimum, either way — the {@code stock-alert} notification event. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockAlertDTO {
+    private Long id;
+    private Long thresholdId;
+    private Long partId;
+    private String partNumber;
+    private Long locationId;
+    private String locationName;
+    /** True when the stock fell below the minimum, false when it came back up to it. */
+    private boolean belowMinimum;
+    private long totalQuantity;
+    private int minimumQuantity;
+    private LocalDateTime createdAt;
+}
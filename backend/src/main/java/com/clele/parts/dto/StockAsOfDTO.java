@@ -0,0 +1,39 @@
+package com.clele.parts.dto;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * The organisation's stock as it stood at a moment: every part at every location that held any,
+ * with the weighted-average cost it had then. Worked out from the ledger, not from today's entries.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockAsOfDTO {
+
+    /** Everything moved before this instant is counted; nothing at or after it. */
+    private LocalDateTime at;
+    private long totalQuantity;
+    /** Σ quantity × unit price over the priced lines; unpriced stock counts for nothing. */
+    private BigDecimal totalValue;
+    private List<Line> lines;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Line {
+        private Long partId;
+        private String partNumber;
+        private Long locationId;
+        private String locationName;
+        private String locationBreadcrumb;
+        private int quantity;
+        private BigDecimal unitPrice;
+    }
+}
@@ -0,0 +1,23 @@
+package com.clele.parts.dto;
+
+import com.clele.parts.model.MovementType;
+import lombok.*;
+
+/**
+ * A stock entry as a committed movement left it — the {@code stock-change} notification event
+ * carries a list of these. Absolute, not a delta, so a client can apply them to what it shows
+ * without having to have seen every earlier one.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockChangeDTO {
+    private Long partId;
+    private Long locationId;
+    /** On hand after the movement. */
+    private int quantity;
+    private int reserved;
+    /** The movement that changed it last; a MOVE shows up at both ends. */
+    private MovementType type;
+}
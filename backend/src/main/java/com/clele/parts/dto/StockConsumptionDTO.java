@@ -0,0 +1,45 @@
+package com.clele.parts.dto;
+
+import com.clele.parts.model.MovementType;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * The cost of the stock that went out in a period — consumed, pulled into projects, adjusted away —
+ * by weighted average and by FIFO, per project, part and movement type. Project returns count
+ * against their project as negative quantities and costs.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockConsumptionDTO {
+
+    /** Null when the period is open at that end. */
+    private LocalDateTime from;
+    private LocalDateTime to;
+    /** Every movement before this instant is counted; the last few minutes are not yet. */
+    private LocalDateTime valuedTo;
+    private BigDecimal wacCost;
+    private BigDecimal fifoCost;
+    private List<Line> lines;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Line {
+        /** Null for stock that went out for no project. */
+        private Long projectId;
+        private String projectName;
+        private Long partId;
+        private String partNumber;
+        private MovementType type;
+        private long quantity;
+        private BigDecimal wacCost;
+        private BigDecimal fifoCost;
+    }
+}
@@ -18,4 +18,6 @@ public class StockEntryDTO {
     private String locationBreadcrumb;
     private Integer quantity;
     private BigDecimal unitPrice;
+    /** Part of {@link #quantity} held by project reservations; the rest is free to take. */
+    private int reserved;
 }
@@ -0,0 +1,18 @@
+package com.clele.parts.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * One page of movement history, newest first. {@code nextCursor} is passed back as {@code cursor}
+ * to get the page after this one; it is null on the last page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockMovementPageDTO {
+    private List<StockMovementDTO> items;
+    private String nextCursor;
+}
@@ -0,0 +1,26 @@
+package com.clele.parts.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * A whole shipment booked in at once: every line is an add, as {@code POST /api/stock/add} would
+ * make it, but validated and written together. A line without comments of its own gets
+ * {@link #comments} (the order number, typically).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockReceiptRequest {
+
+    @NotEmpty(message = "A receipt needs at least one line")
+    @Size(max = 1000, message = "At most 1000 lines per receipt")
+    private List<@Valid StockAdjustRequest> items;
+
+    /** Recorded on every line's movement that has no comments of its own. */
+    private String comments;
+}
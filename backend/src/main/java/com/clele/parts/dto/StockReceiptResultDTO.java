@@ -0,0 +1,42 @@
+package com.clele.parts.dto;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * What a bulk receipt did, line by line, in the order the lines were sent. A line naming a part or
+ * location this organisation does not have is rejected on its own; the rest are booked in.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockReceiptResultDTO {
+
+    private int received;
+    private int rejected;
+    private List<Line> lines;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Line {
+        /** 0-based position in the request. */
+        private int index;
+        private Long partId;
+        private Long locationId;
+        private int quantity;
+        private boolean accepted;
+        /** Why the line was rejected; null when accepted. */
+        private String error;
+        private Long movementId;
+        private Long stockEntryId;
+        /** On hand at the location right after this line — lines for the same bin accumulate. */
+        private Integer onHand;
+        /** Weighted-average cost at the location right after this line. */
+        private BigDecimal unitPrice;
+    }
+}
@@ -0,0 +1,30 @@
+package com.clele.parts.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * What a reconcile found. {@code corrected} entries were realigned with their ledger; {@code missing}
+ * is ledger stock with no stock entry at all, which is reported but not created.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockReconcileResultDTO {
+
+    private int corrected;
+    private List<Missing> missing;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Missing {
+        private Long partId;
+        private Long locationId;
+        /** What the ledger nets to at this location. */
+        private int quantity;
+    }
+}
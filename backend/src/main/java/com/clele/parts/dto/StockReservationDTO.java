@@ -0,0 +1,20 @@
+package com.clele.parts.dto;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockReservationDTO {
+    private Long id;
+    private Long partId;
+    private String partNumber;
+    private Long locationId;
+    private String locationName;
+    private String locationBreadcrumb;
+    private int quantity;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,40 @@
+package com.clele.parts.dto;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * What the organisation's stock on hand cost, per part, by weighted average and by FIFO. Worked out
+ * from the ledger at full precision; only the figures shown here are rounded.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockValuationDTO {
+
+    /** Every movement before this instant is counted; the last few minutes are not yet. */
+    private LocalDateTime valuedTo;
+    private long totalQuantity;
+    private BigDecimal wacValue;
+    private BigDecimal fifoValue;
+    private List<Line> lines;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Line {
+        private Long partId;
+        private String partNumber;
+        /** On hand across all locations. */
+        private long quantity;
+        /** The part's average cost, to four places. */
+        private BigDecimal wacUnitCost;
+        private BigDecimal wacValue;
+        private BigDecimal fifoValue;
+    }
+}
@@ -2,6 +2,7 @@ package com.clele.parts.imports;
 
 import com.clele.parts.service.DatasheetBackfillService;
 import com.clele.parts.service.DatasheetResourcingService;
+import com.clele.parts.service.HostThrottle;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,6 +16,7 @@ import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Map;
 
 /**
@@ -45,8 +47,16 @@ import java.util.Map;
  *
  * <p>Options: {@code --datasheets.dry-run} (default {@code true}), {@code --datasheets.limit}
  * (0 = all), {@code --datasheets.resource} (default {@code false}), {@code --datasheets.delay-ms}
- * (default 250, or 3000 when re-sourcing — that path scrapes a search engine per part),
+ * (least time between two requests to the same host; default 250, or 3000 when re-sourcing — that
+ * path scrapes a search engine per part), {@code --datasheets.per-host} (requests in flight per
+ * host, default 2), {@code --datasheets.concurrency} (in flight overall, default 16),
+ * {@code --datasheets.max-inflight-mb} (downloaded bytes held in memory at once, default 256),
+ * {@code --datasheets.fresh} (forget where earlier runs got to; default {@code false}),
  * {@code --datasheets.report} (CSV path).
+ *
+ * <p>A run carries on from the previous one: parts an earlier run of the same job already dealt with
+ * — same datasheet URL — are skipped, and the report covers only this run's parts. A dry run and a
+ * real run are separate jobs, so a preflight does not stop the backfill from storing anything.
  */
 @Component
 @Profile("datasheets")
@@ -68,24 +78,31 @@ public class DatasheetBackfillRunner implements ApplicationRunner {
         // Re-sourcing scrapes a search engine once per part, so it needs a far more patient default
         // than the backfill, which only fetches files from vendor CDNs.
         long delay = intArg(args, "datasheets.delay-ms", resource ? 3_000 : 250);
+        boolean fresh = boolArg(args, "datasheets.fresh", false);
+        // The overall cap stays within the datasheet client's connection pool (25).
+        HostThrottle.Limits pacing = new HostThrottle.Limits(
+                Math.max(1, intArg(args, "datasheets.per-host", 2)),
+                Math.max(1, intArg(args, "datasheets.concurrency", 16)),
+                Duration.ofMillis(delay),
+                Math.max(1, intArg(args, "datasheets.max-inflight-mb", 256)) * 1024L * 1024);
 
         if (resource) {
-            log.info("Datasheet RE-SOURCING starting{} (limit={}, delay={}ms)",
+            log.info("Datasheet RE-SOURCING starting{} (limit={}, {} per host {}ms apart, {} overall)",
                     dryRun ? " (dry run, datasheet_url will not be updated)" : "",
-                    limit == 0 ? "all" : limit, delay);
+                    limit == 0 ? "all" : limit, pacing.perHost(), delay, pacing.total());
             DatasheetResourcingService.Report report =
-                    resourcingService.run(new DatasheetResourcingService.Options(dryRun, limit, delay));
+                    resourcingService.run(new DatasheetResourcingService.Options(dryRun, limit, fresh, pacing));
             writeResourcingCsv(report, Path.of(reportPath));
             logResourcingSummary(report, reportPath);
             return;
         }
 
-        log.info("Datasheet {} starting (limit={}, delay={}ms)",
+        log.info("Datasheet {} starting (limit={}, {} per host {}ms apart, {} overall)",
                 dryRun ? "PREFLIGHT (dry run, nothing will be stored)" : "BACKFILL (will store PDFs)",
-                limit == 0 ? "all" : limit, delay);
+                limit == 0 ? "all" : limit, pacing.perHost(), delay, pacing.total());
 
         DatasheetBackfillService.Report report =
-                backfillService.run(new DatasheetBackfillService.Options(dryRun, limit, delay));
+                backfillService.run(new DatasheetBackfillService.Options(dryRun, limit, fresh, pacing));
 
         writeCsv(report, Path.of(reportPath));
         logSummary(report, reportPath);
@@ -96,6 +113,7 @@ public class DatasheetBackfillRunner implements ApplicationRunner {
         log.info("");
         log.info("================= DATASHEET RE-SOURCING =================");
         log.info("Parts with a dead Octopart tracking URL : {}", report.candidates());
+        log.info("Done by an earlier run (skipped)        : {}", report.skipped());
         log.info("Processed this run                      : {}", processed);
         log.info("");
         log.info("Outcome breakdown:");
@@ -134,6 +152,7 @@ public class DatasheetBackfillRunner implements ApplicationRunner {
         log.info("==================== DATASHEET {} ====================",
                 report.dryRun() ? "PREFLIGHT" : "BACKFILL");
         log.info("Parts with an undownloaded datasheet URL : {}", report.candidates());
+        log.info("Done by an earlier run (skipped)         : {}", report.skipped());
         log.info("Processed this run                       : {}", processed);
         log.info("");
         log.info("Outcome breakdown:");
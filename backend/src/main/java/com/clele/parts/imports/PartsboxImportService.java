@@ -11,8 +11,10 @@ import com.clele.parts.repository.OrganisationRepository;
 import com.clele.parts.repository.PartAttachmentLinkRepository;
 import com.clele.parts.repository.PartAttachmentRepository;
 import com.clele.parts.repository.PartRepository;
+import com.clele.parts.repository.StockCheckpointRepository;
 import com.clele.parts.repository.StockEntryRepository;
 import com.clele.parts.repository.StockMovementRepository;
+import com.clele.parts.repository.StockValuationRepository;
 import com.clele.parts.service.PartAttachmentService;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
@@ -56,6 +58,8 @@ public class PartsboxImportService {
     private final com.clele.parts.repository.AppUserRepository userRepository;
     private final StockEntryRepository stockEntryRepository;
     private final StockMovementRepository stockMovementRepository;
+    private final StockCheckpointRepository stockCheckpointRepository;
+    private final StockValuationRepository stockValuationRepository;
     private final PartAttachmentRepository partAttachmentRepository;
     private final PartAttachmentLinkRepository partAttachmentLinkRepository;
     private final PartAttachmentService partAttachmentService;
@@ -204,6 +208,9 @@ public class PartsboxImportService {
     private void wipePartData() {
         log.info("Wiping existing part data (keeping categories, spec definitions, locations)");
         stockMovementRepository.deleteAllInBatch();
+        // The import writes the ledger again with historical dates; checkpoints of the old one lie.
+        stockCheckpointRepository.discardAll();
+        stockValuationRepository.discardAll();
         stockEntryRepository.deleteAllInBatch();
         partAttachmentLinkRepository.deleteAllInBatch();
         partAttachmentRepository.deleteAllInBatch();
@@ -0,0 +1,22 @@
+package com.clele.parts.model;
+
+import java.util.List;
+
+/**
+ * The text layer of a datasheet PDF as PDFBox reads it, one string per page — or, when there is
+ * nothing to read, why not. Stored under the PDF's hash once read (see {@code DatasheetTextService}),
+ * so it is what both the routing and the excerpting of a datasheet start from.
+ *
+ * @param pages the text of each page, in order; empty when {@code error} is set
+ * @param error why the PDF could not be read, or null
+ */
+public record DatasheetText(List<String> pages, String error) {
+
+    public DatasheetText {
+        pages = List.copyOf(pages);
+    }
+
+    public static DatasheetText failed(String error) {
+        return new DatasheetText(List.of(), error);
+    }
+}
@@ -0,0 +1,37 @@
+package com.clele.parts.model;
+
+import java.util.Locale;
+
+/**
+ * Smaller renditions of a PHOTO, derived from it and stored beside it (see
+ * {@code ImageVariantService}). Sized to the longest side, for the places that show them at about a
+ * third of that on a high-density screen: a list row or the thumbnail strip, and a part's main
+ * picture.
+ */
+public enum ImageVariant {
+    THUMB(128),
+    MEDIUM(512);
+
+    private final int maxSide;
+
+    ImageVariant(int maxSide) {
+        this.maxSide = maxSide;
+    }
+
+    /** The longest side, in pixels, the variant is scaled down to. Never scaled up. */
+    public int maxSide() {
+        return maxSide;
+    }
+
+    /** The {@code ?size=} query value: {@code thumb} or {@code medium}; null or blank for the original. */
+    public static ImageVariant fromParam(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown image size: " + value);
+        }
+    }
+}
@@ -35,8 +35,22 @@ public class PartAttachment {
     @Column(name = "type", nullable = false, length = 20)
     private AttachmentType type;
 
-    @Column(name = "data", nullable = false, columnDefinition = "bytea")
-    private byte[] data;
+    /*
+     * No content here, on purpose: this entity is what listings, counts and links load, and they
+     * must never pull bytes. The content is in the BlobStore under sha256. The bytea column still
+     * holds what predates the store (V63) until AttachmentBlobMigration has moved it; it is not
+     * mapped, and is read only through AttachmentBlobRepository.legacyData.
+     */
+
+    /**
+     * SHA-256 of the content, hex: its name in the {@code BlobStore}. Null only on a row whose
+     * content is still in the legacy column.
+     */
+    @Column(name = "sha256", length = 64)
+    private String sha256;
+
+    @Column(name = "size_bytes")
+    private Long sizeBytes;
 
     @Column(name = "content_type", nullable = false, length = 100)
     private String contentType;
@@ -53,7 +67,7 @@ public class PartAttachment {
     @Column(name = "description", nullable = false, length = 255)
     private String description;
 
-    /** MD5 of {@link #data}, hex. Lets an identical upload reuse this row instead of storing a copy. */
+    /** MD5 of the content, hex. Reported to clients; matching identical uploads goes by {@link #sha256}. */
     @Column(name = "md5_hash", nullable = false, length = 32)
     private String md5Hash;
 
@@ -28,9 +28,27 @@ public class StockEntry {
     @JoinColumn(name = "location_id", nullable = false)
     private Location location;
 
-    @Column(nullable = false)
+    /**
+     * On hand. Like {@link #unitPrice}, written only by SQL that computes the new value from the
+     * row as it stands ({@code StockLedgerRepository}, and the few set-based statements in
+     * {@code StockEntryRepository}) — never by saving this entity. Reading the row, adding in Java
+     * and saving it back loses one of two concurrent updates; with the column not updatable, a stale
+     * entity left in the persistence context cannot write its old value over a newer one either.
+     * Insertable still, for importers that create an entry outright.
+     */
+    @Column(nullable = false, updatable = false)
     private Integer quantity;
 
-    @Column(name = "unit_price", precision = 10, scale = 2)
+    /** Weighted-average cost. Not updatable here for the same reason as {@link #quantity}. */
+    @Column(name = "unit_price", precision = 10, scale = 2, updatable = false)
     private BigDecimal unitPrice;
+
+    /**
+     * How much of {@link #quantity} projects have reserved (see {@code stock_reservation}). Read-only
+     * here: it is only ever changed by the conditional updates in {@code StockEntryRepository}, so a
+     * save of this entity can never write back a stale total over a concurrent reservation.
+     */
+    @Builder.Default
+    @Column(nullable = false, insertable = false, updatable = false)
+    private int reserved = 0;
 }
@@ -2,6 +2,7 @@ package com.clele.parts.repository;
 
 import com.clele.parts.model.AppUser;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.util.List;
 import java.util.Optional;
@@ -19,4 +20,11 @@ public interface AppUserRepository extends JpaRepository<AppUser, Long> {
 
     /** Every account in the installation, for the Global Administrator's All Users screen. */
     List<AppUser> findAllByOrderByEmail();
+
+    /** The users explicitly granted {@code permission} in one organisation (Global Administrators aside). */
+    @Query("""
+            SELECT DISTINCT u FROM AppUser u JOIN u.organisationPermissions p
+            WHERE p.organisationId = :organisationId AND p.permission = :permission
+            """)
+    List<AppUser> findByOrganisationPermission(Long organisationId, String permission);
 }
@@ -0,0 +1,88 @@
+package com.clele.parts.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * The bookkeeping between {@code part_attachment} and the blob store (V63): reading and moving out
+ * legacy bytea content — the only statements that touch that column — and telling the collector
+ * which blobs rows still name.
+ *
+ * <p><b>Plain JDBC, not JPA, on purpose.</b> The migration must read one row's bytes at a time and
+ * write back three columns; loading the entity would drag its organisation along and keep every
+ * migrated row, bytes and all, in the persistence context until the transaction ends. The
+ * collector's question is a set lookup over hashes, with no entity behind it at all.
+ */
+@Repository
+@RequiredArgsConstructor
+public class AttachmentBlobRepository {
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    /** Up to {@code limit} rows above {@code afterId} whose content is still in the table, lowest id first. */
+    public List<Long> unmigrated(long afterId, int limit) {
+        return jdbc.queryForList("""
+                SELECT id FROM part_attachment WHERE sha256 IS NULL AND id > :afterId ORDER BY id LIMIT :limit
+                """, new MapSqlParameterSource()
+                        .addValue("afterId", afterId)
+                        .addValue("limit", limit), Long.class);
+    }
+
+    /**
+     * A legacy row's bytes, with the row locked until the transaction ends. Empty when the row has
+     * gone, has been migrated meanwhile, or is locked by another instance doing the same.
+     */
+    public Optional<byte[]> lockLegacy(Long id) {
+        return jdbc.query("""
+                SELECT data FROM part_attachment WHERE id = :id AND sha256 IS NULL
+                FOR UPDATE SKIP LOCKED
+                """, new MapSqlParameterSource("id", id), (rs, rowNum) -> rs.getBytes("data"))
+                .stream().findFirst();
+    }
+
+    /**
+     * A legacy row's bytes, for serving it before it has been moved. Empty when it has been moved
+     * meanwhile; the caller then reads the blob.
+     */
+    public Optional<byte[]> legacyData(Long id) {
+        return jdbc.query("SELECT data FROM part_attachment WHERE id = :id AND data IS NOT NULL",
+                        new MapSqlParameterSource("id", id), (rs, rowNum) -> rs.getBytes("data"))
+                .stream().findFirst();
+    }
+
+    public Optional<String> sha256(Long id) {
+        return jdbc.query("SELECT sha256 FROM part_attachment WHERE id = :id AND sha256 IS NOT NULL",
+                        new MapSqlParameterSource("id", id), (rs, rowNum) -> rs.getString("sha256"))
+                .stream().findFirst();
+    }
+
+    /** Points a legacy row at its blob and lets go of the bytes. */
+    public void moved(Long id, String sha256, long size) {
+        jdbc.update("""
+                UPDATE part_attachment SET sha256 = :sha256, size_bytes = :size, data = NULL WHERE id = :id
+                """, new MapSqlParameterSource()
+                        .addValue("id", id)
+                        .addValue("sha256", sha256)
+                        .addValue("size", size));
+    }
+
+    /** Those of {@code hashes} that some attachment row, or some photo's rendition (V64), still names. */
+    public Set<String> referenced(Collection<String> hashes) {
+        if (hashes.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(jdbc.queryForList("""
+                SELECT sha256 FROM part_attachment WHERE sha256 IN (:hashes)
+                UNION
+                SELECT sha256 FROM attachment_variant WHERE sha256 IN (:hashes)
+                """, new MapSqlParameterSource("hashes", hashes), String.class));
+    }
+}
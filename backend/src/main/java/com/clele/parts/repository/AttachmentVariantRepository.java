@@ -0,0 +1,100 @@
+package com.clele.parts.repository;
+
+import com.clele.parts.model.ImageVariant;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The photo renditions of V64: which blob is the thumbnail or medium size of which photo.
+ *
+ * <p><b>Plain JDBC, not JPA, on purpose.</b> A variant belongs to content, not to an attachment row
+ * — there is no entity to hang it on — and every question asked here is a lookup by hash. The
+ * writes race by design (an upload and the backfill may scale the same photo), so the insert is an
+ * {@code ON CONFLICT DO NOTHING} that JPA has no way to say.
+ */
+@Repository
+@RequiredArgsConstructor
+public class AttachmentVariantRepository {
+
+    /** A stored rendition. */
+    public record Variant(String sha256, String contentType, int width, int height) {}
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    public Optional<Variant> find(String sourceSha256, ImageVariant variant) {
+        return jdbc.query("""
+                SELECT sha256, content_type, width, height FROM attachment_variant
+                WHERE source_sha256 = :source AND variant = :variant
+                """, new MapSqlParameterSource()
+                        .addValue("source", sourceSha256)
+                        .addValue("variant", variant.name()),
+                (rs, rowNum) -> new Variant(rs.getString("sha256"), rs.getString("content_type"),
+                        rs.getInt("width"), rs.getInt("height")))
+                .stream().findFirst();
+    }
+
+    /** Records a rendition; one already recorded for the photo and size is kept. */
+    public void save(String sourceSha256, ImageVariant variant, Variant rendition) {
+        jdbc.update("""
+                INSERT INTO attachment_variant (source_sha256, variant, sha256, content_type, width, height)
+                VALUES (:source, :variant, :sha256, :contentType, :width, :height)
+                ON CONFLICT (source_sha256, variant) DO NOTHING
+                """, new MapSqlParameterSource()
+                        .addValue("source", sourceSha256)
+                        .addValue("variant", variant.name())
+                        .addValue("sha256", rendition.sha256())
+                        .addValue("contentType", rendition.contentType())
+                        .addValue("width", rendition.width())
+                        .addValue("height", rendition.height()));
+    }
+
+    /**
+     * Up to {@code limit} photo hashes above {@code after} that lack a rendition, in hash order —
+     * what the backfill works through. Photos not yet moved into the blob store have no hash and
+     * wait until they have.
+     */
+    public List<String> missing(String after, int limit) {
+        return jdbc.queryForList("""
+                SELECT DISTINCT a.sha256 FROM part_attachment a
+                WHERE a.type = 'PHOTO' AND a.sha256 > :after
+                  AND (SELECT count(*) FROM attachment_variant v WHERE v.source_sha256 = a.sha256) < :sizes
+                ORDER BY a.sha256
+                LIMIT :limit
+                """, new MapSqlParameterSource()
+                        .addValue("after", after)
+                        .addValue("sizes", ImageVariant.values().length)
+                        .addValue("limit", limit), String.class);
+    }
+
+    /**
+     * Drops the renditions of those of {@code sources} that no attachment row names any more.
+     *
+     * @return the blobs the dropped rows named, for the collector to look at
+     */
+    public List<String> dropUnused(Collection<String> sources) {
+        if (sources.isEmpty()) {
+            return List.of();
+        }
+        return jdbc.queryForList("""
+                DELETE FROM attachment_variant v
+                WHERE v.source_sha256 IN (:sources)
+                  AND NOT EXISTS (SELECT 1 FROM part_attachment a WHERE a.sha256 = v.source_sha256)
+                RETURNING v.sha256
+                """, new MapSqlParameterSource("sources", sources), String.class);
+    }
+
+    /** As {@link #dropUnused}, for every photo: the sweep's way of catching rows removed in bulk. */
+    public List<String> dropAllUnused() {
+        return jdbc.queryForList("""
+                DELETE FROM attachment_variant v
+                WHERE NOT EXISTS (SELECT 1 FROM part_attachment a WHERE a.sha256 = v.source_sha256)
+                RETURNING v.sha256
+                """, new MapSqlParameterSource(), String.class);
+    }
+}
@@ -0,0 +1,70 @@
+package com.clele.parts.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The dashboard's figures, as the V60 triggers keep them: one {@code organisation_summary} row per
+ * organisation and one {@code location_summary} row per root location. Reading them is two primary
+ * key / index lookups, however much stock the organisation holds.
+ *
+ * <p><b>Plain JDBC, not JPA, on purpose.</b> The rows are written only by the database — the
+ * triggers and {@code recompute_organisation_summary} — so there is nothing for an entity to manage,
+ * and a cached entity would only risk showing a figure the triggers have since moved.
+ */
+@Repository
+@RequiredArgsConstructor
+public class DashboardSummaryRepository {
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    public record OrganisationSummary(long totalParts, long totalLocations, long totalCategories,
+                                      long sparseSpecCount) {}
+
+    /** A root location and what its subtree holds; {@code locations} counts descendants only. */
+    public record RootSummary(Long locationId, String locationName, long locations, long parts,
+                              long totalQuantity, BigDecimal totalStockValue) {}
+
+    /** The organisation's counters; empty only for an organisation created since the last write. */
+    public Optional<OrganisationSummary> find(Long organisationId) {
+        return jdbc.query("""
+                SELECT total_parts, total_locations, total_categories, sparse_spec_count
+                FROM organisation_summary WHERE organisation_id = :orgId
+                """, new MapSqlParameterSource("orgId", organisationId),
+                (rs, rowNum) -> new OrganisationSummary(rs.getLong("total_parts"),
+                        rs.getLong("total_locations"), rs.getLong("total_categories"),
+                        rs.getLong("sparse_spec_count")))
+                .stream().findFirst();
+    }
+
+    /** Every root location of the organisation with its subtree's totals, by name. */
+    public List<RootSummary> roots(Long organisationId) {
+        return jdbc.query("""
+                SELECT ls.location_id, l.name, ls.locations, ls.parts, ls.total_quantity,
+                       ls.total_stock_value
+                FROM location_summary ls JOIN location l ON l.id = ls.location_id
+                WHERE ls.organisation_id = :orgId
+                ORDER BY l.name
+                """, new MapSqlParameterSource("orgId", organisationId),
+                (rs, rowNum) -> new RootSummary(rs.getLong("location_id"), rs.getString("name"),
+                        rs.getLong("locations"), rs.getLong("parts"), rs.getLong("total_quantity"),
+                        rs.getBigDecimal("total_stock_value")));
+    }
+
+    /**
+     * Recounts everything from the live tables, replacing whatever the triggers had accumulated —
+     * the summary rows and the stock thresholds' running totals (V61). A threshold whose total was
+     * wrong enough to be on the wrong side of its minimum raises its alert now.
+     */
+    public void recompute(Long organisationId) {
+        jdbc.query("SELECT recompute_organisation_summary(:orgId), recompute_stock_thresholds(:orgId)",
+                new MapSqlParameterSource("orgId", organisationId), (RowCallbackHandler) rs -> {});
+    }
+}
@@ -0,0 +1,57 @@
+package com.clele.parts.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The checkpoint of the bulk datasheet jobs (V67): which parts a job has dealt with, for which URL,
+ * and how it went.
+ *
+ * <p><b>Plain JDBC, not JPA, on purpose.</b> The rows are written from many virtual threads at once,
+ * each outcome the moment it is known, and are only ever read back whole at the start of a run; an
+ * upsert keyed by job and part is one statement here and a find-then-save race through JPA.
+ */
+@Repository
+@RequiredArgsConstructor
+public class DatasheetJobOutcomeRepository {
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    /** The URL each part was dealt with under, by part id, for one job. */
+    public Map<Long, String> done(String job) {
+        Map<Long, String> done = new HashMap<>();
+        jdbc.query("SELECT part_id, url FROM datasheet_job_outcome WHERE job = :job",
+                new MapSqlParameterSource("job", job),
+                rs -> {
+                    done.put(rs.getLong("part_id"), rs.getString("url"));
+                });
+        return done;
+    }
+
+    /** Records a part's outcome, replacing any earlier one for the same job. */
+    public void record(String job, long partId, String url, String outcome, String detail) {
+        jdbc.update("""
+                INSERT INTO datasheet_job_outcome (job, part_id, url, outcome, detail)
+                VALUES (:job, :partId, :url, :outcome, :detail)
+                ON CONFLICT (job, part_id) DO UPDATE
+                    SET url = EXCLUDED.url, outcome = EXCLUDED.outcome, detail = EXCLUDED.detail,
+                        processed_at = now()
+                """, new MapSqlParameterSource()
+                        .addValue("job", job)
+                        .addValue("partId", partId)
+                        .addValue("url", url)
+                        .addValue("outcome", outcome)
+                        .addValue("detail", detail));
+    }
+
+    /** Forgets everything a job has done, so its next run starts from the first part. */
+    public int forget(String job) {
+        return jdbc.update("DELETE FROM datasheet_job_outcome WHERE job = :job",
+                new MapSqlParameterSource("job", job));
+    }
+}
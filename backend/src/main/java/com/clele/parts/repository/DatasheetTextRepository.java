@@ -0,0 +1,174 @@
+package com.clele.parts.repository;
+
+import com.clele.parts.model.DatasheetText;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The datasheet text of V65: the pages PDFBox read out of a PDF, stored under the PDF's hash.
+ *
+ * <p><b>Plain JDBC, not JPA, on purpose.</b> As with {@link AttachmentVariantRepository}, the text
+ * belongs to content rather than to an attachment row, every read is by hash, and the writes race by
+ * design — an upload and the backfill may read the same PDF — which wants an
+ * {@code ON CONFLICT DO NOTHING}. A page is also read or written only with all the others; mapping
+ * each as an entity would buy a persistence context full of text for nothing. And the search is
+ * PostgreSQL full-text search (V66), which JPQL cannot express.
+ */
+@Repository
+@RequiredArgsConstructor
+public class DatasheetTextRepository {
+
+    /** One page of a part's datasheet that matched a search, with the matching words marked. */
+    public record PageHit(long partId, String partNumber, String description, String manufacturer,
+                          long attachmentId, String filename, int page, String snippet) {}
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    public Optional<DatasheetText> find(String sha256) {
+        MapSqlParameterSource params = new MapSqlParameterSource("sha256", sha256);
+        List<String> errors = jdbc.query("SELECT error FROM datasheet_text WHERE sha256 = :sha256", params,
+                (rs, rowNum) -> rs.getString("error"));
+        if (errors.isEmpty()) {
+            return Optional.empty();
+        }
+        if (errors.get(0) != null) {
+            return Optional.of(DatasheetText.failed(errors.get(0)));
+        }
+        return Optional.of(new DatasheetText(jdbc.queryForList(
+                "SELECT text FROM datasheet_page WHERE sha256 = :sha256 ORDER BY page", params, String.class), null));
+    }
+
+    public boolean exists(String sha256) {
+        return Boolean.TRUE.equals(jdbc.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM datasheet_text WHERE sha256 = :sha256)",
+                new MapSqlParameterSource("sha256", sha256), Boolean.class));
+    }
+
+    /** Records a PDF's text; text already recorded for it is kept. */
+    public void save(String sha256, DatasheetText text) {
+        int inserted = jdbc.update("""
+                INSERT INTO datasheet_text (sha256, page_count, error)
+                VALUES (:sha256, :pageCount, :error)
+                ON CONFLICT (sha256) DO NOTHING
+                """, new MapSqlParameterSource()
+                        .addValue("sha256", sha256)
+                        .addValue("pageCount", text.pages().size())
+                        .addValue("error", text.error()));
+        if (inserted == 0 || text.pages().isEmpty()) {
+            return;
+        }
+        SqlParameterSource[] pages = new SqlParameterSource[text.pages().size()];
+        for (int i = 0; i < pages.length; i++) {
+            pages[i] = new MapSqlParameterSource()
+                    .addValue("sha256", sha256)
+                    .addValue("page", i + 1)
+                    // PostgreSQL text cannot hold NUL, and the odd PDF font maps a glyph to one.
+                    .addValue("text", text.pages().get(i).replace("\u0000", ""));
+        }
+        jdbc.batchUpdate("INSERT INTO datasheet_page (sha256, page, text) VALUES (:sha256, :page, :text)", pages);
+    }
+
+    /**
+     * Up to {@code limit} datasheet hashes above {@code after} whose text is not stored, in hash
+     * order — what the backfill works through. Datasheets not yet moved into the blob store have no
+     * hash and are read when asked for.
+     */
+    public List<String> missing(String after, int limit) {
+        return jdbc.queryForList("""
+                SELECT DISTINCT a.sha256 FROM part_attachment a
+                WHERE a.type = 'DATASHEET' AND a.sha256 > :after
+                  AND NOT EXISTS (SELECT 1 FROM datasheet_text t WHERE t.sha256 = a.sha256)
+                ORDER BY a.sha256
+                LIMIT :limit
+                """, new MapSqlParameterSource()
+                        .addValue("after", after)
+                        .addValue("limit", limit), String.class);
+    }
+
+    /**
+     * The organisation's parts whose datasheets match {@code query} — web-search syntax: words,
+     * {@code "quoted phrases"}, {@code or}, {@code -excluded} — best match first, at most
+     * {@code maxParts} of them with their {@code pagesPerPart} best pages each. In the snippet the
+     * matching words are wrapped in {@code hitStart} and {@code hitEnd}.
+     *
+     * <p>Pages are ranked by {@code ts_rank} and a part by its best page. {@code ts_headline}
+     * re-parses the page it is given, so it runs only on the pages that are returned.
+     */
+    public List<PageHit> search(long organisationId, String query, int maxParts, int pagesPerPart,
+                                String hitStart, String hitEnd) {
+        return jdbc.query("""
+                WITH q AS (SELECT websearch_to_tsquery('english', :query) AS query),
+                own AS (
+                    SELECT DISTINCT l.part_id, a.id AS attachment_id, a.filename, a.sha256
+                    FROM part_attachment a
+                    JOIN part_attachment_link l ON l.attachment_id = a.id
+                    WHERE a.organisation_id = :org AND a.type = 'DATASHEET' AND a.sha256 IS NOT NULL
+                ),
+                hits AS (
+                    SELECT o.part_id, o.attachment_id, o.filename, pg.sha256, pg.page,
+                           ts_rank(pg.tsv, q.query) AS rank
+                    FROM q, datasheet_page pg
+                    JOIN own o ON o.sha256 = pg.sha256
+                    WHERE pg.tsv @@ q.query
+                ),
+                ranked AS (
+                    SELECT h.*,
+                           row_number() OVER (PARTITION BY h.part_id
+                                              ORDER BY h.rank DESC, h.attachment_id, h.page) AS nth,
+                           max(h.rank) OVER (PARTITION BY h.part_id) AS best
+                    FROM hits h
+                ),
+                chosen AS (
+                    SELECT r.*, dense_rank() OVER (ORDER BY r.best DESC, r.part_id) AS part_rank
+                    FROM ranked r
+                    WHERE r.nth <= :pagesPerPart
+                )
+                SELECT c.part_id, p.part_number, p.description, p.manufacturer,
+                       c.attachment_id, c.filename, c.page,
+                       ts_headline('english', pg.text, q.query, :headlineOptions) AS snippet
+                FROM chosen c
+                CROSS JOIN q
+                JOIN part p ON p.id = c.part_id
+                JOIN datasheet_page pg ON pg.sha256 = c.sha256 AND pg.page = c.page
+                WHERE c.part_rank <= :maxParts
+                ORDER BY c.part_rank, c.nth
+                """, new MapSqlParameterSource()
+                        .addValue("query", query)
+                        .addValue("org", organisationId)
+                        .addValue("maxParts", maxParts)
+                        .addValue("pagesPerPart", pagesPerPart)
+                        .addValue("headlineOptions", "MaxFragments=2, MaxWords=25, MinWords=10, "
+                                + "FragmentDelimiter=\" … \", StartSel=" + hitStart + ", StopSel=" + hitEnd),
+                (rs, rowNum) -> new PageHit(rs.getLong("part_id"), rs.getString("part_number"),
+                        rs.getString("description"), rs.getString("manufacturer"),
+                        rs.getLong("attachment_id"), rs.getString("filename"), rs.getInt("page"),
+                        rs.getString("snippet")));
+    }
+
+    /** Drops the text of those of {@code hashes} that no attachment row names any more. */
+    public void dropUnused(Collection<String> hashes) {
+        if (hashes.isEmpty()) {
+            return;
+        }
+        jdbc.update("""
+                DELETE FROM datasheet_text t
+                WHERE t.sha256 IN (:hashes)
+                  AND NOT EXISTS (SELECT 1 FROM part_attachment a WHERE a.sha256 = t.sha256)
+                """, new MapSqlParameterSource("hashes", hashes));
+    }
+
+    /** As {@link #dropUnused}, for every PDF: the sweep's way of catching rows removed in bulk. */
+    public void dropAllUnused() {
+        jdbc.update("""
+                DELETE FROM datasheet_text t
+                WHERE NOT EXISTS (SELECT 1 FROM part_attachment a WHERE a.sha256 = t.sha256)
+                """, new MapSqlParameterSource());
+    }
+}
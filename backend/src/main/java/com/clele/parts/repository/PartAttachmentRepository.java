@@ -36,8 +36,18 @@ public interface PartAttachmentRepository extends JpaRepository<PartAttachment,
      * PDF stored as a datasheet and the same PDF stored as a user attachment are shown in different
      * places and deleted independently.
      */
-    List<PartAttachment> findByOrganisationIdAndMd5HashAndType(Long organisationId, String md5Hash,
-                                                               AttachmentType type);
+    Optional<PartAttachment> findFirstByOrganisationIdAndSha256AndTypeOrderById(Long organisationId,
+                                                                                 String sha256,
+                                                                                 AttachmentType type);
+
+    /**
+     * The blobs of the rows {@link #deleteOrphans} is about to delete, read just before it so the
+     * collector knows which blobs to look at once the deletion has committed.
+     */
+    @Query("select distinct a.sha256 from PartAttachment a where a.sha256 is not null and not exists "
+            + "(select 1 from PartAttachmentLink l where l.attachment = a) and not exists "
+            + "(select 1 from PartKitTemplateAttachment k where k.attachment = a)")
+    List<String> findOrphanHashes();
 
     /**
      * Drop content nothing links to any more. Deleting a part removes its links by DB cascade but
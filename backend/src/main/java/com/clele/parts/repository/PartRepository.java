@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,8 +18,9 @@ public interface PartRepository extends JpaRepository<Part, Long> {
      * {@code frontend/src/api/types.ts} as {@code SPARSE_SPEC_THRESHOLD}; the two must agree or the
      * tile's count and the filtered list disagree.
      *
-     * <p>Inlined as a literal in the native queries below because JPQL/native {@code @Query} text is
-     * a compile-time constant expression — keep the three in step.
+     * <p>Inlined as a literal in the native query below because JPQL/native {@code @Query} text is
+     * a compile-time constant expression, and in the dashboard summary's triggers (V60), which keep
+     * the tile's count — keep all of them in step.
      */
     int SPARSE_SPEC_THRESHOLD = 5;
 
@@ -90,24 +92,6 @@ public interface PartRepository extends JpaRepository<Part, Long> {
                       @Param("locationId") Long locationId,
                       @Param("sparseSpecs") Boolean sparseSpecs);
 
-    /**
-     * How many parts in the organisation carry fewer than {@link #SPARSE_SPEC_THRESHOLD} spec values —
-     * the "parts missing specs" figure on the dashboard.
-     *
-     * <p>Counts {@code part_spec_value} rows rather than JSONB keys (step 4 of the typed spec value
-     * migration). A part with no specs at all has no rows, and {@code count(*)} of nothing is 0, so
-     * the population being counted needs no {@code coalesce} guard the way {@code jsonb_object_keys}
-     * did — that function errors on NULL, and a part that has never been through a lookup has
-     * {@code specs IS NULL}. {@code part_id} is the leading column of the primary key, so this is an
-     * index-only scan.
-     */
-    @Query(value = """
-            SELECT count(*) FROM part p
-            WHERE p.organisation_id = :orgId
-              AND (SELECT count(*) FROM part_spec_value v WHERE v.part_id = p.id) < 5
-            """, nativeQuery = true)
-    long countSparseSpecs(@Param("orgId") Long organisationId);
-
     /**
      * Fuzzy-match existing parts by part number within one organisation, for Quick Add's "do we
      * already have this?" check. Returns parts whose part_number is trigram-similar to the term
@@ -179,6 +163,11 @@ public interface PartRepository extends JpaRepository<Part, Long> {
     List<Long> findIdsByCreatedByIdAndOrganisationId(@Param("userId") Long userId,
                                                      @Param("orgId") Long organisationId);
 
+    /** Which of {@code ids} are parts of this organisation — one query for a whole batch. */
+    @Query("SELECT p.id FROM Part p WHERE p.organisation.id = :organisationId AND p.id IN :ids")
+    List<Long> findIdsByOrganisationIdAndIdIn(@Param("organisationId") Long organisationId,
+                                              @Param("ids") Collection<Long> ids);
+
     /**
      * Bulk-delete the given parts. DB-level ON DELETE CASCADE removes the dependent part_attachment
      * and stock_movement rows; stock_entry (no cascade) must be cleared first. Returns the number
@@ -0,0 +1,129 @@
+package com.clele.parts.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.function.Consumer;
+
+/**
+ * The single query behind the BOM cost and pick-list export.
+ *
+ * <p><b>Plain JDBC, not JPA, on purpose.</b> The export is one row per BOM line per stock location
+ * of its matched part — a big BOM in a well-stocked workshop is tens of thousands of rows — and it
+ * is written straight to the response as it is read. A JPA query would materialise the whole list
+ * (and every entity behind it) before the first byte went out. Here the driver holds a forward-only
+ * cursor and hands over {@value #FETCH_SIZE} rows at a time, so memory stays flat whatever the size.
+ *
+ * <p>Postgres only streams with a cursor inside a transaction; callers must hold one.
+ */
+@Repository
+public class ProjectBomExportRepository {
+
+    /** Rows the driver fetches per round trip while the cursor is open. */
+    static final int FETCH_SIZE = 500;
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    public ProjectBomExportRepository(DataSource dataSource) {
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.setFetchSize(FETCH_SIZE);
+        this.jdbc = new NamedParameterJdbcTemplate(template);
+    }
+
+    /**
+     * One BOM line at one location holding its matched part. A line with no match, or whose part
+     * has no stock anywhere, appears once with the location columns null.
+     *
+     * @param partWac weighted-average cost of the part across every location that has a price —
+     *                {@code Σ(quantity × unit_price) / Σ quantity}, not an average of averages
+     */
+    public record ExportRow(
+            int lineNo,
+            String designators,
+            String value,
+            String footprint,
+            String mpn,
+            String manufacturer,
+            int quantity,
+            boolean dnp,
+            String status,
+            String partNumber,
+            String locationBreadcrumb,
+            Integer locationQuantity,
+            Integer locationReserved,
+            BigDecimal locationUnitPrice,
+            Long partOnHand,
+            BigDecimal partWac) {}
+
+    /**
+     * Streams the rows of one BOM in picking order: by location breadcrumb (so a walk down the
+     * shelves meets them in sequence), then by line; lines with nothing to pick come last.
+     */
+    public void stream(Long bomId, Long organisationId, Consumer<ExportRow> sink) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("bomId", bomId)
+                .addValue("orgId", organisationId);
+        jdbc.query("""
+                WITH RECURSIVE crumb(id, path) AS (
+                  SELECT id, name::text FROM location WHERE parent_id IS NULL AND organisation_id = :orgId
+                  UNION ALL
+                  SELECT l.id, c.path || ' > ' || l.name FROM location l JOIN crumb c ON l.parent_id = c.id
+                ),
+                cost AS (
+                  SELECT se.part_id,
+                         SUM(se.quantity) AS on_hand,
+                         SUM(se.quantity * se.unit_price) FILTER (WHERE se.unit_price IS NOT NULL)
+                           / NULLIF(SUM(se.quantity) FILTER (WHERE se.unit_price IS NOT NULL), 0) AS wac
+                  FROM stock_entry se
+                  JOIN crumb c ON c.id = se.location_id
+                  WHERE se.part_id IN (SELECT part_id FROM project_bom_line WHERE bom_id = :bomId)
+                  GROUP BY se.part_id
+                )
+                SELECT bl.line_no, bl.designators, bl.value, bl.footprint, bl.mpn, bl.manufacturer,
+                       bl.quantity, bl.dnp,
+                       CASE WHEN bl.status = 'MATCHED' AND bl.part_id IS NULL THEN 'UNMATCHED'
+                            ELSE bl.status END AS status,
+                       p.part_number,
+                       c.path        AS location_breadcrumb,
+                       se.quantity   AS location_quantity,
+                       se.reserved   AS location_reserved,
+                       se.unit_price AS location_unit_price,
+                       cost.on_hand  AS part_on_hand,
+                       cost.wac      AS part_wac
+                FROM project_bom_line bl
+                LEFT JOIN part p ON p.id = bl.part_id
+                LEFT JOIN (stock_entry se JOIN crumb c ON c.id = se.location_id)
+                       ON se.part_id = bl.part_id AND se.quantity > 0
+                LEFT JOIN cost ON cost.part_id = bl.part_id
+                WHERE bl.bom_id = :bomId
+                ORDER BY c.path NULLS LAST, bl.line_no
+                """, params, (RowCallbackHandler) rs -> sink.accept(map(rs)));
+    }
+
+    private static ExportRow map(ResultSet rs) throws SQLException {
+        return new ExportRow(
+                rs.getInt("line_no"),
+                rs.getString("designators"),
+                rs.getString("value"),
+                rs.getString("footprint"),
+                rs.getString("mpn"),
+                rs.getString("manufacturer"),
+                rs.getInt("quantity"),
+                rs.getBoolean("dnp"),
+                rs.getString("status"),
+                rs.getString("part_number"),
+                rs.getString("location_breadcrumb"),
+                rs.getObject("location_quantity", Integer.class),
+                rs.getObject("location_reserved", Integer.class),
+                rs.getBigDecimal("location_unit_price"),
+                rs.getObject("part_on_hand", Long.class),
+                rs.getBigDecimal("part_wac"));
+    }
+}
@@ -0,0 +1,50 @@
+package com.clele.parts.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.util.Map;
+
+/**
+ * Bulk writes to {@code project_part}, for applying an imported BOM in one go.
+ *
+ * <p><b>Plain JDBC, not JPA, on purpose.</b> {@code ProjectPart} ids come from IDENTITY generation,
+ * so saving entities would be an INSERT per row (Hibernate cannot batch them), and the apply needs
+ * "insert or change the quantity" per part — which Postgres does in one upsert on the
+ * {@code (project_id, part_id)} key. A whole BOM is one JDBC batch whatever its length.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ProjectPartBatchRepository {
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    /**
+     * Sets the per-instance quantity of each part on the project's BOM, adding the parts that are
+     * not on it yet. Rows whose quantity already matches are left untouched. Notes on existing rows
+     * are kept — they were written by hand, not by the import.
+     *
+     * @param qtyByPart part id → quantity per build instance
+     */
+    public void upsert(Long projectId, Map<Long, Integer> qtyByPart) {
+        if (qtyByPart.isEmpty()) {
+            return;
+        }
+        SqlParameterSource[] batch = qtyByPart.entrySet().stream()
+                .map(e -> new MapSqlParameterSource()
+                        .addValue("projectId", projectId)
+                        .addValue("partId", e.getKey())
+                        .addValue("qty", e.getValue()))
+                .toArray(SqlParameterSource[]::new);
+        jdbc.batchUpdate("""
+                INSERT INTO project_part (project_id, part_id, qty_per_instance)
+                VALUES (:projectId, :partId, :qty)
+                ON CONFLICT (project_id, part_id) DO UPDATE
+                    SET qty_per_instance = EXCLUDED.qty_per_instance
+                    WHERE project_part.qty_per_instance <> EXCLUDED.qty_per_instance
+                """, batch);
+    }
+}
@@ -11,6 +11,10 @@ public interface ProjectPartRepository extends JpaRepository<ProjectPart, Long>
     @Query("SELECT pp FROM ProjectPart pp JOIN FETCH pp.part WHERE pp.project.id = :projectId ORDER BY pp.id")
     List<ProjectPart> findByProjectIdWithPart(Long projectId);
 
+    /** {@code [partId, qtyPerInstance]} of every BOM entry — what a BOM apply compares against. */
+    @Query("SELECT pp.part.id, pp.qtyPerInstance FROM ProjectPart pp WHERE pp.project.id = :projectId")
+    List<Object[]> findQtyByProjectId(Long projectId);
+
     boolean existsByProjectIdAndPartId(Long projectId, Long partId);
 
     /** Is this part on any project's BOM? Asked before a kit-generation undo deletes it. */
@@ -18,5 +22,13 @@ public interface ProjectPartRepository extends JpaRepository<ProjectPart, Long>
 
     int countByProjectId(Long projectId);
 
+    /** BOM sizes of several projects in one grouped query. Projects with an empty BOM have no row. */
+    @Query("""
+            SELECT pp.project.id, COUNT(pp) FROM ProjectPart pp
+            WHERE pp.project.id IN :projectIds
+            GROUP BY pp.project.id
+            """)
+    List<Object[]> countByProjectIds(List<Long> projectIds);
+
     void deleteByProjectId(Long projectId);
 }
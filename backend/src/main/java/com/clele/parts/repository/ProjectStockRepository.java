@@ -14,6 +14,17 @@ public interface ProjectStockRepository extends JpaRepository<ProjectStock, Long
     @Query("SELECT COALESCE(SUM(ps.quantity), 0) FROM ProjectStock ps WHERE ps.project.id = :projectId AND ps.part.id = :partId")
     int sumQuantityByProjectIdAndPartId(Long projectId, Long partId);
 
+    /**
+     * Pulled totals of every part of one project, in one grouped query — what the detail screen
+     * needs next to each BOM entry. Parts never pulled have no row.
+     */
+    @Query("""
+            SELECT ps.part.id, SUM(ps.quantity) FROM ProjectStock ps
+            WHERE ps.project.id = :projectId
+            GROUP BY ps.part.id
+            """)
+    List<Object[]> sumQuantityByPartIdForProject(Long projectId);
+
     /** Has this part been pulled into any project? Asked before a kit-generation undo deletes it. */
     boolean existsByPartId(Long partId);
 }
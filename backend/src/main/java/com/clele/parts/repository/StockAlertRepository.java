@@ -0,0 +1,80 @@
+package com.clele.parts.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The {@code stock_alert} outbox (V61): one row for each time a threshold's {@code below_minimum}
+ * flag flipped, written by the database in the transaction that flipped it.
+ *
+ * <p><b>Plain JDBC, not JPA, on purpose.</b> Rows are only ever inserted by a trigger and read on a
+ * background thread with no request and no persistence context; claiming a mail is a conditional
+ * UPDATE whose row count is the answer. An entity would add nothing but a session to open.
+ */
+@Repository
+@RequiredArgsConstructor
+public class StockAlertRepository {
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    /**
+     * One alert, with what it is about. {@code stillBelow} is the threshold's flag as it stands
+     * now, which may already have flipped back.
+     */
+    public record Alert(Long id, Long organisationId, Long thresholdId, Long partId, String partNumber,
+                        Long locationId, String locationName, boolean belowMinimum, long totalQuantity,
+                        int minimumQuantity, boolean stillBelow, LocalDateTime createdAt) {}
+
+    public Optional<Alert> find(Long id) {
+        return jdbc.query("""
+                SELECT a.id, a.organisation_id, a.threshold_id, pst.part_id, p.part_number,
+                       pst.location_id, l.name AS location_name, a.below_minimum, a.total_quantity,
+                       a.minimum_quantity, pst.below_minimum AS still_below, a.created_at
+                FROM stock_alert a
+                JOIN part_stock_threshold pst ON pst.id = a.threshold_id
+                JOIN part p ON p.id = pst.part_id
+                JOIN location l ON l.id = pst.location_id
+                WHERE a.id = :id
+                """, new MapSqlParameterSource("id", id),
+                (rs, rowNum) -> new Alert(rs.getLong("id"), rs.getLong("organisation_id"),
+                        rs.getLong("threshold_id"), rs.getLong("part_id"), rs.getString("part_number"),
+                        rs.getLong("location_id"), rs.getString("location_name"),
+                        rs.getBoolean("below_minimum"), rs.getLong("total_quantity"),
+                        rs.getInt("minimum_quantity"), rs.getBoolean("still_below"),
+                        rs.getTimestamp("created_at").toLocalDateTime()))
+                .stream().findFirst();
+    }
+
+    /** Drops below minimum since {@code since} that nobody has mailed yet, oldest first. */
+    public List<Long> unmailed(LocalDateTime since) {
+        return jdbc.queryForList("""
+                SELECT id FROM stock_alert
+                WHERE below_minimum AND mailed_at IS NULL AND created_at >= :since
+                ORDER BY id
+                """, new MapSqlParameterSource("since", Timestamp.valueOf(since)), Long.class);
+    }
+
+    /**
+     * Marks a drop below minimum as mailed, unless someone has already. Several instances hear the
+     * same notification; the one this returns true for sends the mail.
+     */
+    public boolean claimMail(Long id) {
+        return jdbc.update("""
+                UPDATE stock_alert SET mailed_at = now()
+                WHERE id = :id AND below_minimum AND mailed_at IS NULL
+                """, new MapSqlParameterSource("id", id)) == 1;
+    }
+
+    /** Deletes alerts older than {@code before}; they have been delivered or are past caring about. */
+    public int prune(LocalDateTime before) {
+        return jdbc.update("DELETE FROM stock_alert WHERE created_at < :before",
+                new MapSqlParameterSource("before", Timestamp.valueOf(before)));
+    }
+}
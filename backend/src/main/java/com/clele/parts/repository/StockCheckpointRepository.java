@@ -0,0 +1,199 @@
+package com.clele.parts.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Stock checkpoints (V59) and the slice of the ledger that has to be replayed on top of one.
+ *
+ * <p>A checkpoint at {@code as_of} is the fold of every movement with {@code moved_at < as_of}. It
+ * stays true only as long as nobody changes the ledger below it, and three places do:
+ * <ul>
+ *   <li>the Partsbox import wipes the ledger and writes it again with historical dates —
+ *       {@link #discardAll};</li>
+ *   <li>a location merge re-points the source's movements at the target — {@link #foldLocation}
+ *       does the same to the checkpoint lines, so the sums still match;</li>
+ *   <li>a kit-generation undo deletes the movements it wrote — {@link #discardAfter} drops the
+ *       checkpoints taken since, which the next nightly run writes again.</li>
+ * </ul>
+ * Anything new that edits or deletes movements must do one of these too.
+ *
+ * <p><b>Plain JDBC, not JPA, on purpose.</b> A first checkpoint replays an organisation's whole
+ * history and later ones a day of it; either way the rows are folded as they are read and never
+ * needed again. The driver holds a forward-only cursor and hands over {@value #FETCH_SIZE} rows at a
+ * time, where a JPA query would materialise every movement and its part and location first. Writing
+ * the lines is one JDBC batch. Postgres only streams inside a transaction; callers must hold one.
+ */
+@Repository
+public class StockCheckpointRepository {
+
+    /** Rows the driver fetches per round trip while a cursor is open. */
+    static final int FETCH_SIZE = 1000;
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    public StockCheckpointRepository(DataSource dataSource) {
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.setFetchSize(FETCH_SIZE);
+        this.jdbc = new NamedParameterJdbcTemplate(template);
+    }
+
+    public record Checkpoint(Long id, LocalDateTime asOf) {}
+
+    /** One part at one location as a checkpoint found it. */
+    public record Line(Long partId, Long locationId, int quantity, BigDecimal unitPrice) {}
+
+    /**
+     * One ledger row, reduced to what the fold needs. {@code targetLocationId} is set on MOVE rows
+     * only; their {@code quantity} is the (negative) debit at {@code locationId}.
+     */
+    public record Movement(Long partId, Long locationId, Long targetLocationId, int quantity,
+                           BigDecimal unitPrice) {}
+
+    /** The newest checkpoint of an organisation taken at or before {@code at}; any time when null. */
+    public Optional<Checkpoint> latest(Long organisationId, LocalDateTime at) {
+        MapSqlParameterSource params = new MapSqlParameterSource("orgId", organisationId);
+        String bound = "";
+        if (at != null) {
+            bound = " AND as_of <= :at";
+            params.addValue("at", Timestamp.valueOf(at));
+        }
+        return jdbc.query("SELECT id, as_of FROM stock_checkpoint WHERE organisation_id = :orgId" + bound
+                        + " ORDER BY as_of DESC LIMIT 1",
+                params, (rs, rowNum) -> new Checkpoint(rs.getLong("id"),
+                        rs.getTimestamp("as_of").toLocalDateTime()))
+                .stream().findFirst();
+    }
+
+    public boolean exists(Long organisationId, LocalDateTime asOf) {
+        return Boolean.TRUE.equals(jdbc.queryForObject("""
+                SELECT EXISTS (SELECT 1 FROM stock_checkpoint
+                               WHERE organisation_id = :orgId AND as_of = :asOf)
+                """, new MapSqlParameterSource()
+                        .addValue("orgId", organisationId)
+                        .addValue("asOf", Timestamp.valueOf(asOf)), Boolean.class));
+    }
+
+    public void lines(Long checkpointId, Consumer<Line> sink) {
+        jdbc.query("""
+                SELECT part_id, location_id, quantity, unit_price
+                FROM stock_checkpoint_line WHERE checkpoint_id = :id
+                """, new MapSqlParameterSource("id", checkpointId),
+                (RowCallbackHandler) rs -> sink.accept(new Line(rs.getLong("part_id"),
+                        rs.getLong("location_id"), rs.getInt("quantity"), rs.getBigDecimal("unit_price"))));
+    }
+
+    /**
+     * The organisation's movements with {@code from <= moved_at < to}, in the order they happened
+     * ({@code moved_at}, then id — the order the weighted-average cost was built up in). A null
+     * bound is open. The range is read off the {@code (moved_at, id)} index; the organisation comes
+     * from the source location, which a MOVE shares with its target.
+     */
+    public void movements(Long organisationId, LocalDateTime from, LocalDateTime to, Consumer<Movement> sink) {
+        MapSqlParameterSource params = new MapSqlParameterSource("orgId", organisationId);
+        StringBuilder where = new StringBuilder("l.organisation_id = :orgId");
+        if (from != null) {
+            where.append(" AND m.moved_at >= :from");
+            params.addValue("from", Timestamp.valueOf(from));
+        }
+        if (to != null) {
+            where.append(" AND m.moved_at < :to");
+            params.addValue("to", Timestamp.valueOf(to));
+        }
+        jdbc.query("SELECT m.part_id, m.location_id, m.target_location_id, m.quantity, m.unit_price"
+                + " FROM stock_movement m JOIN location l ON l.id = m.location_id"
+                + " WHERE " + where
+                + " ORDER BY m.moved_at, m.id", params, (RowCallbackHandler) rs -> sink.accept(new Movement(
+                        rs.getLong("part_id"),
+                        rs.getLong("location_id"),
+                        rs.getObject("target_location_id", Long.class),
+                        rs.getInt("quantity"),
+                        rs.getBigDecimal("unit_price"))));
+    }
+
+    /** Writes a checkpoint and its lines. @return the new checkpoint's id */
+    public Long insert(Long organisationId, LocalDateTime asOf, List<Line> lines) {
+        Long id = jdbc.queryForObject("""
+                INSERT INTO stock_checkpoint (organisation_id, as_of, created_at)
+                VALUES (:orgId, :asOf, now())
+                RETURNING id
+                """, new MapSqlParameterSource()
+                        .addValue("orgId", organisationId)
+                        .addValue("asOf", Timestamp.valueOf(asOf)), Long.class);
+        SqlParameterSource[] batch = lines.stream()
+                .map(l -> new MapSqlParameterSource()
+                        .addValue("id", id)
+                        .addValue("partId", l.partId())
+                        .addValue("locationId", l.locationId())
+                        .addValue("qty", l.quantity())
+                        .addValue("price", l.unitPrice()))
+                .toArray(SqlParameterSource[]::new);
+        jdbc.batchUpdate("""
+                INSERT INTO stock_checkpoint_line (checkpoint_id, part_id, location_id, quantity, unit_price)
+                VALUES (:id, :partId, :locationId, :qty, :price)
+                """, batch);
+        return id;
+    }
+
+    /**
+     * Thins out old checkpoints: those older than {@code keepDailyFrom} survive only if they fall on
+     * the first of a month. Month-end reports still start from a checkpoint; a date in between
+     * replays at most a month.
+     *
+     * @return how many were dropped
+     */
+    public int prune(Long organisationId, LocalDateTime keepDailyFrom) {
+        return jdbc.update("""
+                DELETE FROM stock_checkpoint
+                WHERE organisation_id = :orgId AND as_of < :keepFrom
+                  AND as_of <> date_trunc('month', as_of)
+                """, new MapSqlParameterSource()
+                        .addValue("orgId", organisationId)
+                        .addValue("keepFrom", Timestamp.valueOf(keepDailyFrom)));
+    }
+
+    /**
+     * The checkpoint side of a location merge: every checkpoint line at the source is added into the
+     * same part's line at the target, in every checkpoint, exactly as the re-pointed movements now
+     * add up there. A priced source carries its price over, as {@code StockEntryRepository.foldLocation}
+     * does for the live entry. The source lines go when the source location is deleted.
+     */
+    public void foldLocation(Long sourceId, Long targetId) {
+        jdbc.update("""
+                INSERT INTO stock_checkpoint_line AS t (checkpoint_id, part_id, location_id, quantity, unit_price)
+                SELECT s.checkpoint_id, s.part_id, :targetId, s.quantity, s.unit_price
+                FROM stock_checkpoint_line s WHERE s.location_id = :sourceId
+                ON CONFLICT (checkpoint_id, part_id, location_id) DO UPDATE SET
+                    quantity   = t.quantity + EXCLUDED.quantity,
+                    unit_price = COALESCE(EXCLUDED.unit_price, t.unit_price)
+                """, new MapSqlParameterSource()
+                        .addValue("sourceId", sourceId)
+                        .addValue("targetId", targetId));
+    }
+
+    /** Drops an organisation's checkpoints taken after {@code movedAt}, for a ledger edit at that time. */
+    public int discardAfter(Long organisationId, LocalDateTime movedAt) {
+        return jdbc.update("""
+                DELETE FROM stock_checkpoint WHERE organisation_id = :orgId AND as_of > :movedAt
+                """, new MapSqlParameterSource()
+                        .addValue("orgId", organisationId)
+                        .addValue("movedAt", Timestamp.valueOf(movedAt)));
+    }
+
+    /** Drops every checkpoint of every organisation, for when the ledger itself is replaced. */
+    public void discardAll() {
+        jdbc.update("DELETE FROM stock_checkpoint", new MapSqlParameterSource());
+    }
+}
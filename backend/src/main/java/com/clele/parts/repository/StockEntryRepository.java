@@ -28,12 +28,6 @@ public interface StockEntryRepository extends JpaRepository<StockEntry, Long> {
 
     void deleteByLocationId(Long locationId);
 
-    @Query("""
-            SELECT COALESCE(SUM(s.quantity * s.unitPrice), 0) FROM StockEntry s
-            WHERE s.unitPrice IS NOT NULL AND s.location.organisation.id = :organisationId
-            """)
-    java.math.BigDecimal totalStockValue(Long organisationId);
-
     void deleteByPartId(Long partId);
 
     @Modifying
@@ -47,13 +41,67 @@ public interface StockEntryRepository extends JpaRepository<StockEntry, Long> {
     boolean existsByPartIdAndLocationIdAndIdNot(Long partId, Long locationId, Long id);
 
     /**
-     * On-hand totals per part across the whole organisation. Locations are shared by every member,
-     * so the "In Stock" column is an organisation figure rather than a per-user one.
+     * On-hand and reserved totals per part across the whole organisation, as {@code [partId,
+     * SUM(quantity), SUM(reserved)]}. Locations are shared by every member, so the "In Stock" column
+     * is an organisation figure rather than a per-user one.
      */
     @Query("""
-            SELECT s.part.id, SUM(s.quantity) FROM StockEntry s
+            SELECT s.part.id, SUM(s.quantity), SUM(s.reserved) FROM StockEntry s
             WHERE s.part.id IN :partIds AND s.location.organisation.id = :organisationId
             GROUP BY s.part.id
             """)
     List<Object[]> sumQuantityByPartIdsAndOrganisationId(List<Long> partIds, Long organisationId);
+
+    /**
+     * Claims {@code qty} of the unreserved stock of a part at a location. The test and the increment
+     * are one statement, so of two sessions racing for the last parts exactly one gets them.
+     *
+     * @return 1 when reserved, 0 when there is no entry or not enough unreserved stock
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE stock_entry SET reserved = reserved + :qty
+            WHERE part_id = :partId AND location_id = :locationId AND quantity - reserved >= :qty
+            """, nativeQuery = true)
+    int reserve(Long partId, Long locationId, int qty);
+
+    /** Gives back {@code qty} of a reservation. @return 0 when less than that is reserved */
+    @Modifying
+    @Query(value = """
+            UPDATE stock_entry SET reserved = reserved - :qty
+            WHERE part_id = :partId AND location_id = :locationId AND reserved >= :qty
+            """, nativeQuery = true)
+    int release(Long partId, Long locationId, int qty);
+
+    /**
+     * Folds every entry at one location into the same part's entry at another, creating those the
+     * target lacks: quantities and reservations add up, and a priced source carries its price over.
+     * The source entries are left for the caller to drop.
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO stock_entry AS t (part_id, location_id, quantity, unit_price, reserved)
+            SELECT s.part_id, :targetId, s.quantity, s.unit_price, s.reserved
+            FROM stock_entry s WHERE s.location_id = :sourceId
+            ON CONFLICT (part_id, location_id) DO UPDATE SET
+                quantity   = t.quantity + EXCLUDED.quantity,
+                reserved   = t.reserved + EXCLUDED.reserved,
+                unit_price = COALESCE(EXCLUDED.unit_price, t.unit_price)
+            """, nativeQuery = true)
+    void foldLocation(Long sourceId, Long targetId);
+
+    /** A price edit that changes no quantity, so writes no movement. */
+    @Modifying
+    @Query(value = "UPDATE stock_entry SET unit_price = :unitPrice WHERE id = :id", nativeQuery = true)
+    void setUnitPrice(Long id, java.math.BigDecimal unitPrice);
+
+    /**
+     * Takes back a quantity an undone movement had added, and restores the price from before it —
+     * the weighted average the add computed cannot be inverted.
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE stock_entry SET quantity = quantity - :qty, unit_price = :unitPrice WHERE id = :id
+            """, nativeQuery = true)
+    void revert(Long id, int qty, java.math.BigDecimal unitPrice);
 }
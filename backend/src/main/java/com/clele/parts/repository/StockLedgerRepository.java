@@ -0,0 +1,334 @@
+package com.clele.parts.repository;
+
+import com.clele.parts.model.MovementType;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The statements that change a {@code stock_entry} aggregate as stock comes and goes. Each change
+ * is one SQL statement that reads the row, checks it and writes it, so two people taking from the
+ * same bin at the same moment both count.
+ *
+ * <p>This used to be done in Java: load the entry, add the delta, recompute the weighted-average
+ * cost, save. Without a version column or a row lock, two sessions interleaving those steps each
+ * wrote their own total and one of the two movements vanished from the aggregate — while still
+ * being in the ledger, which is what {@code reconcile} was papering over. Here Postgres takes the
+ * row lock for the statement, a second writer waits for it and then sees the first one's result.
+ * It also saves the SELECT each movement used to make.
+ *
+ * <p><b>Plain JDBC, not JPA, on purpose.</b> The statements need {@code RETURNING} to hand the new
+ * quantity and price back without reading the row again, which a Spring Data {@code @Modifying}
+ * query cannot return. They run on the surrounding transaction's connection. Hibernate is not
+ * flushed first, which is safe because nothing writes these columns through the entity (see
+ * {@code StockEntry#quantity}).
+ */
+@Repository
+@RequiredArgsConstructor
+public class StockLedgerRepository {
+
+    /**
+     * Adds to an entry, creating it if need be, and folds a priced addition into the WAC. Shared by
+     * {@link #add} and {@link #addAll}; the latter lets the driver append the RETURNING clause.
+     */
+    private static final String ADD = """
+            INSERT INTO stock_entry AS se (part_id, location_id, quantity, unit_price)
+            VALUES (:partId, :locationId, :qty, CAST(:price AS NUMERIC))
+            ON CONFLICT (part_id, location_id) DO UPDATE SET
+                quantity = se.quantity + EXCLUDED.quantity,
+                unit_price = CASE
+                    WHEN EXCLUDED.unit_price IS NULL THEN se.unit_price
+                    WHEN se.quantity = 0 THEN EXCLUDED.unit_price
+                    ELSE ROUND((COALESCE(se.unit_price, 0) * se.quantity
+                                + EXCLUDED.unit_price * EXCLUDED.quantity)
+                               / (se.quantity + EXCLUDED.quantity), 2)
+                END
+            """;
+
+    private static final String[] APPLIED_COLUMNS = {"id", "quantity", "reserved", "unit_price"};
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    /** The aggregate row after a change. */
+    public record Applied(Long entryId, int quantity, int reserved, BigDecimal unitPrice) {}
+
+    /** One line of a goods receipt: a positive quantity of a part arriving at a location. */
+    public record Receipt(Long partId, Long locationId, int quantity, BigDecimal unitPrice, String comments) {}
+
+    /**
+     * Adds {@code qty} (zero or more) to a part's stock at a location, creating the entry if there
+     * is none. A priced addition folds into the weighted-average cost:
+     * {@code (on_hand × wac + qty × price) / (on_hand + qty)}, with an unpriced on-hand counted at
+     * zero and an empty entry simply taking the new price. Always succeeds.
+     */
+    public Applied add(Long partId, Long locationId, int qty, BigDecimal unitPrice) {
+        return jdbc.queryForObject(ADD + "RETURNING id, quantity, reserved, unit_price",
+                addParams(partId, locationId, qty, unitPrice), StockLedgerRepository::applied);
+    }
+
+    /**
+     * {@link #add} for a whole receipt, as one JDBC batch. Each line is still its own atomic
+     * statement, executed in list order, so two lines for the same bin add up (and average) exactly
+     * as two separate receipts would.
+     *
+     * @return each line's entry as it stood after that line, in the same order
+     */
+    public List<Applied> addAll(List<Receipt> receipts) {
+        SqlParameterSource[] batch = receipts.stream()
+                .map(r -> addParams(r.partId(), r.locationId(), r.quantity(), r.unitPrice()))
+                .toArray(SqlParameterSource[]::new);
+        GeneratedKeyHolder keys = new GeneratedKeyHolder();
+        jdbc.batchUpdate(ADD, batch, keys, APPLIED_COLUMNS);
+        return keys.getKeyList().stream()
+                .map(row -> new Applied(((Number) row.get("id")).longValue(),
+                        ((Number) row.get("quantity")).intValue(),
+                        ((Number) row.get("reserved")).intValue(),
+                        (BigDecimal) row.get("unit_price")))
+                .toList();
+    }
+
+    /**
+     * Writes the ledger rows for a receipt, one JDBC batch, all with the same type, author and
+     * time. Same columns {@code StockMovement} maps; no project, no move target.
+     *
+     * @return the new movement ids, in the same order
+     */
+    public List<Long> recordReceipts(List<Receipt> receipts, MovementType type, String createdBy,
+                                     LocalDateTime movedAt) {
+        SqlParameterSource[] batch = receipts.stream()
+                .map(r -> new MapSqlParameterSource()
+                        .addValue("partId", r.partId())
+                        .addValue("locationId", r.locationId())
+                        .addValue("qty", r.quantity())
+                        .addValue("price", r.unitPrice())
+                        .addValue("comments", r.comments())
+                        .addValue("movedAt", movedAt)
+                        .addValue("createdBy", createdBy)
+                        .addValue("type", type.name()))
+                .toArray(SqlParameterSource[]::new);
+        GeneratedKeyHolder keys = new GeneratedKeyHolder();
+        jdbc.batchUpdate("""
+                INSERT INTO stock_movement (part_id, location_id, quantity, unit_price, comments,
+                                            moved_at, created_by, type)
+                VALUES (:partId, :locationId, :qty, :price, :comments, :movedAt, :createdBy, :type)
+                """, batch, keys, new String[]{"id"});
+        return keys.getKeyList().stream()
+                .map(row -> ((Number) row.get("id")).longValue())
+                .toList();
+    }
+
+    /**
+     * Takes {@code qty} (more than zero) of a part from a location, if that much is there and not
+     * reserved for a project. The weighted-average cost is left as it is — a take does not change
+     * what the rest cost.
+     *
+     * @return the entry after the take, or empty when there is no entry or the take would leave
+     *         less than is reserved (or less than nothing); nothing is written then
+     */
+    public Optional<Applied> take(Long partId, Long locationId, int qty) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("partId", partId)
+                .addValue("locationId", locationId)
+                .addValue("qty", qty);
+        List<Applied> rows = jdbc.query("""
+                UPDATE stock_entry SET quantity = quantity - :qty
+                WHERE part_id = :partId AND location_id = :locationId AND quantity - :qty >= reserved
+                RETURNING id, quantity, reserved, unit_price
+                """, params, StockLedgerRepository::applied);
+        return rows.stream().findFirst();
+    }
+
+    /** An entry as {@link #drain} found it, just before emptying it. */
+    public record Drained(Long entryId, Long partId, Long locationId, int quantity, int reserved,
+                          BigDecimal unitPrice) {}
+
+    /** One leg of a relocation: all of an entry's stock going from one location to another. */
+    public record Move(Long partId, Long fromLocationId, Long toLocationId, int quantity,
+                       BigDecimal unitPrice, String comments) {}
+
+    /**
+     * Empties every stock entry in a location's subtree — the location and everything below it —
+     * in one statement: quantity and reservations both go to zero, the price stays (an empty entry
+     * keeps its last WAC, as a take to zero leaves it). The rows are locked as they are read, so a
+     * take racing the relocation either happens first and is in the numbers returned, or waits and
+     * finds nothing left.
+     *
+     * @return what each emptied entry held, in entry id order; entries that were already empty are
+     *         left alone and not returned
+     */
+    public List<Drained> drain(Long locationId) {
+        List<Drained> drained = new ArrayList<>(jdbc.query("""
+                WITH RECURSIVE subtree(id) AS (
+                  SELECT CAST(:locationId AS BIGINT)
+                  UNION ALL
+                  SELECT l.id FROM location l JOIN subtree s ON l.parent_id = s.id
+                ),
+                old AS (
+                  SELECT e.id, e.quantity, e.reserved FROM stock_entry e
+                  WHERE e.location_id IN (SELECT id FROM subtree) AND e.quantity > 0
+                  FOR UPDATE
+                )
+                UPDATE stock_entry se SET quantity = 0, reserved = 0
+                FROM old WHERE se.id = old.id
+                RETURNING se.id, se.part_id, se.location_id, old.quantity, old.reserved, se.unit_price
+                """, new MapSqlParameterSource("locationId", locationId),
+                (rs, rowNum) -> new Drained(rs.getLong("id"), rs.getLong("part_id"), rs.getLong("location_id"),
+                        rs.getInt("quantity"), rs.getInt("reserved"), rs.getBigDecimal("unit_price"))));
+        drained.sort(Comparator.comparing(Drained::entryId));
+        return drained;
+    }
+
+    /**
+     * Adds reservations to the entries at one location, one JDBC batch: {@code quantities} by part.
+     * The entries must already hold that much stock (the CHECK on {@code reserved <= quantity}).
+     */
+    public void addReserved(Long locationId, Map<Long, Integer> quantities) {
+        SqlParameterSource[] batch = quantities.entrySet().stream()
+                .map(e -> new MapSqlParameterSource()
+                        .addValue("partId", e.getKey())
+                        .addValue("locationId", locationId)
+                        .addValue("qty", e.getValue()))
+                .toArray(SqlParameterSource[]::new);
+        jdbc.batchUpdate("""
+                UPDATE stock_entry SET reserved = reserved + :qty
+                WHERE part_id = :partId AND location_id = :locationId
+                """, batch);
+    }
+
+    /**
+     * Writes one {@code MOVE} ledger row per move, one JDBC batch, all with the same author and
+     * time, in list order — so the ids, and with them the replay order, follow the list. Each row is
+     * the debit at the source, as {@code StockMovementService.applyMove} writes it.
+     *
+     * @return the new movement ids, in the same order
+     */
+    public List<Long> recordMoves(List<Move> moves, String createdBy, LocalDateTime movedAt) {
+        SqlParameterSource[] batch = moves.stream()
+                .map(m -> new MapSqlParameterSource()
+                        .addValue("partId", m.partId())
+                        .addValue("locationId", m.fromLocationId())
+                        .addValue("targetId", m.toLocationId())
+                        .addValue("qty", -m.quantity())
+                        .addValue("price", m.unitPrice())
+                        .addValue("comments", m.comments())
+                        .addValue("movedAt", movedAt)
+                        .addValue("createdBy", createdBy))
+                .toArray(SqlParameterSource[]::new);
+        GeneratedKeyHolder keys = new GeneratedKeyHolder();
+        jdbc.batchUpdate("""
+                INSERT INTO stock_movement (part_id, location_id, target_location_id, quantity, unit_price,
+                                            comments, moved_at, created_by, type)
+                VALUES (:partId, :locationId, :targetId, :qty, :price, :comments, :movedAt, :createdBy, 'MOVE')
+                """, batch, keys, new String[]{"id"});
+        return keys.getKeyList().stream()
+                .map(row -> ((Number) row.get("id")).longValue())
+                .toList();
+    }
+
+    /** What {@link #reconcile} did: entries corrected, and ledger stock that has no entry at all. */
+    public record Reconciled(int corrected, List<Unaggregated> missing) {}
+
+    /** A part at a location the ledger says holds {@code quantity}, with no stock entry to show it. */
+    public record Unaggregated(Long partId, Long locationId, int quantity) {}
+
+    /**
+     * Realigns every stock entry of an organisation with its ledger, in one statement.
+     *
+     * <p>The ledger side is the organisation's newest stock checkpoint (V59) plus the movements
+     * since, MOVE rows counted at both ends, summed per part and location in one GROUP BY. Every
+     * entry whose quantity differs is set to that sum (an entry the ledger knows nothing of, to
+     * zero); the statement also returns the sums that are not zero but have no entry — stock the
+     * ledger holds that no screen shows. Those are reported rather than created: there is no price
+     * to give them, and a negative one could not be stored.
+     *
+     * <p>This was a loop — every entry loaded with its part and location, then one sum over its
+     * whole history each and one update per correction. Now Postgres reads the movements once, along
+     * the {@code (moved_at, id)} index from the checkpoint on.
+     */
+    public Reconciled reconcile(Long organisationId) {
+        MapSqlParameterSource params = new MapSqlParameterSource("orgId", organisationId);
+        return jdbc.query("""
+                WITH cp AS (
+                  SELECT id, as_of FROM stock_checkpoint
+                  WHERE organisation_id = :orgId
+                  ORDER BY as_of DESC LIMIT 1
+                ),
+                ledger AS (
+                  SELECT part_id, location_id, SUM(quantity) AS quantity
+                  FROM (
+                    SELECT cl.part_id, cl.location_id, cl.quantity
+                    FROM stock_checkpoint_line cl WHERE cl.checkpoint_id = (SELECT id FROM cp)
+                    UNION ALL
+                    SELECT m.part_id, m.location_id, m.quantity
+                    FROM stock_movement m JOIN location l ON l.id = m.location_id
+                    WHERE l.organisation_id = :orgId
+                      AND m.moved_at >= COALESCE((SELECT as_of FROM cp), '-infinity')
+                    UNION ALL
+                    SELECT m.part_id, m.target_location_id, -m.quantity
+                    FROM stock_movement m JOIN location l ON l.id = m.target_location_id
+                    WHERE l.organisation_id = :orgId AND m.type = 'MOVE'
+                      AND m.moved_at >= COALESCE((SELECT as_of FROM cp), '-infinity')
+                  ) legs
+                  GROUP BY part_id, location_id
+                ),
+                fixed AS (
+                  UPDATE stock_entry se SET quantity = fix.quantity
+                  FROM (SELECT e.id, COALESCE(lg.quantity, 0) AS quantity
+                        FROM stock_entry e
+                        JOIN location l ON l.id = e.location_id
+                        LEFT JOIN ledger lg ON lg.part_id = e.part_id AND lg.location_id = e.location_id
+                        WHERE l.organisation_id = :orgId) fix
+                  WHERE se.id = fix.id AND se.quantity <> fix.quantity
+                  RETURNING se.id
+                ),
+                missing AS (
+                  SELECT lg.part_id, lg.location_id, lg.quantity FROM ledger lg
+                  WHERE lg.quantity <> 0
+                    AND NOT EXISTS (SELECT 1 FROM stock_entry e
+                                    WHERE e.part_id = lg.part_id AND e.location_id = lg.location_id)
+                )
+                SELECT (SELECT COUNT(*) FROM fixed) AS corrected,
+                       missing.part_id, missing.location_id, missing.quantity
+                FROM (SELECT 1) one LEFT JOIN missing ON TRUE
+                ORDER BY missing.part_id, missing.location_id
+                """, params, (ResultSetExtractor<Reconciled>) rs -> {
+                    int corrected = 0;
+                    List<Unaggregated> missing = new ArrayList<>();
+                    while (rs.next()) {
+                        corrected = rs.getInt("corrected");
+                        Long partId = rs.getObject("part_id", Long.class);
+                        if (partId != null) {
+                            missing.add(new Unaggregated(partId, rs.getLong("location_id"), rs.getInt("quantity")));
+                        }
+                    }
+                    return new Reconciled(corrected, missing);
+                });
+    }
+
+    private static MapSqlParameterSource addParams(Long partId, Long locationId, int qty, BigDecimal unitPrice) {
+        return new MapSqlParameterSource()
+                .addValue("partId", partId)
+                .addValue("locationId", locationId)
+                .addValue("qty", qty)
+                .addValue("price", qty > 0 ? unitPrice : null);
+    }
+
+    private static Applied applied(ResultSet rs, int rowNum) throws SQLException {
+        return new Applied(rs.getLong("id"), rs.getInt("quantity"), rs.getInt("reserved"),
+                rs.getBigDecimal("unit_price"));
+    }
+}
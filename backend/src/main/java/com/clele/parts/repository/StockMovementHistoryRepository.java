@@ -0,0 +1,150 @@
+package com.clele.parts.repository;
+
+import com.clele.parts.dto.StockMovementDTO;
+import com.clele.parts.model.MovementType;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Pages of stock-movement history, newest first, for a part, a location, a project or a whole
+ * organisation.
+ *
+ * <p><b>Plain JDBC, not JPA, on purpose.</b> Loading {@code StockMovement} entities and calling
+ * {@code Location.breadcrumb()} on each walks the parent chain one lazy load at a time, twice per
+ * move, plus one for the project — for every row of a history that only ever grows. Here a page is
+ * one statement: the movements, both locations' names and breadcrumbs (built by a recursive CTE over
+ * just the locations on the page) and the project name, as a flat projection.
+ *
+ * <p>Pagination is by keyset on {@code (moved_at, id)}, not by offset: a page "before" a cursor is an
+ * index range scan that stops after {@code limit} rows (V58), where {@code OFFSET 10000} would read
+ * and throw away ten thousand. {@code id} breaks ties between movements written in the same instant.
+ */
+@Repository
+@RequiredArgsConstructor
+public class StockMovementHistoryRepository {
+
+    private static final String COLUMNS = """
+            m.id, m.part_id, m.location_id, m.target_location_id, m.quantity, m.unit_price,
+            m.comments, m.moved_at, m.created_by, m.type, m.project_id""";
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    /**
+     * Which movements to list. {@code organisationId} is required — every page is confined to it —
+     * and each other field narrows further when set. {@code from} is inclusive, {@code to} exclusive.
+     */
+    public record Filter(Long organisationId, Long partId, Long locationId, Long projectId,
+                         LocalDateTime from, LocalDateTime to) {}
+
+    /** The last row of the previous page; the next page starts strictly after (older than) it. */
+    public record Cursor(LocalDateTime movedAt, Long id) {}
+
+    /**
+     * Up to {@code limit} movements matching {@code filter}, older than {@code after} when given,
+     * newest first. A location's history includes the moves that credited it as well as those
+     * that debited it.
+     */
+    public List<StockMovementDTO> page(Filter filter, Cursor after, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("orgId", filter.organisationId())
+                .addValue("limit", limit);
+
+        StringBuilder where = new StringBuilder("ml.organisation_id = :orgId");
+        if (filter.partId() != null) {
+            where.append(" AND m.part_id = :partId");
+            params.addValue("partId", filter.partId());
+        }
+        if (filter.projectId() != null) {
+            where.append(" AND m.project_id = :projectId");
+            params.addValue("projectId", filter.projectId());
+        }
+        if (filter.from() != null) {
+            where.append(" AND m.moved_at >= :from");
+            params.addValue("from", Timestamp.valueOf(filter.from()));
+        }
+        if (filter.to() != null) {
+            where.append(" AND m.moved_at < :to");
+            params.addValue("to", Timestamp.valueOf(filter.to()));
+        }
+        if (after != null) {
+            where.append(" AND (m.moved_at, m.id) < (:cursorAt, :cursorId)");
+            params.addValue("cursorAt", Timestamp.valueOf(after.movedAt()));
+            params.addValue("cursorId", after.id());
+        }
+
+        String selection;
+        if (filter.locationId() == null) {
+            selection = select(where.toString());
+        } else {
+            // Two index-ordered legs rather than "location_id = x OR target_location_id = x", which
+            // no single index can return in order. A move never credits the location it debits, so
+            // the legs cannot overlap.
+            params.addValue("locationId", filter.locationId());
+            selection = "(" + select(where + " AND m.location_id = :locationId") + ")"
+                    + " UNION ALL "
+                    + "(" + select(where + " AND m.target_location_id = :locationId") + ")"
+                    + " ORDER BY moved_at DESC, id DESC LIMIT :limit";
+        }
+
+        return jdbc.query("""
+                WITH page AS (
+                """ + selection + """
+                ),
+                crumb(start_id, parent_id, path) AS (
+                  SELECT l.id, l.parent_id, l.name::text FROM location l
+                  WHERE l.id IN (SELECT location_id FROM page UNION SELECT target_location_id FROM page)
+                  UNION ALL
+                  SELECT c.start_id, p.parent_id, p.name || ' > ' || c.path
+                  FROM crumb c JOIN location p ON p.id = c.parent_id
+                ),
+                paths AS (SELECT start_id, path FROM crumb WHERE parent_id IS NULL)
+                SELECT page.*,
+                       sl.name  AS location_name,   sp.path AS location_breadcrumb,
+                       tl.name  AS target_name,     tp.path AS target_breadcrumb,
+                       pr.name  AS project_name
+                FROM page
+                JOIN location sl     ON sl.id = page.location_id
+                LEFT JOIN paths sp   ON sp.start_id = page.location_id
+                LEFT JOIN location tl ON tl.id = page.target_location_id
+                LEFT JOIN paths tp   ON tp.start_id = page.target_location_id
+                LEFT JOIN project pr ON pr.id = page.project_id
+                ORDER BY page.moved_at DESC, page.id DESC
+                """, params, StockMovementHistoryRepository::toDTO);
+    }
+
+    private static String select(String where) {
+        return "SELECT " + COLUMNS + " FROM stock_movement m JOIN location ml ON ml.id = m.location_id"
+                + " WHERE " + where
+                + " ORDER BY m.moved_at DESC, m.id DESC LIMIT :limit";
+    }
+
+    private static StockMovementDTO toDTO(ResultSet rs, int rowNum) throws SQLException {
+        String type = rs.getString("type");
+        return StockMovementDTO.builder()
+                .id(rs.getLong("id"))
+                .partId(rs.getLong("part_id"))
+                .locationId(rs.getLong("location_id"))
+                .locationName(rs.getString("location_name"))
+                .locationBreadcrumb(rs.getString("location_breadcrumb"))
+                .targetLocationId(rs.getObject("target_location_id", Long.class))
+                .targetLocationName(rs.getString("target_name"))
+                .targetLocationBreadcrumb(rs.getString("target_breadcrumb"))
+                .quantity(rs.getInt("quantity"))
+                .unitPrice(rs.getBigDecimal("unit_price"))
+                .comments(rs.getString("comments"))
+                .movedAt(rs.getTimestamp("moved_at").toLocalDateTime())
+                .createdBy(rs.getString("created_by"))
+                .type(type == null ? null : MovementType.valueOf(type))
+                .projectId(rs.getObject("project_id", Long.class))
+                .projectName(rs.getString("project_name"))
+                .build();
+    }
+}
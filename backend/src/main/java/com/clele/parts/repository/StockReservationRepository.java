@@ -0,0 +1,108 @@
+package com.clele.parts.repository;
+
+import com.clele.parts.model.StockReservation;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface StockReservationRepository extends JpaRepository<StockReservation, Long> {
+
+    @Query("""
+            SELECT r FROM StockReservation r JOIN FETCH r.part JOIN FETCH r.location
+            WHERE r.project.id = :projectId ORDER BY r.id
+            """)
+    List<StockReservation> findByProjectIdWithDetails(Long projectId);
+
+    /** How much of one part the project holds reserved, over every location. */
+    @Query("SELECT COALESCE(SUM(r.quantity), 0) FROM StockReservation r WHERE r.project.id = :projectId AND r.part.id = :partId")
+    int sumQuantityByProjectIdAndPartId(Long projectId, Long partId);
+
+    /**
+     * The project's reservation at one location, row-locked. A pull consumes it, and two sessions
+     * pulling for the same project must not both count the same reserved parts as theirs.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("""
+            SELECT r FROM StockReservation r
+            WHERE r.project.id = :projectId AND r.part.id = :partId AND r.location.id = :locationId
+            """)
+    Optional<StockReservation> findForUpdate(Long projectId, Long partId, Long locationId);
+
+    /**
+     * Adds to the project's reservation at a location, creating it if this is the first. An upsert
+     * rather than find-then-save, so two concurrent reservations of the same line both count.
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO stock_reservation (project_id, part_id, location_id, quantity, created_at, created_by_id)
+            VALUES (:projectId, :partId, :locationId, :qty, now(), :userId)
+            ON CONFLICT (project_id, part_id, location_id)
+            DO UPDATE SET quantity = stock_reservation.quantity + EXCLUDED.quantity
+            """, nativeQuery = true)
+    void addQuantity(Long projectId, Long partId, Long locationId, int qty, Long userId);
+
+    /**
+     * Hands every reservation of a project back to its stock entries in one statement — the project
+     * is finished with them (completed, cancelled or deleted). The reservation rows are removed by
+     * {@link #deleteByProjectId}.
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE stock_entry se SET reserved = se.reserved - r.quantity
+            FROM stock_reservation r
+            WHERE r.project_id = :projectId
+              AND se.part_id = r.part_id AND se.location_id = r.location_id
+            """, nativeQuery = true)
+    int releaseAllOfProject(Long projectId);
+
+    @Modifying
+    @Query("DELETE FROM StockReservation r WHERE r.project.id = :projectId")
+    void deleteByProjectId(Long projectId);
+
+    /**
+     * Re-points reservations from one location to another, folding any that collide with a
+     * reservation the same project already holds at the target. Used by a location merge, before
+     * the source's stock entries (and with them, by cascade, its reservations) are dropped.
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO stock_reservation (project_id, part_id, location_id, quantity, created_at, created_by_id)
+            SELECT project_id, part_id, :targetId, quantity, created_at, created_by_id
+            FROM stock_reservation WHERE location_id = :sourceId
+            ON CONFLICT (project_id, part_id, location_id)
+            DO UPDATE SET quantity = stock_reservation.quantity + EXCLUDED.quantity
+            """, nativeQuery = true)
+    void copyToLocation(Long sourceId, Long targetId);
+
+    /**
+     * Moves every reservation in a location's subtree to another location, in one statement:
+     * the rows are taken out and re-inserted at the target, a project's reservations of one part
+     * from several bins collapsing into one (and into any it already held there). Used by a bulk
+     * relocation, which carries the reserved stock along with the rest.
+     */
+    @Modifying
+    @Query(value = """
+            WITH RECURSIVE subtree(id) AS (
+              SELECT CAST(:sourceId AS BIGINT)
+              UNION ALL
+              SELECT l.id FROM location l JOIN subtree s ON l.parent_id = s.id
+            ),
+            moved AS (
+              DELETE FROM stock_reservation WHERE location_id IN (SELECT id FROM subtree)
+              RETURNING project_id, part_id, quantity, created_at, created_by_id
+            )
+            INSERT INTO stock_reservation (project_id, part_id, location_id, quantity, created_at, created_by_id)
+            SELECT project_id, part_id, :targetId, SUM(quantity), MIN(created_at),
+                   (ARRAY_AGG(created_by_id ORDER BY created_at))[1]
+            FROM moved GROUP BY project_id, part_id
+            ON CONFLICT (project_id, part_id, location_id)
+            DO UPDATE SET quantity = stock_reservation.quantity + EXCLUDED.quantity
+            """, nativeQuery = true)
+    void relocateSubtree(Long sourceId, Long targetId);
+
+}
@@ -10,109 +10,54 @@ import java.util.Optional;
 
 public interface StockThresholdRepository extends JpaRepository<StockThreshold, Long> {
 
-    List<StockThreshold> findByPartId(Long partId);
-
-    Optional<StockThreshold> findByPartIdAndLocationId(Long partId, Long locationId);
-
-    /** All thresholds with their current subtree totals. */
-    @Query(nativeQuery = true, value = """
-            WITH RECURSIVE subtree(root_id, loc_id) AS (
-              SELECT id, id FROM location WHERE parent_id IS NULL AND organisation_id = :orgId
-              UNION ALL
-              SELECT s.root_id, l.id FROM location l JOIN subtree s ON l.parent_id = s.loc_id
-            )
+    /** The projection's columns for one organisation's thresholds; callers add WHERE and ORDER BY. */
+    String SELECT_VIEW = """
             SELECT
-              pst.id            AS id,
-              pst.part_id       AS partId,
-              pst.location_id   AS locationId,
+              pst.id               AS id,
+              pst.part_id          AS partId,
+              pst.location_id      AS locationId,
               pst.minimum_quantity AS minimumQuantity,
-              COALESCE(SUM(se.quantity), 0) AS totalQuantity,
-              p.part_number     AS partNumber,
-              p.part_number     AS partName,
-              l.name            AS locationName
+              pst.total_quantity   AS totalQuantity,
+              p.part_number        AS partNumber,
+              p.part_number        AS partName,
+              l.name               AS locationName
             FROM part_stock_threshold pst
             JOIN part p ON p.id = pst.part_id
             JOIN location l ON l.id = pst.location_id AND l.organisation_id = :orgId
-            LEFT JOIN subtree st ON st.root_id = pst.location_id
-            LEFT JOIN stock_entry se ON se.part_id = pst.part_id AND se.location_id = st.loc_id
-            GROUP BY pst.id, pst.part_id, pst.location_id, pst.minimum_quantity,
-                     p.part_number, l.name
+            """;
+
+    List<StockThreshold> findByPartId(Long partId);
+
+    Optional<StockThreshold> findByPartIdAndLocationId(Long partId, Long locationId);
+
+    /**
+     * All thresholds of the organisation with their subtree totals. The totals are kept on the row by
+     * the stock-entry triggers (V61), so none of these queries walks the location tree any more.
+     */
+    @Query(nativeQuery = true, value = SELECT_VIEW + """
             ORDER BY p.part_number, l.name
             """)
     List<StockThresholdView> findAllWithTotals(@Param("orgId") Long organisationId);
 
     /** All thresholds for a specific part, with current subtree totals. */
-    @Query(nativeQuery = true, value = """
-            WITH RECURSIVE subtree(root_id, loc_id) AS (
-              SELECT id, id FROM location WHERE parent_id IS NULL AND organisation_id = :orgId
-              UNION ALL
-              SELECT s.root_id, l.id FROM location l JOIN subtree s ON l.parent_id = s.loc_id
-            )
-            SELECT
-              pst.id            AS id,
-              pst.part_id       AS partId,
-              pst.location_id   AS locationId,
-              pst.minimum_quantity AS minimumQuantity,
-              COALESCE(SUM(se.quantity), 0) AS totalQuantity,
-              p.part_number     AS partNumber,
-              p.part_number     AS partName,
-              l.name            AS locationName
-            FROM part_stock_threshold pst
-            JOIN part p ON p.id = pst.part_id
-            JOIN location l ON l.id = pst.location_id AND l.organisation_id = :orgId
-            LEFT JOIN subtree st ON st.root_id = pst.location_id
-            LEFT JOIN stock_entry se ON se.part_id = pst.part_id AND se.location_id = st.loc_id
+    @Query(nativeQuery = true, value = SELECT_VIEW + """
             WHERE pst.part_id = :partId
-            GROUP BY pst.id, pst.part_id, pst.location_id, pst.minimum_quantity,
-                     p.part_number, l.name
             ORDER BY l.name
             """)
     List<StockThresholdView> findByPartIdWithTotals(@Param("orgId") Long organisationId,
                                                     @Param("partId") Long partId);
 
-    /** Thresholds where total on-hand across the root's subtree is below minimum. */
-    @Query(nativeQuery = true, value = """
-            WITH RECURSIVE subtree(root_id, loc_id) AS (
-              SELECT id, id FROM location WHERE parent_id IS NULL AND organisation_id = :orgId
-              UNION ALL
-              SELECT s.root_id, l.id FROM location l JOIN subtree s ON l.parent_id = s.loc_id
-            )
-            SELECT
-              pst.id            AS id,
-              pst.part_id       AS partId,
-              pst.location_id   AS locationId,
-              pst.minimum_quantity AS minimumQuantity,
-              COALESCE(SUM(se.quantity), 0) AS totalQuantity,
-              p.part_number     AS partNumber,
-              p.part_number     AS partName,
-              l.name            AS locationName
-            FROM part_stock_threshold pst
-            JOIN part p ON p.id = pst.part_id
-            JOIN location l ON l.id = pst.location_id AND l.organisation_id = :orgId
-            LEFT JOIN subtree st ON st.root_id = pst.location_id
-            LEFT JOIN stock_entry se ON se.part_id = pst.part_id AND se.location_id = st.loc_id
-            GROUP BY pst.id, pst.part_id, pst.location_id, pst.minimum_quantity,
-                     p.part_number, l.name
-            HAVING COALESCE(SUM(se.quantity), 0) < pst.minimum_quantity
+    /** Thresholds where total on-hand across the location's subtree is below minimum. */
+    @Query(nativeQuery = true, value = SELECT_VIEW + """
+            WHERE pst.below_minimum
             ORDER BY p.part_number, l.name
             """)
     List<StockThresholdView> findLowStock(@Param("orgId") Long organisationId);
 
     @Query(nativeQuery = true, value = """
-            WITH RECURSIVE subtree(root_id, loc_id) AS (
-              SELECT id, id FROM location WHERE parent_id IS NULL AND organisation_id = :orgId
-              UNION ALL
-              SELECT s.root_id, l.id FROM location l JOIN subtree s ON l.parent_id = s.loc_id
-            )
-            SELECT COUNT(*) FROM (
-              SELECT pst.id
-              FROM part_stock_threshold pst
-              JOIN location l ON l.id = pst.location_id AND l.organisation_id = :orgId
-              LEFT JOIN subtree st ON st.root_id = pst.location_id
-              LEFT JOIN stock_entry se ON se.part_id = pst.part_id AND se.location_id = st.loc_id
-              GROUP BY pst.id, pst.minimum_quantity
-              HAVING COALESCE(SUM(se.quantity), 0) < pst.minimum_quantity
-            ) sub
+            SELECT COUNT(*) FROM part_stock_threshold pst
+            JOIN location l ON l.id = pst.location_id AND l.organisation_id = :orgId
+            WHERE pst.below_minimum
             """)
     long countLowStock(@Param("orgId") Long organisationId);
 }
@@ -0,0 +1,313 @@
+package com.clele.parts.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * The stored state of the valuation fold (V62) and the slice of the ledger each run reads.
+ *
+ * <p>The state is only true for the ledger it was folded from. The Partsbox import replaces the
+ * ledger — {@link #discardAll} — and a kit-generation undo deletes movements from it —
+ * {@link #discardAfter}; either way the next run starts over. A location merge re-points movements
+ * between two locations of one organisation, which changes nothing about what a part cost, and
+ * needs nothing here.
+ *
+ * <p><b>Plain JDBC, not JPA, on purpose.</b> A first run folds an organisation's entire history and
+ * later ones whatever has been written since; the rows are folded as they are read and never needed
+ * again. The driver holds a forward-only cursor and hands over {@value #FETCH_SIZE} rows at a time,
+ * where a JPA query would materialise every movement with its part and location first. Writing the
+ * state back is a few JDBC batches. Postgres only streams inside a transaction; callers must hold one.
+ */
+@Repository
+public class StockValuationRepository {
+
+    /** Rows the driver fetches per round trip while a cursor is open. */
+    static final int FETCH_SIZE = 1000;
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    public StockValuationRepository(DataSource dataSource) {
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.setFetchSize(FETCH_SIZE);
+        this.jdbc = new NamedParameterJdbcTemplate(template);
+    }
+
+    /** A part's running totals: units on hand, what they cost at average, and that average. */
+    public record PartState(Long partId, long quantity, BigDecimal value, BigDecimal unitCost) {}
+
+    /** A FIFO layer: what is left of one receipt, and what each unit of it cost. */
+    public record Layer(Long partId, Long movementId, LocalDateTime receivedAt, int remaining,
+                        BigDecimal unitCost) {}
+
+    /** One ledger row, reduced to what the fold needs. MOVE rows are never handed over. */
+    public record Movement(Long id, Long partId, int quantity, BigDecimal unitPrice, String type,
+                           Long projectId, LocalDateTime movedAt) {}
+
+    /** What one movement that took stock out cost, by average and by FIFO. */
+    public record Issue(Long movementId, Long partId, Long projectId, String type, LocalDateTime movedAt,
+                        int quantity, BigDecimal wacCost, BigDecimal fifoCost) {}
+
+    /** A part's valuation as the report shows it. Values are unrounded. */
+    public record PartValue(Long partId, String partNumber, long quantity, BigDecimal wacValue,
+                            BigDecimal unitCost, BigDecimal fifoValue) {}
+
+    /** Issues of one part, to one project (or none), of one type, added up. */
+    public record Consumed(Long projectId, String projectName, Long partId, String partNumber, String type,
+                           long quantity, BigDecimal wacCost, BigDecimal fifoCost) {}
+
+    /**
+     * Locks the organisation's run row, creating it on first use, and says how far the last run got:
+     * empty when none has. Two refreshes of one organisation therefore take turns, and the second
+     * finds the first's work done.
+     */
+    public Optional<LocalDateTime> lockRun(Long organisationId) {
+        MapSqlParameterSource params = new MapSqlParameterSource("orgId", organisationId);
+        jdbc.update("""
+                INSERT INTO stock_valuation_run (organisation_id, valued_to, updated_at)
+                VALUES (:orgId, NULL, now())
+                ON CONFLICT (organisation_id) DO NOTHING
+                """, params);
+        Timestamp valuedTo = jdbc.queryForObject("""
+                SELECT valued_to FROM stock_valuation_run WHERE organisation_id = :orgId FOR UPDATE
+                """, params, Timestamp.class);
+        return Optional.ofNullable(valuedTo).map(Timestamp::toLocalDateTime);
+    }
+
+    /**
+     * When the oldest transaction that has written anything and is still open began, not counting
+     * this one; empty when there is none. A movement is stamped inside the transaction that writes
+     * it, so nothing uncommitted can carry an earlier {@code moved_at} — a bound a run can safely
+     * stop at. Reads {@code pg_stat_activity}, which shows the backend ids of the application's
+     * own sessions; the database user needs nothing more.
+     */
+    public Optional<LocalDateTime> oldestOpenWrite() {
+        Timestamp started = jdbc.queryForObject("""
+                SELECT min(xact_start) FROM pg_stat_activity
+                WHERE backend_xid IS NOT NULL AND pid <> pg_backend_pid()
+                """, new MapSqlParameterSource(), Timestamp.class);
+        return Optional.ofNullable(started).map(Timestamp::toLocalDateTime);
+    }
+
+    /** Whether the organisation has any non-MOVE movement with {@code from <= moved_at < to}. */
+    public boolean hasMovements(Long organisationId, LocalDateTime from, LocalDateTime to) {
+        MapSqlParameterSource params = range(organisationId, from, to);
+        return Boolean.TRUE.equals(jdbc.queryForObject("SELECT EXISTS (" + movementQuery(from) + ")",
+                params, Boolean.class));
+    }
+
+    /**
+     * The stored state of the parts that have a movement with {@code from <= moved_at < to} — the
+     * only ones a run over that range can change, so a run reads what it folds into and no more.
+     */
+    public void parts(Long organisationId, LocalDateTime from, LocalDateTime to, Consumer<PartState> sink) {
+        jdbc.query("SELECT part_id, quantity, value, unit_cost"
+                        + " FROM stock_valuation_part WHERE organisation_id = :orgId"
+                        + " AND part_id IN (SELECT part_id FROM (" + movementQuery(from) + ") moved)",
+                range(organisationId, from, to),
+                (RowCallbackHandler) rs -> sink.accept(new PartState(rs.getLong("part_id"),
+                        rs.getLong("quantity"), rs.getBigDecimal("value"), rs.getBigDecimal("unit_cost"))));
+    }
+
+    /** The open layers of the same parts as {@link #parts}, oldest first within each part. */
+    public void layers(Long organisationId, LocalDateTime from, LocalDateTime to, Consumer<Layer> sink) {
+        jdbc.query("SELECT y.part_id, y.movement_id, y.received_at, y.remaining, y.unit_cost"
+                        + " FROM stock_valuation_layer y"
+                        + " JOIN stock_valuation_part p ON p.part_id = y.part_id"
+                        + " WHERE p.organisation_id = :orgId"
+                        + " AND p.part_id IN (SELECT part_id FROM (" + movementQuery(from) + ") moved)"
+                        + " ORDER BY y.part_id, y.received_at, y.movement_id",
+                range(organisationId, from, to),
+                (RowCallbackHandler) rs -> sink.accept(new Layer(rs.getLong("part_id"),
+                        rs.getLong("movement_id"), rs.getTimestamp("received_at").toLocalDateTime(),
+                        rs.getInt("remaining"), rs.getBigDecimal("unit_cost"))));
+    }
+
+    /**
+     * The organisation's movements with {@code from <= moved_at < to}, in the order they happened
+     * ({@code moved_at}, then id), MOVE rows left out: they take a part from one location to another
+     * and leave what it cost alone. A null {@code from} is open. Read off the {@code (moved_at, id)}
+     * index; the organisation comes from the location.
+     */
+    public void movements(Long organisationId, LocalDateTime from, LocalDateTime to, Consumer<Movement> sink) {
+        jdbc.query(movementQuery(from) + " ORDER BY m.moved_at, m.id", range(organisationId, from, to),
+                (RowCallbackHandler) rs -> sink.accept(new Movement(
+                        rs.getLong("id"),
+                        rs.getLong("part_id"),
+                        rs.getInt("quantity"),
+                        rs.getBigDecimal("unit_price"),
+                        rs.getString("type"),
+                        rs.getObject("project_id", Long.class),
+                        rs.getTimestamp("moved_at").toLocalDateTime())));
+    }
+
+    /**
+     * Writes back what a run changed: the state of every part it touched, those parts' layers in
+     * full (replacing what was stored), and the issues it costed; then moves the organisation's
+     * {@code valued_to} on.
+     */
+    public void save(Long organisationId, LocalDateTime valuedTo, Collection<PartState> parts,
+                     Collection<Layer> layers, Collection<Issue> issues) {
+        if (!parts.isEmpty()) {
+            jdbc.batchUpdate("""
+                    INSERT INTO stock_valuation_part (part_id, organisation_id, quantity, value, unit_cost)
+                    VALUES (:partId, :orgId, :qty, :value, :unitCost)
+                    ON CONFLICT (part_id) DO UPDATE SET
+                        quantity  = EXCLUDED.quantity,
+                        value     = EXCLUDED.value,
+                        unit_cost = EXCLUDED.unit_cost
+                    """, parts.stream()
+                    .map(p -> new MapSqlParameterSource()
+                            .addValue("partId", p.partId())
+                            .addValue("orgId", organisationId)
+                            .addValue("qty", p.quantity())
+                            .addValue("value", p.value())
+                            .addValue("unitCost", p.unitCost()))
+                    .toArray(SqlParameterSource[]::new));
+            jdbc.batchUpdate("DELETE FROM stock_valuation_layer WHERE part_id = :partId", parts.stream()
+                    .map(p -> new MapSqlParameterSource("partId", p.partId()))
+                    .toArray(SqlParameterSource[]::new));
+        }
+        jdbc.batchUpdate("""
+                INSERT INTO stock_valuation_layer (part_id, movement_id, received_at, remaining, unit_cost)
+                VALUES (:partId, :movementId, :receivedAt, :remaining, :unitCost)
+                """, layers.stream()
+                .map(l -> new MapSqlParameterSource()
+                        .addValue("partId", l.partId())
+                        .addValue("movementId", l.movementId())
+                        .addValue("receivedAt", Timestamp.valueOf(l.receivedAt()))
+                        .addValue("remaining", l.remaining())
+                        .addValue("unitCost", l.unitCost()))
+                .toArray(SqlParameterSource[]::new));
+        jdbc.batchUpdate("""
+                INSERT INTO stock_valuation_issue
+                    (movement_id, organisation_id, part_id, project_id, type, moved_at, quantity, wac_cost, fifo_cost)
+                VALUES (:movementId, :orgId, :partId, :projectId, :type, :movedAt, :qty, :wacCost, :fifoCost)
+                """, issues.stream()
+                .map(i -> new MapSqlParameterSource()
+                        .addValue("movementId", i.movementId())
+                        .addValue("orgId", organisationId)
+                        .addValue("partId", i.partId())
+                        .addValue("projectId", i.projectId())
+                        .addValue("type", i.type())
+                        .addValue("movedAt", Timestamp.valueOf(i.movedAt()))
+                        .addValue("qty", i.quantity())
+                        .addValue("wacCost", i.wacCost())
+                        .addValue("fifoCost", i.fifoCost()))
+                .toArray(SqlParameterSource[]::new));
+        jdbc.update("""
+                UPDATE stock_valuation_run SET valued_to = :valuedTo, updated_at = now()
+                WHERE organisation_id = :orgId
+                """, new MapSqlParameterSource()
+                        .addValue("orgId", organisationId)
+                        .addValue("valuedTo", Timestamp.valueOf(valuedTo)));
+    }
+
+    /** Every part of the organisation the valuation has seen, with what is on hand now. */
+    public List<PartValue> valuation(Long organisationId) {
+        return jdbc.query("""
+                SELECT p.part_id, pt.part_number, p.quantity, p.value, p.unit_cost,
+                       COALESCE(SUM(y.remaining * y.unit_cost), 0) AS fifo_value
+                FROM stock_valuation_part p
+                JOIN part pt ON pt.id = p.part_id
+                LEFT JOIN stock_valuation_layer y ON y.part_id = p.part_id
+                WHERE p.organisation_id = :orgId AND p.quantity <> 0
+                GROUP BY p.part_id, pt.part_number, p.quantity, p.value, p.unit_cost
+                ORDER BY pt.part_number
+                """, new MapSqlParameterSource("orgId", organisationId),
+                (rs, rowNum) -> new PartValue(rs.getLong("part_id"), rs.getString("part_number"),
+                        rs.getLong("quantity"), rs.getBigDecimal("value"), rs.getBigDecimal("unit_cost"),
+                        rs.getBigDecimal("fifo_value")));
+    }
+
+    /**
+     * The organisation's issues with {@code from <= moved_at < to}, added up per project, part and
+     * type. Either bound may be null; a {@code projectId} narrows it to one project.
+     */
+    public List<Consumed> consumed(Long organisationId, LocalDateTime from, LocalDateTime to, Long projectId) {
+        MapSqlParameterSource params = new MapSqlParameterSource("orgId", organisationId);
+        StringBuilder where = new StringBuilder("i.organisation_id = :orgId");
+        if (from != null) {
+            where.append(" AND i.moved_at >= :from");
+            params.addValue("from", Timestamp.valueOf(from));
+        }
+        if (to != null) {
+            where.append(" AND i.moved_at < :to");
+            params.addValue("to", Timestamp.valueOf(to));
+        }
+        if (projectId != null) {
+            where.append(" AND i.project_id = :projectId");
+            params.addValue("projectId", projectId);
+        }
+        return jdbc.query("SELECT i.project_id, pr.name AS project_name, i.part_id, pt.part_number, i.type,"
+                        + " SUM(i.quantity) AS quantity, SUM(i.wac_cost) AS wac_cost, SUM(i.fifo_cost) AS fifo_cost"
+                        + " FROM stock_valuation_issue i"
+                        + " JOIN part pt ON pt.id = i.part_id"
+                        + " LEFT JOIN project pr ON pr.id = i.project_id"
+                        + " WHERE " + where
+                        + " GROUP BY i.project_id, pr.name, i.part_id, pt.part_number, i.type"
+                        + " ORDER BY pr.name NULLS FIRST, pt.part_number, i.type",
+                params, (rs, rowNum) -> new Consumed(rs.getObject("project_id", Long.class),
+                        rs.getString("project_name"), rs.getLong("part_id"), rs.getString("part_number"),
+                        rs.getString("type"), rs.getLong("quantity"), rs.getBigDecimal("wac_cost"),
+                        rs.getBigDecimal("fifo_cost")));
+    }
+
+    /**
+     * Throws an organisation's valuation away if it has counted anything moved at or after
+     * {@code movedAt}, for a ledger edit at that time. The next run starts from the beginning.
+     */
+    public void discardAfter(Long organisationId, LocalDateTime movedAt) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("orgId", organisationId)
+                .addValue("movedAt", Timestamp.valueOf(movedAt));
+        boolean counted = Boolean.TRUE.equals(jdbc.queryForObject("""
+                SELECT EXISTS (SELECT 1 FROM stock_valuation_run
+                               WHERE organisation_id = :orgId AND valued_to > :movedAt)
+                """, params, Boolean.class));
+        if (!counted) {
+            return;
+        }
+        jdbc.update("DELETE FROM stock_valuation_issue WHERE organisation_id = :orgId", params);
+        jdbc.update("DELETE FROM stock_valuation_part WHERE organisation_id = :orgId", params);
+        jdbc.update("DELETE FROM stock_valuation_run WHERE organisation_id = :orgId", params);
+    }
+
+    /** Throws every organisation's valuation away, for when the ledger itself is replaced. */
+    public void discardAll() {
+        MapSqlParameterSource none = new MapSqlParameterSource();
+        jdbc.update("DELETE FROM stock_valuation_issue", none);
+        jdbc.update("DELETE FROM stock_valuation_part", none);
+        jdbc.update("DELETE FROM stock_valuation_run", none);
+    }
+
+    private static String movementQuery(LocalDateTime from) {
+        return "SELECT m.id, m.part_id, m.quantity, m.unit_price, COALESCE(m.type, 'IMPORT') AS type,"
+                + " m.project_id, m.moved_at"
+                + " FROM stock_movement m JOIN location l ON l.id = m.location_id"
+                + " WHERE l.organisation_id = :orgId AND m.target_location_id IS NULL"
+                + (from != null ? " AND m.moved_at >= :from" : "")
+                + " AND m.moved_at < :to";
+    }
+
+    private static MapSqlParameterSource range(Long organisationId, LocalDateTime from, LocalDateTime to) {
+        MapSqlParameterSource params = new MapSqlParameterSource("orgId", organisationId)
+                .addValue("to", Timestamp.valueOf(to));
+        if (from != null) {
+            params.addValue("from", Timestamp.valueOf(from));
+        }
+        return params;
+    }
+}
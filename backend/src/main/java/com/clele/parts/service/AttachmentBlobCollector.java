@@ -0,0 +1,113 @@
+package com.clele.parts.service;
+
+import com.clele.parts.repository.AttachmentBlobRepository;
+import com.clele.parts.repository.AttachmentVariantRepository;
+import com.clele.parts.repository.DatasheetTextRepository;
+import com.clele.parts.storage.BlobStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Deletes the blobs no attachment row names any more (see {@link BlobStore}).
+ *
+ * <p>Two ways in. {@link PartAttachmentService} hands over the hashes of the rows it deletes, and
+ * they are looked at once that deletion has committed — a rolled-back delete must not cost a file.
+ * And a nightly sweep walks the whole store, which catches what the first cannot: rows removed in
+ * bulk (the Partsbox import, part cascades) and blobs whose upload never committed.
+ *
+ * <p>A photo's renditions ({@link ImageVariantService}) go with it: once no row names a photo, the
+ * rows recording its thumbnail and medium size are dropped and their blobs looked at in turn. A
+ * datasheet's stored text ({@link DatasheetTextService}) is dropped the same way.
+ *
+ * <p>Either way, a blob used within {@link #GRACE} is kept. An upload writes its blob before its row
+ * commits, and an upload of bytes that are already stored only touches the blob; the grace is what
+ * keeps either from losing its content to a collector that looked in between.
+ *
+ * <p>{@code attachment.blob-gc-cron} moves the sweep; {@code "-"} switches it off, which the CLI
+ * profiles do.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AttachmentBlobCollector {
+
+    static final Duration GRACE = Duration.ofHours(1);
+    /** Hashes checked against the table per query during a sweep. */
+    static final int CHUNK = 500;
+
+    private final BlobStore blobStore;
+    private final AttachmentBlobRepository blobRepository;
+    private final AttachmentVariantRepository variantRepository;
+    private final DatasheetTextRepository textRepository;
+
+    /** Looks at {@code hashes} once the current transaction has committed; now when there is none. */
+    public void collectAfterCommit(Collection<String> hashes) {
+        if (hashes.isEmpty()) {
+            return;
+        }
+        List<String> candidates = List.copyOf(hashes);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            collect(candidates);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    collect(candidates);
+                } catch (RuntimeException e) {
+                    // The sweep will get them; the delete the user asked for has happened.
+                    log.warn("Collecting {} attachment blobs failed: {}", candidates.size(), e.getMessage());
+                }
+            }
+        });
+    }
+
+    @Scheduled(cron = "${attachment.blob-gc-cron:0 15 4 * * *}")
+    public void sweep() {
+        variantRepository.dropAllUnused();
+        textRepository.dropAllUnused();
+        List<String> chunk = new ArrayList<>(CHUNK);
+        int[] deleted = {0};
+        blobStore.forEachUnusedSince(Instant.now().minus(GRACE), hash -> {
+            chunk.add(hash);
+            if (chunk.size() == CHUNK) {
+                deleted[0] += collect(chunk);
+                chunk.clear();
+            }
+        });
+        deleted[0] += collect(chunk);
+        log.info("Attachment blob sweep: {} unreferenced blobs deleted", deleted[0]);
+    }
+
+    /** @return how many of {@code hashes} were unreferenced, out of grace, and deleted */
+    int collect(List<String> hashes) {
+        if (hashes.isEmpty()) {
+            return 0;
+        }
+        List<String> renditions = new ArrayList<>(variantRepository.dropUnused(hashes));
+        textRepository.dropUnused(hashes);
+        Set<String> referenced = blobRepository.referenced(hashes);
+        Instant usedBefore = Instant.now().minus(GRACE);
+        int deleted = 0;
+        for (String hash : hashes) {
+            if (!referenced.contains(hash) && blobStore.delete(hash, usedBefore)) {
+                deleted++;
+            }
+        }
+        // A rendition is no photo's source, so this goes no deeper.
+        renditions.removeAll(hashes);
+        return deleted + collect(renditions);
+    }
+}
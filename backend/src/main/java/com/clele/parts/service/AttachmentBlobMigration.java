@@ -0,0 +1,77 @@
+package com.clele.parts.service;
+
+import com.clele.parts.repository.AttachmentBlobRepository;
+import com.clele.parts.storage.BlobStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Moves attachment content that predates the blob store (V63) out of {@code part_attachment.data}
+ * and into the {@link BlobStore}, once the application is up.
+ *
+ * <p>Works through the legacy rows a {@link #BATCH} of ids at a time, each row in a transaction of
+ * its own: lock it, write its bytes to the store, point the row at the blob and clear the column.
+ * Only one row's bytes are ever in memory, a failure costs one row, and an instance stopped halfway
+ * carries on where it left off when it next starts. Rows another instance is migrating are skipped
+ * ({@code SKIP LOCKED}) rather than waited for.
+ *
+ * <p>Runs on a virtual thread of its own so startup is not held up by it; until a row has been
+ * moved, it is simply served from the column.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AttachmentBlobMigration {
+
+    static final int BATCH = 100;
+
+    private final AttachmentBlobRepository blobRepository;
+    private final BlobStore blobStore;
+    private final PlatformTransactionManager txManager;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Thread.ofVirtual().name("attachment-blob-migration").start(() -> {
+            try {
+                run();
+            } catch (RuntimeException e) {
+                log.error("Moving attachment content to the blob store stopped; it resumes on the next start", e);
+            }
+        });
+    }
+
+    /** @return how many rows were moved */
+    int run() {
+        TransactionTemplate tx = new TransactionTemplate(txManager);
+        int moved = 0;
+        long after = 0;
+        List<Long> ids;
+        while (!(ids = blobRepository.unmigrated(after, BATCH)).isEmpty()) {
+            for (Long id : ids) {
+                if (Boolean.TRUE.equals(tx.execute(status -> moveOne(id)))) {
+                    moved++;
+                }
+            }
+            after = ids.get(ids.size() - 1);
+        }
+        if (moved > 0) {
+            log.info("Moved {} attachments out of the database into the blob store", moved);
+        }
+        return moved;
+    }
+
+    private boolean moveOne(Long id) {
+        return blobRepository.lockLegacy(id).map(data -> {
+            String hash = blobStore.put(data);
+            blobRepository.moved(id, hash, data.length);
+            return true;
+        }).orElse(false);
+    }
+}
@@ -0,0 +1,69 @@
+package com.clele.parts.service;
+
+import com.clele.parts.dto.DashboardDTO;
+import com.clele.parts.dto.LocationDashboardDTO;
+import com.clele.parts.repository.DashboardSummaryRepository;
+import com.clele.parts.repository.DashboardSummaryRepository.OrganisationSummary;
+import com.clele.parts.repository.DashboardSummaryRepository.RootSummary;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * The dashboard, read from the summary rows V60 keeps up to date rather than counted on each visit.
+ * The organisation's stock value is the sum of its root locations' values — a handful of rows —
+ * because keeping it on the organisation row would make every stock write in the organisation
+ * queue for that one row.
+ *
+ * <p>The low-stock count is a count of the thresholds whose {@code below_minimum} flag is set
+ * (V61), which the same kind of triggers keep.
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class DashboardService {
+
+    private final DashboardSummaryRepository summaryRepository;
+    private final StockThresholdService stockThresholdService;
+    private final CurrentOrganisationService currentOrganisationService;
+
+    public DashboardDTO getDashboard() {
+        Long organisationId = currentOrganisationService.currentId();
+        OrganisationSummary summary = summaryRepository.find(organisationId)
+                .orElse(new OrganisationSummary(0, 0, 0, 0));
+        List<RootSummary> roots = summaryRepository.roots(organisationId);
+        return DashboardDTO.builder()
+                .totalParts(summary.totalParts())
+                .totalLocations(summary.totalLocations())
+                .totalCategories(summary.totalCategories())
+                .lowStockCount(stockThresholdService.countLowStock())
+                .sparseSpecCount(summary.sparseSpecCount())
+                .totalStockValue(roots.stream().map(RootSummary::totalStockValue)
+                        .reduce(BigDecimal.ZERO, BigDecimal::add))
+                .perLocation(roots.stream().map(DashboardService::toDTO).toList())
+                .build();
+    }
+
+    /**
+     * Recounts an organisation's summary and its thresholds' totals from scratch;
+     * {@link DashboardSummaryJob} does it nightly.
+     */
+    @Transactional
+    public void recompute(Long organisationId) {
+        summaryRepository.recompute(organisationId);
+    }
+
+    private static LocationDashboardDTO toDTO(RootSummary root) {
+        return LocationDashboardDTO.builder()
+                .locationId(root.locationId())
+                .locationName(root.locationName())
+                .locations(root.locations())
+                .parts(root.parts())
+                .totalQuantity(root.totalQuantity())
+                .totalStockValue(root.totalStockValue())
+                .build();
+    }
+}
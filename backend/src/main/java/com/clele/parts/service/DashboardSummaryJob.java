@@ -0,0 +1,44 @@
+package com.clele.parts.service;
+
+import com.clele.parts.model.Organisation;
+import com.clele.parts.repository.OrganisationRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Recounts every organisation's dashboard summary (V60) and stock threshold totals (V61) from the
+ * live tables once a night.
+ *
+ * <p>The triggers keep the figures right as things change; this is the safety net for whatever
+ * they cannot see — a bulk load run with triggers disabled, a hand edit in psql — so a drifted
+ * figure lasts a day at most. Each organisation is its own transaction; one failing does not hold
+ * up the rest. Template organisations are skipped, as the stock checkpoint skips them: nobody
+ * lands on their dashboard.
+ *
+ * <p>{@code dashboard.summary.cron} moves the run; {@code "-"} switches it off, which the CLI
+ * profiles do.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DashboardSummaryJob {
+
+    private final DashboardService dashboardService;
+    private final OrganisationRepository organisationRepository;
+
+    @Scheduled(cron = "${dashboard.summary.cron:0 0 3 * * *}")
+    public void run() {
+        for (Organisation organisation : organisationRepository.findAllByOrderByName()) {
+            if (organisation.isTemplate()) {
+                continue;
+            }
+            try {
+                dashboardService.recompute(organisation.getId());
+            } catch (RuntimeException e) {
+                log.error("Dashboard summary for organisation {} failed", organisation.getId(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.clele.parts.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds one connection that {@code LISTEN}s on the channels the database {@code pg_notify}s, and
+ * hands each notification to whoever subscribed to its channel.
+ *
+ * <p>Postgres delivers a notification only when the transaction that sent it commits, in commit
+ * order, to every session listening at that moment. A session that is not listening misses it, so
+ * each subscriber also gets {@link Subscriber#onConnected} after every (re)connect to catch up on
+ * what it may have missed. That is why the notifications are announcements and the data stays in
+ * tables.
+ *
+ * <p>The connection is taken from the pool and kept for as long as the application runs, so it
+ * costs one pool slot. Handlers run one at a time on a separate thread, which keeps a slow handler
+ * (a mail provider, say) from holding up the reads. Anything other than Postgres behind the
+ * DataSource makes this log a warning and do nothing.
+ */
+@Slf4j
+@Component
+public class DatabaseNotificationListener implements SmartLifecycle {
+
+    /** How long one wait for notifications lasts; bounds how long {@link #stop} takes. */
+    private static final int POLL_MILLIS = 5_000;
+    private static final long RETRY_MILLIS = 10_000;
+
+    /** Told about notifications on one channel. */
+    public interface Subscriber {
+
+        void onNotification(String payload);
+
+        /** After the listener has (re)connected; a good moment to look for anything missed. */
+        default void onConnected() {}
+    }
+
+    private final DataSource dataSource;
+    private final Map<String, Subscriber> subscribers = new ConcurrentHashMap<>();
+    private final ExecutorService handlers = Executors.newSingleThreadExecutor(
+            r -> new Thread(r, "db-notification-handler"));
+    private volatile boolean running;
+    private Thread reader;
+
+    public DatabaseNotificationListener(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /** Listens on {@code channel}; call before the application has started (e.g. from a constructor). */
+    public void subscribe(String channel, Subscriber subscriber) {
+        if (!channel.matches("[a-z_]+")) {
+            throw new IllegalArgumentException("Not a channel name: " + channel);
+        }
+        subscribers.put(channel, subscriber);
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        reader = new Thread(this::listen, "db-notification-listener");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (reader != null) {
+            reader.interrupt();
+        }
+        handlers.shutdown();
+        try {
+            handlers.awaitTermination(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                connection.setAutoCommit(true);
+                PGConnection pg;
+                try {
+                    pg = connection.unwrap(PGConnection.class);
+                } catch (SQLException e) {
+                    log.warn("Not a Postgres connection — database notifications are off");
+                    running = false;
+                    return;
+                }
+                try (Statement statement = connection.createStatement()) {
+                    for (String channel : subscribers.keySet()) {
+                        statement.execute("LISTEN " + channel);
+                    }
+                }
+                log.info("Listening for database notifications on {}", subscribers.keySet());
+                subscribers.values().forEach(s -> handlers.execute(() -> run(s::onConnected)));
+                while (running) {
+                    PGNotification[] notifications = pg.getNotifications(POLL_MILLIS);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification n : notifications) {
+                        Subscriber subscriber = subscribers.get(n.getName());
+                        if (subscriber != null) {
+                            handlers.execute(() -> run(() -> subscriber.onNotification(n.getParameter())));
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Database notification connection lost ({}); reconnecting in {}s",
+                        e.getMessage(), RETRY_MILLIS / 1000);
+                try {
+                    Thread.sleep(RETRY_MILLIS);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void run(Runnable handler) {
+        try {
+            handler.run();
+        } catch (RuntimeException e) {
+            log.error("Database notification handler failed", e);
+        }
+    }
+}
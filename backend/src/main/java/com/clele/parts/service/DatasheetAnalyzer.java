@@ -1,12 +1,25 @@
 package com.clele.parts.service;
 
+import com.clele.parts.model.DatasheetText;
+import com.clele.parts.util.PdfBytes;
 import lombok.Builder;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.io.RandomAccessReadMemoryMappedFile;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.text.PDFTextStripper;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
@@ -40,6 +53,18 @@ import java.util.regex.Pattern;
  * maximum" in a packaging note does not score a hit — that exact string appears in the TI
  * document and correctly does not match. Extend the list when a vendor's wording is found to be
  * misrouted; the preflight report prints the matched headings per part so misses are visible.
+ *
+ * <p><b>Reading and deciding are separate steps.</b> {@link #read} is the expensive one — PDFBox
+ * parses the document and lays out every page — and its result is stored per PDF
+ * ({@link DatasheetTextService}); {@link #analyzeText(DatasheetText)} is a pass of the heading pattern
+ * over that text, cheap enough to repeat whenever it is asked, so a recalibrated heading list
+ * applies to every stored datasheet without reading any of them again.
+ *
+ * <p><b>Reading is bounded in heap, not by the size of the PDF.</b> A stored datasheet is read from
+ * its blob file memory-mapped ({@link #read(Path)}), so the 30 MB reference manual is paged in by the
+ * OS rather than copied onto the heap; decoded content streams beyond {@link #STREAM_CACHE_BYTES}
+ * spill to a temporary file; and the text is taken in one pass, page by page, with nothing kept of
+ * a page but its text.
  */
 @Slf4j
 @Service
@@ -69,6 +94,11 @@ public class DatasheetAnalyzer {
             "static characteristic",
             "dynamic characteristic");
 
+    private static final String NOT_A_PDF = "not a PDF (does not start with %PDF) — probably an HTML error page";
+
+    /** Decoded streams a document may hold in memory before PDFBox moves them to a temporary file. */
+    static final long STREAM_CACHE_BYTES = 16L * 1024 * 1024;
+
     private static final Pattern HEADING_PATTERN = Pattern.compile(
             SECTION_HEADINGS.stream().map(Pattern::quote).reduce((a, b) -> a + "|" + b).orElseThrow(),
             Pattern.CASE_INSENSITIVE);
@@ -119,51 +149,114 @@ public class DatasheetAnalyzer {
 
     /** Analyse raw downloaded bytes. Never throws — a failure comes back as {@link Route#UNUSABLE}. */
     public Analysis analyze(byte[] data) {
-        if (data == null || data.length == 0) {
-            return failed("empty response body");
-        }
-        if (!looksLikePdf(data)) {
-            return failed("not a PDF (does not start with %PDF) — probably an HTML error page");
+        return analyzeText(read(data));
+    }
+
+    /** Analyse text already read by {@link #read}. */
+    public Analysis analyzeText(DatasheetText text) {
+        if (text.error() != null) {
+            return failed(text.error());
         }
+        String all = String.join("", text.pages());
+        int textChars = all.replaceAll("\\s", "").length();
+        Set<String> matched = matchedHeadings(all);
 
-        try (PDDocument doc = Loader.loadPDF(data)) {
-            int pages = doc.getNumberOfPages();
-            if (pages == 0) {
-                return failed("PDF has no pages");
-            }
+        Route route;
+        if (textChars == 0) {
+            route = Route.NO_TEXT_LAYER;
+        } else if (matched.isEmpty()) {
+            route = Route.IMAGE_TABLES;
+        } else {
+            route = Route.TEXT;
+        }
 
-            PDFTextStripper stripper = new PDFTextStripper();
-            stripper.setSortByPosition(true);
-            String text = stripper.getText(doc);
+        return Analysis.builder()
+                .route(route)
+                .pages(text.pages().size())
+                .textChars(textChars)
+                .headingHits(countHits(all))
+                .headings(matched)
+                .build();
+    }
 
-            int textChars = text.replaceAll("\\s", "").length();
-            Set<String> matched = matchedHeadings(text);
+    /**
+     * The text layer of raw bytes, page by page, with positions sorted so table rows read across.
+     * Never throws — a PDF that cannot be read comes back with {@link DatasheetText#error()} set.
+     */
+    public DatasheetText read(byte[] data) {
+        if (data == null || data.length == 0) {
+            return DatasheetText.failed("empty response body");
+        }
+        if (!PdfBytes.looksLikePdf(data)) {
+            return DatasheetText.failed(NOT_A_PDF);
+        }
+        // Wraps the array; the bytes are not copied.
+        return read(new RandomAccessReadBuffer(data));
+    }
 
-            Route route;
-            if (textChars == 0) {
-                route = Route.NO_TEXT_LAYER;
-            } else if (matched.isEmpty()) {
-                route = Route.IMAGE_TABLES;
-            } else {
-                route = Route.TEXT;
+    /** As {@link #read(byte[])}, for a PDF in a file, which is mapped into memory rather than read. */
+    public DatasheetText read(Path file) {
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] head = PdfBytes.head(in);
+            if (head.length == 0) {
+                return DatasheetText.failed("empty file");
+            }
+            if (!PdfBytes.looksLikePdf(head)) {
+                return DatasheetText.failed(NOT_A_PDF);
             }
+            return read(new RandomAccessReadMemoryMappedFile(file));
+        } catch (IOException e) {
+            return DatasheetText.failed("could not read the file: " + e.getMessage());
+        }
+    }
 
-            return Analysis.builder()
-                    .route(route)
-                    .pages(pages)
-                    .textChars(textChars)
-                    .headingHits(countHits(text))
-                    .headings(matched)
-                    .build();
+    private static DatasheetText read(RandomAccessRead source) {
+        try (source; PDDocument doc = Loader.loadPDF(source, MemoryUsageSetting.setupMixed(STREAM_CACHE_BYTES).streamCache)) {
+            if (doc.getNumberOfPages() == 0) {
+                return DatasheetText.failed("PDF has no pages");
+            }
+            return new DatasheetText(new PageStripper().pages(doc), null);
         } catch (Exception e) {
             // PDFBox throws a range of IOException subtypes plus the odd RuntimeException on
             // malformed files; none of them should abort a bulk run.
-            return failed("could not parse PDF: " + e.getMessage());
+            return DatasheetText.failed("could not parse PDF: " + e.getMessage());
         }
     }
 
-    private static boolean looksLikePdf(byte[] data) {
-        return com.clele.parts.util.PdfBytes.looksLikePdf(data);
+    /**
+     * Takes each page's text as the stripper finishes the page, in a single pass over the document.
+     * Setting a one-page range and stripping again per page walks the page tree once per page. The
+     * stripper skips a page with no content stream without a word; such a page is kept, empty, so
+     * page numbers stay those of the PDF.
+     */
+    private static final class PageStripper extends PDFTextStripper {
+
+        private final StringWriter out = new StringWriter();
+        private final List<String> pages = new ArrayList<>();
+
+        PageStripper() {
+            setSortByPosition(true);
+        }
+
+        List<String> pages(PDDocument doc) throws IOException {
+            writeText(doc, out);
+            padTo(doc.getNumberOfPages());
+            return pages;
+        }
+
+        @Override
+        protected void endPage(PDPage page) throws IOException {
+            super.endPage(page);
+            padTo(getCurrentPageNo() - 1);
+            pages.add(out.toString());
+            out.getBuffer().setLength(0);
+        }
+
+        private void padTo(int count) {
+            while (pages.size() < count) {
+                pages.add("");
+            }
+        }
     }
 
     /** The distinct headings present, lower-cased, in the order the pattern lists them. */
@@ -1,21 +1,19 @@
 package com.clele.parts.service;
 
 import com.clele.parts.model.AttachmentType;
+import com.clele.parts.model.DatasheetText;
 import com.clele.parts.model.Part;
+import com.clele.parts.repository.DatasheetJobOutcomeRepository;
 import com.clele.parts.repository.PartRepository;
+import com.clele.parts.storage.BlobStore;
 import com.clele.parts.util.UrlSafety;
 import lombok.Builder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
-import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -33,7 +31,13 @@ import java.util.Set;
  *
  * <p>Each part is committed in its own transaction, so a failure part-way through a long run
  * leaves everything already fetched in place — re-running skips parts that now have an
- * attachment (see {@code PartRepository.findWithUndownloadedDatasheet}) and continues.
+ * attachment (see {@code PartRepository.findWithUndownloadedDatasheet}) and continues. Every
+ * outcome, stored or not, is also checkpointed ({@link DatasheetJobOutcomeRepository}), so a re-run
+ * does not download again what it has already found to be a scan, an HTML page or a 404. A failure
+ * that may pass — a timeout, a 5xx, a 429, a failed store — is not checkpointed and is tried again.
+ *
+ * <p>Parts are fetched concurrently, paced per host ({@link HostThrottle}): the datasheets come from
+ * a few dozen vendor CDNs, and one slow vendor holds up only its own parts.
  */
 @Slf4j
 @Service
@@ -41,15 +45,16 @@ public class DatasheetBackfillService {
 
     /**
      * Largest response that will be stored, comfortably above the biggest MCU datasheets (~30 MB).
-     * Note this is checked <em>after</em> the body is read: {@code RestTemplate} buffers the whole
-     * response into a {@code byte[]} either way, so this bounds what lands in the database, not
-     * peak heap.
+     * A response announcing more is refused unread; one that does not say is read up to this and no
+     * further.
      */
     private static final int MAX_BYTES = 40 * 1024 * 1024;
 
     private final PartRepository partRepository;
+    private final DatasheetJobOutcomeRepository outcomeRepository;
     private final PartAttachmentService partAttachmentService;
     private final DatasheetAnalyzer analyzer;
+    private final DatasheetTextService textService;
     private final RestTemplate restTemplate;
 
     /**
@@ -61,12 +66,16 @@ public class DatasheetBackfillService {
      * silently injecting the 30-second {@code restTemplate} instead.
      */
     public DatasheetBackfillService(PartRepository partRepository,
+                                    DatasheetJobOutcomeRepository outcomeRepository,
                                     PartAttachmentService partAttachmentService,
                                     DatasheetAnalyzer analyzer,
+                                    DatasheetTextService textService,
                                     @Qualifier("datasheetRestTemplate") RestTemplate restTemplate) {
         this.partRepository = partRepository;
+        this.outcomeRepository = outcomeRepository;
         this.partAttachmentService = partAttachmentService;
         this.analyzer = analyzer;
+        this.textService = textService;
         this.restTemplate = restTemplate;
     }
 
@@ -84,73 +93,88 @@ public class DatasheetBackfillService {
             int headingHits,
             Set<String> headings,
             boolean stored,
-            String error) {}
+            String error,
+            /** The failure may pass; the next run tries the part again. */
+            boolean retryable) implements DatasheetJob.Outcome {
+
+        @Override
+        public String detail() {
+            return error;
+        }
+
+        @Override
+        public boolean settled() {
+            return !retryable;
+        }
+    }
 
+    /** {@code skipped}: candidates an earlier run had already dealt with. */
     @Builder
-    public record Report(List<Row> rows, Map<String, Integer> byOutcome, int candidates, boolean dryRun) {}
+    public record Report(List<Row> rows, Map<String, Integer> byOutcome, int candidates, int skipped,
+                         boolean dryRun) {}
 
-    public record Options(boolean dryRun, int limit, long delayMillis) {}
+    /**
+     * @param fresh  forget the earlier runs' checkpoint and start from the first part
+     * @param pacing how hard each vendor's host, and the network, may be worked
+     */
+    public record Options(boolean dryRun, int limit, boolean fresh, HostThrottle.Limits pacing) {}
 
     public Report run(Options options) {
         List<Part> candidates = partRepository.findWithUndownloadedDatasheet();
         log.info("{} part(s) carry a datasheet URL with nothing downloaded yet", candidates.size());
 
-        List<Part> todo = (options.limit() > 0 && options.limit() < candidates.size())
-                ? candidates.subList(0, options.limit())
-                : candidates;
-        if (todo.size() != candidates.size()) {
-            log.info("Limited to the first {} by --datasheets.limit", todo.size());
-        }
-
-        List<Row> rows = new ArrayList<>(todo.size());
-        int n = 0;
-        for (Part part : todo) {
-            n++;
-            Row row = process(part, options.dryRun());
-            rows.add(row);
-            log.info("[{}/{}] {} -> {}{}", n, todo.size(), part.getPartNumber(), row.outcome(),
-                    row.error() != null ? " (" + row.error() + ")" : "");
-
-            if (options.delayMillis() > 0 && n < todo.size()) {
-                sleep(options.delayMillis());
-            }
-        }
+        DatasheetDownloads downloads = new DatasheetDownloads(restTemplate, new HostThrottle(options.pacing()),
+                MAX_BYTES);
+        DatasheetJob.Result<Row> result = DatasheetJob.run(options.dryRun() ? "PREFLIGHT" : "BACKFILL",
+                candidates, options.limit(), options.fresh(), outcomeRepository,
+                part -> process(part, downloads, options.dryRun()));
 
         Map<String, Integer> byOutcome = new LinkedHashMap<>();
-        for (Row row : rows) {
+        for (Row row : result.rows()) {
             byOutcome.merge(row.outcome(), 1, Integer::sum);
         }
 
         return Report.builder()
-                .rows(rows)
+                .rows(result.rows())
                 .byOutcome(byOutcome)
                 .candidates(candidates.size())
+                .skipped(result.skipped())
                 .dryRun(options.dryRun())
                 .build();
     }
 
-    private Row process(Part part, boolean dryRun) {
+    private Row process(Part part, DatasheetDownloads downloads, boolean dryRun) {
         Row.RowBuilder row = Row.builder()
                 .partId(part.getId())
                 .partNumber(part.getPartNumber())
                 .url(part.getDatasheetUrl())
                 .headings(Set.of());
 
-        Fetched fetched;
+        DatasheetDownloads.Download fetched;
         try {
-            fetched = fetch(part.getDatasheetUrl());
+            // SSRF-guarded exactly as the interactive "Download from URL" path is.
+            UrlSafety.validateExternalHttpUrl(part.getDatasheetUrl());
+            fetched = downloads.get(part.getDatasheetUrl());
         } catch (Exception e) {
-            return row.outcome("DOWNLOAD_FAILED").error(rootMessage(e)).build();
+            return row.outcome("DOWNLOAD_FAILED").error(rootMessage(e))
+                    .retryable(DatasheetDownloads.isTransient(e)).build();
         }
-        row.httpStatus(fetched.status()).bytes(fetched.data().length);
+        try (fetched) {
+            return process(part, fetched, row, dryRun);
+        }
+    }
+
+    private Row process(Part part, DatasheetDownloads.Download fetched, Row.RowBuilder row, boolean dryRun) {
+        row.httpStatus(fetched.status()).bytes((int) Math.min(Integer.MAX_VALUE, fetched.size()));
 
-        if (fetched.data().length > MAX_BYTES) {
+        if (fetched.oversize()) {
             return row.outcome("OVERSIZE")
-                    .error(fetched.data().length + " bytes exceeds the " + MAX_BYTES + " byte cap")
+                    .error(fetched.size() + " bytes exceeds the " + MAX_BYTES + " byte cap")
                     .build();
         }
 
-        DatasheetAnalyzer.Analysis analysis = analyzer.analyze(fetched.data());
+        DatasheetText text = analyzer.read(fetched.data());
+        DatasheetAnalyzer.Analysis analysis = analyzer.analyzeText(text);
         row.pages(analysis.pages())
                 .textChars(analysis.textChars())
                 .headingHits(analysis.headingHits())
@@ -163,10 +187,11 @@ public class DatasheetBackfillService {
         boolean stored = false;
         if (!dryRun) {
             try {
-                store(part, fetched);
+                store(part, fetched, text);
                 stored = true;
             } catch (Exception e) {
-                return row.outcome(analysis.route().name()).error("store failed: " + rootMessage(e)).build();
+                return row.outcome(analysis.route().name()).error("store failed: " + rootMessage(e))
+                        .retryable(true).build();
             }
         }
         return row.outcome(analysis.route().name()).stored(stored).build();
@@ -182,39 +207,16 @@ public class DatasheetBackfillService {
      * exactly the resumability boundary wanted here. It is handed the part <em>id</em> because
      * {@code part} is detached (loaded outside a transaction) and its lazy organisation could not
      * be read.
+     *
+     * <p>The text just read for the analysis is stored first, so the upload's request for it finds
+     * it there instead of parsing the PDF a second time.
      */
-    private void store(Part part, Fetched fetched) {
+    private void store(Part part, DatasheetDownloads.Download fetched, DatasheetText text) {
+        textService.remember(BlobStore.hash(fetched.data()), text);
         partAttachmentService.store(part.getId(), fetched.data(), MediaType.APPLICATION_PDF_VALUE,
                 filenameFor(part, fetched.url()), AttachmentType.DATASHEET);
     }
 
-    record Fetched(byte[] data, String contentType, int status, String url) {}
-
-    /**
-     * Fetch the URL with browser-ish headers — several vendor CDNs return 403 to a bare Java
-     * user-agent. SSRF-guarded via {@link UrlSafety}, exactly as the interactive
-     * "Download from URL" path is.
-     */
-    private Fetched fetch(String url) {
-        UrlSafety.validateExternalHttpUrl(url);
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.set("User-Agent",
-                "Mozilla/5.0 (X11; Linux x86_64; rv:124.0) Gecko/20100101 Firefox/124.0");
-        headers.set("Accept", "application/pdf,*/*");
-        headers.set("Accept-Language", "en-US,en;q=0.5");
-
-        ResponseEntity<byte[]> response =
-                restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
-
-        byte[] body = response.getBody();
-        if (body == null) {
-            body = new byte[0];
-        }
-        MediaType ct = response.getHeaders().getContentType();
-        return new Fetched(body, ct != null ? ct.toString() : null, response.getStatusCode().value(), url);
-    }
-
     /** Prefer the URL's own filename; fall back to the part number. */
     private static String filenameFor(Part part, String url) {
         try {
@@ -243,12 +245,4 @@ public class DatasheetBackfillService {
         m = m.replaceAll("\\s+", " ").trim();
         return m.length() <= 160 ? m : m.substring(0, 160) + "…";
     }
-
-    private static void sleep(long millis) {
-        try {
-            Thread.sleep(millis);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
-    }
 }
@@ -0,0 +1,107 @@
+package com.clele.parts.service;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+
+/**
+ * Downloads for the bulk datasheet jobs, paced by a {@link HostThrottle} and held against its byte
+ * budget until the caller has done with them.
+ *
+ * <p>The body is read from the stream rather than buffered by {@code RestTemplate}, so a response
+ * over the size cap is refused as soon as it says so (or once the cap has been read) instead of being
+ * pulled into memory first, and the budget is taken for the size the response announces.
+ */
+final class DatasheetDownloads {
+
+    /**
+     * One response: its body, or null when it was over the cap. Closing it gives its share of the
+     * byte budget back.
+     *
+     * @param size the body's length, or as much of it as was read before it passed the cap
+     */
+    record Download(byte[] data, long size, String contentType, int status, String url,
+                    HostThrottle.Budget budget) implements AutoCloseable {
+
+        boolean oversize() {
+            return data == null;
+        }
+
+        @Override
+        public void close() {
+            budget.close();
+        }
+    }
+
+    /**
+     * Whether a failed download may well succeed if tried later: the network gave out (a timeout, a
+     * reset connection, an interrupted wait) or the server said so — a 5xx, 408 or 429. A 404 or a
+     * 403 bot wall says the same thing every time.
+     */
+    static boolean isTransient(Exception e) {
+        if (e instanceof HttpStatusCodeException http) {
+            int status = http.getStatusCode().value();
+            return http.getStatusCode().is5xxServerError() || status == 408 || status == 429;
+        }
+        return e instanceof ResourceAccessException || e instanceof IOException
+                || e instanceof InterruptedException;
+    }
+
+    private final RestTemplate restTemplate;
+    private final HostThrottle throttle;
+    private final int maxBytes;
+
+    DatasheetDownloads(RestTemplate restTemplate, HostThrottle throttle, int maxBytes) {
+        this.restTemplate = restTemplate;
+        this.throttle = throttle;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Fetches the URL with browser-ish headers — several vendor CDNs return 403 to a bare Java
+     * user-agent — once its host's turn comes.
+     */
+    Download get(String url) throws Exception {
+        return throttle.call(URI.create(url).getHost(), () -> restTemplate.execute(url, HttpMethod.GET, request -> {
+            HttpHeaders headers = request.getHeaders();
+            headers.set("User-Agent", "Mozilla/5.0 (X11; Linux x86_64; rv:124.0) Gecko/20100101 Firefox/124.0");
+            headers.set("Accept", "application/pdf,*/*");
+            headers.set("Accept-Language", "en-US,en;q=0.5");
+        }, response -> {
+            MediaType ct = response.getHeaders().getContentType();
+            String contentType = ct != null ? ct.toString() : null;
+            int status = response.getStatusCode().value();
+            long length = response.getHeaders().getContentLength();
+            if (length > maxBytes) {
+                return new Download(null, length, contentType, status, url, HostThrottle.Budget.NONE);
+            }
+
+            HostThrottle.Budget budget;
+            try {
+                budget = throttle.reserve(length >= 0 ? length : maxBytes);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted waiting for the download budget");
+            }
+            try (InputStream body = response.getBody()) {
+                byte[] data = body.readNBytes(maxBytes + 1);
+                if (data.length > maxBytes) {
+                    budget.close();
+                    return new Download(null, data.length, contentType, status, url, HostThrottle.Budget.NONE);
+                }
+                return new Download(data, data.length, contentType, status, url, budget);
+            } catch (IOException | RuntimeException e) {
+                budget.close();
+                throw e;
+            }
+        }));
+    }
+}
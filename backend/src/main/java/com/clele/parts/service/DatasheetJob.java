@@ -0,0 +1,117 @@
+package com.clele.parts.service;
+
+import com.clele.parts.model.Part;
+import com.clele.parts.repository.DatasheetJobOutcomeRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * The loop the bulk datasheet jobs share: skip the parts an earlier run already dealt with, work
+ * through the rest concurrently — one virtual thread per part, paced by the job's
+ * {@link HostThrottle} — and record each outcome the moment it is known, so an interrupted run
+ * picks up where it stopped.
+ *
+ * <p>Only a settled outcome is recorded. A failure that may well pass — a timeout, a reset
+ * connection, a 5xx or 429, a throttled search — is reported but left out of the checkpoint, so the
+ * next run tries that part again; otherwise, with the part's URL unchanged, it would be skipped for
+ * good, and only {@code fresh} (which forgets every finished part too) would bring it back.
+ */
+@Slf4j
+final class DatasheetJob {
+
+    /** A processed part's row in a job's report. */
+    interface Outcome {
+
+        String outcome();
+
+        /** What the log line and the checkpoint say besides the outcome; may be null. */
+        String detail();
+
+        /**
+         * Whether the outcome stands until the part's URL changes. False for a failure worth trying
+         * again, which is then not recorded.
+         */
+        boolean settled();
+    }
+
+    /**
+     * @param rows    this run's rows, in candidate order
+     * @param skipped candidates passed over because an earlier run dealt with them
+     */
+    record Result<R>(List<R> rows, int skipped) {}
+
+    private DatasheetJob() {
+    }
+
+    /**
+     * Processes the candidates not yet done under {@code job} — the first {@code limit} of them when
+     * {@code limit} is positive. {@code fresh} forgets the earlier runs first.
+     */
+    static <R extends Outcome> Result<R> run(String job, List<Part> candidates, int limit, boolean fresh,
+                                             DatasheetJobOutcomeRepository outcomes,
+                                             Function<Part, R> process) {
+        if (fresh) {
+            int forgotten = outcomes.forget(job);
+            if (forgotten > 0) {
+                log.info("Forgot {} outcome(s) of earlier {} runs", forgotten, job);
+            }
+        }
+        Map<Long, String> done = outcomes.done(job);
+        List<Part> todo = new ArrayList<>();
+        for (Part part : candidates) {
+            if (!Objects.equals(done.get(part.getId()), part.getDatasheetUrl())) {
+                todo.add(part);
+            }
+        }
+        int skipped = candidates.size() - todo.size();
+        if (skipped > 0) {
+            log.info("{} part(s) already dealt with by an earlier run; carrying on with the other {}",
+                    skipped, todo.size());
+        }
+        if (limit > 0 && limit < todo.size()) {
+            todo = todo.subList(0, limit);
+            log.info("Limited to the first {} by --datasheets.limit", todo.size());
+        }
+
+        int total = todo.size();
+        AtomicInteger finished = new AtomicInteger();
+        List<Future<R>> futures = new ArrayList<>(total);
+        try (ExecutorService parts = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Part part : todo) {
+                futures.add(parts.submit(() -> {
+                    R row = process.apply(part);
+                    if (row.settled()) {
+                        outcomes.record(job, part.getId(), part.getDatasheetUrl(), row.outcome(), row.detail());
+                    }
+                    log.info("[{}/{}] {} -> {}{}", finished.incrementAndGet(), total, part.getPartNumber(),
+                            row.outcome(), row.detail() != null ? " (" + row.detail() + ")" : "");
+                    return row;
+                }));
+            }
+        }
+
+        List<R> rows = new ArrayList<>(total);
+        for (Future<R> future : futures) {
+            try {
+                rows.add(future.get());
+            } catch (ExecutionException e) {
+                // A part whose processing threw is left unrecorded, so the next run tries it again.
+                log.warn("A part failed outside its own error handling: {}", e.getCause().toString());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return new Result<>(rows, skipped);
+    }
+}
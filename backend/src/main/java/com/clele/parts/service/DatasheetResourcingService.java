@@ -1,17 +1,12 @@
 package com.clele.parts.service;
 
+import com.clele.parts.model.DatasheetText;
 import com.clele.parts.model.Part;
+import com.clele.parts.repository.DatasheetJobOutcomeRepository;
 import com.clele.parts.repository.PartRepository;
 import lombok.Builder;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.pdfbox.Loader;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.text.PDFTextStripper;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
@@ -35,6 +30,12 @@ import java.util.Map;
  * actually mentions the part number. The second gate cannot be applied to a scanned datasheet — no
  * text to match — so those are accepted but recorded separately as {@code RESOURCED_UNVERIFIED},
  * and are worth a human glance before they are trusted.
+ *
+ * <p>Parts are worked on concurrently and checkpointed as {@link DatasheetBackfillService} does. The
+ * search engine is one more host to its {@link HostThrottle}, so its pacing — the run's
+ * {@code delay-ms} — holds however many vendor downloads are running beside it. A failed or blocked
+ * search, and a {@code NO_MATCH} where a candidate could not be fetched for a reason that may pass,
+ * are not checkpointed: the next run tries those parts again.
  */
 @Slf4j
 @Service
@@ -49,17 +50,26 @@ public class DatasheetResourcingService {
      */
     private static final int MIN_MENTION_PREFIX = 5;
 
+    /** Larger than any datasheet worth keeping; see {@link DatasheetBackfillService}. */
+    private static final int MAX_BYTES = 40 * 1024 * 1024;
+
+    /** The host key the searches are paced under. */
+    private static final String SEARCH_HOST = "duckduckgo.com";
+
     private final PartRepository partRepository;
+    private final DatasheetJobOutcomeRepository outcomeRepository;
     private final DuckDuckGoDatasheetService searchService;
     private final DatasheetAnalyzer analyzer;
     private final RestTemplate restTemplate;
 
     /** Explicit constructor — see the note in {@link DatasheetBackfillService} about {@code @Qualifier}. */
     public DatasheetResourcingService(PartRepository partRepository,
+                                      DatasheetJobOutcomeRepository outcomeRepository,
                                       DuckDuckGoDatasheetService searchService,
                                       DatasheetAnalyzer analyzer,
                                       @Qualifier("datasheetRestTemplate") RestTemplate restTemplate) {
         this.partRepository = partRepository;
+        this.outcomeRepository = outcomeRepository;
         this.searchService = searchService;
         this.analyzer = analyzer;
         this.restTemplate = restTemplate;
@@ -79,51 +89,53 @@ public class DatasheetResourcingService {
             String route,
             String matchedOn,
             String rejections,
-            boolean applied) {}
+            boolean applied,
+            /** The outcome may be different next time; the next run tries the part again. */
+            boolean retryable) implements DatasheetJob.Outcome {
 
+        @Override
+        public String detail() {
+            return chosenUrl;
+        }
+
+        @Override
+        public boolean settled() {
+            return !retryable;
+        }
+    }
+
+    /** {@code skipped}: candidates an earlier run had already dealt with. */
     @Builder
-    public record Report(List<Row> rows, Map<String, Integer> byOutcome, int candidates, boolean dryRun) {}
+    public record Report(List<Row> rows, Map<String, Integer> byOutcome, int candidates, int skipped,
+                         boolean dryRun) {}
 
-    public record Options(boolean dryRun, int limit, long delayMillis) {}
+    /** As {@link DatasheetBackfillService.Options}. */
+    public record Options(boolean dryRun, int limit, boolean fresh, HostThrottle.Limits pacing) {}
 
     public Report run(Options options) {
         List<Part> candidates = partRepository.findWithDeadOctopartDatasheetUrl();
         log.info("{} part(s) carry a dead Octopart tracking URL", candidates.size());
 
-        List<Part> todo = (options.limit() > 0 && options.limit() < candidates.size())
-                ? candidates.subList(0, options.limit())
-                : candidates;
-        if (todo.size() != candidates.size()) {
-            log.info("Limited to the first {} by --datasheets.limit", todo.size());
-        }
-
-        List<Row> rows = new ArrayList<>(todo.size());
-        int n = 0;
-        for (Part part : todo) {
-            n++;
-            Row row = resourceOne(part, options.dryRun());
-            rows.add(row);
-            log.info("[{}/{}] {} -> {}{}", n, todo.size(), part.getPartNumber(), row.outcome(),
-                    row.chosenUrl() != null ? " " + row.chosenUrl() : "");
-
-            if (options.delayMillis() > 0 && n < todo.size()) {
-                sleep(options.delayMillis());
-            }
-        }
+        HostThrottle throttle = new HostThrottle(options.pacing());
+        DatasheetDownloads downloads = new DatasheetDownloads(restTemplate, throttle, MAX_BYTES);
+        DatasheetJob.Result<Row> result = DatasheetJob.run(options.dryRun() ? "RESOURCE_DRY_RUN" : "RESOURCE",
+                candidates, options.limit(), options.fresh(), outcomeRepository,
+                part -> resourceOne(part, throttle, downloads, options.dryRun()));
 
         Map<String, Integer> byOutcome = new LinkedHashMap<>();
-        for (Row row : rows) {
+        for (Row row : result.rows()) {
             byOutcome.merge(row.outcome(), 1, Integer::sum);
         }
         return Report.builder()
-                .rows(rows)
+                .rows(result.rows())
                 .byOutcome(byOutcome)
                 .candidates(candidates.size())
+                .skipped(result.skipped())
                 .dryRun(options.dryRun())
                 .build();
     }
 
-    private Row resourceOne(Part part, boolean dryRun) {
+    private Row resourceOne(Part part, HostThrottle throttle, DatasheetDownloads downloads, boolean dryRun) {
         String query = buildQuery(part);
         Row.RowBuilder row = Row.builder()
                 .partId(part.getId())
@@ -140,17 +152,17 @@ public class DatasheetResourcingService {
         if (urls.isEmpty()) {
             DuckDuckGoDatasheetService.SearchResult found;
             try {
-                found = searchService.search(query);
+                found = throttle.call(SEARCH_HOST, () -> searchService.search(query));
             } catch (Exception e) {
-                return row.outcome("SEARCH_FAILED").rejections(shorten(e.toString())).build();
+                return row.outcome("SEARCH_FAILED").rejections(shorten(e.toString())).retryable(true).build();
             }
             // A blocked search is not an absent datasheet — reporting it as NO_CANDIDATES would say
             // "nothing exists for this part" about a request the search engine never answered.
             if (found.blocked()) {
-                return row.outcome("SEARCH_BLOCKED").rejections(shorten(found.detail())).build();
+                return row.outcome("SEARCH_BLOCKED").rejections(shorten(found.detail())).retryable(true).build();
             }
             if (found.status() == DuckDuckGoDatasheetService.SearchStatus.FAILED) {
-                return row.outcome("SEARCH_FAILED").rejections(shorten(found.detail())).build();
+                return row.outcome("SEARCH_FAILED").rejections(shorten(found.detail())).retryable(true).build();
             }
             found.results().forEach(s -> urls.add(s.getUrl()));
         }
@@ -161,6 +173,7 @@ public class DatasheetResourcingService {
         }
 
         List<String> rejections = new ArrayList<>();
+        boolean transientRejection = false;
         int tried = 0;
         for (String url : urls) {
             if (tried >= Math.max(MAX_CANDIDATES_PER_PART, vendorCandidates)) {
@@ -168,15 +181,21 @@ public class DatasheetResourcingService {
             }
             tried++;
 
-            byte[] data;
-            try {
-                data = download(url);
+            // Read once: the routing and the mention check below both work from the text.
+            DatasheetText text;
+            try (DatasheetDownloads.Download download = downloads.get(url)) {
+                if (download.oversize()) {
+                    rejections.add(stem(url) + ": " + download.size() + " bytes, over the cap");
+                    continue;
+                }
+                text = analyzer.read(download.data());
             } catch (Exception e) {
                 rejections.add(stem(url) + ": " + shortHttp(e));
+                transientRejection |= DatasheetDownloads.isTransient(e);
                 continue;
             }
 
-            DatasheetAnalyzer.Analysis analysis = analyzer.analyze(data);
+            DatasheetAnalyzer.Analysis analysis = analyzer.analyzeText(text);
             if (!analysis.usable()) {
                 rejections.add(stem(url) + ": " + analysis.error());
                 continue;
@@ -188,9 +207,10 @@ public class DatasheetResourcingService {
             if (analysis.route() == DatasheetAnalyzer.Route.NO_TEXT_LAYER) {
                 matchedOn = "(scanned — unverifiable)";
             } else {
-                matchedOn = mentionOf(part.getPartNumber(), textOf(data));
+                String all = String.join("", text.pages());
+                matchedOn = mentionOf(part.getPartNumber(), all);
                 if (matchedOn == null && part.getMpn() != null) {
-                    matchedOn = mentionOf(part.getMpn(), textOf(data));
+                    matchedOn = mentionOf(part.getMpn(), all);
                 }
                 if (matchedOn == null) {
                     rejections.add(stem(url) + ": does not mention the part");
@@ -216,6 +236,7 @@ public class DatasheetResourcingService {
         return row.outcome("NO_MATCH")
                 .candidatesTried(tried)
                 .rejections(String.join(" | ", rejections))
+                .retryable(transientRejection)
                 .build();
     }
 
@@ -311,27 +332,6 @@ public class DatasheetResourcingService {
         return s.toUpperCase().replaceAll("[^A-Z0-9]", "");
     }
 
-    private String textOf(byte[] data) {
-        try (PDDocument doc = Loader.loadPDF(data)) {
-            PDFTextStripper stripper = new PDFTextStripper();
-            stripper.setSortByPosition(true);
-            return stripper.getText(doc);
-        } catch (Exception e) {
-            return "";
-        }
-    }
-
-    private byte[] download(String url) {
-        HttpHeaders headers = new HttpHeaders();
-        headers.set("User-Agent",
-                "Mozilla/5.0 (X11; Linux x86_64; rv:124.0) Gecko/20100101 Firefox/124.0");
-        headers.set("Accept", "application/pdf,*/*");
-        ResponseEntity<byte[]> response =
-                restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
-        byte[] body = response.getBody();
-        return body == null ? new byte[0] : body;
-    }
-
     /** Short label for a candidate in the rejection trail — the filename says which stem was tried. */
     private static String stem(String url) {
         try {
@@ -356,12 +356,4 @@ public class DatasheetResourcingService {
         String one = s.replaceAll("\\s+", " ").trim();
         return one.length() <= 160 ? one : one.substring(0, 160) + "…";
     }
-
-    private static void sleep(long millis) {
-        try {
-            Thread.sleep(millis);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
-    }
 }
@@ -0,0 +1,62 @@
+package com.clele.parts.service;
+
+import com.clele.parts.dto.DatasheetContentHitDTO;
+import com.clele.parts.repository.DatasheetTextRepository;
+import com.clele.parts.repository.DatasheetTextRepository.PageHit;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Searches inside the organisation's stored datasheets — "which of my parts' datasheets mention
+ * AEC-Q100" — over the page text {@link DatasheetTextService} keeps and V66 indexes.
+ *
+ * <p>Only what has been read is found: a datasheet uploaded a moment ago is found once the text pool
+ * has got to it, and a scan with no text layer never is. Datasheets not yet moved into the blob
+ * store have no text stored and are not searched.
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class DatasheetSearchService {
+
+    static final int MAX_PARTS = 50;
+    static final int PAGES_PER_PART = 3;
+
+    private final DatasheetTextRepository textRepository;
+    private final CurrentOrganisationService currentOrganisationService;
+
+    public List<DatasheetContentHitDTO> search(String query) {
+        if (query == null || query.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Enter something to search for");
+        }
+        List<PageHit> hits = textRepository.search(currentOrganisationService.currentId(), query.trim(),
+                MAX_PARTS, PAGES_PER_PART, DatasheetContentHitDTO.HIT_START, DatasheetContentHitDTO.HIT_END);
+
+        // Rows arrive best part first, each part's pages together and best first.
+        Map<Long, DatasheetContentHitDTO> parts = new LinkedHashMap<>();
+        for (PageHit hit : hits) {
+            parts.computeIfAbsent(hit.partId(), id -> DatasheetContentHitDTO.builder()
+                            .partId(id)
+                            .partNumber(hit.partNumber())
+                            .description(hit.description())
+                            .manufacturer(hit.manufacturer())
+                            .pages(new ArrayList<>())
+                            .build())
+                    .getPages().add(DatasheetContentHitDTO.Page.builder()
+                            .attachmentId(hit.attachmentId())
+                            .filename(hit.filename())
+                            .page(hit.page())
+                            .snippet(hit.snippet())
+                            .build());
+        }
+        return List.copyOf(parts.values());
+    }
+}
@@ -3,17 +3,14 @@ package com.clele.parts.service;
 import com.clele.parts.dto.DatasheetExtractionDTO;
 import com.clele.parts.dto.ExtractedSpecDTO;
 import com.clele.parts.model.AttachmentType;
+import com.clele.parts.model.DatasheetText;
 import com.clele.parts.model.Part;
 import com.clele.parts.model.PartAttachment;
 import com.clele.parts.repository.PartAttachmentRepository;
-import com.clele.parts.util.PdfBytes;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.pdfbox.Loader;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.text.PDFTextStripper;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
@@ -154,7 +151,9 @@ public class DatasheetSpecExtractionService {
 
     private final PartService partService;
     private final PartAttachmentRepository partAttachmentRepository;
+    private final PartAttachmentService partAttachmentService;
     private final DatasheetAnalyzer datasheetAnalyzer;
+    private final DatasheetTextService datasheetTextService;
     private final SpecDefinitionService specDefinitionService;
     private final SpecFieldCatalog specFieldCatalog;
     private final ObjectMapper objectMapper;
@@ -181,14 +180,18 @@ public class DatasheetSpecExtractionService {
 
     public DatasheetSpecExtractionService(PartService partService,
                                           PartAttachmentRepository partAttachmentRepository,
+                                          PartAttachmentService partAttachmentService,
                                           DatasheetAnalyzer datasheetAnalyzer,
+                                          DatasheetTextService datasheetTextService,
                                           SpecDefinitionService specDefinitionService,
                                           SpecFieldCatalog specFieldCatalog,
                                           ObjectMapper objectMapper,
                                           @Qualifier("aiDocumentRestTemplate") RestTemplate restTemplate) {
         this.partService = partService;
         this.partAttachmentRepository = partAttachmentRepository;
+        this.partAttachmentService = partAttachmentService;
         this.datasheetAnalyzer = datasheetAnalyzer;
+        this.datasheetTextService = datasheetTextService;
         this.specDefinitionService = specDefinitionService;
         this.specFieldCatalog = specFieldCatalog;
         this.objectMapper = objectMapper;
@@ -205,16 +208,13 @@ public class DatasheetSpecExtractionService {
         Part part = partService.requirePart(partId);
         PartAttachment attachment = resolveAttachment(partId, attachmentId);
 
-        byte[] data = attachment.getData();
-        if (!PdfBytes.looksLikePdf(data)) {
-            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
-                    "That attachment is not a PDF, so there is nothing to read.");
-        }
-
-        DatasheetAnalyzer.Analysis analysis = datasheetAnalyzer.analyze(data);
+        // Read once per PDF and stored; the bytes are fetched only when this one has not been.
+        DatasheetText text = datasheetTextService.text(attachment.getSha256(),
+                () -> partAttachmentService.bytes(attachment));
+        DatasheetAnalyzer.Analysis analysis = datasheetAnalyzer.analyzeText(text);
         if (analysis.route() == DatasheetAnalyzer.Route.UNUSABLE) {
             throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
-                    "That PDF could not be read: " + analysis.error());
+                    "That attachment could not be read as a PDF: " + analysis.error());
         }
         if (analysis.route() == DatasheetAnalyzer.Route.NO_TEXT_LAYER) {
             // Refuse before spending anything: a scan has no text to send.
@@ -224,8 +224,7 @@ public class DatasheetSpecExtractionService {
                             + "have to be entered by hand, or a text PDF of the same part found.");
         }
 
-        List<String> pages = pageTexts(data);
-        String excerpt = buildExcerpt(pages);
+        String excerpt = buildExcerpt(text.pages());
         if (excerpt.isBlank()) {
             throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
                     "No readable text could be taken from this PDF.");
@@ -267,24 +266,6 @@ public class DatasheetSpecExtractionService {
 
     // ── Text extraction and excerpting ──────────────────────────────────────────
 
-    /** Page-by-page text, so an excerpt can carry the page number each span came from. */
-    private List<String> pageTexts(byte[] data) {
-        try (PDDocument doc = Loader.loadPDF(data)) {
-            PDFTextStripper stripper = new PDFTextStripper();
-            stripper.setSortByPosition(true);
-            List<String> pages = new ArrayList<>(doc.getNumberOfPages());
-            for (int i = 1; i <= doc.getNumberOfPages(); i++) {
-                stripper.setStartPage(i);
-                stripper.setEndPage(i);
-                pages.add(stripper.getText(doc));
-            }
-            return pages;
-        } catch (Exception e) {
-            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
-                    "Could not extract text from this PDF: " + e.getMessage());
-        }
-    }
-
     /**
      * Front matter plus a window from each parametric heading, page-marked and capped.
      *
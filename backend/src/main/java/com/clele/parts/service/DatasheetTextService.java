@@ -0,0 +1,138 @@
+package com.clele.parts.service;
+
+import com.clele.parts.model.DatasheetText;
+import com.clele.parts.repository.DatasheetTextRepository;
+import com.clele.parts.storage.BlobStore;
+import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * The text of stored datasheets ({@link DatasheetText}), read out of each PDF once and kept (V65)
+ * instead of PDFBox parsing the whole document again every time it is analysed or excerpted — a
+ * few hundred milliseconds for a short datasheet, several seconds and a heap full of fonts for an
+ * MCU reference manual.
+ *
+ * <p>Keyed by the PDF's SHA-256, like the photo renditions ({@link ImageVariantService}), and made
+ * the same way ({@link KeyedWorkQueue}): on a small pool of {@link #WORKERS} threads, asked for by an upload once it has
+ * committed and by a backfill started with the application for the datasheets that predate this,
+ * with at most {@link #QUEUE} waiting. Unlike a rendition, text that is asked for and not there yet
+ * is read on the spot — a caller about to excerpt a datasheet cannot do with a stand-in — and stored
+ * for the next one.
+ *
+ * <p>A stored PDF is read from its blob file, memory-mapped ({@link DatasheetAnalyzer#read(Path)}),
+ * never loaded onto the heap whole; a store that keeps no files is spooled to a temporary one first.
+ *
+ * <p>What comes back is the text, not a verdict on it:
+ * {@link DatasheetAnalyzer#analyzeText(DatasheetText)} routes it, cheaply, each time.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DatasheetTextService {
+
+    /** Parsing is CPU- and heap-bound, and a reference manual is large; one thread at a time. */
+    static final int WORKERS = 1;
+    static final int QUEUE = 256;
+    static final int BACKFILL_BATCH = 100;
+
+    private final BlobStore blobStore;
+    private final DatasheetTextRepository textRepository;
+    private final DatasheetAnalyzer analyzer;
+    private final PlatformTransactionManager txManager;
+
+    private final KeyedWorkQueue queue = new KeyedWorkQueue("datasheet-text", WORKERS, QUEUE, this::run);
+
+    /**
+     * The text of the PDF stored under {@code sha256}: the stored text, or read from the blob now and
+     * stored. A legacy row not yet moved into the blob store has no hash; its text is read from
+     * {@code content} and not kept.
+     */
+    public DatasheetText text(String sha256, Supplier<byte[]> content) {
+        if (sha256 == null) {
+            return analyzer.read(content.get());
+        }
+        Optional<DatasheetText> stored = textRepository.find(sha256);
+        if (stored.isPresent()) {
+            return stored.get();
+        }
+        DatasheetText text = readBlob(sha256);
+        remember(sha256, text);
+        return text;
+    }
+
+    /**
+     * Stores text read by a caller that had the bytes in hand anyway — the datasheet backfill
+     * analyses a download before storing it — so the upload that follows finds it and reads nothing.
+     * Its own transaction: the text stands whether or not the caller's does, and a caller's
+     * read-only one could not write it.
+     */
+    public void remember(String sha256, DatasheetText text) {
+        TransactionTemplate tx = new TransactionTemplate(txManager);
+        tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        tx.executeWithoutResult(status -> textRepository.save(sha256, text));
+    }
+
+    /** Asks for a datasheet's text once the current transaction has committed; now when there is none. */
+    public void requestAfterCommit(String sha256) {
+        queue.requestAfterCommit(sha256);
+    }
+
+    /** Hands every datasheet whose text is not stored to the pool, waiting for room as it goes. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startBackfill() {
+        queue.startBackfill(textRepository::missing, BACKFILL_BATCH, "datasheets for text extraction");
+    }
+
+    @PreDestroy
+    void stop() {
+        queue.shutdown();
+    }
+
+    private void run(String sha256) {
+        try {
+            if (!textRepository.exists(sha256)) {
+                textRepository.save(sha256, readBlob(sha256));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not store the text of datasheet {}: {}", sha256, e.getMessage());
+        }
+    }
+
+    /** Reads the blob's text in place when the store keeps it in a file, from a spooled copy when not. */
+    private DatasheetText readBlob(String sha256) {
+        Resource blob = blobStore.get(sha256);
+        try {
+            if (blob.isFile()) {
+                return analyzer.read(blob.getFile().toPath());
+            }
+            Path spool = Files.createTempFile("datasheet-", ".pdf");
+            try {
+                try (InputStream in = blob.getInputStream()) {
+                    Files.copy(in, spool, StandardCopyOption.REPLACE_EXISTING);
+                }
+                return analyzer.read(spool);
+            } finally {
+                Files.deleteIfExists(spool);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read blob " + sha256, e);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.clele.parts.service;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Paces requests to many hosts at once, for the bulk datasheet jobs ({@link DatasheetBackfillService},
+ * {@link DatasheetResourcingService}): a few thousand files from a few dozen vendor CDNs, where
+ * politeness is owed per host and not to the run as a whole.
+ *
+ * <p>Against any one host at most {@link Limits#perHost()} requests are in flight and successive
+ * requests start at least {@link Limits#spacing()} apart; across all hosts at most
+ * {@link Limits#total()} are in flight. A slow or rate-limited vendor therefore holds up only its
+ * own parts. Response bodies are held in memory until they have been analysed, so a budget of
+ * {@link Limits#maxBytesInFlight()} bounds those too (see {@link #reserve}).
+ *
+ * <p>Callers are expected to be virtual threads, one per part: waiting here is all they do.
+ */
+public final class HostThrottle {
+
+    /**
+     * @param perHost          requests in flight against one host
+     * @param total            requests in flight overall; keep it within the HTTP client's pool
+     * @param spacing          least time between the starts of two requests to one host
+     * @param maxBytesInFlight response bytes held at once, across every request
+     */
+    public record Limits(int perHost, int total, Duration spacing, long maxBytesInFlight) {}
+
+    /** A share of the byte budget, given back on close. */
+    interface Budget extends AutoCloseable {
+
+        Budget NONE = () -> {};
+
+        @Override
+        void close();
+    }
+
+    private final Limits limits;
+    private final Semaphore total;
+    /** The byte budget, in KiB so that a budget of gigabytes still fits the permits' int. */
+    private final Semaphore kib;
+    private final int maxKib;
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+
+    HostThrottle(Limits limits) {
+        this.limits = limits;
+        this.total = new Semaphore(limits.total(), true);
+        this.maxKib = (int) Math.max(1, Math.min(Integer.MAX_VALUE, limits.maxBytesInFlight() / 1024));
+        this.kib = new Semaphore(maxKib, true);
+    }
+
+    /** Runs {@code call} against {@code host} once both the host and the run have room for it. */
+    <T> T call(String host, Callable<T> call) throws Exception {
+        Host h = hosts.computeIfAbsent(host == null ? "" : host.toLowerCase(Locale.ROOT),
+                k -> new Host(limits.perHost()));
+        h.slots.acquire();
+        try {
+            h.awaitTurn(limits.spacing());
+            total.acquire();
+            try {
+                return call.call();
+            } finally {
+                total.release();
+            }
+        } finally {
+            h.slots.release();
+        }
+    }
+
+    /**
+     * Holds {@code bytes} of the budget until the returned share is closed, waiting for others to
+     * give theirs back first. A request larger than the whole budget takes the whole budget rather
+     * than waiting forever.
+     */
+    Budget reserve(long bytes) throws InterruptedException {
+        int n = (int) Math.max(1, Math.min(maxKib, (bytes + 1023) / 1024));
+        kib.acquire(n);
+        return () -> kib.release(n);
+    }
+
+    /** One host's slots and the earliest moment its next request may start. */
+    private static final class Host {
+
+        private final Semaphore slots;
+        private final ReentrantLock lock = new ReentrantLock();
+        private long nextStart = System.nanoTime();
+
+        Host(int perHost) {
+            this.slots = new Semaphore(perHost, true);
+        }
+
+        /** Takes the next start time and sleeps until it; the one after is {@code spacing} later. */
+        void awaitTurn(Duration spacing) throws InterruptedException {
+            long wait;
+            lock.lock();
+            try {
+                long now = System.nanoTime();
+                long start = Math.max(now, nextStart);
+                nextStart = start + spacing.toNanos();
+                wait = start - now;
+            } finally {
+                lock.unlock();
+            }
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+    }
+}
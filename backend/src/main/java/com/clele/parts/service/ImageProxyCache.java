@@ -0,0 +1,376 @@
+package com.clele.parts.service;
+
+import com.clele.parts.config.AppProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * The image proxy's cache: external images on disk, keyed by URL, so the grid of ten or twenty
+ * suggestions a part search shows is fetched upstream once rather than on every reopen.
+ *
+ * <p><b>One fetch per URL at a time.</b> The first request for a URL starts the upstream fetch on a
+ * thread of its own, writing to a file in the cache directory; every request for that URL while it
+ * runs — the first included — streams from that file as it grows, so no client waits for the whole
+ * image and no two go upstream for the same one. A client that gives up does not stop the fetch the
+ * others are reading.
+ *
+ * <p><b>Bounded.</b> An entry is served for {@link #MAX_AGE}, and once the files together pass
+ * {@code app.storage.image-cache-max-mb} the least recently served go. An upstream larger than
+ * {@link #MAX_IMAGE_BYTES} is not an image this app shows; it is refused. A failed fetch is
+ * remembered for {@link #FAILURE_TTL}, so a dead link in a grid is not retried on every render.
+ *
+ * <p>The index is in memory and the cache does not outlive the process: what it left in its
+ * directory is deleted at startup. It is a cache of other people's images, and starting cold costs one fetch each.
+ */
+@Slf4j
+@Component
+public class ImageProxyCache {
+
+    static final Duration MAX_AGE = Duration.ofDays(7);
+    static final Duration FAILURE_TTL = Duration.ofMinutes(10);
+    static final long MAX_IMAGE_BYTES = 10L * 1024 * 1024;
+    private static final String PREFIX = "proxied-";
+
+    /** What a request is answered with: a cached file, or a stream of one still being fetched. */
+    public record Served(Resource content, MediaType contentType) {}
+
+    private record Entry(Path file, MediaType contentType, long size, Instant fetchedAt, AtomicLong lastUsed) {}
+
+    private record Failure(HttpStatus status, String message, Instant until) {}
+
+    private final RestTemplate restTemplate;
+    private final Path dir;
+    private final long maxBytes;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Fetch> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Failure> failures = new ConcurrentHashMap<>();
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final AtomicLong sequence = new AtomicLong();
+
+    public ImageProxyCache(RestTemplate restTemplate, AppProperties appProperties) {
+        this.restTemplate = restTemplate;
+        this.dir = Path.of(appProperties.getStorage().getImageCacheDir()).toAbsolutePath().normalize();
+        this.maxBytes = appProperties.getStorage().getImageCacheMaxMb() * 1024 * 1024;
+        try {
+            Files.createDirectories(dir);
+            // Only what this cache writes: a misconfigured directory must not cost anything else.
+            try (Stream<Path> files = Files.list(dir)) {
+                files.filter(f -> f.getFileName().toString().startsWith(PREFIX)).forEach(ImageProxyCache::delete);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create the image cache directory " + dir, e);
+        }
+    }
+
+    /**
+     * The image at {@code uri} — from the cache, from a fetch already running, or from one started
+     * now. Returns once the upstream has answered; the body may still be arriving.
+     *
+     * @throws ResponseStatusException 502 (or the remembered failure) when the upstream fails
+     */
+    public Served get(URI uri) {
+        String key = uri.toString();
+        Failure failure = failures.get(key);
+        if (failure != null) {
+            if (failure.until().isAfter(Instant.now())) {
+                throw new ResponseStatusException(failure.status(), failure.message());
+            }
+            failures.remove(key, failure);
+        }
+
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            if (entry.fetchedAt().plus(MAX_AGE).isAfter(Instant.now())) {
+                entry.lastUsed().set(System.nanoTime());
+                try {
+                    return new Served(open(entry), entry.contentType());
+                } catch (NoSuchFileException e) {
+                    // Evicted between the lookup and the open; fall through to a fetch of its own.
+                    drop(key, entry);
+                    return get(uri);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            drop(key, entry);
+        }
+
+        Fetch fetch = inFlight.computeIfAbsent(key, k -> start(k, uri));
+        MediaType contentType = fetch.awaitHeaders();
+        try {
+            return new Served(new InputStreamResource(fetch.open()), contentType);
+        } catch (UncheckedIOException e) {
+            // Joined a fetch that finished and was evicted before its file could be opened: it is
+            // no longer in flight, so looking again serves the entry or starts a fetch of its own.
+            if (e.getCause() instanceof NoSuchFileException) {
+                return get(uri);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * The cached file, opened now rather than when the response is written: once open, an eviction
+     * that deletes it cannot pull it from under the request (see {@link #drop}).
+     */
+    private static Resource open(Entry entry) throws IOException {
+        InputStream in = Channels.newInputStream(FileChannel.open(entry.file(), StandardOpenOption.READ));
+        return new InputStreamResource(in) {
+            @Override
+            public long contentLength() {
+                return entry.size();
+            }
+        };
+    }
+
+    private Fetch start(String key, URI uri) {
+        Fetch fetch = new Fetch(dir.resolve(PREFIX + sequence.incrementAndGet()));
+        Thread.ofVirtual().name("image-proxy-fetch").start(() -> run(key, uri, fetch));
+        return fetch;
+    }
+
+    private void run(String key, URI uri, Fetch fetch) {
+        try {
+            restTemplate.execute(uri, HttpMethod.GET, request -> {
+                HttpHeaders outgoing = request.getHeaders();
+                outgoing.set("User-Agent", "Mozilla/5.0 (X11; Linux x86_64; rv:124.0) Gecko/20100101 Firefox/124.0");
+                outgoing.set("Accept", "image/*, */*;q=0.8");
+                outgoing.set("Accept-Language", "en-US,en;q=0.5");
+                outgoing.set("Referer", uri.getScheme() + "://" + uri.getHost() + "/");
+            }, response -> {
+                MediaType contentType = response.getHeaders().getContentType();
+                fetch.headers(contentType != null ? contentType : MediaType.APPLICATION_OCTET_STREAM);
+                fetch.copy(response.getBody());
+                return null;
+            });
+            entries.put(key, new Entry(fetch.file, fetch.contentType, fetch.written(), Instant.now(),
+                    new AtomicLong(System.nanoTime())));
+            totalBytes.addAndGet(fetch.written());
+            fetch.finish(null);
+        } catch (Exception e) {
+            HttpStatus status = HttpStatus.BAD_GATEWAY;
+            String message = "Failed to fetch image: " + e.getMessage();
+            if (e instanceof HttpStatusCodeException http && http.getStatusCode().value() == 404) {
+                status = HttpStatus.NOT_FOUND;
+                message = "The image is gone upstream";
+            }
+            failures.values().removeIf(f -> f.until().isBefore(Instant.now()));
+            failures.put(key, new Failure(status, message, Instant.now().plus(FAILURE_TTL)));
+            fetch.finish(new ResponseStatusException(status, message));
+            delete(fetch.file);
+            log.debug("Image proxy fetch of {} failed: {}", uri, e.getMessage());
+        } finally {
+            inFlight.remove(key, fetch);
+        }
+        // Only once the fetch is out of inFlight: no request can join it and find its file evicted.
+        evict();
+    }
+
+    /** Drops the least recently served entries until the cache is back under its bound. */
+    private void evict() {
+        if (totalBytes.get() <= maxBytes) {
+            return;
+        }
+        entries.entrySet().stream()
+                .sorted(Comparator.comparingLong(e -> e.getValue().lastUsed().get()))
+                .takeWhile(e -> totalBytes.get() > maxBytes)
+                .forEach(e -> drop(e.getKey(), e.getValue()));
+    }
+
+    /**
+     * Forgets an entry and deletes its file. A request already served it keeps reading: {@link #get}
+     * opens the file before it returns, and the file is gone from the directory, not from under an
+     * open channel.
+     */
+    private void drop(String key, Entry entry) {
+        if (entries.remove(key, entry)) {
+            totalBytes.addAndGet(-entry.size());
+            delete(entry.file());
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete cached image {}: {}", file, e.getMessage());
+        }
+    }
+
+    /** One upstream fetch: the file it writes, and what its readers wait on. */
+    static final class Fetch {
+
+        private final Path file;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition changed = lock.newCondition();
+        private MediaType contentType;
+        private long written;
+        private boolean done;
+        private ResponseStatusException failure;
+
+        Fetch(Path file) {
+            this.file = file;
+        }
+
+        void headers(MediaType contentType) throws IOException {
+            Files.createFile(file);
+            signal(() -> this.contentType = contentType);
+        }
+
+        /** Copies the body to the file, letting readers on after every buffer. */
+        void copy(InputStream body) throws IOException {
+            byte[] buffer = new byte[16 * 1024];
+            try (OutputStream out = Files.newOutputStream(file, StandardOpenOption.APPEND)) {
+                int n;
+                while ((n = body.read(buffer)) != -1) {
+                    if (written() + n > MAX_IMAGE_BYTES) {
+                        throw new IOException("larger than " + MAX_IMAGE_BYTES / (1024 * 1024) + " MB");
+                    }
+                    out.write(buffer, 0, n);
+                    out.flush();
+                    int chunk = n;
+                    signal(() -> written += chunk);
+                }
+            }
+        }
+
+        void finish(ResponseStatusException failure) {
+            signal(() -> {
+                this.failure = failure;
+                done = true;
+            });
+        }
+
+        long written() {
+            lock.lock();
+            try {
+                return written;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        MediaType awaitHeaders() {
+            lock.lock();
+            try {
+                while (contentType == null && !done) {
+                    changed.awaitUninterruptibly();
+                }
+                if (contentType == null) {
+                    throw failure;
+                }
+                return contentType;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * How far the file can be read from {@code position}: waits until there is more or the
+         * fetch has ended. @return the readable length; equal to {@code position} at the end
+         */
+        long awaitBeyond(long position) throws IOException {
+            lock.lock();
+            try {
+                while (written <= position && !done) {
+                    changed.awaitUninterruptibly();
+                }
+                if (failure != null) {
+                    throw new IOException(failure.getReason());
+                }
+                return written;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /** A stream of the image that follows the file as it is written. */
+        InputStream open() {
+            try {
+                return new Tail(this, FileChannel.open(file, StandardOpenOption.READ));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void signal(Runnable change) {
+            lock.lock();
+            try {
+                change.run();
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /** Reads a fetch's file up to what has been written, waiting for the writer when caught up. */
+    private static final class Tail extends InputStream {
+
+        private final Fetch fetch;
+        private final FileChannel channel;
+        private long position;
+
+        Tail(Fetch fetch, FileChannel channel) {
+            this.fetch = fetch;
+            this.channel = channel;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            long available = fetch.awaitBeyond(position) - position;
+            if (available <= 0) {
+                return -1;
+            }
+            int n = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, available)), position);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
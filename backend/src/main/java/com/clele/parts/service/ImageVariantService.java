@@ -0,0 +1,180 @@
+package com.clele.parts.service;
+
+import com.clele.parts.model.ImageVariant;
+import com.clele.parts.repository.AttachmentVariantRepository;
+import com.clele.parts.repository.AttachmentVariantRepository.Variant;
+import com.clele.parts.storage.BlobStore;
+import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+
+/**
+ * The thumbnail and medium renditions of photos ({@link ImageVariant}), so the parts list fetches a
+ * few kilobytes a row instead of the multi-megapixel PNG the upload was normalised to.
+ *
+ * <p>Renditions are made from content, keyed by the photo's SHA-256, and stored as blobs of their
+ * own (V64) — a photo is scaled once however many parts and organisations show it. They are made on
+ * a small pool of {@link #WORKERS} threads ({@link KeyedWorkQueue}), never on a request thread: an upload asks for them once
+ * it has committed, a request for a size not made yet asks for it and is served the original
+ * meanwhile, and a backfill started with the application works through the photos that predate
+ * this. At most {@link #QUEUE} photos wait for the pool; past that a request is dropped rather than
+ * queued — the next one for that photo, or the next start's backfill, asks again — while the
+ * backfill waits its turn.
+ *
+ * <p>A rendition with transparency stays PNG; everything else, which is nearly every photo of a
+ * part, becomes JPEG, a fraction of the size at these dimensions. A photo no larger than a
+ * rendition is its own rendition: the row names the photo's blob and nothing is written.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ImageVariantService {
+
+    /** Scaling is CPU-bound; two threads keep a backfill from starving the requests. */
+    static final int WORKERS = 2;
+    static final int QUEUE = 256;
+    static final int BACKFILL_BATCH = 100;
+
+    private final BlobStore blobStore;
+    private final AttachmentVariantRepository variantRepository;
+
+    private final KeyedWorkQueue queue = new KeyedWorkQueue("image-variants", WORKERS, QUEUE, this::run);
+
+    /**
+     * The stored rendition, or empty when it has not been made yet — in which case it is asked for,
+     * and the caller serves the original this once.
+     */
+    public Optional<Variant> find(String sourceSha256, ImageVariant variant) {
+        Optional<Variant> found = variantRepository.find(sourceSha256, variant);
+        if (found.isEmpty()) {
+            queue.request(sourceSha256);
+        }
+        return found;
+    }
+
+    /** Asks for a photo's renditions once the current transaction has committed; now when there is none. */
+    public void requestAfterCommit(String sourceSha256) {
+        queue.requestAfterCommit(sourceSha256);
+    }
+
+    /** Hands every photo lacking a rendition to the pool, waiting for room as it goes. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startBackfill() {
+        queue.startBackfill(variantRepository::missing, BACKFILL_BATCH,
+                "photos for thumbnail and medium renditions");
+    }
+
+    @PreDestroy
+    void stop() {
+        queue.shutdown();
+    }
+
+    private void run(String sourceSha256) {
+        try {
+            generate(sourceSha256);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not make renditions of photo {}: {}", sourceSha256, e.getMessage());
+        }
+    }
+
+    /** Makes and records whichever renditions of the photo are missing. */
+    void generate(String sourceSha256) throws IOException {
+        BufferedImage source = null;
+        for (ImageVariant variant : ImageVariant.values()) {
+            if (variantRepository.find(sourceSha256, variant).isPresent()) {
+                continue;
+            }
+            if (source == null) {
+                try (InputStream in = blobStore.get(sourceSha256).getInputStream()) {
+                    source = ImageIO.read(in);
+                }
+                if (source == null) {
+                    log.warn("Photo {} is not an image ImageIO can read; no renditions made", sourceSha256);
+                    return;
+                }
+            }
+            variantRepository.save(sourceSha256, variant, render(sourceSha256, source, variant));
+        }
+    }
+
+    private Variant render(String sourceSha256, BufferedImage source, ImageVariant variant) throws IOException {
+        if (Math.max(source.getWidth(), source.getHeight()) <= variant.maxSide()) {
+            return new Variant(sourceSha256, MediaType.IMAGE_PNG_VALUE, source.getWidth(), source.getHeight());
+        }
+        BufferedImage scaled = scale(source, variant.maxSide());
+        boolean opaque = isOpaque(scaled);
+        if (opaque && scaled.getColorModel().hasAlpha()) {
+            // The JPEG writer refuses an alpha channel, even one that is all opaque.
+            BufferedImage rgb = new BufferedImage(scaled.getWidth(), scaled.getHeight(), BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = rgb.createGraphics();
+            g.drawImage(scaled, 0, 0, null);
+            g.dispose();
+            scaled = rgb;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!ImageIO.write(scaled, opaque ? "jpeg" : "png", out)) {
+            throw new IOException("No " + (opaque ? "JPEG" : "PNG") + " writer for the scaled image");
+        }
+        return new Variant(blobStore.put(out.toByteArray()),
+                opaque ? MediaType.IMAGE_JPEG_VALUE : MediaType.IMAGE_PNG_VALUE,
+                scaled.getWidth(), scaled.getHeight());
+    }
+
+    /**
+     * Scales the image down so its longest side is {@code maxSide}, keeping its proportions.
+     * Halves at most per step: a single bilinear pass from several megapixels skips most of the
+     * source pixels and comes out jagged.
+     */
+    static BufferedImage scale(BufferedImage source, int maxSide) {
+        double factor = (double) maxSide / Math.max(source.getWidth(), source.getHeight());
+        int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * factor));
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * factor));
+        int type = source.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        BufferedImage current = source;
+        do {
+            int width = Math.max(targetWidth, current.getWidth() / 2);
+            int height = Math.max(targetHeight, current.getHeight() / 2);
+            BufferedImage next = new BufferedImage(width, height, type);
+            Graphics2D g = next.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(current, 0, 0, width, height, null);
+            g.dispose();
+            current = next;
+        } while (current.getWidth() != targetWidth || current.getHeight() != targetHeight);
+        return current;
+    }
+
+    /** Whether every pixel is fully opaque — a PNG with an alpha channel it never uses is most of them. */
+    static boolean isOpaque(BufferedImage image) {
+        WritableRaster alpha = image.getAlphaRaster();
+        if (alpha == null) {
+            return true;
+        }
+        int[] row = new int[image.getWidth()];
+        for (int y = 0; y < image.getHeight(); y++) {
+            alpha.getSamples(0, y, image.getWidth(), 1, 0, row);
+            for (int a : row) {
+                if (a != 255) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
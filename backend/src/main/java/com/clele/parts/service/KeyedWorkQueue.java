@@ -0,0 +1,177 @@
+package com.clele.parts.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Work derived from stored content and keyed by its SHA-256, done in the background — the photo
+ * renditions ({@link ImageVariantService}) and the datasheet text ({@link DatasheetTextService}).
+ *
+ * <p>A key is worked on by a small pool of daemon threads, never by the caller. At most
+ * {@code capacity} keys wait for the pool; past that a {@link #request} is dropped rather than
+ * queued — the next request for that key, or the next start's backfill, asks again — while a
+ * {@link #startBackfill backfill} waits its turn. A key queued or being worked on is not queued
+ * again.
+ *
+ * <p>The owner {@link #shutdown}s it with the application context: the key being worked on is given
+ * a moment to finish, the rest are dropped and asked for again by the next start's backfill.
+ */
+@Slf4j
+final class KeyedWorkQueue {
+
+    /** Keys from which to resume, in order: up to {@code limit} keys lacking the work, after {@code after}. */
+    @FunctionalInterface
+    interface Backlog {
+        List<String> missing(String after, int limit);
+    }
+
+    /** How long {@link #shutdown} waits for the keys being worked on. */
+    static final long SHUTDOWN_MILLIS = 5_000;
+
+    private final String name;
+    private final Consumer<String> work;
+    private final ThreadPoolExecutor workers;
+    private final Semaphore slots;
+    /** Keys queued or being worked on, so one asked for twice is worked on once. */
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private volatile Thread backfill;
+
+    /**
+     * @param name     names the worker threads and the backfill thread
+     * @param workers  threads working at once
+     * @param capacity keys waiting for a thread, at most
+     * @param work     the work for one key; it reports its own failures, anything it throws is logged
+     */
+    KeyedWorkQueue(String name, int workers, int capacity, Consumer<String> work) {
+        this.name = name;
+        this.work = work;
+        this.workers = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, name);
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.slots = new Semaphore(capacity);
+    }
+
+    /** Asks for the key once the current transaction has committed; now when there is none. */
+    void requestAfterCommit(String key) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            request(key);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                request(key);
+            }
+        });
+    }
+
+    /** Queues the key unless it is queued already or the queue is full. */
+    void request(String key) {
+        if (!pending.add(key)) {
+            return;
+        }
+        if (!slots.tryAcquire()) {
+            pending.remove(key);
+            return;
+        }
+        submit(key);
+    }
+
+    /**
+     * Hands every key the backlog names to the pool, in batches of {@code batch}, waiting for room as
+     * it goes — on a virtual thread of its own, so the application's start does not wait for it.
+     *
+     * @param what what is queued, for the log: "photos for thumbnail and medium renditions"
+     */
+    void startBackfill(Backlog backlog, int batch, String what) {
+        backfill = Thread.ofVirtual().name(name + "-backfill").start(() -> {
+            try {
+                int queued = backfill(backlog, batch);
+                if (queued > 0) {
+                    log.info("Queued {} {}", queued, what);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.error("Backfill of {} stopped; it resumes on the next start", what, e);
+            }
+        });
+    }
+
+    private int backfill(Backlog backlog, int batch) throws InterruptedException {
+        int queued = 0;
+        String after = "";
+        List<String> keys;
+        while (!(keys = backlog.missing(after, batch)).isEmpty()) {
+            for (String key : keys) {
+                if (pending.add(key)) {
+                    slots.acquire();
+                    if (!submit(key)) {
+                        return queued;
+                    }
+                    queued++;
+                }
+            }
+            after = keys.get(keys.size() - 1);
+        }
+        return queued;
+    }
+
+    /** Runs the key on the pool; false, and the key and its slot given back, once the pool is shut down. */
+    private boolean submit(String key) {
+        try {
+            workers.execute(() -> run(key));
+            return true;
+        } catch (RejectedExecutionException e) {
+            pending.remove(key);
+            slots.release();
+            return false;
+        }
+    }
+
+    private void run(String key) {
+        try {
+            work.accept(key);
+        } catch (RuntimeException e) {
+            log.warn("{} failed for {}: {}", name, key, e.getMessage());
+        } finally {
+            pending.remove(key);
+            slots.release();
+        }
+    }
+
+    /**
+     * Stops the backfill and the pool: the keys waiting are dropped, those being worked on get up to
+     * {@link #SHUTDOWN_MILLIS} to finish before they are interrupted.
+     */
+    void shutdown() {
+        Thread running = backfill;
+        if (running != null) {
+            running.interrupt();
+        }
+        workers.shutdown();
+        workers.getQueue().clear();
+        try {
+            if (!workers.awaitTermination(SHUTDOWN_MILLIS, TimeUnit.MILLISECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
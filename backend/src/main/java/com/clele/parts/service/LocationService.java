@@ -1,16 +1,18 @@
 package com.clele.parts.service;
 
 import com.clele.parts.dto.LocationDTO;
-import com.clele.parts.dto.LocationDashboardDTO;
+import com.clele.parts.dto.LocationRelocateRequest;
+import com.clele.parts.dto.LocationRelocateResultDTO;
 import com.clele.parts.dto.LocationStatsDTO;
 import com.clele.parts.dto.LocationRequest;
 import com.clele.parts.dto.LocationTreeDTO;
 import com.clele.parts.model.Location;
 import com.clele.parts.model.Organisation;
-import com.clele.parts.model.StockEntry;
 import com.clele.parts.repository.LocationRepository;
+import com.clele.parts.repository.StockCheckpointRepository;
 import com.clele.parts.repository.StockEntryRepository;
 import com.clele.parts.repository.StockMovementRepository;
+import com.clele.parts.repository.StockReservationRepository;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -33,6 +35,9 @@ public class LocationService {
     private final LocationRepository locationRepository;
     private final StockEntryRepository stockEntryRepository;
     private final StockMovementRepository stockMovementRepository;
+    private final StockCheckpointRepository stockCheckpointRepository;
+    private final StockReservationRepository stockReservationRepository;
+    private final StockMovementService stockMovementService;
     private final CurrentOrganisationService currentOrganisationService;
 
     public List<LocationDTO> findAll() {
@@ -140,23 +145,14 @@ public class LocationService {
             throw new ResponseStatusException(HttpStatus.CONFLICT,
                     "Cannot merge a location that has sub-locations. Merge or move them first.");
         }
-        // Fold each part's on-hand aggregate into the target (find-or-create, carrying price). The
-        // ledger is preserved by re-pointing below, so the aggregate is adjusted directly here
-        // rather than by writing new movements (which would double-count the re-pointed history).
-        for (StockEntry src : stockEntryRepository.findByLocationId(sourceId)) {
-            StockEntry tgt = stockEntryRepository
-                    .findByPartIdAndLocationId(src.getPart().getId(), targetId)
-                    .orElseGet(() -> StockEntry.builder()
-                            .part(src.getPart())
-                            .location(target)
-                            .quantity(0)
-                            .build());
-            tgt.setQuantity(tgt.getQuantity() + src.getQuantity());
-            if (src.getUnitPrice() != null) {
-                tgt.setUnitPrice(src.getUnitPrice());
-            }
-            stockEntryRepository.save(tgt);
-        }
+        // Fold each part's on-hand aggregate into the target (find-or-create, carrying price), in one
+        // statement. The ledger is preserved by re-pointing below, so the aggregate is adjusted
+        // directly here rather than by writing new movements (which would double-count the
+        // re-pointed history). Reserved totals fold along with the quantities, and the reservations
+        // themselves are copied before the source entries are dropped below, which would otherwise
+        // take the source's reservations with them (V55 cascade).
+        stockEntryRepository.foldLocation(sourceId, targetId);
+        stockReservationRepository.copyToLocation(sourceId, targetId);
         // Preserve history: re-point the source's ledger to the target so every movement (with its
         // original type, price, date and author) lives on under the target location. This keeps the
         // invariant Σ(target movements) == target on-hand for each part. The FK to location has no
@@ -164,19 +160,32 @@ public class LocationService {
         // aggregates, then delete the source location.
         stockMovementRepository.repointLocation(target, sourceId);
         stockMovementRepository.repointTargetLocation(target, sourceId);
+        // The stock checkpoints summed the re-pointed history under the source; sum it under the
+        // target instead, or every as-of answer for the target would be short by the source's stock.
+        stockCheckpointRepository.foldLocation(sourceId, targetId);
         stockEntryRepository.deleteByLocationId(sourceId);
         locationRepository.delete(source);
     }
 
-    public long countAll() {
-        return locationRepository.countByOrganisationId(currentOrganisationService.currentId());
-    }
-
-    /** Per-root-location roll-up of the stock in this organisation (for the dashboard). */
-    public List<LocationDashboardDTO> perLocationStats() {
-        return locationRepository.perLocationStats(currentOrganisationService.currentId()).stream()
-                .map(LocationRepository::toDTO)
-                .collect(Collectors.toList());
+    /**
+     * Move all the stock in a location's subtree — the location and everything below it — to
+     * another location, as MOVE movements (see {@link StockMovementService#relocate}). The locations
+     * themselves stay where they are, empty. The target must not be inside the subtree.
+     */
+    @Transactional
+    public LocationRelocateResultDTO relocate(Long sourceId, LocationRelocateRequest request) {
+        Location source = getOrThrow(sourceId);
+        Location target = getOrThrow(request.getTargetId());
+        for (Location l = target; l != null; l = l.getParent()) {
+            if (l.getId().equals(sourceId)) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Cannot relocate stock to a location inside the one it comes from");
+            }
+        }
+        String comments = request.getComments() != null && !request.getComments().isBlank()
+                ? request.getComments().trim() : null;
+        StockMovementService.Relocated relocated = stockMovementService.relocate(source, target, comments);
+        return new LocationRelocateResultDTO(relocated.entries(), relocated.quantity());
     }
 
     /** Stock roll-up for every location in this organisation (for the Locations tree). */
@@ -5,10 +5,12 @@ import com.clele.parts.mail.EmailMessage;
 import com.clele.parts.mail.MailProvider;
 import com.clele.parts.mail.MailProviderRegistry;
 import com.clele.parts.model.OrganisationInvitation;
+import com.clele.parts.repository.StockAlertRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -69,6 +71,35 @@ public class MailService {
                 + invitation.getEmail() + ". Link: " + link);
     }
 
+    /**
+     * Tell an organisation's administrators that a part has dropped below its minimum. One mail per
+     * recipient, so nobody sees who else the organisation has as administrator.
+     *
+     * @return how many of the mails were actually sent
+     */
+    public int sendStockAlert(StockAlertRepository.Alert alert, List<String> recipients) {
+        String subject = "Low stock: " + alert.partNumber() + " in " + alert.locationName();
+        String body = """
+                Hello,
+
+                Stock of %s in %s has dropped to %d, below its minimum of %d.
+
+                You get this mail each time the stock falls below the minimum, not again while it
+                stays there. The minimum itself is set on the stock thresholds screen in %s.
+                """.formatted(alert.partNumber(), alert.locationName(), alert.totalQuantity(),
+                        alert.minimumQuantity(), appProperties.getPublicName());
+
+        AppProperties.Mail config = appProperties.getMail();
+        int sent = 0;
+        for (String to : recipients) {
+            if (send(EmailMessage.plain(config.getFrom(), config.getFromName(), to, subject, body),
+                    "stock alert " + alert.id() + " for " + to)) {
+                sent++;
+            }
+        }
+        return sent;
+    }
+
     /**
      * Deliver through the active provider, or log the message when there is none.
      *
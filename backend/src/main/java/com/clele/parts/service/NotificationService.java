@@ -0,0 +1,151 @@
+package com.clele.parts.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The in-app notification streams: one server-sent-event stream per open browser tab, grouped by
+ * the organisation the tab was in when it connected, and whatever is published for an organisation
+ * goes to each of its streams.
+ *
+ * <p>Streams live in this instance's memory only. Whatever publishes must therefore run on every
+ * instance — which is why alerts and stock changes come in through
+ * {@link DatabaseNotificationListener}, whose notifications reach all of them. A stream times out
+ * after {@link #TIMEOUT_MILLIS}, and the browser's {@code EventSource} then reconnects by itself. A
+ * comment line every {@link #HEARTBEAT_MILLIS} keeps proxies from closing an idle stream, and finds
+ * out about the ones whose client has gone away.
+ *
+ * <p>An open stream holds no request thread: the servlet request is in async mode until the stream
+ * ends. Writing is the part that can block — a client on a slow link stops reading, its socket
+ * buffer fills, and the write waits. So publishing only queues the event; each stream's queue is
+ * written out on a virtual thread of its own, and a client that falls {@link #QUEUE_CAPACITY}
+ * events behind is disconnected rather than buffered for without end. Its {@code EventSource}
+ * reconnects, and the client refetches what it shows — it could not trust a stream with gaps.
+ *
+ * <p>On shutdown every stream is completed, so its browser reconnects to an instance still running,
+ * and the writers get {@link #SHUTDOWN_MILLIS} to finish; what is published after that is dropped.
+ */
+@Slf4j
+@Service
+public class NotificationService {
+
+    static final long TIMEOUT_MILLIS = 30 * 60 * 1000L;
+    static final long HEARTBEAT_MILLIS = 25_000;
+    static final int QUEUE_CAPACITY = 256;
+    static final long SHUTDOWN_MILLIS = 5_000;
+
+    private final Map<Long, Set<Stream>> streams = new ConcurrentHashMap<>();
+    private final ExecutorService writers = Executors.newVirtualThreadPerTaskExecutor();
+
+    /** One client's stream: its emitter and the events not yet written to it. */
+    private final class Stream {
+        final SseEmitter emitter = new SseEmitter(TIMEOUT_MILLIS);
+        final Queue<SseEmitter.SseEventBuilder> pending = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        final AtomicBoolean writing = new AtomicBoolean();
+        Set<Stream> owner;
+
+        void offer(SseEmitter.SseEventBuilder event) {
+            if (!pending.offer(event)) {
+                log.info("Notification stream fell {} events behind; closing it", QUEUE_CAPACITY);
+                close();
+                return;
+            }
+            if (writing.compareAndSet(false, true)) {
+                write();
+            }
+        }
+
+        private void write() {
+            try {
+                writers.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // Shutting down; the stream has been completed already.
+                writing.set(false);
+            }
+        }
+
+        private void drain() {
+            try {
+                SseEmitter.SseEventBuilder event;
+                while ((event = pending.poll()) != null) {
+                    emitter.send(event);
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Dropped a notification stream: {}", e.getMessage());
+                close();
+                return;
+            } finally {
+                writing.set(false);
+            }
+            // An event offered after the last poll but before the flag dropped would wait for the
+            // next one; pick it up now.
+            if (!pending.isEmpty() && writing.compareAndSet(false, true)) {
+                write();
+            }
+        }
+
+        void close() {
+            owner.remove(this);
+            pending.clear();
+            emitter.complete();
+        }
+    }
+
+    /** A new stream for one of the organisation's browser tabs. */
+    public SseEmitter open(Long organisationId) {
+        Stream stream = new Stream();
+        stream.owner = streams.computeIfAbsent(organisationId, id -> ConcurrentHashMap.newKeySet());
+        stream.owner.add(stream);
+        Runnable remove = () -> stream.owner.remove(stream);
+        stream.emitter.onCompletion(remove);
+        stream.emitter.onTimeout(remove);
+        stream.emitter.onError(e -> remove.run());
+        return stream.emitter;
+    }
+
+    /** Sends {@code data} (as JSON) to every open stream of the organisation, as event {@code name}. */
+    public void publish(Long organisationId, String name, Object data) {
+        Set<Stream> mine = streams.get(organisationId);
+        if (mine == null) {
+            return;
+        }
+        for (Stream stream : mine) {
+            stream.offer(SseEmitter.event().name(name).data(data));
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        writers.shutdown();
+        streams.values().forEach(mine -> mine.forEach(Stream::close));
+        try {
+            if (!writers.awaitTermination(SHUTDOWN_MILLIS, TimeUnit.MILLISECONDS)) {
+                writers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            writers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Scheduled(fixedDelay = HEARTBEAT_MILLIS)
+    public void heartbeat() {
+        streams.values().forEach(mine -> mine.forEach(
+                stream -> stream.offer(SseEmitter.event().comment("keep-alive"))));
+    }
+}
@@ -2,24 +2,29 @@ package com.clele.parts.service;
 
 import com.clele.parts.dto.PartAttachmentDTO;
 import com.clele.parts.model.AttachmentType;
+import com.clele.parts.model.ImageVariant;
 import com.clele.parts.model.Organisation;
 import com.clele.parts.model.Part;
 import com.clele.parts.model.PartAttachment;
 import com.clele.parts.model.PartAttachmentLink;
+import com.clele.parts.repository.AttachmentBlobRepository;
+import com.clele.parts.repository.AttachmentVariantRepository.Variant;
 import com.clele.parts.repository.PartAttachmentLinkRepository;
 import com.clele.parts.repository.PartAttachmentRepository;
 import com.clele.parts.repository.PartKitTemplateAttachmentRepository;
 import com.clele.parts.repository.PartRepository;
+import com.clele.parts.storage.BlobStore;
+import com.clele.parts.storage.StagedBlob;
 import com.clele.parts.util.PdfBytes;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.http.HttpEntity;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.client.RestTemplate;
@@ -31,22 +36,33 @@ import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 /**
  * Photos, datasheets and files held against parts.
  *
- * <p><b>Attachments are shared.</b> The bytes live in one {@code part_attachment} row and each part
- * that shows them holds a {@code part_attachment_link} — so the thirty values of a resistor kit can
- * carry the identical photo without thirty copies of it. Every write goes through
+ * <p><b>Attachments are shared.</b> The content is described by one {@code part_attachment} row and
+ * each part that shows it holds a {@code part_attachment_link} — so the thirty values of a resistor
+ * kit can carry the identical photo without thirty copies of it. Every write goes through
  * {@link #store(Long, byte[], String, String, AttachmentType)}, which is the only place that decides
- * whether bytes are new: content already held for the organisation with the same MD5 and type is
+ * whether bytes are new: content already held for the organisation with the same SHA-256 and type is
  * linked rather than stored again.
+ *
+ * <p><b>The bytes are not in the database.</b> They are in the {@link BlobStore}, named by their
+ * SHA-256, and the row holds the hash. Whatever deletes rows here hands their hashes to the
+ * {@link AttachmentBlobCollector}, which removes the blobs once the deletion has committed and no
+ * other row names them.
  */
 @Slf4j
 @Service
@@ -60,6 +76,11 @@ public class PartAttachmentService {
     private final PartAttachmentLinkRepository partAttachmentLinkRepository;
     private final PartKitTemplateAttachmentRepository partKitTemplateAttachmentRepository;
     private final PartRepository partRepository;
+    private final BlobStore blobStore;
+    private final AttachmentBlobRepository blobRepository;
+    private final AttachmentBlobCollector blobCollector;
+    private final ImageVariantService imageVariantService;
+    private final DatasheetTextService datasheetTextService;
 
     /**
      * The Apache HttpClient-backed template, <b>not</b> the default one.
@@ -82,16 +103,31 @@ public class PartAttachmentService {
                                  PartAttachmentLinkRepository partAttachmentLinkRepository,
                                  PartKitTemplateAttachmentRepository partKitTemplateAttachmentRepository,
                                  PartRepository partRepository,
+                                 BlobStore blobStore,
+                                 AttachmentBlobRepository blobRepository,
+                                 AttachmentBlobCollector blobCollector,
+                                 ImageVariantService imageVariantService,
+                                 DatasheetTextService datasheetTextService,
                                  @Qualifier("datasheetRestTemplate") RestTemplate restTemplate) {
         this.partAttachmentRepository = partAttachmentRepository;
         this.partAttachmentLinkRepository = partAttachmentLinkRepository;
         this.partKitTemplateAttachmentRepository = partKitTemplateAttachmentRepository;
         this.partRepository = partRepository;
+        this.blobStore = blobStore;
+        this.blobRepository = blobRepository;
+        this.blobCollector = blobCollector;
+        this.imageVariantService = imageVariantService;
+        this.datasheetTextService = datasheetTextService;
         this.restTemplate = restTemplate;
     }
 
-    /** Raw bytes plus the headers needed to serve them. */
-    public record AttachmentContent(byte[] data, String contentType, String filename) {}
+    /**
+     * The content, to be streamed, plus the headers needed to serve it. {@code etag} is a hash of
+     * exactly these bytes, so it is a strong validator. {@code standIn} is the original served for a
+     * rendition not made yet, which must not be cached as that rendition.
+     */
+    public record AttachmentContent(Resource content, String contentType, String filename, String etag,
+                                    boolean standIn) {}
 
     public List<PartAttachmentDTO> list(Long partId, AttachmentType type) {
         List<PartAttachmentLink> links = (type == null)
@@ -117,10 +153,66 @@ public class PartAttachmentService {
         return counts;
     }
 
-    public AttachmentContent getContent(Long partId, Long attachmentId) {
+    /**
+     * An attachment's content, or with {@code size} set, that rendition of a photo. A size is
+     * ignored for anything but a photo; for a photo whose rendition has not been made yet — or
+     * whose content is still waiting to move to the blob store — the original stands in.
+     */
+    public AttachmentContent getContent(Long partId, Long attachmentId, ImageVariant size) {
         PartAttachment a = partAttachmentRepository.findByIdAndPartId(attachmentId, partId)
                 .orElseThrow(() -> new EntityNotFoundException("Attachment not found: " + attachmentId));
-        return new AttachmentContent(a.getData(), a.getContentType(), a.getFilename());
+        if (size == null || a.getType() != AttachmentType.PHOTO) {
+            return contentOf(a);
+        }
+        Optional<Variant> variant = a.getSha256() == null ? Optional.empty()
+                : imageVariantService.find(a.getSha256(), size);
+        return variant
+                .map(v -> new AttachmentContent(blobStore.get(v.sha256()), v.contentType(), null, v.sha256(), false))
+                .orElseGet(() -> {
+                    AttachmentContent original = contentOf(a);
+                    return new AttachmentContent(original.content(), original.contentType(), original.filename(),
+                            original.etag(), true);
+                });
+    }
+
+    /**
+     * An attachment's content with what serving it needs. The ETag is the blob's SHA-256, or the MD5
+     * of a row whose content has not moved to the blob store yet — either names these exact bytes.
+     */
+    public AttachmentContent contentOf(PartAttachment a) {
+        return new AttachmentContent(content(a), a.getContentType(), a.getFilename(),
+                a.getSha256() != null ? a.getSha256() : a.getMd5Hash(), false);
+    }
+
+    /**
+     * An attachment's content, for streaming: from the blob store, or from a row not yet moved
+     * there. With {@link #bytes}, the only way to the content — the entity has none.
+     */
+    public Resource content(PartAttachment a) {
+        if (a.getSha256() == null) {
+            Optional<byte[]> legacy = blobRepository.legacyData(a.getId());
+            if (legacy.isPresent()) {
+                return new ByteArrayResource(legacy.get());
+            }
+        }
+        return blobStore.get(hashOf(a));
+    }
+
+    /** An attachment's content in full, for the callers that parse it. */
+    public byte[] bytes(PartAttachment a) {
+        if (a.getSha256() == null) {
+            Optional<byte[]> legacy = blobRepository.legacyData(a.getId());
+            if (legacy.isPresent()) {
+                return legacy.get();
+            }
+        }
+        return blobStore.read(hashOf(a));
+    }
+
+    /** The blob's name — read again if the migration moved the content after the entity was loaded. */
+    private String hashOf(PartAttachment a) {
+        return a.getSha256() != null ? a.getSha256() : blobRepository.sha256(a.getId())
+                .orElseThrow(() -> new IllegalStateException("Attachment " + a.getId() + " has no content"));
     }
 
     @Transactional
@@ -131,18 +223,15 @@ public class PartAttachmentService {
             return store(partId, convertToPng(file), PNG.toString(), null, type);
         }
 
-        byte[] bytes;
-        try {
-            bytes = file.getBytes();
+        if (file.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Empty file");
+        }
+        try (InputStream in = file.getInputStream();
+             Spooled spooled = spool(in, orDefault(file.getContentType(), MediaType.APPLICATION_OCTET_STREAM_VALUE))) {
+            return store(partId, spooled, file.getOriginalFilename(), type);
         } catch (IOException e) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Failed to read file: " + e.getMessage());
         }
-        if (bytes.length == 0) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Empty file");
-        }
-        return store(partId, bytes,
-                orDefault(file.getContentType(), MediaType.APPLICATION_OCTET_STREAM_VALUE),
-                file.getOriginalFilename(), type);
     }
 
     @Transactional
@@ -153,27 +242,43 @@ public class PartAttachmentService {
             return store(partId, downloadAndConvertToPng(url), PNG.toString(), null, type);
         }
 
-        Downloaded d = download(url);
-        // A datasheet must actually be a PDF. Vendors answer a moved or retired document with
-        // HTTP 200 and an HTML landing page rather than a 404, and the URL ending in .pdf says
-        // nothing about what came back — stored unchecked, that page becomes a "datasheet" that
-        // only reveals itself when somebody opens it. Only DATASHEET is checked; a general
-        // ATTACHMENT is whatever the user says it is.
-        if (type == AttachmentType.DATASHEET && !PdfBytes.looksLikePdf(d.bytes())) {
+        try (Spooled d = download(url)) {
+            checkDatasheet(url, d, type);
+            return store(partId, d, filenameFromUrl(url), type);
+        }
+    }
+
+    /**
+     * A datasheet must actually be a PDF. Vendors answer a moved or retired document with
+     * HTTP 200 and an HTML landing page rather than a 404, and the URL ending in .pdf says
+     * nothing about what came back — stored unchecked, that page becomes a "datasheet" that only
+     * reveals itself when somebody opens it. Only DATASHEET is checked; a general ATTACHMENT is
+     * whatever the user says it is.
+     */
+    private static void checkDatasheet(String url, Spooled d, AttachmentType type) {
+        if (type != AttachmentType.DATASHEET) {
+            return;
+        }
+        boolean pdf;
+        try (InputStream in = d.blob().content().getInputStream()) {
+            pdf = PdfBytes.looksLikePdf(PdfBytes.head(in));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (!pdf) {
             log.warn("Refusing datasheet from {}: not a PDF (content-type {}, {} bytes)",
-                    url, d.contentType(), d.bytes().length);
+                    url, d.contentType(), d.blob().size());
             throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
                     "That URL did not return a PDF — the vendor most likely served a web page "
                             + "instead of the document. Open it in a browser to check.");
         }
-        return store(partId, d.bytes(), d.contentType(), filenameFromUrl(url), type);
     }
 
     /**
      * Attach content to a part — the single write path, and the only place that decides whether
      * bytes are new.
      *
-     * <p>Content the organisation already holds with the same MD5 and type is <b>linked, not
+     * <p>Content the organisation already holds with the same SHA-256 and type is <b>linked, not
      * stored again</b>: a photo shared by every value of a resistor kit exists once. A hit keeps
      * its original {@code description}, {@code filename} and content type, since those record where
      * the file first came from and the second part adds nothing to that.
@@ -185,8 +290,15 @@ public class PartAttachmentService {
     @Transactional
     public PartAttachmentDTO store(Long partId, byte[] data, String contentType, String filename,
                                    AttachmentType type) {
+        try (Spooled spooled = spool(new ByteArrayInputStream(data), contentType)) {
+            return store(partId, spooled, filename, type);
+        }
+    }
+
+    /** {@link #store(Long, byte[], String, String, AttachmentType)}, for content already spooled. */
+    private PartAttachmentDTO store(Long partId, Spooled content, String filename, AttachmentType type) {
         Part part = requirePart(partId);
-        PartAttachment held = findIdentical(part.getOrganisation().getId(), data, type);
+        PartAttachment held = findIdentical(part.getOrganisation().getId(), content.blob().hash(), type);
 
         if (held != null) {
             // Already on this part: nothing to add, and re-linking would violate the unique key.
@@ -200,8 +312,7 @@ public class PartAttachmentService {
         }
 
         PartAttachment attachment = (held != null) ? held
-                : createContent(part.getOrganisation(), data, contentType, filename, type,
-                        part.getPartNumber());
+                : createContent(part.getOrganisation(), content, filename, type, part.getPartNumber());
         return toDTO(link(part, attachment), usageOf(attachment));
     }
 
@@ -217,9 +328,11 @@ public class PartAttachmentService {
     @Transactional
     public PartAttachment storeContent(Organisation organisation, byte[] data, String contentType,
                                        String filename, AttachmentType type, String description) {
-        PartAttachment held = findIdentical(organisation.getId(), data, type);
-        return held != null ? held
-                : createContent(organisation, data, contentType, filename, type, description);
+        try (Spooled spooled = spool(new ByteArrayInputStream(data), contentType)) {
+            PartAttachment held = findIdentical(organisation.getId(), spooled.blob().hash(), type);
+            return held != null ? held
+                    : createContent(organisation, spooled, filename, type, description);
+        }
     }
 
     /**
@@ -237,29 +350,61 @@ public class PartAttachmentService {
         link(part, attachment);
     }
 
-    /** The bytes this organisation already holds, or null. */
-    private PartAttachment findIdentical(Long organisationId, byte[] data, AttachmentType type) {
-        // The hash narrows it down; the bytes decide. An MD5 collision is unlikely and silently
-        // serving another part's document would be the kind of wrong that never gets noticed.
+    /**
+     * Link content to a part created in this same transaction — a kit's pictures onto each part it
+     * generates. A new part has no links yet, so there is nothing to look up first: no existing link
+     * to skip, no photos to count, and display order starts at 0 per type. {@link #link(Long,
+     * PartAttachment)} spends several queries an image finding that out.
+     */
+    @Transactional
+    public void linkToNewPart(Part part, List<PartAttachment> attachments) {
+        Map<AttachmentType, Integer> next = new EnumMap<>(AttachmentType.class);
+        List<PartAttachmentLink> links = new ArrayList<>(attachments.size());
+        for (PartAttachment attachment : attachments) {
+            int order = next.merge(attachment.getType(), 1, Integer::sum) - 1;
+            if (attachment.getType() == AttachmentType.PHOTO && order >= MAX_PHOTOS) {
+                throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                        "Maximum of " + MAX_PHOTOS + " photos per part");
+            }
+            links.add(PartAttachmentLink.builder().part(part).attachment(attachment).displayOrder(order).build());
+        }
+        partAttachmentLinkRepository.saveAll(links);
+    }
+
+    /**
+     * The content this organisation already holds under this hash, or null. A SHA-256 match is
+     * taken as the bytes matching, with no need to read the stored copy back to compare. Rows not
+     * yet moved to the blob store have no hash and are not found; that costs at most a duplicate.
+     */
+    private PartAttachment findIdentical(Long organisationId, String sha256, AttachmentType type) {
         return partAttachmentRepository
-                .findByOrganisationIdAndMd5HashAndType(organisationId, md5(data), type)
-                .stream()
-                .filter(a -> Arrays.equals(a.getData(), data))
-                .findFirst()
+                .findFirstByOrganisationIdAndSha256AndTypeOrderById(organisationId, sha256, type)
                 .orElse(null);
     }
 
-    private PartAttachment createContent(Organisation organisation, byte[] data, String contentType,
-                                         String filename, AttachmentType type, String description) {
-        return partAttachmentRepository.save(PartAttachment.builder()
+    /**
+     * The blob is written first, so a committed row always has its content behind it. A photo's
+     * renditions, and a datasheet's text, are asked for once the row has committed.
+     */
+    private PartAttachment createContent(Organisation organisation, Spooled content, String filename,
+                                         AttachmentType type, String description) {
+        String sha256 = content.blob().commit();
+        PartAttachment saved = partAttachmentRepository.save(PartAttachment.builder()
                 .organisation(organisation)
                 .type(type)
-                .data(data)
-                .contentType(contentType)
+                .sha256(sha256)
+                .sizeBytes(content.blob().size())
+                .contentType(content.contentType())
                 .filename(filename)
                 .description(truncate(description, 255))
-                .md5Hash(md5(data))
+                .md5Hash(content.md5())
                 .build());
+        if (type == AttachmentType.PHOTO) {
+            imageVariantService.requestAfterCommit(sha256);
+        } else if (type == AttachmentType.DATASHEET) {
+            datasheetTextService.requestAfterCommit(sha256);
+        }
+        return saved;
     }
 
     private PartAttachmentLink link(Part part, PartAttachment attachment) {
@@ -313,7 +458,7 @@ public class PartAttachmentService {
     public void deleteAllForPart(Long partId) {
         partAttachmentLinkRepository.deleteByPartId(partId);
         partAttachmentLinkRepository.flush();
-        partAttachmentRepository.deleteOrphans();
+        deleteOrphans();
     }
 
     /**
@@ -326,13 +471,22 @@ public class PartAttachmentService {
         if (partAttachmentLinkRepository.countByAttachmentId(attachment.getId()) == 0
                 && partKitTemplateAttachmentRepository.countByAttachmentId(attachment.getId()) == 0) {
             partAttachmentRepository.delete(attachment);
+            if (attachment.getSha256() != null) {
+                blobCollector.collectAfterCommit(List.of(attachment.getSha256()));
+            }
         }
     }
 
-    /** Drop content nothing links to any more; returns how many rows went. */
+    /**
+     * Drop content nothing links to any more; returns how many rows went. Their blobs go after the
+     * commit, where no other row names them.
+     */
     @Transactional
     public int deleteOrphans() {
-        return partAttachmentRepository.deleteOrphans();
+        List<String> hashes = partAttachmentRepository.findOrphanHashes();
+        int deleted = partAttachmentRepository.deleteOrphans();
+        blobCollector.collectAfterCommit(hashes);
+        return deleted;
     }
 
     private Part requirePart(Long partId) {
@@ -351,28 +505,43 @@ public class PartAttachmentService {
         }
     }
 
-    /** Hex MD5 of the stored bytes — the fingerprint an identical upload is recognised by. */
-    private static String md5(byte[] data) {
+    /**
+     * Content in the blob store's staging area, its SHA-256 taken on the way in, and its MD5 — the
+     * fingerprint the API reports — taken in the same pass. Closing it discards the staged copy
+     * unless it was committed.
+     */
+    private record Spooled(StagedBlob blob, String md5, String contentType) implements AutoCloseable {
+
+        @Override
+        public void close() {
+            blob.close();
+        }
+    }
+
+    /**
+     * Streams content to the staging area. Every write comes through here, so no upload or download
+     * is ever held in memory whole: a 40 MB datasheet costs a 40 MB temporary file and a buffer.
+     */
+    private Spooled spool(InputStream in, String contentType) {
+        MessageDigest md5;
         try {
-            byte[] digest = MessageDigest.getInstance("MD5").digest(data);
-            StringBuilder sb = new StringBuilder(32);
-            for (byte b : digest) {
-                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
-            }
-            return sb.toString();
+            md5 = MessageDigest.getInstance("MD5");
         } catch (NoSuchAlgorithmException e) {
             throw new IllegalStateException("MD5 unavailable", e);
         }
+        StagedBlob blob = blobStore.stage(new DigestInputStream(in, md5));
+        return new Spooled(blob, HexFormat.of().formatHex(md5.digest()), contentType);
     }
 
     private static String truncate(String value, int max) {
         return (value != null && value.length() > max) ? value.substring(0, max) : value;
     }
 
-    private record Downloaded(byte[] bytes, String contentType) {}
-
-    /** Download raw bytes from an external URL (SSRF-guarded), preserving the response content-type. */
-    private Downloaded download(String url) {
+    /**
+     * Download from an external URL (SSRF-guarded) straight into the staging area, preserving the
+     * response content-type. The body is streamed, never buffered whole.
+     */
+    private Spooled download(String url) {
         log.info("Downloading attachment from URL: {}", url);
         var uri = com.clele.parts.util.UrlSafety.validateExternalHttpUrl(url);
         try {
@@ -381,14 +550,20 @@ public class PartAttachmentService {
             headers.set("Accept", "*/*");
             headers.set("Accept-Language", "en-US,en;q=0.5");
             headers.set("Referer", uri.getScheme() + "://" + uri.getHost() + "/");
-            HttpEntity<Void> entity = new HttpEntity<>(headers);
-            ResponseEntity<byte[]> response = restTemplate.exchange(url, HttpMethod.GET, entity, byte[].class);
-            byte[] body = response.getBody();
-            if (body == null || body.length == 0) {
+            Spooled spooled = restTemplate.execute(url, HttpMethod.GET,
+                    request -> request.getHeaders().putAll(headers),
+                    response -> {
+                        MediaType ct = response.getHeaders().getContentType();
+                        return spool(response.getBody(),
+                                ct != null ? ct.toString() : MediaType.APPLICATION_OCTET_STREAM_VALUE);
+                    });
+            if (spooled == null || spooled.blob().size() == 0) {
+                if (spooled != null) {
+                    spooled.close();
+                }
                 throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "Empty response from URL");
             }
-            MediaType ct = response.getHeaders().getContentType();
-            return new Downloaded(body, ct != null ? ct.toString() : MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            return spooled;
         } catch (ResponseStatusException e) {
             throw e;
         } catch (org.springframework.web.client.HttpStatusCodeException e) {
@@ -407,9 +582,8 @@ public class PartAttachmentService {
      * the same route without a part to hang them on.
      */
     public byte[] downloadAndConvertToPng(String url) {
-        Downloaded d = download(url);
-        try {
-            BufferedImage image = ImageIO.read(new ByteArrayInputStream(d.bytes()));
+        try (Spooled d = download(url); InputStream in = d.blob().content().getInputStream()) {
+            BufferedImage image = ImageIO.read(in);
             if (image == null) {
                 throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "URL did not return a valid image");
             }
@@ -14,6 +14,8 @@ import com.clele.parts.repository.PartRepository;
 import com.clele.parts.repository.ProjectBomLineRepository;
 import com.clele.parts.repository.ProjectPartRepository;
 import com.clele.parts.repository.ProjectStockRepository;
+import com.clele.parts.repository.StockCheckpointRepository;
+import com.clele.parts.repository.StockValuationRepository;
 import com.clele.parts.repository.StockEntryRepository;
 import com.clele.parts.repository.StockMovementRepository;
 import lombok.RequiredArgsConstructor;
@@ -24,6 +26,7 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
@@ -77,6 +80,8 @@ public class PartKitGenerationService {
     private final PartRepository partRepository;
     private final StockEntryRepository stockEntryRepository;
     private final StockMovementRepository stockMovementRepository;
+    private final StockCheckpointRepository stockCheckpointRepository;
+    private final StockValuationRepository stockValuationRepository;
     private final ProjectPartRepository projectPartRepository;
     private final ProjectStockRepository projectStockRepository;
     private final ProjectBomLineRepository projectBomLineRepository;
@@ -123,8 +128,12 @@ public class PartKitGenerationService {
                         Long movementId, Long locationId, Integer quantityBefore,
                         BigDecimal unitPriceBefore) {}
         List<Reversal> reversals = new ArrayList<>();
+        LocalDateTime firstMovedAt = null;
         for (PartKitGenerationItem item : generation.getItems()) {
             StockMovement movement = item.getMovement();
+            if (movement != null && (firstMovedAt == null || movement.getMovedAt().isBefore(firstMovedAt))) {
+                firstMovedAt = movement.getMovedAt();
+            }
             reversals.add(new Reversal(
                     item.getPart() == null ? null : item.getPart().getId(),
                     item.getPart() == null ? null : item.getPart().getPartNumber(),
@@ -140,6 +149,12 @@ public class PartKitGenerationService {
         // clearing those pointers by hand only to delete the rows a moment later is work for nothing.
         generationRepository.delete(generation);
         generationRepository.flush();
+        if (firstMovedAt != null) {
+            // A stock checkpoint taken since the run, or a valuation, counted the movements about to
+            // be deleted.
+            stockCheckpointRepository.discardAfter(currentOrganisationService.currentId(), firstMovedAt);
+            stockValuationRepository.discardAfter(currentOrganisationService.currentId(), firstMovedAt);
+        }
 
         int stockRemoved = 0;
         int partsDeleted = 0;
@@ -163,11 +178,9 @@ public class PartKitGenerationService {
                         // undoing it removes the row rather than leaving a phantom zero behind.
                         stockEntryRepository.delete(entry);
                     } else {
-                        entry.setQuantity(remaining);
                         // The weighted-average cost the add recalculated is not invertible, which is
                         // why what it replaced was recorded at the time.
-                        entry.setUnitPrice(r.unitPriceBefore());
-                        stockEntryRepository.save(entry);
+                        stockEntryRepository.revert(entry.getId(), r.quantity(), r.unitPriceBefore());
                     }
                 }
             }
@@ -59,7 +59,7 @@ public class PartKitTemplateImageService {
                 .findByTemplateIdAndAttachmentId(templateId, attachmentId)
                 .orElseThrow(() -> new EntityNotFoundException("Image not found: " + attachmentId))
                 .getAttachment();
-        return new AttachmentContent(a.getData(), a.getContentType(), a.getFilename());
+        return partAttachmentService.contentOf(a);
     }
 
     @Transactional
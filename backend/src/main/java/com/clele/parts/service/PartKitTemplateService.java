@@ -199,9 +199,7 @@ public class PartKitTemplateService {
                 // canonical spec name (and its aliases) before they are stored.
                 partSpecValueService.sync(part, specDefinitionService.canonicalizeKeys(
                         expandedSpecs(template, v)));
-                for (PartAttachment image : images) {
-                    partAttachmentService.link(part.getId(), image);
-                }
+                partAttachmentService.linkToNewPart(part, images);
                 created++;
             } else {
                 part = existing.get();
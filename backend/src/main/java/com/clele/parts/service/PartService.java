@@ -85,7 +85,7 @@ public class PartService {
                             .containsAll(wanted))
                     .collect(Collectors.toList());
         }
-        Map<Long, Long> stockByPart = stockByOrganisation(parts);
+        Map<Long, StockTotals> stockByPart = stockByOrganisation(parts);
         Map<Long, Long> thumbnailByPart = thumbnailsFor(parts);
         Map<Long, Map<String, Object>> specsByPart = specsFor(parts);
         return parts.stream()
@@ -194,17 +194,23 @@ public class PartService {
                 parts.stream().map(Part::getId).collect(Collectors.toList()));
     }
 
+    /** A part's on-hand total and how much of it projects have reserved. */
+    private record StockTotals(long onHand, long reserved) {
+        static final StockTotals NONE = new StockTotals(0, 0);
+    }
+
     /**
-     * On-hand totals for the listed parts across the whole current organisation. Locations are
-     * shared by every member, so this is an organisation figure, not a per-user one.
+     * On-hand and reserved totals for the listed parts across the whole current organisation.
+     * Locations are shared by every member, so this is an organisation figure, not a per-user one.
      */
-    private Map<Long, Long> stockByOrganisation(List<Part> parts) {
+    private Map<Long, StockTotals> stockByOrganisation(List<Part> parts) {
         if (parts.isEmpty()) return Map.of();
         Long organisationId = currentOrganisationService.currentId();
         List<Long> ids = parts.stream().map(Part::getId).collect(Collectors.toList());
-        Map<Long, Long> result = new HashMap<>();
+        Map<Long, StockTotals> result = new HashMap<>();
         stockEntryRepository.sumQuantityByPartIdsAndOrganisationId(ids, organisationId)
-                .forEach(row -> result.put((Long) row[0], (Long) row[1]));
+                .forEach(row -> result.put((Long) row[0],
+                        new StockTotals(((Number) row[1]).longValue(), ((Number) row[2]).longValue())));
         return result;
     }
 
@@ -218,7 +224,7 @@ public class PartService {
         if (parts.isEmpty()) {
             return List.of();
         }
-        Map<Long, Long> stockByPart = stockByOrganisation(parts);
+        Map<Long, StockTotals> stockByPart = stockByOrganisation(parts);
         Map<Long, Long> thumbnailByPart = thumbnailsFor(parts);
         Map<Long, Map<String, Object>> specsByPart = specsFor(parts);
         return parts.stream()
@@ -226,11 +232,13 @@ public class PartService {
                 .collect(Collectors.toList());
     }
 
-    private PartDTO toDTOWithStock(Part part, Map<Long, Long> stockByPart,
+    private PartDTO toDTOWithStock(Part part, Map<Long, StockTotals> stockByPart,
                                    Map<Long, Long> thumbnailByPart,
                                    Map<Long, Map<String, Object>> specsByPart) {
         PartDTO dto = toDTO(part, specsByPart.getOrDefault(part.getId(), Map.of()));
-        dto.setTotalQuantity(stockByPart.getOrDefault(part.getId(), 0L));
+        StockTotals totals = stockByPart.getOrDefault(part.getId(), StockTotals.NONE);
+        dto.setTotalQuantity(totals.onHand());
+        dto.setReservedQuantity(totals.reserved());
         dto.setThumbnailId(thumbnailByPart.get(part.getId()));
         return dto;
     }
@@ -258,7 +266,7 @@ public class PartService {
             return List.of();
         }
         List<Part> parts = partRepository.fuzzyByPartNumber(currentOrganisationService.currentId(), term);
-        Map<Long, Long> stockByPart = stockByOrganisation(parts);
+        Map<Long, StockTotals> stockByPart = stockByOrganisation(parts);
         Map<Long, Long> thumbnailByPart = thumbnailsFor(parts);
         Map<Long, Map<String, Object>> specsByPart = specsFor(parts);
         return parts.stream()
@@ -325,8 +333,8 @@ public class PartService {
                 .findByIdAndOrganisationId(request.getLocationId(), currentOrganisationService.currentId())
                 .orElseThrow(() -> new EntityNotFoundException("Location not found: " + request.getLocationId()));
 
-        stockEntryRepository.save(stockMovementService.apply(part, location, request.getQuantity(),
-                request.getUnitPrice(), null, MovementType.INITIAL));
+        stockMovementService.apply(part, location, request.getQuantity(),
+                request.getUnitPrice(), null, MovementType.INITIAL);
         currentUserService.rememberLastLocation(location);
     }
 
@@ -429,20 +437,6 @@ public class PartService {
         return deleted;
     }
 
-    public long countAll() {
-        return partRepository.countByOrganisationId(currentOrganisationService.currentId());
-    }
-
-    /**
-     * Parts in the current organisation carrying fewer than
-     * {@link PartRepository#SPARSE_SPEC_THRESHOLD} spec keys — the dashboard's "missing specs"
-     * figure. Clicking that tile lands on the Parts screen with the same filter applied, so the two
-     * numbers must agree.
-     */
-    public long countSparseSpecs() {
-        return partRepository.countSparseSpecs(currentOrganisationService.currentId());
-    }
-
     /**
      * Save the part and mirror its specs into the typed {@code part_spec_value} rows.
      *
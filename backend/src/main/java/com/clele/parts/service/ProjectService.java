@@ -12,7 +12,9 @@ import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -26,15 +28,18 @@ public class ProjectService {
     private final PartRepository partRepository;
     private final LocationRepository locationRepository;
     private final StockEntryRepository stockEntryRepository;
+    private final StockReservationRepository stockReservationRepository;
     private final StockMovementService stockMovementService;
     private final CurrentUserService currentUserService;
     private final CurrentOrganisationService currentOrganisationService;
 
     public List<ProjectDTO> findAll() {
         AppUser me = currentUserService.current();
-        return projectRepository.findByOrganisationIdAndOwnerIdOrderByUpdatedAtDesc(
-                        currentOrganisationService.currentId(), me.getId()).stream()
-                .map(this::toSummaryDTO)
+        List<Project> projects = projectRepository.findByOrganisationIdAndOwnerIdOrderByUpdatedAtDesc(
+                currentOrganisationService.currentId(), me.getId());
+        Map<Long, Integer> bomCounts = bomCounts(projects);
+        return projects.stream()
+                .map(p -> toSummaryDTO(p, bomCounts.getOrDefault(p.getId(), 0)))
                 .collect(Collectors.toList());
     }
 
@@ -42,7 +47,8 @@ public class ProjectService {
         Project project = requireOwnProject(id);
         List<ProjectPart> bom = projectPartRepository.findByProjectIdWithPart(id);
         List<ProjectStock> stock = projectStockRepository.findByProjectIdWithDetails(id);
-        return toDetailDTO(project, bom, stock);
+        List<StockReservation> reservations = stockReservationRepository.findByProjectIdWithDetails(id);
+        return toDetailDTO(project, bom, stock, reservations);
     }
 
     @Transactional
@@ -56,7 +62,7 @@ public class ProjectService {
                 .owner(me)
                 .organisation(currentOrganisationService.current())
                 .build();
-        return toSummaryDTO(projectRepository.save(project));
+        return toSummaryDTO(projectRepository.save(project), 0);
     }
 
     @Transactional
@@ -79,6 +85,7 @@ public class ProjectService {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
                     "Can only delete projects in PLANNING status");
         }
+        releaseAllReservations(project);
         projectRepository.delete(project);
     }
 
@@ -105,7 +112,10 @@ public class ProjectService {
                 .qtyPerInstance(request.getQtyPerInstance())
                 .notes(request.getNotes())
                 .build();
-        return toBomDTO(projectPartRepository.save(pp), project);
+        // PLANNING projects have never been in BUILDING, so nothing of this part can have been pulled.
+        ProjectBomEntryDTO dto = toBomDTOWithPulled(projectPartRepository.save(pp), project.getInstanceCount(), 0);
+        dto.setReservedTotal(stockReservationRepository.sumQuantityByProjectIdAndPartId(projectId, part.getId()));
+        return dto;
     }
 
     @Transactional
@@ -138,6 +148,55 @@ public class ProjectService {
         projectPartRepository.delete(pp);
     }
 
+    // ------------------------------------------------------------------
+    // Reservations
+    // ------------------------------------------------------------------
+
+    /**
+     * Sets stock aside for this project at one location. Only unreserved stock can be claimed, and
+     * the claim is one conditional update on the stock entry, so two projects (or two sessions of
+     * one) racing for the same reel cannot both get it.
+     */
+    @Transactional
+    public StockReservationDTO reserveStock(Long projectId, ReserveStockRequest request) {
+        Project project = requireOwnProject(projectId);
+        if (project.getStatus() != ProjectStatus.PLANNING && project.getStatus() != ProjectStatus.BUILDING) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Stock can only be reserved for projects in PLANNING or BUILDING status");
+        }
+        Long orgId = currentOrganisationService.currentId();
+        Part part = partRepository.findByIdAndOrganisationId(request.getPartId(), orgId)
+                .orElseThrow(() -> new EntityNotFoundException("Part not found: " + request.getPartId()));
+        Location location = locationRepository.findByIdAndOrganisationId(request.getLocationId(), orgId)
+                .orElseThrow(() -> new EntityNotFoundException("Location not found: " + request.getLocationId()));
+
+        if (stockEntryRepository.reserve(part.getId(), location.getId(), request.getQuantity()) == 0) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "Not enough unreserved stock at this location");
+        }
+        stockReservationRepository.addQuantity(project.getId(), part.getId(), location.getId(),
+                request.getQuantity(), currentUserService.current().getId());
+
+        return stockReservationRepository.findForUpdate(project.getId(), part.getId(), location.getId())
+                .map(this::toReservationDTO)
+                .orElseThrow();
+    }
+
+    /** Hands a reservation back, making its stock available to everyone again. */
+    @Transactional
+    public void releaseReservation(Long projectId, Long reservationId) {
+        requireOwnProject(projectId);
+        StockReservation reservation = stockReservationRepository.findById(reservationId)
+                .orElseThrow(() -> new EntityNotFoundException("Reservation not found: " + reservationId));
+        if (!reservation.getProject().getId().equals(projectId)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN,
+                    "Reservation does not belong to this project");
+        }
+        requireReleased(stockEntryRepository.release(reservation.getPart().getId(),
+                reservation.getLocation().getId(), reservation.getQuantity()));
+        stockReservationRepository.delete(reservation);
+    }
+
     // ------------------------------------------------------------------
     // State transitions
     // ------------------------------------------------------------------
@@ -167,6 +226,10 @@ public class ProjectService {
                         request.getLocationId(), currentOrganisationService.currentId())
                 .orElseThrow(() -> new EntityNotFoundException("Location not found: " + request.getLocationId()));
 
+        // Pull from this project's own reservation first. Done before the stock entry is loaded below,
+        // so the entry the movement checks against already reflects the smaller reservation.
+        consumeReservation(project, part, location, request.getQuantity());
+
         BigDecimal price = request.getUnitPrice();
         if (price == null) {
             price = stockEntryRepository.findByPartIdAndLocationId(part.getId(), location.getId())
@@ -199,6 +262,8 @@ public class ProjectService {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
                     "Project must be in BUILDING status to complete");
         }
+        // Whatever is still reserved was not needed after all.
+        releaseAllReservations(project);
         project.setStatus(ProjectStatus.COMPLETED);
         return toSummaryDTO(projectRepository.save(project));
     }
@@ -226,6 +291,7 @@ public class ProjectService {
             }
         }
 
+        releaseAllReservations(project);
         project.setStatus(ProjectStatus.CANCELLED);
         return toSummaryDTO(projectRepository.save(project));
     }
@@ -251,8 +317,46 @@ public class ProjectService {
                         "Project not found: " + id));
     }
 
+    /**
+     * Takes up to {@code quantity} out of the project's reservation at this location, giving it back
+     * to the stock entry so the pull that follows may take it. The reservation row is locked, so two
+     * sessions pulling for the same project cannot both consume it.
+     */
+    private void consumeReservation(Project project, Part part, Location location, int quantity) {
+        stockReservationRepository.findForUpdate(project.getId(), part.getId(), location.getId())
+                .ifPresent(reservation -> {
+                    int consumed = Math.min(reservation.getQuantity(), quantity);
+                    requireReleased(stockEntryRepository.release(part.getId(), location.getId(), consumed));
+                    if (consumed == reservation.getQuantity()) {
+                        stockReservationRepository.delete(reservation);
+                    } else {
+                        reservation.setQuantity(reservation.getQuantity() - consumed);
+                        stockReservationRepository.save(reservation);
+                    }
+                });
+    }
+
+    /** Gives back everything the project still holds, in one statement, and drops the rows. */
+    private void releaseAllReservations(Project project) {
+        stockReservationRepository.releaseAllOfProject(project.getId());
+        stockReservationRepository.deleteByProjectId(project.getId());
+    }
+
+    /**
+     * A release that updated nothing means the entry's reserved total and the reservation rows
+     * disagree. That is a bug, not a user error, and carrying on would leave the totals wrong.
+     */
+    private static void requireReleased(int updated) {
+        if (updated == 0) {
+            throw new IllegalStateException("Stock entry holds less reserved stock than its reservations");
+        }
+    }
+
     private ProjectDTO toSummaryDTO(Project p) {
-        int bomCount = projectPartRepository.countByProjectId(p.getId());
+        return toSummaryDTO(p, projectPartRepository.countByProjectId(p.getId()));
+    }
+
+    private ProjectDTO toSummaryDTO(Project p, int bomCount) {
         return ProjectDTO.builder()
                 .id(p.getId())
                 .name(p.getName())
@@ -267,12 +371,22 @@ public class ProjectService {
                 .build();
     }
 
-    private ProjectDTO toDetailDTO(Project p, List<ProjectPart> bom, List<ProjectStock> stock) {
+    private ProjectDTO toDetailDTO(Project p, List<ProjectPart> bom, List<ProjectStock> stock,
+                                   List<StockReservation> reservations) {
+        Map<Long, Integer> pulledByPart = new HashMap<>();
+        if (!bom.isEmpty()) {
+            for (Object[] row : projectStockRepository.sumQuantityByPartIdForProject(p.getId())) {
+                pulledByPart.put((Long) row[0], ((Number) row[1]).intValue());
+            }
+        }
+        Map<Long, Integer> reservedByPart = reservations.stream()
+                .collect(Collectors.toMap(r -> r.getPart().getId(), StockReservation::getQuantity, Integer::sum));
         List<ProjectBomEntryDTO> bomDTOs = bom.stream()
                 .map(pp -> {
-                    int pulled = projectStockRepository.sumQuantityByProjectIdAndPartId(
-                            p.getId(), pp.getPart().getId());
-                    return toBomDTOWithPulled(pp, p.getInstanceCount(), pulled);
+                    ProjectBomEntryDTO dto = toBomDTOWithPulled(pp, p.getInstanceCount(),
+                            pulledByPart.getOrDefault(pp.getPart().getId(), 0));
+                    dto.setReservedTotal(reservedByPart.getOrDefault(pp.getPart().getId(), 0));
+                    return dto;
                 })
                 .collect(Collectors.toList());
 
@@ -297,15 +411,34 @@ public class ProjectService {
                 .totalStockValue(totalValue)
                 .bom(bomDTOs)
                 .stock(stockDTOs)
+                .reservations(reservations.stream().map(this::toReservationDTO).collect(Collectors.toList()))
                 .createdAt(p.getCreatedAt())
                 .updatedAt(p.getUpdatedAt())
                 .build();
     }
 
+    /**
+     * BOM sizes of a whole project list in one grouped query, rather than a count per project.
+     */
+    private Map<Long, Integer> bomCounts(List<Project> projects) {
+        if (projects.isEmpty()) {
+            return Map.of();
+        }
+        List<Long> ids = projects.stream().map(Project::getId).toList();
+        Map<Long, Integer> counts = new HashMap<>();
+        for (Object[] row : projectPartRepository.countByProjectIds(ids)) {
+            counts.put((Long) row[0], ((Number) row[1]).intValue());
+        }
+        return counts;
+    }
+
     private ProjectBomEntryDTO toBomDTO(ProjectPart pp, Project project) {
         int pulled = projectStockRepository.sumQuantityByProjectIdAndPartId(
                 project.getId(), pp.getPart().getId());
-        return toBomDTOWithPulled(pp, project.getInstanceCount(), pulled);
+        ProjectBomEntryDTO dto = toBomDTOWithPulled(pp, project.getInstanceCount(), pulled);
+        dto.setReservedTotal(stockReservationRepository.sumQuantityByProjectIdAndPartId(
+                project.getId(), pp.getPart().getId()));
+        return dto;
     }
 
     private ProjectBomEntryDTO toBomDTOWithPulled(ProjectPart pp, int instanceCount, int pulledTotal) {
@@ -339,6 +472,19 @@ public class ProjectService {
                 .build();
     }
 
+    private StockReservationDTO toReservationDTO(StockReservation r) {
+        return StockReservationDTO.builder()
+                .id(r.getId())
+                .partId(r.getPart().getId())
+                .partNumber(r.getPart().getPartNumber())
+                .locationId(r.getLocation().getId())
+                .locationName(r.getLocation().getName())
+                .locationBreadcrumb(r.getLocation().breadcrumb())
+                .quantity(r.getQuantity())
+                .createdAt(r.getCreatedAt())
+                .build();
+    }
+
     private String displayName(AppUser user) {
         return user.getFullName() != null ? user.getFullName() : user.getEmail();
     }
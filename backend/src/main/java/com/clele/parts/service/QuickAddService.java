@@ -64,7 +64,6 @@ public class QuickAddService {
         // The funnel writes the INITIAL movement, creates the entry and checks the organisation.
         StockEntry saved = stockMovementService.apply(part, location, request.getQuantity(),
                 request.getUnitPrice(), null, MovementType.INITIAL);
-        saved = stockEntryRepository.save(saved);
         currentUserService.rememberLastLocation(location);
 
         StockEntryDTO stockEntryDTO = StockEntryDTO.builder()
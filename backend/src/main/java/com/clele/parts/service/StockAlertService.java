@@ -0,0 +1,148 @@
+package com.clele.parts.service;
+
+import com.clele.parts.config.AppProperties;
+import com.clele.parts.dto.StockAlertDTO;
+import com.clele.parts.model.AppUser;
+import com.clele.parts.model.Permissions;
+import com.clele.parts.repository.AppUserRepository;
+import com.clele.parts.repository.StockAlertRepository;
+import com.clele.parts.repository.StockAlertRepository.Alert;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers the low-stock alerts the database raises (V61) as they commit: to every open
+ * notification stream of the organisation, and — for a drop below minimum — by mail to its
+ * administrators.
+ *
+ * <p>Every instance hears every alert and pushes it to its own streams; the mail is claimed on the
+ * alert row, so it goes out once. An alert raised while this instance was not listening is mailed
+ * on reconnect if it is under {@link #CATCH_UP_HOURS} old — a day-old mail about a dip that may long
+ * since have been restocked helps nobody. A mail is skipped, too, when the threshold has already
+ * climbed back by the time it would be sent. Mail can be switched off with
+ * {@code app.mail.stock-alerts}; with no mail provider configured it is logged, as every mail is.
+ *
+ * <p>Mail is sent on a thread of its own, never on the listener's: that one thread relays every
+ * channel, stock-change events included, and a slow or hanging mail provider would hold them all up.
+ * On shutdown that thread gets {@link #SHUTDOWN_MILLIS} to finish what it has; a mail it does not
+ * get to is sent by the next start's catch-up, if still recent enough.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StockAlertService implements DatabaseNotificationListener.Subscriber {
+
+    static final String CHANNEL = "stock_alert";
+    static final String EVENT = "stock-alert";
+    static final int CATCH_UP_HOURS = 24;
+    static final int KEEP_DAYS = 30;
+    static final long SHUTDOWN_MILLIS = 5_000;
+
+    private final DatabaseNotificationListener listener;
+    private final StockAlertRepository alertRepository;
+    private final NotificationService notificationService;
+    private final MailService mailService;
+    private final AppUserRepository userRepository;
+    private final AppProperties appProperties;
+
+    private final ExecutorService mailer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "stock-alert-mail");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @PostConstruct
+    void subscribe() {
+        listener.subscribe(CHANNEL, this);
+    }
+
+    @Override
+    public void onNotification(String payload) {
+        alertRepository.find(Long.valueOf(payload)).ifPresent(alert -> {
+            notificationService.publish(alert.organisationId(), EVENT, toDTO(alert));
+            mailer.execute(() -> mail(alert));
+        });
+    }
+
+    @Override
+    public void onConnected() {
+        mailer.execute(() -> {
+            for (Long id : alertRepository.unmailed(LocalDateTime.now().minusHours(CATCH_UP_HOURS))) {
+                alertRepository.find(id).ifPresent(this::mail);
+            }
+        });
+    }
+
+    @PreDestroy
+    void stop() {
+        mailer.shutdown();
+        try {
+            if (!mailer.awaitTermination(SHUTDOWN_MILLIS, TimeUnit.MILLISECONDS)) {
+                mailer.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            mailer.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Scheduled(cron = "${stock.alert.prune-cron:0 45 3 * * *}")
+    public void prune() {
+        int pruned = alertRepository.prune(LocalDateTime.now().minusDays(KEEP_DAYS));
+        log.info("Pruned {} stock alerts older than {} days", pruned, KEEP_DAYS);
+    }
+
+    private void mail(Alert alert) {
+        try {
+            send(alert);
+        } catch (RuntimeException e) {
+            log.warn("Could not mail stock alert {}: {}", alert.id(), e.getMessage());
+        }
+    }
+
+    private void send(Alert alert) {
+        if (!alert.belowMinimum() || !appProperties.getMail().isStockAlerts()
+                || !alertRepository.claimMail(alert.id())) {
+            return;
+        }
+        if (!alert.stillBelow()) {
+            log.debug("Stock alert {} resolved before it was mailed", alert.id());
+            return;
+        }
+        List<String> recipients = userRepository
+                .findByOrganisationPermission(alert.organisationId(), Permissions.ORG_ADMIN).stream()
+                .map(AppUser::getEmail)
+                .toList();
+        if (recipients.isEmpty()) {
+            log.info("Stock alert {} not mailed: organisation {} has no administrators", alert.id(),
+                    alert.organisationId());
+            return;
+        }
+        mailService.sendStockAlert(alert, recipients);
+    }
+
+    private static StockAlertDTO toDTO(Alert alert) {
+        return StockAlertDTO.builder()
+                .id(alert.id())
+                .thresholdId(alert.thresholdId())
+                .partId(alert.partId())
+                .partNumber(alert.partNumber())
+                .locationId(alert.locationId())
+                .locationName(alert.locationName())
+                .belowMinimum(alert.belowMinimum())
+                .totalQuantity(alert.totalQuantity())
+                .minimumQuantity(alert.minimumQuantity())
+                .createdAt(alert.createdAt())
+                .build();
+    }
+}
@@ -0,0 +1,194 @@
+package com.clele.parts.service;
+
+import com.clele.parts.dto.StockAsOfDTO;
+import com.clele.parts.model.Location;
+import com.clele.parts.model.Part;
+import com.clele.parts.repository.LocationRepository;
+import com.clele.parts.repository.PartRepository;
+import com.clele.parts.repository.StockCheckpointRepository;
+import com.clele.parts.repository.StockCheckpointRepository.Checkpoint;
+import com.clele.parts.repository.StockCheckpointRepository.Line;
+import com.clele.parts.repository.StockCheckpointRepository.Movement;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Stock as it stood at any moment, worked out from the ledger: the newest checkpoint at or before
+ * that moment, with the movements since replayed on top. Also writes the checkpoints, for
+ * {@link StockCheckpointJob}.
+ *
+ * <p>Replaying follows the rules {@code StockLedgerRepository} applies to the live entries: a
+ * priced addition folds into the weighted-average cost (rounded to cents, as the SQL does), a take
+ * leaves it alone, and a MOVE lands at the target at the price it left the source with. So the
+ * quantities always agree with the entries. The price does wherever the ledger explains it; a price
+ * typed into a stock entry by hand changes no quantity, writes no movement, and is therefore not in
+ * the history.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class StockAsOfService {
+
+    /** Checkpoints younger than this are all kept; older ones only on the first of a month. */
+    static final int KEEP_DAILY_DAYS = 35;
+
+    private final StockCheckpointRepository checkpointRepository;
+    private final PartRepository partRepository;
+    private final LocationRepository locationRepository;
+    private final CurrentOrganisationService currentOrganisationService;
+
+    /** A part at a location, and what it came to. */
+    public record Key(Long partId, Long locationId) {}
+
+    public record Position(int quantity, BigDecimal unitPrice) {}
+
+    /**
+     * Every part at every location of an organisation that the ledger has ever touched, as it stood
+     * just before {@code at} (zeroes included). A null {@code at} means now, with no upper bound on
+     * the movements read.
+     */
+    public Map<Key, Position> positions(Long organisationId, LocalDateTime at) {
+        Fold fold = new Fold();
+        Optional<Checkpoint> start = checkpointRepository.latest(organisationId, at);
+        start.ifPresent(cp -> checkpointRepository.lines(cp.id(), fold::seed));
+        checkpointRepository.movements(organisationId, start.map(Checkpoint::asOf).orElse(null), at, fold::apply);
+        Map<Key, Position> positions = new HashMap<>();
+        fold.positions.forEach((key, p) -> positions.put(key, new Position(p.quantity, p.unitPrice)));
+        return positions;
+    }
+
+    /** The current organisation's stock at {@code at}, for reporting: only what was actually there. */
+    public StockAsOfDTO report(LocalDateTime at) {
+        if (at.isAfter(LocalDateTime.now())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "That moment has not happened yet");
+        }
+        Map<Key, Position> held = positions(currentOrganisationService.currentId(), at).entrySet().stream()
+                .filter(e -> e.getValue().quantity() != 0)
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+
+        Map<Long, Part> parts = partRepository.findAllById(
+                        held.keySet().stream().map(Key::partId).distinct().toList()).stream()
+                .collect(Collectors.toMap(Part::getId, Function.identity()));
+        Map<Long, Location> locations = locationRepository.findAllById(
+                        held.keySet().stream().map(Key::locationId).distinct().toList()).stream()
+                .collect(Collectors.toMap(Location::getId, Function.identity()));
+
+        long totalQuantity = 0;
+        BigDecimal totalValue = BigDecimal.ZERO;
+        List<StockAsOfDTO.Line> lines = new ArrayList<>(held.size());
+        for (Map.Entry<Key, Position> e : held.entrySet()) {
+            Part part = parts.get(e.getKey().partId());
+            Location location = locations.get(e.getKey().locationId());
+            Position p = e.getValue();
+            totalQuantity += p.quantity();
+            if (p.unitPrice() != null) {
+                totalValue = totalValue.add(p.unitPrice().multiply(BigDecimal.valueOf(p.quantity())));
+            }
+            lines.add(StockAsOfDTO.Line.builder()
+                    .partId(part.getId())
+                    .partNumber(part.getPartNumber())
+                    .locationId(location.getId())
+                    .locationName(location.getName())
+                    .locationBreadcrumb(location.breadcrumb())
+                    .quantity(p.quantity())
+                    .unitPrice(p.unitPrice())
+                    .build());
+        }
+        lines.sort(Comparator.comparing(StockAsOfDTO.Line::getPartNumber)
+                .thenComparing(StockAsOfDTO.Line::getLocationBreadcrumb));
+        return StockAsOfDTO.builder()
+                .at(at)
+                .totalQuantity(totalQuantity)
+                .totalValue(totalValue)
+                .lines(lines)
+                .build();
+    }
+
+    /**
+     * Writes a checkpoint for {@code asOf}, replaying from the previous one, unless there already is
+     * one. Zero lines are kept only while they carry a price (see V59). Then thins out the old ones.
+     *
+     * @return whether a checkpoint was written
+     */
+    @Transactional
+    public boolean checkpoint(Long organisationId, LocalDateTime asOf) {
+        if (checkpointRepository.exists(organisationId, asOf)) {
+            return false;
+        }
+        List<Line> lines = positions(organisationId, asOf).entrySet().stream()
+                .filter(e -> e.getValue().quantity() != 0 || e.getValue().unitPrice() != null)
+                .map(e -> new Line(e.getKey().partId(), e.getKey().locationId(),
+                        e.getValue().quantity(), e.getValue().unitPrice()))
+                .toList();
+        checkpointRepository.insert(organisationId, asOf, lines);
+        int pruned = checkpointRepository.prune(organisationId, asOf.minusDays(KEEP_DAILY_DAYS));
+        log.info("Stock checkpoint for organisation {} at {}: {} lines, {} old checkpoints pruned",
+                organisationId, asOf, lines.size(), pruned);
+        return true;
+    }
+
+    /** The replay itself. Mutable and single-use. */
+    static final class Fold {
+
+        static final class Running {
+            int quantity;
+            BigDecimal unitPrice;
+        }
+
+        final Map<Key, Running> positions = new HashMap<>();
+
+        void seed(Line line) {
+            Running r = at(line.partId(), line.locationId());
+            r.quantity = line.quantity();
+            r.unitPrice = line.unitPrice();
+        }
+
+        void apply(Movement m) {
+            if (m.targetLocationId() != null) {
+                // A MOVE: the debit at the source, the same amount arriving at the target.
+                at(m.partId(), m.locationId()).quantity += m.quantity();
+                receive(at(m.partId(), m.targetLocationId()), -m.quantity(), m.unitPrice());
+            } else if (m.quantity() > 0) {
+                receive(at(m.partId(), m.locationId()), m.quantity(), m.unitPrice());
+            } else {
+                at(m.partId(), m.locationId()).quantity += m.quantity();
+            }
+        }
+
+        /** {@code StockLedgerRepository.ADD}, in Java. */
+        private static void receive(Running r, int qty, BigDecimal price) {
+            if (price != null) {
+                if (r.quantity == 0) {
+                    r.unitPrice = price;
+                } else if (r.quantity + qty != 0) {
+                    BigDecimal onHand = (r.unitPrice == null ? BigDecimal.ZERO : r.unitPrice)
+                            .multiply(BigDecimal.valueOf(r.quantity));
+                    r.unitPrice = onHand.add(price.multiply(BigDecimal.valueOf(qty)))
+                            .divide(BigDecimal.valueOf(r.quantity + (long) qty), 2, RoundingMode.HALF_UP);
+                }
+            }
+            r.quantity += qty;
+        }
+
+        private Running at(Long partId, Long locationId) {
+            return positions.computeIfAbsent(new Key(partId, locationId), k -> new Running());
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.clele.parts.service;
+
+import com.clele.parts.dto.StockChangeDTO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The live stock stream: every stock entry {@link StockMovementService} changes, pushed to the
+ * organisation's open notification streams once the change has committed, as a
+ * {@code stock-change} event. Clients patch what they show instead of refetching it.
+ *
+ * <p>Changes are collected per transaction, the last one per part and location kept, and handed
+ * to Postgres with {@code pg_notify} just before the commit — one notification for a whole goods
+ * receipt, not one per line. Postgres delivers it to every listening instance only if the
+ * transaction commits, so a take that rolls back is never announced, and each instance relays it to
+ * its own streams ({@link DatabaseNotificationListener}). A notification missed while an instance
+ * was reconnecting is gone; a client learns of that the way it learns of anything it cannot trust —
+ * its stream reconnects, and it refetches.
+ *
+ * <p>Only the movement paths report here. Wholesale rewrites — a location merge, a reconcile, the
+ * Partsbox import — do not; they are rare, and the screens they come from reload anyway.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StockChangeStream implements DatabaseNotificationListener.Subscriber {
+
+    static final String CHANNEL = "stock_change";
+    static final String EVENT = "stock-change";
+    /** Changes per notification; keeps each payload well under Postgres's 8000-byte limit. */
+    static final int CHANGES_PER_NOTIFICATION = 50;
+
+    private final DatabaseNotificationListener listener;
+    private final NotificationService notificationService;
+    private final NamedParameterJdbcTemplate jdbc;
+    private final ObjectMapper objectMapper;
+
+    /** One {@code pg_notify} payload. */
+    record Payload(Long organisationId, List<StockChangeDTO> changes) {}
+
+    private record Key(Long organisationId, Long partId, Long locationId) {}
+
+    @PostConstruct
+    void subscribe() {
+        listener.subscribe(CHANNEL, this);
+    }
+
+    /**
+     * Notes that a stock entry now stands as {@code change} says, to be announced when the current
+     * transaction commits. Must be called inside one — every caller in {@link StockMovementService}
+     * is.
+     */
+    public void record(Long organisationId, StockChangeDTO change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Stock changes are announced on commit; there is no transaction");
+        }
+        @SuppressWarnings("unchecked")
+        Map<Key, StockChangeDTO> pending = (Map<Key, StockChangeDTO>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Map<Key, StockChangeDTO> created = new LinkedHashMap<>();
+            TransactionSynchronizationManager.bindResource(this, created);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    announce(created);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(StockChangeStream.this);
+                }
+            });
+            pending = created;
+        }
+        // Remove first so a part and location changed twice moves to the end, in the order it last changed.
+        Key key = new Key(organisationId, change.getPartId(), change.getLocationId());
+        pending.remove(key);
+        pending.put(key, change);
+    }
+
+    @Override
+    public void onNotification(String payload) {
+        try {
+            Payload p = objectMapper.readValue(payload, Payload.class);
+            notificationService.publish(p.organisationId(), EVENT, p.changes());
+        } catch (JsonProcessingException e) {
+            log.warn("Unreadable stock change notification: {}", e.getMessage());
+        }
+    }
+
+    /** Still inside the transaction, so the notifications go out with its commit or not at all. */
+    private void announce(Map<Key, StockChangeDTO> pending) {
+        Map<Long, List<StockChangeDTO>> byOrganisation = new HashMap<>();
+        pending.forEach((key, change) ->
+                byOrganisation.computeIfAbsent(key.organisationId(), id -> new ArrayList<>()).add(change));
+        byOrganisation.forEach((organisationId, changes) -> {
+            for (int from = 0; from < changes.size(); from += CHANGES_PER_NOTIFICATION) {
+                List<StockChangeDTO> chunk = changes.subList(from,
+                        Math.min(changes.size(), from + CHANGES_PER_NOTIFICATION));
+                String payload;
+                try {
+                    payload = objectMapper.writeValueAsString(new Payload(organisationId, chunk));
+                } catch (JsonProcessingException e) {
+                    throw new IllegalStateException("Cannot serialise stock changes", e);
+                }
+                jdbc.query("SELECT pg_notify(:channel, :payload)",
+                        new MapSqlParameterSource("channel", CHANNEL).addValue("payload", payload),
+                        (RowCallbackHandler) rs -> {});
+            }
+        });
+    }
+}
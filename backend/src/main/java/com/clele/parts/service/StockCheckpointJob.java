@@ -0,0 +1,48 @@
+package com.clele.parts.service;
+
+import com.clele.parts.model.Organisation;
+import com.clele.parts.repository.OrganisationRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Writes each organisation's stock checkpoint for the midnight just gone (see V59).
+ *
+ * <p>Runs in the small hours rather than at midnight itself: a checkpoint covers every movement
+ * stamped before its {@code as_of}, and a movement is stamped when it is written, not when its
+ * transaction commits. Two and a half hours on, nothing stamped before midnight is still in flight.
+ * A missed night costs nothing but speed — the next run replays from the newest checkpoint there
+ * is — so there is no catching up to do. Each organisation is its own transaction; one failing does
+ * not hold up the rest.
+ *
+ * <p>{@code stock.checkpoint.cron} moves the run; {@code "-"} switches it off, which the CLI
+ * profiles do.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StockCheckpointJob {
+
+    private final StockAsOfService stockAsOfService;
+    private final OrganisationRepository organisationRepository;
+
+    @Scheduled(cron = "${stock.checkpoint.cron:0 30 2 * * *}")
+    public void run() {
+        LocalDateTime asOf = LocalDate.now().atStartOfDay();
+        for (Organisation organisation : organisationRepository.findAllByOrderByName()) {
+            if (organisation.isTemplate()) {
+                continue;
+            }
+            try {
+                stockAsOfService.checkpoint(organisation.getId(), asOf);
+            } catch (RuntimeException e) {
+                log.error("Stock checkpoint for organisation {} failed", organisation.getId(), e);
+            }
+        }
+    }
+}
@@ -4,6 +4,9 @@ import com.clele.parts.dto.StockAdjustRequest;
 import com.clele.parts.dto.StockEntryDTO;
 import com.clele.parts.dto.StockEntryRequest;
 import com.clele.parts.dto.StockMoveRequest;
+import com.clele.parts.dto.StockReceiptRequest;
+import com.clele.parts.dto.StockReceiptResultDTO;
+import com.clele.parts.dto.StockReconcileResultDTO;
 import com.clele.parts.model.Location;
 import com.clele.parts.model.MovementType;
 import com.clele.parts.model.Part;
@@ -11,7 +14,7 @@ import com.clele.parts.model.StockEntry;
 import com.clele.parts.repository.LocationRepository;
 import com.clele.parts.repository.PartRepository;
 import com.clele.parts.repository.StockEntryRepository;
-import com.clele.parts.repository.StockMovementRepository;
+import com.clele.parts.repository.StockLedgerRepository;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -19,7 +22,10 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -28,7 +34,7 @@ import java.util.stream.Collectors;
 public class StockEntryService {
 
     private final StockEntryRepository stockEntryRepository;
-    private final StockMovementRepository stockMovementRepository;
+    private final StockLedgerRepository stockLedgerRepository;
     private final PartRepository partRepository;
     private final LocationRepository locationRepository;
     private final StockMovementService stockMovementService;
@@ -52,10 +58,6 @@ public class StockEntryService {
                 .collect(Collectors.toList());
     }
 
-    public java.math.BigDecimal totalStockValue() {
-        return stockEntryRepository.totalStockValue(currentOrganisationService.currentId());
-    }
-
     @Transactional
     public StockEntryDTO create(StockEntryRequest request) {
         if (stockEntryRepository.existsByPartIdAndLocationId(request.getPartId(), request.getLocationId())) {
@@ -67,7 +69,7 @@ public class StockEntryService {
         // The funnel writes the INITIAL movement, creates the entry and checks location ownership.
         StockEntry entry = stockMovementService.apply(part, location, request.getQuantity(),
                 request.getUnitPrice(), request.getComments(), MovementType.INITIAL);
-        StockEntryDTO dto = toDTO(stockEntryRepository.save(entry));
+        StockEntryDTO dto = toDTO(entry);
         currentUserService.rememberLastLocation(location);
         return dto;
     }
@@ -82,7 +84,7 @@ public class StockEntryService {
         Location location = requireLocation(request.getLocationId());
         StockEntry entry = stockMovementService.apply(part, location, request.getQuantity(),
                 request.getUnitPrice(), request.getComments(), MovementType.PURCHASE);
-        StockEntryDTO dto = toDTO(stockEntryRepository.save(entry));
+        StockEntryDTO dto = toDTO(entry);
         currentUserService.rememberLastLocation(location);
         return dto;
     }
@@ -94,7 +96,7 @@ public class StockEntryService {
         Location location = requireLocation(request.getLocationId());
         StockEntry entry = stockMovementService.apply(part, location, -request.getQuantity(),
                 null, request.getComments(), MovementType.CONSUME);
-        return toDTO(stockEntryRepository.save(entry));
+        return toDTO(entry);
     }
 
     /**
@@ -116,6 +118,67 @@ public class StockEntryService {
                         ? request.getComments().trim() : null);
     }
 
+    /**
+     * Books in a whole shipment. Parts and locations are checked in two queries for the lot; a line
+     * naming one this organisation does not have is rejected and reported, and the rest are written
+     * in one go through {@link StockMovementService#receive}.
+     */
+    @Transactional
+    public StockReceiptResultDTO receive(StockReceiptRequest request) {
+        Long orgId = currentOrganisationService.currentId();
+        List<StockAdjustRequest> items = request.getItems();
+        Set<Long> parts = new HashSet<>(partRepository.findIdsByOrganisationIdAndIdIn(orgId,
+                items.stream().map(StockAdjustRequest::getPartId).collect(Collectors.toSet())));
+        Set<Long> locations = new HashSet<>(locationRepository.findIdsByOrganisationIdAndIdIn(orgId,
+                items.stream().map(StockAdjustRequest::getLocationId).collect(Collectors.toSet())));
+        String shipmentComments = trimToNull(request.getComments());
+
+        List<StockReceiptResultDTO.Line> lines = new ArrayList<>(items.size());
+        List<StockReceiptResultDTO.Line> accepted = new ArrayList<>();
+        List<StockLedgerRepository.Receipt> receipts = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            StockAdjustRequest item = items.get(i);
+            StockReceiptResultDTO.Line line = StockReceiptResultDTO.Line.builder()
+                    .index(i)
+                    .partId(item.getPartId())
+                    .locationId(item.getLocationId())
+                    .quantity(item.getQuantity())
+                    .build();
+            lines.add(line);
+            if (!parts.contains(item.getPartId())) {
+                line.setError("Part not found: " + item.getPartId());
+            } else if (!locations.contains(item.getLocationId())) {
+                line.setError("Location not found: " + item.getLocationId());
+            } else {
+                String comments = trimToNull(item.getComments());
+                receipts.add(new StockLedgerRepository.Receipt(item.getPartId(), item.getLocationId(),
+                        item.getQuantity(), item.getUnitPrice(),
+                        comments != null ? comments : shipmentComments));
+                accepted.add(line);
+            }
+        }
+
+        List<StockMovementService.Received> received = stockMovementService.receive(receipts);
+        for (int i = 0; i < accepted.size(); i++) {
+            StockReceiptResultDTO.Line line = accepted.get(i);
+            StockMovementService.Received r = received.get(i);
+            line.setAccepted(true);
+            line.setMovementId(r.movementId());
+            line.setStockEntryId(r.entry().entryId());
+            line.setOnHand(r.entry().quantity());
+            line.setUnitPrice(r.entry().unitPrice());
+        }
+        return StockReceiptResultDTO.builder()
+                .received(accepted.size())
+                .rejected(items.size() - accepted.size())
+                .lines(lines)
+                .build();
+    }
+
+    private static String trimToNull(String s) {
+        return s == null || s.isBlank() ? null : s.trim();
+    }
+
     /** Parts and locations are only reachable within the organisation currently in force. */
     private Part requirePart(Long id) {
         return partRepository.findByIdAndOrganisationId(id, currentOrganisationService.currentId())
@@ -149,16 +212,21 @@ public class StockEntryService {
             // No quantity change, but still gate on the organisation and allow a price edit.
             stockMovementService.requireCurrentOrganisation(location);
             if (request.getUnitPrice() != null) {
+                stockEntryRepository.setUnitPrice(entry.getId(), request.getUnitPrice());
                 entry.setUnitPrice(request.getUnitPrice());
             }
         }
-        return toDTO(stockEntryRepository.save(entry));
+        return toDTO(entry);
     }
 
     @Transactional
     public void delete(Long id) {
         StockEntry entry = requireEntry(id);
         stockMovementService.requireCurrentOrganisation(entry.getLocation());
+        if (entry.getReserved() > 0) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "Projects have reserved stock here; release their reservations first");
+        }
         // Record the removal in the ledger so history stays complete, then drop the aggregate row.
         if (entry.getQuantity() != 0) {
             stockMovementService.apply(entry.getPart(), entry.getLocation(), -entry.getQuantity(),
@@ -168,22 +236,19 @@ public class StockEntryService {
     }
 
     /**
-     * Realign every aggregate to its ledger (invariant safety net / verification hook).
-     * @return the number of entries that were corrected
+     * Realign every aggregate to its ledger (invariant safety net / verification hook). One
+     * statement, from the newest stock checkpoint on; see {@link StockLedgerRepository#reconcile}.
      */
     @Transactional
-    public int reconcile() {
-        int corrected = 0;
-        for (StockEntry entry : stockEntryRepository
-                .findByOrganisationId(currentOrganisationService.currentId())) {
-            int sum = stockMovementRepository.sumQuantity(entry.getPart().getId(), entry.getLocation().getId());
-            if (entry.getQuantity() != sum) {
-                entry.setQuantity(sum);
-                stockEntryRepository.save(entry);
-                corrected++;
-            }
-        }
-        return corrected;
+    public StockReconcileResultDTO reconcile() {
+        StockLedgerRepository.Reconciled result =
+                stockLedgerRepository.reconcile(currentOrganisationService.currentId());
+        return StockReconcileResultDTO.builder()
+                .corrected(result.corrected())
+                .missing(result.missing().stream()
+                        .map(m -> new StockReconcileResultDTO.Missing(m.partId(), m.locationId(), m.quantity()))
+                        .toList())
+                .build();
     }
 
     private StockEntryDTO toDTO(StockEntry entry) {
@@ -197,6 +262,7 @@ public class StockEntryService {
                 .locationBreadcrumb(entry.getLocation().breadcrumb())
                 .quantity(entry.getQuantity())
                 .unitPrice(entry.getUnitPrice())
+                .reserved(entry.getReserved())
                 .build();
     }
 }
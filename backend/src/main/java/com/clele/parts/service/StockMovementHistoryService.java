@@ -0,0 +1,89 @@
+package com.clele.parts.service;
+
+import com.clele.parts.dto.StockMovementDTO;
+import com.clele.parts.dto.StockMovementPageDTO;
+import com.clele.parts.repository.StockMovementHistoryRepository;
+import com.clele.parts.repository.StockMovementHistoryRepository.Cursor;
+import com.clele.parts.repository.StockMovementHistoryRepository.Filter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Stock-movement history in pages, for a part, a location, a project or the whole organisation.
+ *
+ * <p>The cursor handed to clients is opaque on purpose (base64 of the last row's {@code moved_at}
+ * and id): what it holds is the repository's business, and a client that composes its own is
+ * relying on something that may change.
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class StockMovementHistoryService {
+
+    static final int DEFAULT_LIMIT = 50;
+    static final int MAX_LIMIT = 200;
+
+    private final StockMovementHistoryRepository historyRepository;
+    private final ProjectService projectService;
+    private final CurrentOrganisationService currentOrganisationService;
+
+    /**
+     * A page of movements, narrowed by whichever of the filters are set. A project's history is
+     * only visible to the project's owner, like the project itself.
+     */
+    public StockMovementPageDTO page(Long partId, Long locationId, Long projectId,
+                                     LocalDateTime from, LocalDateTime to,
+                                     String cursor, Integer limit) {
+        if (projectId != null) {
+            projectService.requireOwnProject(projectId);
+        }
+        int size = limit == null ? DEFAULT_LIMIT : Math.max(1, Math.min(limit, MAX_LIMIT));
+        Filter filter = new Filter(currentOrganisationService.currentId(), partId, locationId, projectId, from, to);
+
+        // One row more than asked for says whether there is a next page, without a count query.
+        List<StockMovementDTO> rows = historyRepository.page(filter, decode(cursor), size + 1);
+        boolean more = rows.size() > size;
+        List<StockMovementDTO> items = more ? rows.subList(0, size) : rows;
+        StockMovementDTO last = items.isEmpty() ? null : items.get(items.size() - 1);
+        return StockMovementPageDTO.builder()
+                .items(items)
+                .nextCursor(more ? encode(new Cursor(last.getMovedAt(), last.getId())) : null)
+                .build();
+    }
+
+    /**
+     * A part's entire history in one statement — what {@code GET /api/parts/{id}/movements} has
+     * always returned. Kept for existing clients; anything new should page.
+     */
+    public List<StockMovementDTO> allForPart(Long partId) {
+        Filter filter = new Filter(currentOrganisationService.currentId(), partId, null, null, null, null);
+        return historyRepository.page(filter, null, Integer.MAX_VALUE);
+    }
+
+    static String encode(Cursor cursor) {
+        String raw = cursor.movedAt() + "|" + cursor.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static Cursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int bar = raw.indexOf('|');
+            return new Cursor(LocalDateTime.parse(raw.substring(0, bar)), Long.parseLong(raw.substring(bar + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+}
@@ -1,6 +1,6 @@
 package com.clele.parts.service;
 
-import com.clele.parts.dto.StockMovementDTO;
+import com.clele.parts.dto.StockChangeDTO;
 import com.clele.parts.model.AppUser;
 import com.clele.parts.model.Location;
 import com.clele.parts.model.MovementType;
@@ -9,7 +9,9 @@ import com.clele.parts.model.Project;
 import com.clele.parts.model.StockEntry;
 import com.clele.parts.model.StockMovement;
 import com.clele.parts.repository.StockEntryRepository;
+import com.clele.parts.repository.StockLedgerRepository;
 import com.clele.parts.repository.StockMovementRepository;
+import com.clele.parts.repository.StockReservationRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.util.Pair;
 import org.springframework.http.HttpStatus;
@@ -18,10 +20,11 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
@@ -30,21 +33,19 @@ public class StockMovementService {
 
     private final StockMovementRepository stockMovementRepository;
     private final StockEntryRepository stockEntryRepository;
+    private final StockLedgerRepository stockLedgerRepository;
+    private final StockReservationRepository stockReservationRepository;
     private final CurrentUserService currentUserService;
     private final CurrentOrganisationService currentOrganisationService;
-
-    public List<StockMovementDTO> findByPartId(Long partId) {
-        return stockMovementRepository.findByPartIdOrderByMovedAtDesc(partId).stream()
-                .map(this::toDTO)
-                .collect(Collectors.toList());
-    }
+    private final StockChangeStream stockChangeStream;
 
     /**
      * The single funnel for every on-hand change (non-MOVE). Records a signed-delta
      * {@link StockMovement} and keeps the {@link StockEntry} aggregate in step, so the invariant
-     * {@code stock_entry.quantity == Σ stock_movement.quantity} always holds.
+     * {@code stock_entry.quantity == Σ stock_movement.quantity} always holds — under concurrent
+     * writers too, since the aggregate changes by an atomic delta rather than a read-modify-write.
      *
-     * @return the updated (or newly created) stock entry
+     * @return the updated (or newly created) stock entry, as written; there is nothing to save
      */
     @Transactional
     public StockEntry apply(Part part, Location location, int deltaQty, BigDecimal unitPrice,
@@ -78,54 +79,54 @@ public class StockMovementService {
         return applyInternal(part, location, deltaQty, unitPrice, comments, type, project).getFirst();
     }
 
+    /** One booked-in line of a receipt: its movement, and its entry as that line left it. */
+    public record Received(Long movementId, StockLedgerRepository.Applied entry) {}
+
+    /**
+     * {@link #apply} for a whole goods receipt: every line a {@code PURCHASE}, written as two JDBC
+     * batches (entries, then movements) with the user resolved once, instead of a lookup, a save and
+     * an insert per line. The aggregate and ledger stay in step exactly as they do one at a time.
+     *
+     * <p>Takes ids rather than entities, so it cannot check organisations itself: the caller must
+     * already have established that every part and location is in the current organisation.
+     *
+     * @return one result per receipt line, in order
+     */
+    @Transactional
+    public List<Received> receive(List<StockLedgerRepository.Receipt> receipts) {
+        if (receipts.isEmpty()) {
+            return List.of();
+        }
+        List<StockLedgerRepository.Applied> entries = stockLedgerRepository.addAll(receipts);
+        AppUser me = currentUserService.current();
+        List<Long> movementIds = stockLedgerRepository.recordReceipts(receipts, MovementType.PURCHASE,
+                me.getFullName() != null ? me.getFullName() : me.getEmail(), LocalDateTime.now());
+        Long organisationId = currentOrganisationService.currentId();
+        List<Received> received = new ArrayList<>(receipts.size());
+        for (int i = 0; i < receipts.size(); i++) {
+            received.add(new Received(movementIds.get(i), entries.get(i)));
+            announce(organisationId, receipts.get(i).partId(), receipts.get(i).locationId(),
+                    entries.get(i), MovementType.PURCHASE);
+        }
+        return received;
+    }
+
     /**
      * Atomic stock move: debit {@code qty} from {@code from} and credit it to {@code to} in a
      * single {@link StockMovement} row (type=MOVE, quantity=-qty at source, targetLocation=to).
-     * Both locations must be in the current organisation.
+     * Both locations must be in the current organisation. The stock arrives at the source's
+     * weighted-average cost and is averaged into the destination's.
      *
-     * @return the updated source stock entry
+     * @return the source stock entry after the debit
      */
     @Transactional
     public StockEntry applyMove(Part part, Location from, Location to, int qty, String comments) {
         requireCurrentOrganisation(from);
         requireCurrentOrganisation(to);
 
-        // Debit the source entry.
-        StockEntry srcEntry = stockEntryRepository
-                .findByPartIdAndLocationId(part.getId(), from.getId())
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST,
-                        "No stock at source location"));
-        int newSrcQty = srcEntry.getQuantity() - qty;
-        if (newSrcQty < 0) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
-                    "Stock would go negative at this location");
-        }
-        BigDecimal sourceWac = srcEntry.getUnitPrice();
-        srcEntry.setQuantity(newSrcQty);
-        stockEntryRepository.save(srcEntry);
-
-        // Credit the destination entry (create if needed), merging WAC.
-        StockEntry dstEntry = stockEntryRepository
-                .findByPartIdAndLocationId(part.getId(), to.getId())
-                .orElseGet(() -> StockEntry.builder()
-                        .part(part)
-                        .location(to)
-                        .quantity(0)
-                        .build());
-        int oldDstQty = dstEntry.getQuantity();
-        dstEntry.setQuantity(oldDstQty + qty);
-        if (sourceWac != null) {
-            if (oldDstQty == 0 || dstEntry.getUnitPrice() == null) {
-                dstEntry.setUnitPrice(sourceWac);
-            } else {
-                // Weighted average of existing destination stock and incoming stock.
-                BigDecimal merged = dstEntry.getUnitPrice().multiply(BigDecimal.valueOf(oldDstQty))
-                        .add(sourceWac.multiply(BigDecimal.valueOf(qty)))
-                        .divide(BigDecimal.valueOf(oldDstQty + qty), 10, RoundingMode.HALF_UP);
-                dstEntry.setUnitPrice(merged.setScale(2, RoundingMode.HALF_UP));
-            }
-        }
-        stockEntryRepository.save(dstEntry);
+        StockLedgerRepository.Applied source = take(part, from, qty);
+        BigDecimal sourceWac = source.unitPrice();
+        StockLedgerRepository.Applied target = stockLedgerRepository.add(part.getId(), to.getId(), qty, sourceWac);
 
         // Write a single MOVE record: quantity=-qty (debit from source), targetLocation=to.
         AppUser me = currentUserService.current();
@@ -141,7 +142,70 @@ public class StockMovementService {
                 .createdBy(me.getFullName() != null ? me.getFullName() : me.getEmail())
                 .build());
 
-        return srcEntry;
+        announce(from.getOrganisation().getId(), part.getId(), from.getId(), source, MovementType.MOVE);
+        announce(to.getOrganisation().getId(), part.getId(), to.getId(), target, MovementType.MOVE);
+        return snapshot(source, part, from);
+    }
+
+    /** What a relocation moved: entries emptied, and the units they held between them. */
+    public record Relocated(int entries, long quantity) {}
+
+    /**
+     * Moves all the stock in {@code from}'s subtree — {@code from} and every location below it — to
+     * {@code to}, exactly as if each entry had been emptied with {@link #applyMove}: one MOVE row per
+     * entry, the stock arriving at the source's WAC and averaged into the target's. Only it takes a
+     * handful of statements instead of several per entry: the subtree is emptied by one UPDATE, the
+     * target credited by one batch of the ledger's add (in entry order, so the averaging is the one
+     * a replay of the MOVE rows arrives at), and the ledger rows written by one batch.
+     *
+     * <p>Reserved stock moves too — a drawer being carried to another shelf takes the parts that
+     * projects have set aside with it. The reservations are re-pointed at the target in one
+     * statement and the target entries' reserved counts raised to match.
+     *
+     * <p>The caller must make sure {@code to} is not inside the subtree.
+     */
+    @Transactional
+    public Relocated relocate(Location from, Location to, String comments) {
+        requireCurrentOrganisation(from);
+        requireCurrentOrganisation(to);
+
+        List<StockLedgerRepository.Drained> drained = stockLedgerRepository.drain(from.getId());
+        if (drained.isEmpty()) {
+            return new Relocated(0, 0);
+        }
+        List<StockLedgerRepository.Applied> credited = stockLedgerRepository.addAll(drained.stream()
+                .map(d -> new StockLedgerRepository.Receipt(d.partId(), to.getId(), d.quantity(),
+                        d.unitPrice(), comments))
+                .toList());
+        Map<Long, Integer> reserved = new HashMap<>();
+        drained.stream().filter(d -> d.reserved() > 0)
+                .forEach(d -> reserved.merge(d.partId(), d.reserved(), Integer::sum));
+        if (!reserved.isEmpty()) {
+            stockReservationRepository.relocateSubtree(from.getId(), to.getId());
+            stockLedgerRepository.addReserved(to.getId(), reserved);
+        }
+
+        AppUser me = currentUserService.current();
+        stockLedgerRepository.recordMoves(drained.stream()
+                        .map(d -> new StockLedgerRepository.Move(d.partId(), d.locationId(), to.getId(),
+                                d.quantity(), d.unitPrice(), comments))
+                        .toList(),
+                me.getFullName() != null ? me.getFullName() : me.getEmail(), LocalDateTime.now());
+
+        Long organisationId = from.getOrganisation().getId();
+        long quantity = 0;
+        for (int i = 0; i < drained.size(); i++) {
+            StockLedgerRepository.Drained d = drained.get(i);
+            StockLedgerRepository.Applied c = credited.get(i);
+            quantity += d.quantity();
+            announce(organisationId, d.partId(), d.locationId(),
+                    new StockLedgerRepository.Applied(d.entryId(), 0, 0, d.unitPrice()), MovementType.MOVE);
+            // The reservations were added after the last credit; the stream keeps the last one per part.
+            announce(organisationId, d.partId(), to.getId(), new StockLedgerRepository.Applied(c.entryId(),
+                    c.quantity(), c.reserved() + reserved.getOrDefault(d.partId(), 0), c.unitPrice()),
+                    MovementType.MOVE);
+        }
+        return new Relocated(drained.size(), quantity);
     }
 
     /**
@@ -163,27 +227,21 @@ public class StockMovementService {
     /**
      * Core apply logic shared by the public variants. Returns {@code Pair<movement, entry>} so
      * callers can choose which to return to their own callers.
+     *
+     * <p>The aggregate is changed first, by one statement that checks and writes it together (see
+     * {@link StockLedgerRepository}); the movement is only written once that has succeeded.
      */
     private Pair<StockMovement, StockEntry> applyInternal(Part part, Location location, int deltaQty,
                                                            BigDecimal unitPrice, String comments,
                                                            MovementType type, Project project) {
-        StockEntry entry = stockEntryRepository
-                .findByPartIdAndLocationId(part.getId(), location.getId())
-                .orElseGet(() -> StockEntry.builder()
-                        .part(part)
-                        .location(location)
-                        .quantity(0)
-                        .build());
-
-        int newQuantity = entry.getQuantity() + deltaQty;
-        if (newQuantity < 0) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
-                    "Stock would go negative at this location");
-        }
+        StockLedgerRepository.Applied applied = deltaQty < 0
+                ? take(part, location, -deltaQty)
+                : stockLedgerRepository.add(part.getId(), location.getId(), deltaQty, unitPrice);
 
-        // For CONSUME/PROJECT_OUT movements record the WAC at time of consumption.
+        // For CONSUME/PROJECT_OUT movements record the WAC at time of consumption. A take leaves
+        // the WAC as it was, so the price the statement returned is the one the stock went out at.
         BigDecimal movementPrice = (deltaQty < 0 && unitPrice == null)
-                ? entry.getUnitPrice()
+                ? applied.unitPrice()
                 : unitPrice;
 
         AppUser me = currentUserService.current();
@@ -199,45 +257,53 @@ public class StockMovementService {
                 .project(project)
                 .build());
 
-        entry.setQuantity(newQuantity);
-        if (unitPrice != null && deltaQty > 0 && newQuantity > 0) {
-            // Recalculate weighted average cost: (old_qty × old_wac + added_qty × price) / new_qty
-            int oldQty = newQuantity - deltaQty;
-            BigDecimal oldWac = entry.getUnitPrice() != null ? entry.getUnitPrice() : BigDecimal.ZERO;
-            BigDecimal newWac = oldWac.multiply(BigDecimal.valueOf(oldQty))
-                    .add(unitPrice.multiply(BigDecimal.valueOf(deltaQty)))
-                    .divide(BigDecimal.valueOf(newQuantity), 10, RoundingMode.HALF_UP);
-            entry.setUnitPrice(newWac.setScale(2, RoundingMode.HALF_UP));
-        }
-        StockEntry saved = stockEntryRepository.save(entry);
-        return Pair.of(movement, saved);
+        announce(location.getOrganisation().getId(), part.getId(), location.getId(), applied, type);
+        return Pair.of(movement, snapshot(applied, part, location));
     }
 
-    private StockMovementDTO toDTO(StockMovement m) {
-        StockMovementDTO.StockMovementDTOBuilder b = StockMovementDTO.builder()
-                .id(m.getId())
-                .partId(m.getPart().getId())
-                .locationId(m.getLocation().getId())
-                .locationName(m.getLocation().getName())
-                .locationBreadcrumb(m.getLocation().breadcrumb())
-                .quantity(m.getQuantity())
-                .unitPrice(m.getUnitPrice())
-                .comments(m.getComments())
-                .movedAt(m.getMovedAt())
-                .createdBy(m.getCreatedBy())
-                .type(m.getType());
-
-        if (m.getTargetLocation() != null) {
-            b.targetLocationId(m.getTargetLocation().getId())
-             .targetLocationName(m.getTargetLocation().getName())
-             .targetLocationBreadcrumb(m.getTargetLocation().breadcrumb());
-        }
+    /**
+     * Takes stock, or explains why not. Stock reserved for a project may not be taken by anyone
+     * else; a project pulls its own reservation by releasing it first. The explanation is worked
+     * out only after the conditional update has refused, so the common path is one statement.
+     */
+    private StockLedgerRepository.Applied take(Part part, Location location, int qty) {
+        return stockLedgerRepository.take(part.getId(), location.getId(), qty).orElseThrow(() -> {
+            StockEntry entry = stockEntryRepository
+                    .findByPartIdAndLocationId(part.getId(), location.getId()).orElse(null);
+            if (entry == null || entry.getQuantity() < qty) {
+                return new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Stock would go negative at this location");
+            }
+            return new ResponseStatusException(HttpStatus.CONFLICT,
+                    "Only " + Math.max(0, entry.getQuantity() - entry.getReserved())
+                            + " unreserved at this location; the rest is reserved for projects");
+        });
+    }
 
-        if (m.getProject() != null) {
-            b.projectId(m.getProject().getId())
-             .projectName(m.getProject().getName());
-        }
+    /** Queues the entry as it now stands for the live stock stream, which sends it on commit. */
+    private void announce(Long organisationId, Long partId, Long locationId,
+                          StockLedgerRepository.Applied applied, MovementType type) {
+        stockChangeStream.record(organisationId, StockChangeDTO.builder()
+                .partId(partId)
+                .locationId(locationId)
+                .quantity(applied.quantity())
+                .reserved(applied.reserved())
+                .type(type)
+                .build());
+    }
 
-        return b.build();
+    /**
+     * The entry as the ledger statement left it. Not a managed entity: callers read it (for a DTO,
+     * mostly) and have no reason to save it — the row is already written.
+     */
+    private static StockEntry snapshot(StockLedgerRepository.Applied applied, Part part, Location location) {
+        return StockEntry.builder()
+                .id(applied.entryId())
+                .part(part)
+                .location(location)
+                .quantity(applied.quantity())
+                .unitPrice(applied.unitPrice())
+                .reserved(applied.reserved())
+                .build();
     }
 }
@@ -0,0 +1,318 @@
+package com.clele.parts.service;
+
+import com.clele.parts.dto.StockConsumptionDTO;
+import com.clele.parts.dto.StockValuationDTO;
+import com.clele.parts.model.MovementType;
+import com.clele.parts.repository.StockValuationRepository;
+import com.clele.parts.repository.StockValuationRepository.Consumed;
+import com.clele.parts.repository.StockValuationRepository.Issue;
+import com.clele.parts.repository.StockValuationRepository.Layer;
+import com.clele.parts.repository.StockValuationRepository.Movement;
+import com.clele.parts.repository.StockValuationRepository.PartState;
+import com.clele.parts.repository.StockValuationRepository.PartValue;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * What the stock cost: the value on hand and the cost of what went out, both by weighted average
+ * (WAC) and by first-in-first-out (FIFO), per part, at full precision. The live entries' unit price
+ * is a per-location average rounded to cents at every receipt; this works from the ledger instead,
+ * so nothing is rounded until a report shows it.
+ *
+ * <p>The fold's state — per part the units on hand, their cost at average and the open FIFO layers
+ * — is stored (V62), so a {@link #refresh} only reads the movements written since the last one and
+ * the stored state of the parts they touch. A movement is stamped when it is written, not when its
+ * transaction commits, so a refresh never goes past the start of the oldest transaction still open
+ * with writes of its own (a kit generation can run for minutes): a movement it commits later is
+ * stamped after that, and the next refresh picks it up. It also stops {@link #SETTLE} short of now,
+ * for a movement stamped just before its transaction first wrote. The reports refresh first and say
+ * how far they go.
+ *
+ * <p>Cost follows the ledger's rules where it has them: a priced receipt is costed at its price, an
+ * unpriced one at the part's average as it stands (the live entries keep their price the same way),
+ * and a MOVE changes nothing. Every movement that takes stock out is costed both ways and kept, which
+ * is what the cost-of-goods report adds up; a project return is a credit to its project at its own
+ * price.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class StockValuationService {
+
+    /** How long before now a refresh stops at the latest; see the class comment. */
+    static final Duration SETTLE = Duration.ofMinutes(5);
+    /** Precision for division; far beyond any price, and the same on every run. */
+    static final MathContext PRECISION = MathContext.DECIMAL128;
+
+    private final StockValuationRepository valuationRepository;
+    private final CurrentOrganisationService currentOrganisationService;
+
+    /**
+     * Folds the organisation's movements since the last run into the stored state. Holds the
+     * organisation's run row locked while it does, so concurrent refreshes take turns.
+     *
+     * @return how far the valuation now goes: every movement before this instant is in it
+     */
+    @Transactional
+    public LocalDateTime refresh(Long organisationId) {
+        LocalDateTime to = LocalDateTime.now().minus(SETTLE);
+        Optional<LocalDateTime> from = valuationRepository.lockRun(organisationId);
+        Optional<LocalDateTime> openWrite = valuationRepository.oldestOpenWrite();
+        if (openWrite.isPresent() && openWrite.get().isBefore(to)) {
+            log.info("Stock valuation for organisation {} held at {} by a transaction open since then",
+                    organisationId, openWrite.get());
+            to = openWrite.get();
+        }
+        if (from.isPresent() && !from.get().isBefore(to)) {
+            return from.get();
+        }
+        if (!valuationRepository.hasMovements(organisationId, from.orElse(null), to)) {
+            valuationRepository.save(organisationId, to, List.of(), List.of(), List.of());
+            return to;
+        }
+        Fold fold = new Fold();
+        // Only the parts with new movements: the rest of the stored state is left where it is.
+        valuationRepository.parts(organisationId, from.orElse(null), to, fold::seed);
+        valuationRepository.layers(organisationId, from.orElse(null), to, fold::seed);
+        valuationRepository.movements(organisationId, from.orElse(null), to, fold::apply);
+        valuationRepository.save(organisationId, to, fold.changedParts(), fold.changedLayers(), fold.issues);
+        log.info("Stock valuation for organisation {} to {}: {} parts changed, {} issues costed",
+                organisationId, to, fold.changed.size(), fold.issues.size());
+        return to;
+    }
+
+    /** What the current organisation's stock on hand cost, part by part, both ways. */
+    @Transactional
+    public StockValuationDTO valuation() {
+        Long organisationId = currentOrganisationService.currentId();
+        LocalDateTime valuedTo = refresh(organisationId);
+
+        long totalQuantity = 0;
+        BigDecimal wacTotal = BigDecimal.ZERO;
+        BigDecimal fifoTotal = BigDecimal.ZERO;
+        List<StockValuationDTO.Line> lines = new ArrayList<>();
+        for (PartValue v : valuationRepository.valuation(organisationId)) {
+            totalQuantity += v.quantity();
+            wacTotal = wacTotal.add(v.wacValue());
+            fifoTotal = fifoTotal.add(v.fifoValue());
+            lines.add(StockValuationDTO.Line.builder()
+                    .partId(v.partId())
+                    .partNumber(v.partNumber())
+                    .quantity(v.quantity())
+                    .wacUnitCost(v.unitCost() == null ? null : v.unitCost().setScale(4, RoundingMode.HALF_UP))
+                    .wacValue(cents(v.wacValue()))
+                    .fifoValue(cents(v.fifoValue()))
+                    .build());
+        }
+        return StockValuationDTO.builder()
+                .valuedTo(valuedTo)
+                .totalQuantity(totalQuantity)
+                .wacValue(cents(wacTotal))
+                .fifoValue(cents(fifoTotal))
+                .lines(lines)
+                .build();
+    }
+
+    /**
+     * The cost of what the current organisation's stock issues took out with
+     * {@code from <= moved_at < to}, per project, part and movement type. Either bound may be open;
+     * {@code projectId} narrows it to one project.
+     */
+    @Transactional
+    public StockConsumptionDTO consumption(LocalDateTime from, LocalDateTime to, Long projectId) {
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The period must end after it starts");
+        }
+        Long organisationId = currentOrganisationService.currentId();
+        LocalDateTime valuedTo = refresh(organisationId);
+
+        BigDecimal wacTotal = BigDecimal.ZERO;
+        BigDecimal fifoTotal = BigDecimal.ZERO;
+        List<StockConsumptionDTO.Line> lines = new ArrayList<>();
+        for (Consumed c : valuationRepository.consumed(organisationId, from, to, projectId)) {
+            wacTotal = wacTotal.add(c.wacCost());
+            fifoTotal = fifoTotal.add(c.fifoCost());
+            lines.add(StockConsumptionDTO.Line.builder()
+                    .projectId(c.projectId())
+                    .projectName(c.projectName())
+                    .partId(c.partId())
+                    .partNumber(c.partNumber())
+                    .type(MovementType.valueOf(c.type()))
+                    .quantity(c.quantity())
+                    .wacCost(cents(c.wacCost()))
+                    .fifoCost(cents(c.fifoCost()))
+                    .build());
+        }
+        return StockConsumptionDTO.builder()
+                .from(from)
+                .to(to)
+                .valuedTo(valuedTo)
+                .wacCost(cents(wacTotal))
+                .fifoCost(cents(fifoTotal))
+                .lines(lines)
+                .build();
+    }
+
+    private static BigDecimal cents(BigDecimal value) {
+        return value.setScale(2, RoundingMode.HALF_UP);
+    }
+
+    /** The valuation itself. Mutable and single-use. */
+    static final class Fold {
+
+        static final class Running {
+            final Long partId;
+            long quantity;
+            BigDecimal value = BigDecimal.ZERO;
+            BigDecimal unitCost;
+            final Deque<Open> layers = new ArrayDeque<>();
+
+            Running(Long partId) {
+                this.partId = partId;
+            }
+        }
+
+        static final class Open {
+            final Long movementId;
+            final LocalDateTime receivedAt;
+            int remaining;
+            final BigDecimal unitCost;
+
+            Open(Long movementId, LocalDateTime receivedAt, int remaining, BigDecimal unitCost) {
+                this.movementId = movementId;
+                this.receivedAt = receivedAt;
+                this.remaining = remaining;
+                this.unitCost = unitCost;
+            }
+        }
+
+        final Map<Long, Running> parts = new HashMap<>();
+        final Set<Long> changed = new LinkedHashSet<>();
+        final List<Issue> issues = new ArrayList<>();
+
+        void seed(PartState state) {
+            Running r = at(state.partId());
+            r.quantity = state.quantity();
+            r.value = state.value();
+            r.unitCost = state.unitCost();
+        }
+
+        /** Layers must come oldest first within each part. */
+        void seed(Layer layer) {
+            at(layer.partId()).layers.addLast(new Open(layer.movementId(), layer.receivedAt(),
+                    layer.remaining(), layer.unitCost()));
+        }
+
+        void apply(Movement m) {
+            if (m.quantity() == 0) {
+                return;
+            }
+            Running r = at(m.partId());
+            changed.add(m.partId());
+            if (m.quantity() > 0) {
+                BigDecimal cost = receive(r, m);
+                if (MovementType.PROJECT_RETURN.name().equals(m.type())) {
+                    BigDecimal credit = cost.multiply(BigDecimal.valueOf(m.quantity())).negate();
+                    issues.add(new Issue(m.id(), m.partId(), m.projectId(), m.type(), m.movedAt(),
+                            -m.quantity(), credit, credit));
+                }
+            } else {
+                issue(r, m);
+            }
+        }
+
+        /** @return the unit cost the receipt came in at */
+        private static BigDecimal receive(Running r, Movement m) {
+            int qty = m.quantity();
+            BigDecimal cost = m.unitPrice() != null ? m.unitPrice()
+                    : r.unitCost != null ? r.unitCost : BigDecimal.ZERO;
+            // Stock issued beyond what the fold knew of is made good first; it has no layer to fill.
+            int layered = (int) Math.min(qty, Math.max(0, r.quantity + qty));
+            if (layered > 0) {
+                r.layers.addLast(new Open(m.id(), m.movedAt(), layered, cost));
+            }
+            r.quantity += qty;
+            if (r.quantity > 0) {
+                r.value = r.value.add(cost.multiply(BigDecimal.valueOf(layered)));
+                r.unitCost = r.value.divide(BigDecimal.valueOf(r.quantity), PRECISION);
+            } else {
+                r.value = BigDecimal.ZERO;
+                r.unitCost = cost;
+            }
+            return cost;
+        }
+
+        private void issue(Running r, Movement m) {
+            int qty = -m.quantity();
+            BigDecimal fallback = r.unitCost != null ? r.unitCost : BigDecimal.ZERO;
+
+            // Average: the issued share of the running value, so taking the last unit takes what is left.
+            long held = Math.max(0, r.quantity);
+            long covered = Math.min(qty, held);
+            BigDecimal wacCost = covered == held
+                    ? r.value
+                    : r.value.multiply(BigDecimal.valueOf(covered)).divide(BigDecimal.valueOf(held), PRECISION);
+            wacCost = wacCost.add(fallback.multiply(BigDecimal.valueOf(qty - covered)));
+            r.value = covered == held ? BigDecimal.ZERO : r.value.subtract(wacCost);
+            r.quantity -= qty;
+
+            // FIFO: the oldest layers first; anything beyond them at the average.
+            BigDecimal fifoCost = BigDecimal.ZERO;
+            int left = qty;
+            while (left > 0 && !r.layers.isEmpty()) {
+                Open oldest = r.layers.peekFirst();
+                int take = Math.min(left, oldest.remaining);
+                fifoCost = fifoCost.add(oldest.unitCost.multiply(BigDecimal.valueOf(take)));
+                oldest.remaining -= take;
+                left -= take;
+                if (oldest.remaining == 0) {
+                    r.layers.removeFirst();
+                }
+            }
+            fifoCost = fifoCost.add(fallback.multiply(BigDecimal.valueOf(left)));
+
+            issues.add(new Issue(m.id(), m.partId(), m.projectId(), m.type(), m.movedAt(), qty, wacCost, fifoCost));
+        }
+
+        List<PartState> changedParts() {
+            return changed.stream()
+                    .map(parts::get)
+                    .map(r -> new PartState(r.partId, r.quantity, r.value, r.unitCost))
+                    .toList();
+        }
+
+        List<Layer> changedLayers() {
+            List<Layer> layers = new ArrayList<>();
+            for (Long partId : changed) {
+                for (Open o : parts.get(partId).layers) {
+                    layers.add(new Layer(partId, o.movementId, o.receivedAt, o.remaining, o.unitCost));
+                }
+            }
+            return layers;
+        }
+
+        private Running at(Long partId) {
+            return parts.computeIfAbsent(partId, Running::new);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.clele.parts.service.bom;
+
+import com.clele.parts.model.ProjectBomLine;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The content fingerprint of a BOM line: a SHA-256 over every field a re-import would refresh, so
+ * that "is this row the same as last time?" is one string comparison instead of eleven.
+ *
+ * <p>The line number is deliberately left out. Inserting a row near the top of a schematic shifts
+ * every line below it, and that is a renumbering, not a change to three hundred parts.
+ *
+ * <p>Each field is written with a presence marker and a terminator, so {@code null} and {@code ""}
+ * differ and no two field sequences can run together into the same bytes. The extra columns are
+ * hashed in key order, because jsonb hands them back sorted whatever order the file had them in.
+ */
+public final class BomLineFingerprint {
+
+    private BomLineFingerprint() {
+    }
+
+    public static String of(String referenceKey, String designators, String value, String footprint,
+                            String mpn, String manufacturer, String description, String datasheetUrl,
+                            int quantity, boolean dnp, Map<String, String> extra) {
+        MessageDigest digest = sha256();
+        for (String field : new String[]{referenceKey, designators, value, footprint, mpn,
+                manufacturer, description, datasheetUrl, Integer.toString(quantity), Boolean.toString(dnp)}) {
+            update(digest, field);
+        }
+        if (extra != null) {
+            new TreeMap<>(extra).forEach((header, cell) -> {
+                update(digest, header);
+                update(digest, cell);
+            });
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /** The fingerprint of what is stored on a line — for lines written before fingerprints existed. */
+    public static String of(ProjectBomLine line) {
+        return of(line.getReferenceKey(), line.getDesignators(), line.getValue(), line.getFootprint(),
+                line.getMpn(), line.getManufacturer(), line.getDescription(), line.getDatasheetUrl(),
+                line.getQuantity(), line.isDnp(), line.getExtra());
+    }
+
+    private static void update(MessageDigest digest, String field) {
+        if (field == null) {
+            digest.update((byte) 0);
+            return;
+        }
+        digest.update((byte) 1);
+        digest.update(field.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.clele.parts.service.bom;
+
+import com.clele.parts.model.BomLineStatus;
+import com.clele.parts.model.Project;
+import com.clele.parts.model.ProjectBom;
+import com.clele.parts.repository.ProjectBomExportRepository;
+import com.clele.parts.repository.ProjectBomExportRepository.ExportRow;
+import com.clele.parts.repository.ProjectBomRepository;
+import com.clele.parts.service.CurrentOrganisationService;
+import com.clele.parts.service.ProjectService;
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Writes a project's imported BOM as a cost and pick list: every line with its matched part, the
+ * locations holding that part in picking order, and what the build will cost at the parts'
+ * weighted-average prices.
+ *
+ * <p>A line stocked in several locations has a row for each, but its line cost is on the first of
+ * them only, so the column adds up to the cost of the build. A line nobody buys — do-not-populate,
+ * excluded, or provided from the drawer — has no line cost at all.
+ *
+ * <p>Rows go from the database cursor straight to the output stream (see
+ * {@link ProjectBomExportRepository}); nothing here holds more than the row being written and the
+ * numbers of the lines already costed.
+ */
+@Service
+@RequiredArgsConstructor
+public class ProjectBomExportService {
+
+    /** Plain RFC 4180 CSV, or the same with the byte-order mark Excel needs to read UTF-8. */
+    public enum Format { CSV, EXCEL }
+
+    /** What the controller needs before the first byte: the file name, and what to stream. */
+    public record Export(Long bomId, Long organisationId, int instanceCount, String filename) {}
+
+    private static final String[] HEADERS = {
+            "Line", "Designators", "Value", "Footprint", "MPN", "Manufacturer",
+            "Qty per board", "Total needed", "DNP", "Status", "Part number",
+            "Location", "Qty at location", "Reserved at location", "Unit price at location",
+            "On hand (all locations)", "Weighted avg cost", "Line cost"};
+
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    private final ProjectBomRepository bomRepository;
+    private final ProjectBomExportRepository exportRepository;
+    private final ProjectService projectService;
+    private final CurrentOrganisationService currentOrganisationService;
+
+    /**
+     * Resolves and checks everything an export needs, so that a missing project or BOM is still an
+     * ordinary error response — once streaming has begun the status line has already gone out.
+     */
+    @Transactional(readOnly = true)
+    public Export prepare(Long projectId) {
+        Project project = projectService.requireOwnProject(projectId);
+        ProjectBom bom = bomRepository.findByProjectId(projectId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "No BOM has been imported for this project"));
+        String base = project.getName().replaceAll("[^A-Za-z0-9._-]+", "-").replaceAll("^-|-$", "");
+        return new Export(bom.getId(), currentOrganisationService.currentId(), project.getInstanceCount(),
+                (base.isEmpty() ? "project-" + project.getId() : base) + "-bom.csv");
+    }
+
+    /**
+     * Streams the export to {@code out}. The transaction is what keeps the Postgres cursor open, so
+     * it spans the whole write.
+     */
+    @Transactional(readOnly = true)
+    public void write(Export export, Format format, OutputStream out) throws IOException {
+        if (format == Format.EXCEL) {
+            out.write(UTF8_BOM);
+        }
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        CSVFormat csvFormat = (format == Format.EXCEL ? CSVFormat.EXCEL : CSVFormat.RFC4180).builder()
+                .setHeader(HEADERS)
+                .build();
+        CSVPrinter printer = new CSVPrinter(writer, csvFormat);
+        // Rows come in picking order, so one line's locations are not adjacent.
+        Set<Integer> costed = new HashSet<>();
+        try {
+            exportRepository.stream(export.bomId(), export.organisationId(), row -> {
+                try {
+                    printer.printRecord(values(row, export.instanceCount(), costed.add(row.lineNo())));
+                } catch (IOException e) {
+                    // Usually the client went away mid-download; abandon the cursor with it.
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        printer.flush();
+    }
+
+    private static Object[] values(ExportRow row, int instanceCount, boolean firstOfLine) {
+        int totalNeeded = row.quantity() * instanceCount;
+        BigDecimal wac = row.partWac() == null ? null : row.partWac().setScale(4, RoundingMode.HALF_UP);
+        BigDecimal lineCost = wac == null || !firstOfLine || !bought(row) ? null
+                : wac.multiply(BigDecimal.valueOf(totalNeeded)).setScale(2, RoundingMode.HALF_UP);
+        return new Object[]{
+                row.lineNo(), row.designators(), row.value(), row.footprint(), row.mpn(), row.manufacturer(),
+                row.quantity(), totalNeeded, row.dnp() ? "yes" : "", row.status(), row.partNumber(),
+                row.locationBreadcrumb(), row.locationQuantity(), row.locationReserved(),
+                row.locationUnitPrice(), row.partOnHand(), wac, lineCost};
+    }
+
+    /** Whether the build pays for the line's part: not when it is not fitted, or not taken from stock. */
+    private static boolean bought(ExportRow row) {
+        return !row.dnp()
+                && !BomLineStatus.EXCLUDED.name().equals(row.status())
+                && !BomLineStatus.PROVIDED.name().equals(row.status());
+    }
+}
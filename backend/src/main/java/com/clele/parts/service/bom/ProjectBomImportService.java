@@ -30,6 +30,11 @@ import java.util.*;
  * value, footprint, quantity) is refreshed; what the user concluded (the matched part, "provided",
  * "excluded") is preserved.
  *
+ * <p>A re-import only touches what moved. Each stored line carries a fingerprint of its file-derived
+ * fields ({@link BomLineFingerprint}); a paired row with the same fingerprint is counted as
+ * unchanged and otherwise left alone — not copied onto, not auto-matched, not listed in the
+ * preview, not written. A revision that edits five lines of three hundred previews and commits five.
+ *
  * <p>Every import is a <b>dry run unless {@code commit} is true</b>. The merge deletes lines that
  * have left the schematic, so the user sees the counts first — the same shape as the convert-to-number
  * dry run on spec definitions.
@@ -55,7 +60,16 @@ public class ProjectBomImportService {
     private record Incoming(int lineNo, String referenceKey, String designators, String value,
                             String footprint, String mpn, String manufacturer, String description,
                             String datasheetUrl, int quantity, boolean dnp,
-                            Map<String, String> extra) {
+                            Map<String, String> extra, String fingerprint) {
+
+        Incoming(int lineNo, String referenceKey, String designators, String value, String footprint,
+                 String mpn, String manufacturer, String description, String datasheetUrl,
+                 int quantity, boolean dnp, Map<String, String> extra) {
+            this(lineNo, referenceKey, designators, value, footprint, mpn, manufacturer, description,
+                    datasheetUrl, quantity, dnp, extra,
+                    BomLineFingerprint.of(referenceKey, designators, value, footprint, mpn, manufacturer,
+                            description, datasheetUrl, quantity, dnp, extra));
+        }
     }
 
     /**
@@ -326,6 +340,8 @@ public class ProjectBomImportService {
         final List<ProjectBomLine> added = new ArrayList<>();
         final List<ProjectBomLine> updated = new ArrayList<>();
         final List<ProjectBomLine> removed = new ArrayList<>();
+        /** Same content, new position in the file: only {@code line_no} is written. */
+        final List<ProjectBomLine> renumbered = new ArrayList<>();
         final List<BomImportLinePreviewDTO> preview = new ArrayList<>();
         int unchanged;
         int changed;
@@ -374,14 +390,11 @@ public class ProjectBomImportService {
             ProjectBomLine target = pairs.get(line);
             if (target == null) {
                 merge.added.add(apply(line, new ProjectBomLine(), merge, orgId, true));
+            } else if (sameContent(line, target)) {
+                skipUnchanged(line, target, merge, orgId);
             } else {
-                boolean moved = applyToExisting(line, target, merge, orgId);
-                if (moved) {
-                    merge.updated.add(target);
-                } else {
-                    merge.unchanged++;
-                    merge.preview.add(preview("UNCHANGED", line, target));
-                }
+                applyToExisting(line, target, merge, orgId);
+                merge.updated.add(target);
             }
         }
 
@@ -403,6 +416,45 @@ public class ProjectBomImportService {
         return merge;
     }
 
+    /**
+     * Whether the file row says exactly what the stored line already says. A line stored before
+     * fingerprints existed is fingerprinted from its columns here, and keeps the result — on a
+     * commit that is the one write an otherwise unchanged line costs, once.
+     */
+    private boolean sameContent(Incoming line, ProjectBomLine target) {
+        if (target.getContentHash() == null) {
+            target.setContentHash(BomLineFingerprint.of(target));
+        }
+        return line.fingerprint().equals(target.getContentHash());
+    }
+
+    /**
+     * An unchanged line is left as it is, with two exceptions that are real changes rather than
+     * churn: a row that moved in the file has its line number updated, and an unmatched line still
+     * gets its retry at auto-match (see {@link #applyToExisting}) — the catalogue may have gained
+     * the part since, and finding it is exactly the kind of news the preview is for.
+     */
+    private void skipUnchanged(Incoming line, ProjectBomLine target, Merge merge, Long orgId) {
+        if (target.getStatus() == BomLineStatus.UNMATCHED && target.getPart() == null && !line.dnp()) {
+            Optional<Part> part = autoMatch(orgId, line);
+            if (part.isPresent()) {
+                target.setLineNo(line.lineNo());
+                target.setPart(part.get());
+                target.setStatus(BomLineStatus.MATCHED);
+                target.setMatchSource(BomMatchSource.AUTO);
+                merge.autoMatched++;
+                merge.updated.add(target);
+                merge.preview.add(preview("UPDATED", line, target));
+                return;
+            }
+        }
+        merge.unchanged++;
+        if (target.getLineNo() != line.lineNo()) {
+            target.setLineNo(line.lineNo());
+            merge.renumbered.add(target);
+        }
+    }
+
     /** Fills a brand-new line from the file and gives auto-match a go at it. */
     private ProjectBomLine apply(Incoming line, ProjectBomLine target, Merge merge, Long orgId,
                                  boolean isNew) {
@@ -423,8 +475,8 @@ public class ProjectBomImportService {
     }
 
     /**
-     * Refreshes an existing line from the file while preserving the decision recorded on it.
-     * Returns whether anything actually moved.
+     * Refreshes an existing line from the file while preserving the decision recorded on it. Only
+     * reached for a line whose fingerprint moved; unchanged lines never get here.
      *
      * <p>Three rules earn their keep here:
      * <ul>
@@ -437,19 +489,9 @@ public class ProjectBomImportService {
      *       user decision — un-excluding a line the user excluded by hand would overrule them.</li>
      * </ul>
      */
-    private boolean applyToExisting(Incoming line, ProjectBomLine target, Merge merge, Long orgId) {
+    private void applyToExisting(Incoming line, ProjectBomLine target, Merge merge, Long orgId) {
         boolean valueMoved = !Objects.equals(line.value(), target.getValue())
                 || !Objects.equals(line.footprint(), target.getFootprint());
-        boolean anythingMoved = valueMoved
-                || !Objects.equals(line.referenceKey(), target.getReferenceKey())
-                || !Objects.equals(line.designators(), target.getDesignators())
-                || !Objects.equals(line.mpn(), target.getMpn())
-                || !Objects.equals(line.manufacturer(), target.getManufacturer())
-                || !Objects.equals(line.description(), target.getDescription())
-                || !Objects.equals(line.datasheetUrl(), target.getDatasheetUrl())
-                || line.quantity() != target.getQuantity()
-                || line.dnp() != target.isDnp()
-                || line.lineNo() != target.getLineNo();
 
         boolean wasDnp = target.isDnp();
         boolean decided = target.getStatus() == BomLineStatus.MATCHED
@@ -475,10 +517,7 @@ public class ProjectBomImportService {
             });
         }
 
-        if (anythingMoved) {
-            merge.preview.add(preview("UPDATED", line, target));
-        }
-        return anythingMoved;
+        merge.preview.add(preview("UPDATED", line, target));
     }
 
     private void copyFileFields(Incoming line, ProjectBomLine target) {
@@ -494,6 +533,7 @@ public class ProjectBomImportService {
         target.setQuantity(line.quantity());
         target.setDnp(line.dnp());
         target.setExtra(line.extra());
+        target.setContentHash(line.fingerprint());
     }
 
     /**
@@ -576,6 +616,7 @@ public class ProjectBomImportService {
         }
         lineRepository.saveAll(merge.added);
         lineRepository.saveAll(merge.updated);
+        lineRepository.saveAll(merge.renumbered);
         return bom;
     }
 
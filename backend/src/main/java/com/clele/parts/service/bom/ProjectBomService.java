@@ -30,9 +30,12 @@ public class ProjectBomService {
     /** How many suggestions to offer per line. Enough to choose from, few enough to read. */
     private static final int CANDIDATE_LIMIT = 10;
 
+    private static final long[] NO_STOCK = {0, 0};
+
     private final ProjectBomRepository bomRepository;
     private final ProjectBomLineRepository lineRepository;
     private final ProjectPartRepository projectPartRepository;
+    private final ProjectPartBatchRepository projectPartBatchRepository;
     private final PartRepository partRepository;
     private final StockEntryRepository stockEntryRepository;
     private final PartService partService;
@@ -172,6 +175,10 @@ public class ProjectBomService {
      *
      * <p>Rows already in {@code project_part} that no line accounts for are reported, never
      * deleted: the imported BOM is not the only way parts get into a project.
+     *
+     * <p>The comparison runs against the BOM's part ids and quantities alone, and everything that
+     * must be created or changed goes out as one batched upsert — a 500-line BOM is a handful of
+     * round trips, not one per part.
      */
     @Transactional
     public BomApplyResultDTO apply(Long projectId) {
@@ -190,13 +197,11 @@ public class ProjectBomService {
         int skippedProvided = 0;
         int skippedExcluded = 0;
         Map<Long, Integer> qtyByPart = new LinkedHashMap<>();
-        Map<Long, Part> partsById = new LinkedHashMap<>();
 
         for (ProjectBomLine line : lines) {
             switch (line.effectiveStatus()) {
                 case MATCHED -> {
                     qtyByPart.merge(line.getPart().getId(), line.getQuantity(), Integer::sum);
-                    partsById.putIfAbsent(line.getPart().getId(), line.getPart());
                 }
                 case PROVIDED -> skippedProvided++;
                 case EXCLUDED -> skippedExcluded++;
@@ -204,31 +209,28 @@ public class ProjectBomService {
             }
         }
 
-        Map<Long, ProjectPart> existing = projectPartRepository.findByProjectIdWithPart(projectId)
-                .stream()
-                .collect(Collectors.toMap(pp -> pp.getPart().getId(), pp -> pp, (a, b) -> a,
-                        LinkedHashMap::new));
+        Map<Long, Integer> existing = new HashMap<>();
+        for (Object[] row : projectPartRepository.findQtyByProjectId(projectId)) {
+            existing.put((Long) row[0], ((Number) row[1]).intValue());
+        }
 
         int created = 0;
         int updated = 0;
         int unchanged = 0;
+        Map<Long, Integer> writes = new LinkedHashMap<>();
         for (Map.Entry<Long, Integer> entry : qtyByPart.entrySet()) {
-            ProjectPart pp = existing.get(entry.getKey());
-            if (pp == null) {
-                projectPartRepository.save(ProjectPart.builder()
-                        .project(project)
-                        .part(partsById.get(entry.getKey()))
-                        .qtyPerInstance(entry.getValue())
-                        .build());
+            Integer current = existing.get(entry.getKey());
+            if (current == null) {
                 created++;
-            } else if (pp.getQtyPerInstance() != entry.getValue()) {
-                pp.setQtyPerInstance(entry.getValue());
-                projectPartRepository.save(pp);
+            } else if (current.intValue() != entry.getValue()) {
                 updated++;
             } else {
                 unchanged++;
+                continue;
             }
+            writes.put(entry.getKey(), entry.getValue());
         }
+        projectPartBatchRepository.upsert(project.getId(), writes);
 
         int unaccounted = (int) existing.keySet().stream()
                 .filter(partId -> !qtyByPart.containsKey(partId))
@@ -284,8 +286,11 @@ public class ProjectBomService {
                 || (part.getMpn() != null && terms.contains(part.getMpn().toLowerCase(Locale.ROOT)));
     }
 
-    /** On-hand totals across the organisation for the parts these lines are matched to. */
-    private Map<Long, Long> onHandFor(List<ProjectBomLine> lines) {
+    /**
+     * On-hand and reserved totals across the organisation for the parts these lines are matched to,
+     * as {@code partId -> [onHand, reserved]}.
+     */
+    private Map<Long, long[]> onHandFor(List<ProjectBomLine> lines) {
         List<Long> partIds = lines.stream()
                 .map(ProjectBomLine::getPart)
                 .filter(Objects::nonNull)
@@ -295,15 +300,16 @@ public class ProjectBomService {
         if (partIds.isEmpty()) {
             return Map.of();
         }
-        Map<Long, Long> onHand = new HashMap<>();
+        Map<Long, long[]> onHand = new HashMap<>();
         stockEntryRepository.sumQuantityByPartIdsAndOrganisationId(
                         partIds, currentOrganisationService.currentId())
-                .forEach(row -> onHand.put((Long) row[0], (Long) row[1]));
+                .forEach(row -> onHand.put((Long) row[0],
+                        new long[]{((Number) row[1]).longValue(), ((Number) row[2]).longValue()}));
         return onHand;
     }
 
     private ProjectBomDTO toDTO(Project project, ProjectBom bom, List<ProjectBomLine> lines) {
-        Map<Long, Long> onHand = onHandFor(lines);
+        Map<Long, long[]> onHand = onHandFor(lines);
         Map<BomLineStatus, Long> byStatus = lines.stream()
                 .collect(Collectors.groupingBy(ProjectBomLine::effectiveStatus, Collectors.counting()));
 
@@ -330,8 +336,9 @@ public class ProjectBomService {
                 .build();
     }
 
-    private ProjectBomLineDTO toLineDTO(ProjectBomLine line, int instanceCount, Map<Long, Long> onHand) {
+    private ProjectBomLineDTO toLineDTO(ProjectBomLine line, int instanceCount, Map<Long, long[]> onHand) {
         Part part = line.getPart();
+        long[] stock = part == null ? null : onHand.getOrDefault(part.getId(), NO_STOCK);
         return ProjectBomLineDTO.builder()
                 .id(line.getId())
                 .lineNo(line.getLineNo())
@@ -352,7 +359,8 @@ public class ProjectBomService {
                 .partId(part == null ? null : part.getId())
                 .partNumber(part == null ? null : part.getPartNumber())
                 .partDescription(part == null ? null : part.getDescription())
-                .onHand(part == null ? null : onHand.getOrDefault(part.getId(), 0L))
+                .onHand(stock == null ? null : stock[0])
+                .reserved(stock == null ? null : stock[1])
                 .totalNeeded(line.getQuantity() * instanceCount)
                 .build();
     }
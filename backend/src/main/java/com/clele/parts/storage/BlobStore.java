@@ -0,0 +1,81 @@
+package com.clele.parts.storage;
+
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.function.Consumer;
+
+/**
+ * Where attachment content lives: immutable blobs named by the SHA-256 of their bytes. The database
+ * keeps only the hash and the metadata, so a photo or datasheet is neither in the backups' table
+ * dumps nor in the WAL, and serving one does not pull it through JDBC.
+ *
+ * <p>Content-addressed, so storing the same bytes twice stores them once, and nothing ever changes
+ * in place. Blobs are shared by every row with that hash — across organisations too — so deleting a
+ * row never deletes its blob; the collector ({@code AttachmentBlobCollector}) removes blobs that no
+ * row names any more. A blob written or re-stored within the grace period the collector is given is
+ * left alone, which covers an upload whose row has not committed yet.
+ *
+ * <p>{@link FileSystemBlobStore} is the implementation; another store (object storage, say) is
+ * another bean implementing this in its place.
+ */
+public interface BlobStore {
+
+    /**
+     * Stores the bytes unless a blob with their hash is already held, and marks it as just used
+     * either way.
+     *
+     * @return the hash, lower-case hex
+     */
+    String put(byte[] data);
+
+    /**
+     * Streams the content into the staging area, hashing it as it goes, for the caller to
+     * {@linkplain StagedBlob#commit() commit} or throw away. The way in for content that arrives as a
+     * stream — an upload, a download — so none of it is ever held in memory at once. The stream is
+     * read to the end but not closed.
+     */
+    StagedBlob stage(InputStream in);
+
+    /** The blob, for streaming. @throws IllegalStateException when there is no such blob */
+    Resource get(String hash);
+
+    /** The blob's bytes, for the few callers that must have them all in hand. */
+    default byte[] read(String hash) {
+        try {
+            return get(hash).getContentAsByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read blob " + hash, e);
+        }
+    }
+
+    /**
+     * Deletes the blob unless it has been used at or after {@code usedBefore}.
+     *
+     * @return whether it was deleted
+     */
+    boolean delete(String hash, Instant usedBefore);
+
+    /** Hands over every blob last used before {@code usedBefore}. */
+    void forEachUnusedSince(Instant usedBefore, Consumer<String> sink);
+
+    /** The name a blob of these bytes has. */
+    static String hash(byte[] data) {
+        return HexFormat.of().formatHex(digest().digest(data));
+    }
+
+    /** A fresh digest of the kind blobs are named by, for hashing content as it streams past. */
+    static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+}
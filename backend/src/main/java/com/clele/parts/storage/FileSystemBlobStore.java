@@ -0,0 +1,237 @@
+package com.clele.parts.storage;
+
+import com.clele.parts.config.AppProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * The blob store as a directory tree: {@code <blob-dir>/ab/cd/abcd…}, two levels of two hex digits
+ * each, so no directory holds more than a few hundred entries at any catalogue size this app sees.
+ * The directory is {@code app.storage.blob-dir}.
+ *
+ * <p>A blob is written to {@code <blob-dir>/tmp}, forced to disk, and moved into place in one
+ * rename, so a reader never sees half a file and a crash leaves at most a stray temporary file.
+ * The modification time is the "last used" the collector goes by: storing bytes that are already
+ * there touches it instead of writing them again.
+ *
+ * <p>{@link #stage} spools to the same {@code tmp} directory, which puts the rename into place on
+ * the same file system; a staged file is only forced to disk once it is committed, so content that
+ * turns out to be held already costs no sync.
+ */
+@Slf4j
+@Component
+public class FileSystemBlobStore implements BlobStore {
+
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path root;
+    private final Path tmp;
+
+    public FileSystemBlobStore(AppProperties appProperties) {
+        this.root = Path.of(appProperties.getStorage().getBlobDir()).toAbsolutePath().normalize();
+        this.tmp = root.resolve("tmp");
+        try {
+            Files.createDirectories(tmp);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create the blob directory " + root, e);
+        }
+        log.info("Attachment blobs in {}", root);
+    }
+
+    @Override
+    public String put(byte[] data) {
+        String hash = BlobStore.hash(data);
+        Path target = path(hash);
+        try {
+            if (touch(target)) {
+                return hash;
+            }
+            Files.createDirectories(target.getParent());
+            Path part = Files.createTempFile(tmp, hash, ".part");
+            try {
+                try (FileChannel out = FileChannel.open(part, StandardOpenOption.WRITE)) {
+                    ByteBuffer buffer = ByteBuffer.wrap(data);
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer);
+                    }
+                    out.force(true);
+                }
+                moveIntoPlace(part, target);
+            } finally {
+                Files.deleteIfExists(part);
+            }
+            return hash;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot store blob " + hash, e);
+        }
+    }
+
+    @Override
+    public StagedBlob stage(InputStream in) {
+        try {
+            Path part = Files.createTempFile(tmp, "staged", ".part");
+            try {
+                MessageDigest digest = BlobStore.digest();
+                long size;
+                try (FileChannel out = FileChannel.open(part, StandardOpenOption.WRITE)) {
+                    size = new DigestInputStream(in, digest).transferTo(Channels.newOutputStream(out));
+                }
+                return new Staged(part, HexFormat.of().formatHex(digest.digest()), size);
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(part);
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot stage a blob", e);
+        }
+    }
+
+    @Override
+    public Resource get(String hash) {
+        Path path = path(hash);
+        if (!Files.isRegularFile(path)) {
+            throw new IllegalStateException("Blob " + hash + " is missing from " + root);
+        }
+        return new FileSystemResource(path);
+    }
+
+    @Override
+    public boolean delete(String hash, Instant usedBefore) {
+        Path path = path(hash);
+        try {
+            if (!Files.exists(path) || !Files.getLastModifiedTime(path).toInstant().isBefore(usedBefore)) {
+                return false;
+            }
+            return Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete blob {}: {}", hash, e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public void forEachUnusedSince(Instant usedBefore, Consumer<String> sink) {
+        try (Stream<Path> files = Files.walk(root, 3)) {
+            files.filter(p -> !p.startsWith(tmp))
+                    .filter(p -> HASH.matcher(p.getFileName().toString()).matches())
+                    .filter(p -> lastUsed(p).isBefore(usedBefore))
+                    .forEach(p -> sink.accept(p.getFileName().toString()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list the blob directory " + root, e);
+        }
+    }
+
+    private Path path(String hash) {
+        if (!HASH.matcher(hash).matches()) {
+            throw new IllegalArgumentException("Not a blob hash: " + hash);
+        }
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    /** Marks a blob that is already held as just used. @return whether it was held */
+    private static boolean touch(Path target) throws IOException {
+        if (!Files.exists(target)) {
+            return false;
+        }
+        Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+        return true;
+    }
+
+    /** A concurrent put of the same bytes may have won the race; its file is as good as ours. */
+    private static void moveIntoPlace(Path part, Path target) throws IOException {
+        try {
+            Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Same hash, same bytes.
+        } catch (AtomicMoveNotSupportedException e) {
+            if (!Files.exists(target)) {
+                Files.move(part, target);
+            }
+        }
+    }
+
+    private final class Staged implements StagedBlob {
+
+        private final Path part;
+        private final String hash;
+        private final long size;
+
+        Staged(Path part, String hash, long size) {
+            this.part = part;
+            this.hash = hash;
+            this.size = size;
+        }
+
+        @Override
+        public String hash() {
+            return hash;
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public Resource content() {
+            return new FileSystemResource(part);
+        }
+
+        @Override
+        public String commit() {
+            Path target = path(hash);
+            try {
+                if (!touch(target)) {
+                    Files.createDirectories(target.getParent());
+                    try (FileChannel out = FileChannel.open(part, StandardOpenOption.WRITE)) {
+                        out.force(true);
+                    }
+                    moveIntoPlace(part, target);
+                }
+                return hash;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot store blob " + hash, e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                Files.deleteIfExists(part);
+            } catch (IOException e) {
+                log.warn("Could not remove staged blob {}: {}", part, e.getMessage());
+            }
+        }
+    }
+
+    private static Instant lastUsed(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toInstant();
+        } catch (IOException e) {
+            return Instant.now();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.clele.parts.storage;
+
+import org.springframework.core.io.Resource;
+
+/**
+ * Content streamed into the store's staging area and hashed on the way in, but not yet stored —
+ * the caller first decides whether the store needs it at all. {@link #commit()} stores it; closing
+ * without committing throws the spooled copy away.
+ *
+ * <p>Only ever a file's worth of disk, never the content's worth of heap, however large the upload.
+ */
+public interface StagedBlob extends AutoCloseable {
+
+    /** The SHA-256 of the content, lower-case hex: the name it is stored under. */
+    String hash();
+
+    long size();
+
+    /** The spooled content, readable until this is closed. */
+    Resource content();
+
+    /**
+     * Stores the content unless a blob with this hash is already held, and marks it as just used
+     * either way — as {@link BlobStore#put} does.
+     *
+     * @return the hash
+     */
+    String commit();
+
+    /** Discards the spooled copy; after a commit, there is nothing left to discard. */
+    @Override
+    void close();
+}
@@ -1,5 +1,8 @@
 package com.clele.parts.util;
 
+import java.io.IOException;
+import java.io.InputStream;
+
 /**
  * Is this actually a PDF?
  *
@@ -19,6 +22,11 @@ public final class PdfBytes {
 
     private PdfBytes() {}
 
+    /** The start of a stream, as far in as {@link #looksLikePdf} looks for the header. */
+    public static byte[] head(InputStream in) throws IOException {
+        return in.readNBytes(SCAN_LIMIT + MAGIC.length);
+    }
+
     public static boolean looksLikePdf(byte[] data) {
         if (data == null || data.length < MAGIC.length) {
             return false;
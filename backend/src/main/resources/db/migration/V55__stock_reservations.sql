@@ -0,0 +1,33 @@
+-- Stock reservations: a project can claim stock at a location before it pulls it.
+--
+-- Between planning a build and pulling its parts nothing used to stop two projects counting on the
+-- same reel. A reservation earmarks a quantity of one part at one location for one project; what is
+-- left for everyone else is quantity - reserved.
+--
+-- stock_entry.reserved is the running total of every reservation against the row. It is what the
+-- conditional UPDATE in StockEntryRepository.reserve tests (quantity - reserved >= :qty), so two
+-- sessions reserving the last ten parts cannot both succeed: the second finds the row already
+-- claimed and updates nothing. The CHECK constraints make the same promise to every other writer —
+-- a take that would dip into someone's reservation fails rather than silently over-committing.
+
+ALTER TABLE stock_entry
+    ADD COLUMN reserved INT NOT NULL DEFAULT 0,
+    ADD CONSTRAINT ck_stock_entry_reserved CHECK (reserved >= 0 AND reserved <= quantity);
+
+-- The foreign key points at the stock entry's (part_id, location_id) key rather than at part and
+-- location separately: a reservation against stock that no longer exists is meaningless, so
+-- removing the entry (part deleted, kit generation undone) takes its reservations with it.
+CREATE TABLE stock_reservation (
+    id            BIGSERIAL PRIMARY KEY,
+    project_id    BIGINT    NOT NULL REFERENCES project (id) ON DELETE CASCADE,
+    part_id       BIGINT    NOT NULL,
+    location_id   BIGINT    NOT NULL,
+    quantity      INT       NOT NULL CHECK (quantity > 0),
+    created_at    TIMESTAMP NOT NULL,
+    created_by_id BIGINT REFERENCES app_user (id) ON DELETE SET NULL,
+    CONSTRAINT fk_stock_reservation_entry FOREIGN KEY (part_id, location_id)
+        REFERENCES stock_entry (part_id, location_id) ON DELETE CASCADE,
+    CONSTRAINT uq_stock_reservation UNIQUE (project_id, part_id, location_id)
+);
+
+CREATE INDEX idx_stock_reservation_entry ON stock_reservation (part_id, location_id);
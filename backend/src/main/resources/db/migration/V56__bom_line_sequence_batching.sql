@@ -0,0 +1,10 @@
+-- Lets Hibernate batch the inserts of a BOM import.
+--
+-- project_bom_line ids came from IDENTITY generation, which makes Hibernate insert each row on its
+-- own to read its id back -- a 500-line import was 500 round trips. ProjectBomLine now allocates ids
+-- from the column's own sequence with a pooled allocation of 50, so the sequence must step by the
+-- same amount: one nextval reserves a block of 50 ids, and the rows then go out in JDBC batches.
+--
+-- The column default (nextval) keeps working for any insert that does not supply an id; such a row
+-- simply consumes a whole block.
+ALTER SEQUENCE project_bom_line_id_seq INCREMENT BY 50;
@@ -0,0 +1,12 @@
+-- A fingerprint of what the file said about each BOM line.
+--
+-- Re-importing a revised export used to refresh every stored line field by field, even when the
+-- revision touched three rows out of three hundred. content_hash is a SHA-256 over the file-derived
+-- columns (see BomLineFingerprint); a re-imported row whose fingerprint equals the stored one is
+-- passed over without being compared, dirtied or written.
+--
+-- Existing lines start NULL and are fingerprinted from their stored columns the first time a
+-- re-import pairs them; the value is not reproducible in SQL (the jsonb extra column is part of it),
+-- so there is no backfill here.
+
+ALTER TABLE project_bom_line ADD COLUMN content_hash VARCHAR(64);
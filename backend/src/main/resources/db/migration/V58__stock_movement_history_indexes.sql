@@ -0,0 +1,29 @@
+-- Indexes for keyset-paginated movement history (StockMovementHistoryRepository).
+--
+-- History pages are "the newest N movements of <part | location | project | everything> before
+-- this (moved_at, id)". Each index below leads with the filter column and ends in the sort key, so a
+-- page is an index range scan read backwards that stops after N rows — however many years of
+-- movements the part has. The single-column indexes they replace are their leading prefixes, so
+-- every lookup those served is still served.
+--
+-- id is in the key because moved_at is not unique: a kit generation writes many movements within
+-- the same microsecond, and a cursor on moved_at alone would skip or repeat them at a page edge.
+
+CREATE INDEX idx_stock_movement_part_time ON stock_movement (part_id, moved_at, id);
+DROP INDEX idx_stock_movement_part;
+
+CREATE INDEX idx_stock_movement_location_time ON stock_movement (location_id, moved_at, id);
+DROP INDEX idx_stock_movement_location;
+
+-- The credit leg of a MOVE; history of a location is both legs.
+CREATE INDEX idx_stock_movement_target_time ON stock_movement (target_location_id, moved_at, id)
+    WHERE target_location_id IS NOT NULL;
+DROP INDEX idx_stock_movement_target_location;
+
+CREATE INDEX idx_stock_movement_project_time ON stock_movement (project_id, moved_at, id)
+    WHERE project_id IS NOT NULL;
+DROP INDEX idx_stock_movement_project_id;
+
+-- Organisation-wide history: walk the whole ledger newest-first, filtering on the location's
+-- organisation as it goes.
+CREATE INDEX idx_stock_movement_time ON stock_movement (moved_at, id);
@@ -0,0 +1,36 @@
+-- Stock checkpoints: the ledger folded up to a moment, so that "what did we hold then" does not
+-- have to start from the first movement ever written.
+--
+-- stock_movement is authoritative, but it only records changes. Answering "stock on 1 January" or
+-- "value at quarter end", or checking the aggregates against the ledger, used to mean summing every
+-- movement since the beginning. A checkpoint stores, per organisation and moment, what each part at
+-- each location came to: quantity and weighted-average cost. A question about time T now reads the
+-- newest checkpoint at or before T plus the movements between the two — a day or so of them.
+--
+-- A checkpoint at as_of covers exactly the movements with moved_at < as_of. It is written by a
+-- nightly job (StockCheckpointJob) for the midnight just gone, so every movement stamped before it
+-- has long committed. The few code paths that rewrite history below a checkpoint (Partsbox import,
+-- location merge, kit-generation undo) keep the checkpoints true themselves; see
+-- StockCheckpointRepository.
+
+CREATE TABLE stock_checkpoint (
+    id              BIGSERIAL PRIMARY KEY,
+    organisation_id BIGINT    NOT NULL REFERENCES organisation (id) ON DELETE CASCADE,
+    as_of           TIMESTAMP NOT NULL,
+    created_at      TIMESTAMP NOT NULL,
+    CONSTRAINT uq_stock_checkpoint UNIQUE (organisation_id, as_of)
+);
+
+-- Positions that have gone to zero are kept while they still carry a price: an unpriced receipt into
+-- an empty bin keeps the price the bin had, so dropping the row would change the fold's answer.
+-- Deleting a part deletes its movements (ON DELETE CASCADE), and its checkpoint lines go with them.
+CREATE TABLE stock_checkpoint_line (
+    checkpoint_id BIGINT        NOT NULL REFERENCES stock_checkpoint (id) ON DELETE CASCADE,
+    part_id       BIGINT        NOT NULL REFERENCES part (id) ON DELETE CASCADE,
+    location_id   BIGINT        NOT NULL REFERENCES location (id) ON DELETE CASCADE,
+    quantity      INT           NOT NULL,
+    unit_price    NUMERIC(10, 2),
+    PRIMARY KEY (checkpoint_id, part_id, location_id)
+);
+
+CREATE INDEX idx_stock_checkpoint_line_location ON stock_checkpoint_line (location_id);
@@ -0,0 +1,377 @@
+-- Dashboard summary: the figures on the dashboard, kept up to date as the data changes instead of
+-- worked out on every visit.
+--
+-- The dashboard is the screen everybody lands on, and it used to be the most expensive one: counts
+-- of parts, locations and categories, a correlated spec count per part for the "sparse specs" tile,
+-- the organisation's total stock value, and a recursive walk over every location and every stock
+-- entry for the per-root breakdown. Now it reads one organisation_summary row and the
+-- location_summary rows of its root locations.
+--
+--   organisation_summary   one row per organisation: parts, locations, categories, and parts with
+--                          fewer than 5 spec values (PartRepository.SPARSE_SPEC_THRESHOLD).
+--   location_summary       one row per root location: descendants, distinct parts held in the
+--                          subtree, and the subtree's quantity and value (Σ quantity × unit_price
+--                          over priced entries). The organisation's total value is the sum of these.
+--
+-- Kept up to date by triggers, in the transaction that changes the data. Triggers rather than calls
+-- from each service because the writers are too many and not all of them are Java: stock entries
+-- change through the ledger statements, the location-merge fold, reconcile, JPQL bulk deletes and
+-- FK cascades; parts are created in half a dozen places and deleted in bulk; spec values go when
+-- their definition is deleted. A trigger sees all of them.
+--
+-- The organisation's stock value deliberately lives only on the root rows. Every stock write
+-- locks its root's summary row until it commits; if it also had to lock one row per organisation,
+-- every take and receipt in the organisation would queue behind each other.
+--
+-- That root lock is the trade-off to watch: stock writes under one root location run one at a time,
+-- each waiting for the one before to commit. The stock-entry triggers take it before they do
+-- anything else, because the distinct-part count depends on it. Whether a part is new to a root (or
+-- gone from it) is decided by counting its entries there. Without the lock, two transactions adding
+-- the first entry of the same part would each see only their own and both count it. A workshop
+-- books stock a handful of writes at a time, and each is short. A bulk writer holding a root for
+-- long, such as an import in one transaction, holds up every other writer under that root.
+--
+-- DashboardSummaryJob recomputes everything nightly as a safety net (recompute_organisation_summary),
+-- which also covers anything that writes with triggers disabled.
+
+CREATE TABLE organisation_summary (
+    organisation_id   BIGINT    PRIMARY KEY REFERENCES organisation (id) ON DELETE CASCADE,
+    total_parts       BIGINT    NOT NULL DEFAULT 0,
+    total_locations   BIGINT    NOT NULL DEFAULT 0,
+    total_categories  BIGINT    NOT NULL DEFAULT 0,
+    sparse_spec_count BIGINT    NOT NULL DEFAULT 0,
+    recomputed_at     TIMESTAMP
+);
+
+CREATE TABLE location_summary (
+    location_id       BIGINT  PRIMARY KEY REFERENCES location (id) ON DELETE CASCADE,
+    organisation_id   BIGINT  NOT NULL REFERENCES organisation (id) ON DELETE CASCADE,
+    locations         BIGINT  NOT NULL DEFAULT 0,
+    parts             BIGINT  NOT NULL DEFAULT 0,
+    total_quantity    BIGINT  NOT NULL DEFAULT 0,
+    total_stock_value NUMERIC NOT NULL DEFAULT 0
+);
+
+CREATE INDEX idx_location_summary_org ON location_summary (organisation_id);
+
+-- ---------------------------------------------------------------------------------------------
+-- Helpers.
+-- ---------------------------------------------------------------------------------------------
+
+-- The root of a location's tree: walk up the parent chain (a handful of index lookups).
+CREATE FUNCTION location_root(p_location_id BIGINT) RETURNS BIGINT
+LANGUAGE sql STABLE AS $$
+    WITH RECURSIVE up(id, parent_id) AS (
+        SELECT id, parent_id FROM location WHERE id = p_location_id
+        UNION ALL
+        SELECT l.id, l.parent_id FROM location l JOIN up ON l.id = up.parent_id
+    )
+    SELECT id FROM up WHERE parent_id IS NULL
+$$;
+
+CREATE FUNCTION organisation_summary_bump(p_org BIGINT, p_parts BIGINT, p_locations BIGINT,
+                                          p_categories BIGINT, p_sparse BIGINT) RETURNS void
+LANGUAGE sql AS $$
+    INSERT INTO organisation_summary AS s (organisation_id, total_parts, total_locations,
+                                           total_categories, sparse_spec_count)
+    VALUES (p_org, p_parts, p_locations, p_categories, p_sparse)
+    ON CONFLICT (organisation_id) DO UPDATE SET
+        total_parts       = s.total_parts + EXCLUDED.total_parts,
+        total_locations   = s.total_locations + EXCLUDED.total_locations,
+        total_categories  = s.total_categories + EXCLUDED.total_categories,
+        sparse_spec_count = s.sparse_spec_count + EXCLUDED.sparse_spec_count
+$$;
+
+-- ---------------------------------------------------------------------------------------------
+-- Full recompute: the migration's backfill, the nightly safety net, and a location subtree moving
+-- to another root (which changes the root of every entry beneath it).
+--
+-- The summary rows are locked before anything is counted. A writer that got to a row first has
+-- finished its statement, so once its lock is released the counting statements (each with its own
+-- snapshot) see its change; a writer that comes later waits, and adds its delta to the recomputed
+-- figure. Counting first and locking afterwards would let such a delta be overwritten.
+-- ---------------------------------------------------------------------------------------------
+
+CREATE FUNCTION recompute_location_summary(p_org BIGINT) RETURNS void
+LANGUAGE plpgsql AS $$
+BEGIN
+    PERFORM 1 FROM location_summary WHERE organisation_id = p_org ORDER BY location_id FOR UPDATE;
+
+    DELETE FROM location_summary ls
+    WHERE ls.organisation_id = p_org
+      AND NOT EXISTS (SELECT 1 FROM location l WHERE l.id = ls.location_id AND l.parent_id IS NULL);
+
+    -- Same figures the dashboard used to compute (LocationRepository.perLocationStats): the subtree
+    -- includes the root, so descendants are one fewer.
+    INSERT INTO location_summary AS s (location_id, organisation_id, locations, parts,
+                                       total_quantity, total_stock_value)
+    WITH RECURSIVE subtree(root_id, loc_id) AS (
+        SELECT id, id FROM location WHERE parent_id IS NULL AND organisation_id = p_org
+        UNION ALL
+        SELECT st.root_id, l.id FROM location l JOIN subtree st ON l.parent_id = st.loc_id
+    )
+    SELECT r.id, p_org,
+           COUNT(DISTINCT st.loc_id) - 1,
+           COUNT(DISTINCT se.part_id),
+           COALESCE(SUM(se.quantity), 0),
+           COALESCE(SUM(se.quantity * se.unit_price) FILTER (WHERE se.unit_price IS NOT NULL), 0)
+    FROM location r
+    JOIN subtree st ON st.root_id = r.id
+    LEFT JOIN stock_entry se ON se.location_id = st.loc_id
+    WHERE r.parent_id IS NULL AND r.organisation_id = p_org
+    GROUP BY r.id
+    ON CONFLICT (location_id) DO UPDATE SET
+        locations         = EXCLUDED.locations,
+        parts             = EXCLUDED.parts,
+        total_quantity    = EXCLUDED.total_quantity,
+        total_stock_value = EXCLUDED.total_stock_value;
+END
+$$;
+
+CREATE FUNCTION recompute_organisation_summary(p_org BIGINT) RETURNS void
+LANGUAGE plpgsql AS $$
+BEGIN
+    PERFORM 1 FROM organisation_summary WHERE organisation_id = p_org FOR UPDATE;
+
+    INSERT INTO organisation_summary AS s (organisation_id, total_parts, total_locations,
+                                           total_categories, sparse_spec_count, recomputed_at)
+    SELECT p_org,
+           (SELECT COUNT(*) FROM part WHERE organisation_id = p_org),
+           (SELECT COUNT(*) FROM location WHERE organisation_id = p_org),
+           (SELECT COUNT(*) FROM category WHERE organisation_id = p_org),
+           (SELECT COUNT(*) FROM part p WHERE p.organisation_id = p_org
+              AND (SELECT COUNT(*) FROM part_spec_value v WHERE v.part_id = p.id) < 5),
+           now()
+    ON CONFLICT (organisation_id) DO UPDATE SET
+        total_parts       = EXCLUDED.total_parts,
+        total_locations   = EXCLUDED.total_locations,
+        total_categories  = EXCLUDED.total_categories,
+        sparse_spec_count = EXCLUDED.sparse_spec_count,
+        recomputed_at     = EXCLUDED.recomputed_at;
+
+    PERFORM recompute_location_summary(p_org);
+END
+$$;
+
+-- ---------------------------------------------------------------------------------------------
+-- Parts, categories, spec values.
+-- ---------------------------------------------------------------------------------------------
+
+-- A new part has no spec values yet, so it starts out sparse. A deleted part is counted out
+-- BEFORE the delete: afterwards its spec values have already gone with it (ON DELETE CASCADE),
+-- and there would be no telling whether it was sparse.
+CREATE FUNCTION part_summary() RETURNS trigger
+LANGUAGE plpgsql AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        PERFORM organisation_summary_bump(NEW.organisation_id, 1, 0, 0, 1);
+        RETURN NEW;
+    END IF;
+    PERFORM organisation_summary_bump(OLD.organisation_id, -1, 0, 0,
+        CASE WHEN (SELECT COUNT(*) FROM part_spec_value v WHERE v.part_id = OLD.id) < 5 THEN -1 ELSE 0 END);
+    RETURN OLD;
+END
+$$;
+
+CREATE TRIGGER trg_part_summary_insert AFTER INSERT ON part
+    FOR EACH ROW EXECUTE FUNCTION part_summary();
+CREATE TRIGGER trg_part_summary_delete BEFORE DELETE ON part
+    FOR EACH ROW EXECUTE FUNCTION part_summary();
+
+CREATE FUNCTION category_summary() RETURNS trigger
+LANGUAGE plpgsql AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        PERFORM organisation_summary_bump(NEW.organisation_id, 0, 0, 1, 0);
+        RETURN NEW;
+    END IF;
+    PERFORM organisation_summary_bump(OLD.organisation_id, 0, 0, -1, 0);
+    RETURN OLD;
+END
+$$;
+
+CREATE TRIGGER trg_category_summary AFTER INSERT OR DELETE ON category
+    FOR EACH ROW EXECUTE FUNCTION category_summary();
+
+-- Per statement, over the rows it changed: a statement adding three values to one part must count
+-- the part's crossing of the threshold once. "Sparse" means fewer than 5 values; a part crosses
+-- when its count before the statement and its count now fall on different sides. A part that is
+-- itself being deleted no longer joins and is left to part_summary.
+CREATE FUNCTION part_spec_value_summary_insert() RETURNS trigger
+LANGUAGE plpgsql AS $$
+BEGIN
+    PERFORM organisation_summary_bump(x.organisation_id, 0, 0, 0, -x.parts)
+    FROM (SELECT p.organisation_id, COUNT(*) AS parts
+          FROM (SELECT part_id, COUNT(*) AS added FROM new_rows GROUP BY part_id) c
+          JOIN part p ON p.id = c.part_id
+          CROSS JOIN LATERAL (SELECT COUNT(*) AS now FROM part_spec_value v WHERE v.part_id = c.part_id) k
+          WHERE k.now >= 5 AND k.now - c.added < 5
+          GROUP BY p.organisation_id) x;
+    RETURN NULL;
+END
+$$;
+
+CREATE FUNCTION part_spec_value_summary_delete() RETURNS trigger
+LANGUAGE plpgsql AS $$
+BEGIN
+    PERFORM organisation_summary_bump(x.organisation_id, 0, 0, 0, x.parts)
+    FROM (SELECT p.organisation_id, COUNT(*) AS parts
+          FROM (SELECT part_id, COUNT(*) AS removed FROM old_rows GROUP BY part_id) c
+          JOIN part p ON p.id = c.part_id
+          CROSS JOIN LATERAL (SELECT COUNT(*) AS now FROM part_spec_value v WHERE v.part_id = c.part_id) k
+          WHERE k.now < 5 AND k.now + c.removed >= 5
+          GROUP BY p.organisation_id) x;
+    RETURN NULL;
+END
+$$;
+
+CREATE TRIGGER trg_part_spec_value_summary_insert AFTER INSERT ON part_spec_value
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION part_spec_value_summary_insert();
+CREATE TRIGGER trg_part_spec_value_summary_delete AFTER DELETE ON part_spec_value
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION part_spec_value_summary_delete();
+
+-- ---------------------------------------------------------------------------------------------
+-- Locations. A new root gets its summary row; any other new or removed location counts in or out
+-- of its root. A root's own row goes with it (ON DELETE CASCADE). Moving a location to another
+-- parent can carry a whole subtree of stock to another root, so that recomputes the organisation's
+-- root rows — it is a rare, deliberate act.
+-- ---------------------------------------------------------------------------------------------
+
+CREATE FUNCTION location_summary_rows() RETURNS trigger
+LANGUAGE plpgsql AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        PERFORM organisation_summary_bump(NEW.organisation_id, 0, 1, 0, 0);
+        IF NEW.parent_id IS NULL THEN
+            INSERT INTO location_summary (location_id, organisation_id) VALUES (NEW.id, NEW.organisation_id);
+        ELSE
+            UPDATE location_summary SET locations = locations + 1 WHERE location_id = location_root(NEW.parent_id);
+        END IF;
+        RETURN NEW;
+    ELSIF TG_OP = 'DELETE' THEN
+        PERFORM organisation_summary_bump(OLD.organisation_id, 0, -1, 0, 0);
+        IF OLD.parent_id IS NOT NULL THEN
+            UPDATE location_summary SET locations = locations - 1 WHERE location_id = location_root(OLD.parent_id);
+        END IF;
+        RETURN OLD;
+    END IF;
+    PERFORM recompute_location_summary(NEW.organisation_id);
+    RETURN NEW;
+END
+$$;
+
+CREATE TRIGGER trg_location_summary AFTER INSERT OR DELETE ON location
+    FOR EACH ROW EXECUTE FUNCTION location_summary_rows();
+CREATE TRIGGER trg_location_summary_reparent AFTER UPDATE OF parent_id ON location
+    FOR EACH ROW WHEN (OLD.parent_id IS DISTINCT FROM NEW.parent_id)
+    EXECUTE FUNCTION location_summary_rows();
+
+-- ---------------------------------------------------------------------------------------------
+-- Stock entries, per statement, over the rows it changed, summed per root. An entry never changes
+-- its part or location (the ledger upserts on that key), so an update only moves quantity and
+-- value. Inserts and deletes also move the root's distinct-part count: a part is new to a root when
+-- every entry it now has there came in with this statement, and gone when none is left.
+--
+-- Those two first lock the summary rows of the roots they touch, in id order so statements over
+-- the same roots cannot deadlock, and only then count, in a statement of their own. Under READ
+-- COMMITTED that statement's snapshot is taken after the lock is granted, so it sees whatever the
+-- previous holder committed.
+-- ---------------------------------------------------------------------------------------------
+
+CREATE FUNCTION stock_entry_summary_insert() RETURNS trigger
+LANGUAGE plpgsql AS $$
+BEGIN
+    PERFORM 1 FROM location_summary
+    WHERE location_id IN (SELECT DISTINCT location_root(location_id) FROM new_rows)
+    ORDER BY location_id
+    FOR UPDATE;
+
+    WITH r AS (
+        SELECT location_root(location_id) AS root_id, part_id, quantity,
+               COALESCE(quantity * unit_price, 0) AS value
+        FROM new_rows
+    ),
+    firsts AS (
+        SELECT pr.root_id, COUNT(*) AS parts
+        FROM (SELECT root_id, part_id, COUNT(*) AS added FROM r GROUP BY root_id, part_id) pr
+        WHERE (SELECT COUNT(*) FROM stock_entry e
+               WHERE e.part_id = pr.part_id AND location_root(e.location_id) = pr.root_id) = pr.added
+        GROUP BY pr.root_id
+    ),
+    d AS (SELECT root_id, SUM(quantity) AS qty, SUM(value) AS value FROM r GROUP BY root_id)
+    UPDATE location_summary ls SET
+        total_quantity    = ls.total_quantity + d.qty,
+        total_stock_value = ls.total_stock_value + d.value,
+        parts             = ls.parts + COALESCE(f.parts, 0)
+    FROM d LEFT JOIN firsts f ON f.root_id = d.root_id
+    WHERE ls.location_id = d.root_id;
+    RETURN NULL;
+END
+$$;
+
+CREATE FUNCTION stock_entry_summary_update() RETURNS trigger
+LANGUAGE plpgsql AS $$
+BEGIN
+    UPDATE location_summary ls SET
+        total_quantity    = ls.total_quantity + d.qty,
+        total_stock_value = ls.total_stock_value + d.value
+    FROM (SELECT location_root(location_id) AS root_id, SUM(qty) AS qty, SUM(value) AS value
+          FROM (SELECT location_id, quantity AS qty, COALESCE(quantity * unit_price, 0) AS value
+                FROM new_rows
+                UNION ALL
+                SELECT location_id, -quantity, -COALESCE(quantity * unit_price, 0)
+                FROM old_rows) x
+          GROUP BY location_root(location_id)) d
+    WHERE ls.location_id = d.root_id AND (d.qty <> 0 OR d.value <> 0);
+    RETURN NULL;
+END
+$$;
+
+CREATE FUNCTION stock_entry_summary_delete() RETURNS trigger
+LANGUAGE plpgsql AS $$
+BEGIN
+    PERFORM 1 FROM location_summary
+    WHERE location_id IN (SELECT DISTINCT location_root(location_id) FROM old_rows)
+    ORDER BY location_id
+    FOR UPDATE;
+
+    WITH r AS (
+        SELECT location_root(location_id) AS root_id, part_id, quantity,
+               COALESCE(quantity * unit_price, 0) AS value
+        FROM old_rows
+    ),
+    lasts AS (
+        SELECT pr.root_id, COUNT(*) AS parts
+        FROM (SELECT DISTINCT root_id, part_id FROM r) pr
+        WHERE NOT EXISTS (SELECT 1 FROM stock_entry e
+                          WHERE e.part_id = pr.part_id AND location_root(e.location_id) = pr.root_id)
+        GROUP BY pr.root_id
+    ),
+    d AS (SELECT root_id, SUM(quantity) AS qty, SUM(value) AS value FROM r GROUP BY root_id)
+    UPDATE location_summary ls SET
+        total_quantity    = ls.total_quantity - d.qty,
+        total_stock_value = ls.total_stock_value - d.value,
+        parts             = ls.parts - COALESCE(l.parts, 0)
+    FROM d LEFT JOIN lasts l ON l.root_id = d.root_id
+    WHERE ls.location_id = d.root_id;
+    RETURN NULL;
+END
+$$;
+
+CREATE TRIGGER trg_stock_entry_summary_insert AFTER INSERT ON stock_entry
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION stock_entry_summary_insert();
+CREATE TRIGGER trg_stock_entry_summary_update AFTER UPDATE ON stock_entry
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION stock_entry_summary_update();
+CREATE TRIGGER trg_stock_entry_summary_delete AFTER DELETE ON stock_entry
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION stock_entry_summary_delete();
+
+-- ---------------------------------------------------------------------------------------------
+-- Backfill.
+-- ---------------------------------------------------------------------------------------------
+
+SELECT recompute_organisation_summary(id) FROM organisation;
@@ -0,0 +1,199 @@
+-- Low stock, kept up to date instead of discovered.
+--
+-- Every threshold used to be re-evaluated whenever someone looked: a recursive walk of each root's
+-- subtree summing every stock entry, on the dashboard and on the thresholds screen. Nobody learnt of
+-- low stock until they opened one of those. Now each threshold carries the on-hand total of its
+-- location's subtree, moved by the stock-entry statements as they happen, and a below_minimum
+-- flag that Postgres derives from it. Counting low stock is a lookup on the flag.
+--
+-- Each time the flag flips, a stock_alert row is written and announced with pg_notify. NOTIFY is
+-- delivered only when the transaction commits, so listeners never hear about a dip that was
+-- rolled back. StockAlertService pushes the alert to the organisation's open notification streams
+-- and mails it. The row is the outbox: an alert that arrives while no listener is connected is
+-- mailed on reconnect.
+--
+-- Triggers rather than Java hooks, for the reason given in V60: stock entries change through
+-- too many statements, and some of them are not Java at all.
+
+ALTER TABLE part_stock_threshold
+    ADD COLUMN total_quantity BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN below_minimum BOOLEAN GENERATED ALWAYS AS (total_quantity < minimum_quantity) STORED;
+
+CREATE INDEX idx_pst_below_minimum ON part_stock_threshold (location_id) WHERE below_minimum;
+
+CREATE TABLE stock_alert (
+    id               BIGSERIAL PRIMARY KEY,
+    threshold_id     BIGINT    NOT NULL REFERENCES part_stock_threshold (id) ON DELETE CASCADE,
+    organisation_id  BIGINT    NOT NULL REFERENCES organisation (id) ON DELETE CASCADE,
+    below_minimum    BOOLEAN   NOT NULL,
+    total_quantity   BIGINT    NOT NULL,
+    minimum_quantity INT       NOT NULL,
+    created_at       TIMESTAMP NOT NULL DEFAULT now(),
+    -- Set by whichever instance claims the mail, so it goes out once (drops below only).
+    mailed_at        TIMESTAMP
+);
+
+CREATE INDEX idx_stock_alert_threshold ON stock_alert (threshold_id);
+CREATE INDEX idx_stock_alert_created ON stock_alert (created_at);
+CREATE INDEX idx_stock_alert_unmailed ON stock_alert (id) WHERE below_minimum AND mailed_at IS NULL;
+
+-- ---------------------------------------------------------------------------------------------
+-- A location and everything above it. A threshold counts its location's whole subtree, so an
+-- entry's stock counts towards a threshold on any of these.
+-- ---------------------------------------------------------------------------------------------
+
+CREATE FUNCTION location_ancestors(p_location_id BIGINT) RETURNS SETOF BIGINT
+LANGUAGE sql STABLE AS $$
+    WITH RECURSIVE up(id, parent_id) AS (
+        SELECT id, parent_id FROM location WHERE id = p_location_id
+        UNION ALL
+        SELECT l.id, l.parent_id FROM location l JOIN up ON l.id = up.parent_id
+    )
+    SELECT id FROM up
+$$;
+
+CREATE FUNCTION stock_threshold_subtree_total(p_part_id BIGINT, p_location_id BIGINT) RETURNS BIGINT
+LANGUAGE sql STABLE AS $$
+    WITH RECURSIVE subtree(id) AS (
+        SELECT p_location_id
+        UNION ALL
+        SELECT l.id FROM location l JOIN subtree s ON l.parent_id = s.id
+    )
+    SELECT COALESCE(SUM(se.quantity), 0)
+    FROM stock_entry se JOIN subtree s ON s.id = se.location_id
+    WHERE se.part_id = p_part_id
+$$;
+
+-- Full recount for an organisation: a location moving to another parent (which changes which
+-- subtrees its stock counts in), and DashboardSummaryJob's nightly safety net. Only totals that
+-- are actually wrong are written, so a recount that finds nothing amiss raises no alerts.
+CREATE FUNCTION recompute_stock_thresholds(p_org BIGINT) RETURNS void
+LANGUAGE sql AS $$
+    UPDATE part_stock_threshold pst
+    SET total_quantity = t.total
+    FROM (SELECT pst2.id, stock_threshold_subtree_total(pst2.part_id, pst2.location_id) AS total
+          FROM part_stock_threshold pst2 JOIN location l ON l.id = pst2.location_id
+          WHERE l.organisation_id = p_org) t
+    WHERE pst.id = t.id AND pst.total_quantity <> t.total
+$$;
+
+-- ---------------------------------------------------------------------------------------------
+-- Running totals. Per statement: the changed quantities, per part, summed onto every ancestor of
+-- the entry's location. A threshold touched by a statement is updated once, so a bulk receipt
+-- raises at most one alert per threshold. A transition table is visible only to its own trigger
+-- function, so the three hand their deltas to the shared UPDATE as JSONB.
+-- ---------------------------------------------------------------------------------------------
+
+CREATE FUNCTION stock_threshold_apply(p_deltas JSONB) RETURNS void
+LANGUAGE sql AS $$
+    UPDATE part_stock_threshold pst
+    SET total_quantity = pst.total_quantity + d.delta
+    FROM (SELECT x.part_id, a.location_id, SUM(x.delta) AS delta
+          FROM jsonb_to_recordset(p_deltas) AS x(part_id BIGINT, location_id BIGINT, delta BIGINT)
+          CROSS JOIN LATERAL location_ancestors(x.location_id) AS a(location_id)
+          GROUP BY x.part_id, a.location_id) d
+    WHERE pst.part_id = d.part_id AND pst.location_id = d.location_id AND d.delta <> 0
+$$;
+
+CREATE FUNCTION stock_entry_threshold_insert() RETURNS trigger
+LANGUAGE plpgsql AS $$
+BEGIN
+    PERFORM stock_threshold_apply(
+        (SELECT jsonb_agg(jsonb_build_object('part_id', part_id, 'location_id', location_id, 'delta', quantity))
+         FROM new_rows WHERE quantity <> 0));
+    RETURN NULL;
+END
+$$;
+
+CREATE FUNCTION stock_entry_threshold_update() RETURNS trigger
+LANGUAGE plpgsql AS $$
+BEGIN
+    PERFORM stock_threshold_apply(
+        (SELECT jsonb_agg(jsonb_build_object('part_id', part_id, 'location_id', location_id, 'delta', delta))
+         FROM (SELECT part_id, location_id, SUM(quantity) AS delta
+               FROM (SELECT part_id, location_id, quantity FROM new_rows
+                     UNION ALL
+                     SELECT part_id, location_id, -quantity FROM old_rows) x
+               GROUP BY part_id, location_id) d
+         WHERE delta <> 0));
+    RETURN NULL;
+END
+$$;
+
+CREATE FUNCTION stock_entry_threshold_delete() RETURNS trigger
+LANGUAGE plpgsql AS $$
+BEGIN
+    PERFORM stock_threshold_apply(
+        (SELECT jsonb_agg(jsonb_build_object('part_id', part_id, 'location_id', location_id, 'delta', -quantity))
+         FROM old_rows WHERE quantity <> 0));
+    RETURN NULL;
+END
+$$;
+
+CREATE TRIGGER trg_stock_entry_threshold_insert AFTER INSERT ON stock_entry
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION stock_entry_threshold_insert();
+CREATE TRIGGER trg_stock_entry_threshold_update AFTER UPDATE ON stock_entry
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION stock_entry_threshold_update();
+CREATE TRIGGER trg_stock_entry_threshold_delete AFTER DELETE ON stock_entry
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION stock_entry_threshold_delete();
+
+-- A new threshold, or one pointed at another part or location, starts from the real total.
+CREATE FUNCTION stock_threshold_seed() RETURNS trigger
+LANGUAGE plpgsql AS $$
+BEGIN
+    NEW.total_quantity := stock_threshold_subtree_total(NEW.part_id, NEW.location_id);
+    RETURN NEW;
+END
+$$;
+
+CREATE TRIGGER trg_stock_threshold_seed BEFORE INSERT OR UPDATE OF part_id, location_id ON part_stock_threshold
+    FOR EACH ROW EXECUTE FUNCTION stock_threshold_seed();
+
+CREATE FUNCTION location_threshold_reparent() RETURNS trigger
+LANGUAGE plpgsql AS $$
+BEGIN
+    PERFORM recompute_stock_thresholds(NEW.organisation_id);
+    RETURN NEW;
+END
+$$;
+
+CREATE TRIGGER trg_location_threshold_reparent AFTER UPDATE OF parent_id ON location
+    FOR EACH ROW WHEN (OLD.parent_id IS DISTINCT FROM NEW.parent_id)
+    EXECUTE FUNCTION location_threshold_reparent();
+
+-- ---------------------------------------------------------------------------------------------
+-- Transitions: the flag flipping either way, or a new threshold that starts out below.
+-- ---------------------------------------------------------------------------------------------
+
+CREATE FUNCTION stock_threshold_alert() RETURNS trigger
+LANGUAGE plpgsql AS $$
+DECLARE
+    alert_id BIGINT;
+BEGIN
+    INSERT INTO stock_alert (threshold_id, organisation_id, below_minimum, total_quantity, minimum_quantity)
+    SELECT NEW.id, l.organisation_id, NEW.below_minimum, NEW.total_quantity, NEW.minimum_quantity
+    FROM location l WHERE l.id = NEW.location_id
+    RETURNING id INTO alert_id;
+    PERFORM pg_notify('stock_alert', alert_id::text);
+    RETURN NULL;
+END
+$$;
+
+CREATE TRIGGER trg_stock_threshold_alert_insert AFTER INSERT ON part_stock_threshold
+    FOR EACH ROW WHEN (NEW.below_minimum)
+    EXECUTE FUNCTION stock_threshold_alert();
+CREATE TRIGGER trg_stock_threshold_alert_update AFTER UPDATE ON part_stock_threshold
+    FOR EACH ROW WHEN (OLD.below_minimum IS DISTINCT FROM NEW.below_minimum)
+    EXECUTE FUNCTION stock_threshold_alert();
+
+-- ---------------------------------------------------------------------------------------------
+-- Backfill. The seed trigger only fires on insert and on a change of part or location, so the
+-- existing rows are set directly. No alerts for the state things are already in.
+-- ---------------------------------------------------------------------------------------------
+
+ALTER TABLE part_stock_threshold DISABLE TRIGGER trg_stock_threshold_alert_update;
+UPDATE part_stock_threshold SET total_quantity = stock_threshold_subtree_total(part_id, location_id);
+ALTER TABLE part_stock_threshold ENABLE TRIGGER trg_stock_threshold_alert_update;
@@ -0,0 +1,63 @@
+-- Inventory valuation: what the stock on hand cost, by weighted average and by FIFO, and what the
+-- stock that went out cost — worked out from the ledger at full precision and kept up to date
+-- incrementally.
+--
+-- stock_entry.unit_price is a running average per location, rounded to cents at every receipt; over
+-- a long history the rounding adds up, and it says nothing about FIFO. Valuation is done per part
+-- instead (a MOVE between two locations changes nothing about what the part cost) by folding the
+-- ledger in (moved_at, id) order, the same order the live averages were built in. The fold's state
+-- is stored, so each run only reads the movements since the last one (see StockValuationService).
+--
+-- A run covers exactly the movements with moved_at < valued_to. The code paths that rewrite the
+-- ledger below that — the Partsbox import and a kit-generation undo — throw the organisation's state
+-- away, and the next run starts again from the first movement.
+
+CREATE TABLE stock_valuation_run (
+    organisation_id BIGINT    PRIMARY KEY REFERENCES organisation (id) ON DELETE CASCADE,
+    valued_to       TIMESTAMP,                -- null until the first run has been through
+    updated_at      TIMESTAMP NOT NULL
+);
+
+-- Per part: units on hand across all locations and what they cost at average. value is the running
+-- total, not quantity × a rounded price, so an issue of all that is left takes exactly all of it.
+-- unit_cost is the average as it last stood; it outlives the stock so that an unpriced receipt into
+-- an empty part is costed the way the live entries price it.
+CREATE TABLE stock_valuation_part (
+    part_id         BIGINT  PRIMARY KEY REFERENCES part (id) ON DELETE CASCADE,
+    organisation_id BIGINT  NOT NULL REFERENCES organisation (id) ON DELETE CASCADE,
+    quantity        BIGINT  NOT NULL,
+    value           NUMERIC NOT NULL,
+    unit_cost       NUMERIC
+);
+
+CREATE INDEX idx_stock_valuation_part_org ON stock_valuation_part (organisation_id);
+
+-- The FIFO layers still (partly) on hand: one per receipt, oldest consumed first. Used-up layers are
+-- deleted, so this table is as large as the stock, not the history.
+CREATE TABLE stock_valuation_layer (
+    part_id     BIGINT    NOT NULL REFERENCES stock_valuation_part (part_id) ON DELETE CASCADE,
+    movement_id BIGINT    NOT NULL,
+    received_at TIMESTAMP NOT NULL,
+    remaining   INT       NOT NULL CHECK (remaining > 0),
+    unit_cost   NUMERIC   NOT NULL,
+    PRIMARY KEY (part_id, movement_id)
+);
+
+-- Every movement that took stock out, with what it cost both ways — the cost-of-goods report reads
+-- this. A project return is a credit to its project: negative quantity, negative cost.
+CREATE TABLE stock_valuation_issue (
+    movement_id     BIGINT      PRIMARY KEY REFERENCES stock_movement (id) ON DELETE CASCADE,
+    organisation_id BIGINT      NOT NULL REFERENCES organisation (id) ON DELETE CASCADE,
+    part_id         BIGINT      NOT NULL REFERENCES part (id) ON DELETE CASCADE,
+    project_id      BIGINT      REFERENCES project (id) ON DELETE SET NULL,
+    type            VARCHAR(16) NOT NULL,
+    moved_at        TIMESTAMP   NOT NULL,
+    quantity        INT         NOT NULL,
+    wac_cost        NUMERIC     NOT NULL,
+    fifo_cost       NUMERIC     NOT NULL
+);
+
+CREATE INDEX idx_stock_valuation_issue_time ON stock_valuation_issue (organisation_id, moved_at);
+CREATE INDEX idx_stock_valuation_issue_part ON stock_valuation_issue (part_id);
+CREATE INDEX idx_stock_valuation_issue_project ON stock_valuation_issue (project_id)
+    WHERE project_id IS NOT NULL;
@@ -0,0 +1,25 @@
+-- Attachment content moves out of the database into a content-addressed blob store.
+--
+-- part_attachment.data held every photo, datasheet and file as bytea: the bulk of the database, of
+-- every backup and of the WAL, and pulled through JDBC into memory on every download. The bytes now
+-- live in a BlobStore keyed by their SHA-256 (by default a directory tree, app.storage.blob-dir) and
+-- the row keeps the hash and the size.
+--
+-- Existing rows cannot be moved out in SQL — the store is not in the database. They keep their data
+-- for now, with sha256 still null, and AttachmentBlobMigration streams them out a row at a time once
+-- the application is up, clearing data as it goes. Until it has, those rows are served from data.
+
+ALTER TABLE part_attachment ADD COLUMN sha256     VARCHAR(64);
+ALTER TABLE part_attachment ADD COLUMN size_bytes BIGINT;
+ALTER TABLE part_attachment ALTER COLUMN data DROP NOT NULL;
+ALTER TABLE part_attachment ADD CONSTRAINT part_attachment_has_content
+    CHECK (sha256 IS NOT NULL OR data IS NOT NULL);
+
+-- Serves both the upload de-duplication (organisation, hash and type, which a hash all but decides
+-- on its own) and the collector's "does anything still name this blob".
+CREATE INDEX idx_part_attachment_sha256 ON part_attachment (sha256) WHERE sha256 IS NOT NULL;
+
+-- Matching on MD5 is over; the column stays as the fingerprint the API reports.
+DROP INDEX idx_part_attachment_hash;
+
+CREATE INDEX idx_part_attachment_unmigrated ON part_attachment (id) WHERE sha256 IS NULL;
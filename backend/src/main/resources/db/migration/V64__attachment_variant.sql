@@ -0,0 +1,23 @@
+-- Small renditions of photos, so a list of parts does not download every photo at full size.
+--
+-- A variant is derived from content, not from a row: it is keyed by the SHA-256 of the photo it was
+-- made from, so the photo shared by thirty kit parts — or held by two organisations — is scaled once.
+-- The rendition itself is another blob in the BlobStore, named by its own hash. When the photo is
+-- small enough already, sha256 is the source's own hash and nothing was written.
+--
+-- No foreign key: part_attachment.sha256 is not unique. AttachmentBlobCollector drops the variants
+-- of a photo no row names any more, and with them their blobs.
+
+CREATE TABLE attachment_variant (
+    source_sha256 VARCHAR(64)  NOT NULL,
+    variant       VARCHAR(8)   NOT NULL,
+    sha256        VARCHAR(64)  NOT NULL,
+    content_type  VARCHAR(100) NOT NULL,
+    width         INT          NOT NULL,
+    height        INT          NOT NULL,
+    created_at    TIMESTAMP    NOT NULL DEFAULT now(),
+    PRIMARY KEY (source_sha256, variant)
+);
+
+-- The collector's "does anything still name this blob".
+CREATE INDEX idx_attachment_variant_sha256 ON attachment_variant (sha256);
@@ -0,0 +1,24 @@
+-- The text layer of stored datasheets, page by page, so a PDF is parsed once rather than on every
+-- "Get specs from document" and every analysis of it.
+--
+-- Like attachment_variant (V64) this belongs to content, not to a row: it is keyed by the SHA-256
+-- of the PDF, so a datasheet linked to thirty parts — or held by two organisations — is read once.
+-- A PDF PDFBox cannot read has a datasheet_text row with the error and no pages, so it is not
+-- retried either.
+--
+-- No foreign key to part_attachment: its sha256 is not unique. AttachmentBlobCollector drops the
+-- text of a PDF no row names any more; the pages go with it.
+
+CREATE TABLE datasheet_text (
+    sha256      VARCHAR(64) PRIMARY KEY,
+    page_count  INT         NOT NULL,
+    error       TEXT,
+    created_at  TIMESTAMP   NOT NULL DEFAULT now()
+);
+
+CREATE TABLE datasheet_page (
+    sha256  VARCHAR(64) NOT NULL REFERENCES datasheet_text (sha256) ON DELETE CASCADE,
+    page    INT         NOT NULL,
+    text    TEXT        NOT NULL,
+    PRIMARY KEY (sha256, page)
+);
@@ -0,0 +1,11 @@
+-- Full-text search over the stored datasheet pages of V65 ("which datasheets mention AEC-Q100").
+--
+-- The vector is a generated column, so every page is indexed as DatasheetTextService stores it and
+-- nothing else has to remember to. English configuration: datasheets are written in it, and its
+-- stemming is what makes "rail-to-rail output" find "rail-to-rail outputs". Part numbers survive
+-- the parser intact ("LM358", "AEC-Q100" as well as "aec" and "q100").
+
+ALTER TABLE datasheet_page
+    ADD COLUMN tsv tsvector GENERATED ALWAYS AS (to_tsvector('english', text)) STORED;
+
+CREATE INDEX idx_datasheet_page_tsv ON datasheet_page USING GIN (tsv);
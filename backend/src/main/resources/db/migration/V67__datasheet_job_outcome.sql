@@ -0,0 +1,17 @@
+-- Where the bulk datasheet jobs (DatasheetBackfillRunner) have got to: one row per part a job has
+-- dealt with, so a run that was interrupted — or capped with --datasheets.limit — carries on with
+-- the parts it has not seen instead of downloading every datasheet again.
+--
+-- job distinguishes the backfill from its dry run (a part probed by the preflight still has to be
+-- stored) and both from re-sourcing. url is the datasheet_url the outcome was for: a part whose URL
+-- has changed since is looked at again.
+
+CREATE TABLE datasheet_job_outcome (
+    job          VARCHAR(32) NOT NULL,
+    part_id      BIGINT      NOT NULL REFERENCES part (id) ON DELETE CASCADE,
+    url          TEXT        NOT NULL,
+    outcome      VARCHAR(32) NOT NULL,
+    detail       TEXT,
+    processed_at TIMESTAMP   NOT NULL DEFAULT now(),
+    PRIMARY KEY (job, part_id)
+);
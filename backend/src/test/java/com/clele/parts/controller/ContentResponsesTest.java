@@ -0,0 +1,68 @@
+package com.clele.parts.controller;
+
+import com.clele.parts.service.PartAttachmentService.AttachmentContent;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Pins the {@code If-Range} handling Spring leaves to us: a client holding the current copy may have
+ * a range of it, and any other validator — another ETag, or a date these responses never give — gets
+ * the whole content as a stream Spring cannot slice.
+ */
+class ContentResponsesTest {
+
+    private static final byte[] BYTES = "%PDF-1.7 datasheet".getBytes(StandardCharsets.US_ASCII);
+    private static final String ETAG = "9f86d081884c7d65";
+
+    @Test
+    @DisplayName("an If-Range naming the current ETag keeps the range-capable resource")
+    void matchingEtagKeepsResource() {
+        Resource content = new ByteArrayResource(BYTES);
+
+        ResponseEntity<Resource> response = body(content, "\"" + ETAG + "\"");
+
+        assertSame(content, response.getBody());
+        assertEquals("\"" + ETAG + "\"", response.getHeaders().getETag());
+    }
+
+    @Test
+    @DisplayName("an If-Range naming another ETag gets the full body as a stream")
+    void otherEtagGetsFullBody() throws IOException {
+        ResponseEntity<Resource> response = body(new ByteArrayResource(BYTES), "\"0123456789abcdef\"");
+
+        assertFullBody(response);
+    }
+
+    @Test
+    @DisplayName("an If-Range with a date gets the full body as a stream")
+    void dateGetsFullBody() throws IOException {
+        ResponseEntity<Resource> response = body(new ByteArrayResource(BYTES), "Wed, 21 Oct 2026 07:28:00 GMT");
+
+        assertFullBody(response);
+    }
+
+    private static ResponseEntity<Resource> body(Resource content, String ifRange) {
+        return ContentResponses.body(ResponseEntity.ok(),
+                new AttachmentContent(content, "application/pdf", "sheet.pdf", ETAG, false), ifRange);
+    }
+
+    private static void assertFullBody(ResponseEntity<Resource> response) throws IOException {
+        InputStreamResource body = assertInstanceOf(InputStreamResource.class, response.getBody());
+        try (InputStream in = body.getInputStream()) {
+            assertArrayEquals(BYTES, in.readAllBytes());
+        }
+    }
+}
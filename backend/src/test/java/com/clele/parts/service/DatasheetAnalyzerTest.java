@@ -1,13 +1,18 @@
 package com.clele.parts.service;
 
+import com.clele.parts.model.DatasheetText;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
 import org.apache.pdfbox.pdmodel.font.PDType1Font;
 import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -23,6 +28,9 @@ class DatasheetAnalyzerTest {
 
     private final DatasheetAnalyzer analyzer = new DatasheetAnalyzer();
 
+    @TempDir
+    Path dir;
+
     @Test
     void textLayerWithParametricHeadingsRoutesToText() {
         byte[] pdf = pdf("Absolute Maximum Ratings",
@@ -99,21 +107,49 @@ class DatasheetAnalyzerTest {
         assertFalse(a.usable());
     }
 
+    @Test
+    void mappedFileReadsPageByPageLikeBytes() throws Exception {
+        byte[] pdf = pdf(List.of(new String[] {"Features"}, new String[] {}, new String[] {"Absolute Maximum Ratings"}));
+        Path file = Files.write(dir.resolve("datasheet.pdf"), pdf);
+
+        DatasheetText fromFile = analyzer.read(file);
+
+        assertEquals(analyzer.read(pdf), fromFile);
+        assertEquals(3, fromFile.pages().size());
+        assertTrue(fromFile.pages().get(0).contains("Features"));
+        assertEquals("", fromFile.pages().get(1).strip());
+        assertTrue(fromFile.pages().get(2).contains("Absolute Maximum Ratings"));
+    }
+
+    @Test
+    void emptyOrNonPdfFileIsUnusable() throws Exception {
+        assertFalse(analyzer.analyzeText(analyzer.read(Files.createFile(dir.resolve("empty.pdf")))).usable());
+        Path html = Files.writeString(dir.resolve("error.pdf"), "<html>Not Found</html>");
+        assertEquals(DatasheetAnalyzer.Route.UNUSABLE, analyzer.analyzeText(analyzer.read(html)).route());
+    }
+
     /** A one-page PDF containing the given lines; no lines means a genuinely blank page. */
     private static byte[] pdf(String... lines) {
+        return pdf(List.<String[]>of(lines));
+    }
+
+    /** A PDF with a page per entry, each containing that entry's lines. */
+    private static byte[] pdf(List<String[]> pages) {
         try (PDDocument doc = new PDDocument(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-            PDPage page = new PDPage();
-            doc.addPage(page);
-            if (lines.length > 0) {
-                try (PDPageContentStream cs = new PDPageContentStream(doc, page)) {
-                    cs.beginText();
-                    cs.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 11);
-                    cs.newLineAtOffset(50, 700);
-                    for (String line : lines) {
-                        cs.showText(line);
-                        cs.newLineAtOffset(0, -16);
+            for (String[] lines : pages) {
+                PDPage page = new PDPage();
+                doc.addPage(page);
+                if (lines.length > 0) {
+                    try (PDPageContentStream cs = new PDPageContentStream(doc, page)) {
+                        cs.beginText();
+                        cs.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 11);
+                        cs.newLineAtOffset(50, 700);
+                        for (String line : lines) {
+                            cs.showText(line);
+                            cs.newLineAtOffset(0, -16);
+                        }
+                        cs.endText();
                     }
-                    cs.endText();
                 }
             }
             doc.save(out);
@@ -0,0 +1,98 @@
+package com.clele.parts.service;
+
+import com.clele.parts.model.Part;
+import com.clele.parts.repository.DatasheetJobOutcomeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pins the checkpoint the bulk datasheet jobs resume from: a part dealt with under its current URL
+ * is skipped, one whose URL has changed since is tried again, the limit counts only the parts still
+ * to do, and a failure that may pass is left out of the checkpoint.
+ */
+class DatasheetJobTest {
+
+    private static final String JOB = "BACKFILL";
+
+    private record Row(String outcome, String detail, boolean settled) implements DatasheetJob.Outcome {}
+
+    private DatasheetJobOutcomeRepository outcomes;
+
+    @BeforeEach
+    void setUp() {
+        outcomes = mock(DatasheetJobOutcomeRepository.class);
+    }
+
+    @Test
+    @DisplayName("a part done under its current URL is skipped, one whose URL changed is retried, and the limit applies after")
+    void resumesFromTheCheckpoint() {
+        when(outcomes.done(JOB)).thenReturn(Map.of(
+                1L, "https://a.example.com/1.pdf",
+                2L, "https://a.example.com/old.pdf"));
+        List<Part> candidates = List.of(
+                part(1, "https://a.example.com/1.pdf"),
+                part(2, "https://a.example.com/2.pdf"),
+                part(3, "https://a.example.com/3.pdf"),
+                part(4, "https://a.example.com/4.pdf"));
+
+        DatasheetJob.Result<Row> result = DatasheetJob.run(JOB, candidates, 2, false, outcomes,
+                part -> new Row("TEXT_LAYER", null, true));
+
+        assertEquals(1, result.skipped());
+        assertEquals(2, result.rows().size());
+        verify(outcomes).record(JOB, 2L, "https://a.example.com/2.pdf", "TEXT_LAYER", null);
+        verify(outcomes).record(JOB, 3L, "https://a.example.com/3.pdf", "TEXT_LAYER", null);
+        verify(outcomes, never()).record(eq(JOB), eq(1L), anyString(), anyString(), eq(null));
+        verify(outcomes, never()).record(eq(JOB), eq(4L), anyString(), anyString(), eq(null));
+        verify(outcomes, never()).forget(JOB);
+    }
+
+    @Test
+    @DisplayName("fresh forgets the earlier runs before reading the checkpoint")
+    void freshStartsOver() {
+        when(outcomes.done(JOB)).thenReturn(Map.of());
+
+        DatasheetJob.Result<Row> result = DatasheetJob.run(JOB, List.of(part(1, "https://a.example.com/1.pdf")),
+                0, true, outcomes, part -> new Row("TEXT_LAYER", null, true));
+
+        assertEquals(0, result.skipped());
+        assertEquals(1, result.rows().size());
+        var order = inOrder(outcomes);
+        order.verify(outcomes).forget(JOB);
+        order.verify(outcomes).done(JOB);
+    }
+
+    @Test
+    @DisplayName("a failure that may pass is reported but not recorded, so the next run tries it again")
+    void retryableFailureNotRecorded() {
+        when(outcomes.done(JOB)).thenReturn(Map.of());
+
+        DatasheetJob.Result<Row> result = DatasheetJob.run(JOB, List.of(part(1, "https://a.example.com/1.pdf")),
+                0, false, outcomes, part -> new Row("DOWNLOAD_FAILED", "Read timed out", false));
+
+        assertEquals(1, result.rows().size());
+        verify(outcomes, never()).record(anyString(), anyLong(), anyString(), anyString(), anyString());
+    }
+
+    private static Part part(long id, String url) {
+        Part part = new Part();
+        part.setId(id);
+        part.setPartNumber("P" + id);
+        part.setDatasheetUrl(url);
+        return part;
+    }
+}
@@ -0,0 +1,78 @@
+package com.clele.parts.service;
+
+import com.clele.parts.model.DatasheetText;
+import com.clele.parts.repository.DatasheetTextRepository;
+import com.clele.parts.storage.BlobStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pins what storing datasheet text saves: a PDF whose text is stored is not read again, and one
+ * read on demand is read from the blob's file in place and stored for the next caller.
+ */
+class DatasheetTextServiceTest {
+
+    private static final String SHA = "ab".repeat(32);
+    private static final byte[] PDF = "%PDF-1.7 not really".getBytes(StandardCharsets.US_ASCII);
+
+    @TempDir
+    Path dir;
+
+    private BlobStore blobStore;
+    private DatasheetTextRepository textRepository;
+    private DatasheetAnalyzer analyzer;
+    private DatasheetTextService service;
+
+    @BeforeEach
+    void setUp() {
+        blobStore = mock(BlobStore.class);
+        textRepository = mock(DatasheetTextRepository.class);
+        analyzer = mock(DatasheetAnalyzer.class);
+        service = new DatasheetTextService(blobStore, textRepository, analyzer,
+                mock(PlatformTransactionManager.class));
+    }
+
+    @Test
+    @DisplayName("stored text is returned without the PDF being fetched or parsed")
+    void storedTextNotReadAgain() {
+        DatasheetText stored = new DatasheetText(List.of("Absolute Maximum Ratings"), null);
+        when(textRepository.find(SHA)).thenReturn(Optional.of(stored));
+        Supplier<byte[]> content = () -> fail("the bytes should not be needed");
+
+        assertEquals(stored, service.text(SHA, content));
+        verify(analyzer, never()).read(any(byte[].class));
+        verify(analyzer, never()).read(any(Path.class));
+    }
+
+    @Test
+    @DisplayName("text not stored yet is read from the blob's file and stored under the PDF's hash")
+    void missingTextReadAndStored() throws Exception {
+        Path file = Files.write(dir.resolve(SHA), PDF);
+        DatasheetText read = new DatasheetText(List.of("page one", "page two"), null);
+        when(textRepository.find(SHA)).thenReturn(Optional.empty());
+        when(blobStore.get(SHA)).thenReturn(new FileSystemResource(file));
+        when(analyzer.read(file)).thenReturn(read);
+
+        assertEquals(read, service.text(SHA, () -> fail("the blob should be read, not the bytes")));
+        verify(textRepository).save(SHA, read);
+    }
+}
@@ -0,0 +1,112 @@
+package com.clele.parts.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pins the pacing the bulk datasheet jobs rely on: a host gets no more than its share of requests,
+ * spaced out, while the other hosts carry on regardless; and response bytes wait for the budget.
+ */
+class HostThrottleTest {
+
+    @Test
+    @DisplayName("a busy host holds up only its own requests")
+    void slowHostDoesNotBlockOthers() throws Exception {
+        HostThrottle throttle = new HostThrottle(new HostThrottle.Limits(1, 8, Duration.ZERO, 1 << 20));
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger inFlightSlow = new AtomicInteger();
+        AtomicInteger maxInFlightSlow = new AtomicInteger();
+
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> slow = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                slow.add(threads.submit(() -> throttle.call("slow.example.com", () -> {
+                    maxInFlightSlow.accumulateAndGet(inFlightSlow.incrementAndGet(), Math::max);
+                    release.await();
+                    inFlightSlow.decrementAndGet();
+                    return null;
+                })));
+            }
+            String fast = threads.submit(() -> throttle.call("fast.example.com", () -> "done"))
+                    .get(5, TimeUnit.SECONDS);
+            assertEquals("done", fast);
+
+            release.countDown();
+            for (Future<?> f : slow) {
+                f.get(5, TimeUnit.SECONDS);
+            }
+        }
+        assertEquals(1, maxInFlightSlow.get());
+    }
+
+    @Test
+    @DisplayName("requests to one host start at least the spacing apart")
+    void requestsToOneHostAreSpaced() throws Exception {
+        Duration spacing = Duration.ofMillis(200);
+        HostThrottle throttle = new HostThrottle(new HostThrottle.Limits(4, 8, spacing, 1 << 20));
+        List<Long> starts = Collections.synchronizedList(new ArrayList<>());
+
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 3; i++) {
+                threads.submit(() -> throttle.call("vendor.example.com", () -> starts.add(System.nanoTime())));
+            }
+        }
+
+        List<Long> sorted = new ArrayList<>(starts);
+        Collections.sort(sorted);
+        assertEquals(3, sorted.size());
+        for (int i = 1; i < sorted.size(); i++) {
+            // A little slack for the clock: sleeping is never early, but timestamps are taken after waking.
+            assertTrue(sorted.get(i) - sorted.get(i - 1) >= spacing.toNanos() - TimeUnit.MILLISECONDS.toNanos(20),
+                    "requests " + (i - 1) + " and " + i + " started too close together");
+        }
+    }
+
+    @Test
+    @DisplayName("a reservation waits while the byte budget is spent and goes ahead once a share is given back")
+    void reserveWaitsForTheBudget() throws Exception {
+        HostThrottle throttle = new HostThrottle(new HostThrottle.Limits(1, 1, Duration.ZERO, 1024 * 1024));
+        HostThrottle.Budget first = throttle.reserve(768 * 1024);
+
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<HostThrottle.Budget> second = threads.submit(() -> throttle.reserve(512 * 1024));
+            Thread.sleep(100);
+            assertFalse(second.isDone(), "the second reservation should wait for the first");
+
+            first.close();
+            second.get(5, TimeUnit.SECONDS).close();
+        }
+    }
+
+    @Test
+    @DisplayName("a reservation larger than the budget takes the whole budget rather than waiting forever")
+    void oversizeReservationTakesTheWholeBudget() throws Exception {
+        HostThrottle throttle = new HostThrottle(new HostThrottle.Limits(1, 1, Duration.ZERO, 1024 * 1024));
+
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            HostThrottle.Budget huge = threads.submit(() -> throttle.reserve(40L * 1024 * 1024))
+                    .get(5, TimeUnit.SECONDS);
+            Future<HostThrottle.Budget> small = threads.submit(() -> throttle.reserve(1));
+            Thread.sleep(100);
+            assertFalse(small.isDone(), "nothing is left while the oversize reservation holds the budget");
+
+            huge.close();
+            small.get(5, TimeUnit.SECONDS).close();
+        }
+    }
+}
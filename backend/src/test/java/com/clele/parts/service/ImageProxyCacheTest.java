@@ -0,0 +1,115 @@
+package com.clele.parts.service;
+
+import com.clele.parts.config.AppProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResponseExtractor;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pins what the image proxy's cache saves: an image is fetched upstream once and then served from
+ * disk, a cached image already handed out survives its eviction, and a failed fetch is remembered
+ * rather than repeated on every render of the grid.
+ */
+class ImageProxyCacheTest {
+
+    private static final URI URL = URI.create("https://example.com/resistor.png");
+    private static final byte[] IMAGE = "not really a png".getBytes(StandardCharsets.US_ASCII);
+
+    @TempDir
+    Path dir;
+
+    private RestTemplate restTemplate;
+    private ImageProxyCache cache;
+
+    @BeforeEach
+    void setUp() {
+        restTemplate = mock(RestTemplate.class);
+        AppProperties properties = new AppProperties();
+        properties.getStorage().setImageCacheDir(dir.toString());
+        cache = new ImageProxyCache(restTemplate, properties);
+    }
+
+    @Test
+    @DisplayName("an image is fetched once, streamed to the first request and served from disk after")
+    void fetchedOnce() throws Exception {
+        stubImage();
+
+        ImageProxyCache.Served first = cache.get(URL);
+        assertEquals(MediaType.IMAGE_PNG, first.contentType());
+        assertArrayEquals(IMAGE, first.content().getContentAsByteArray());
+
+        ImageProxyCache.Served second = cache.get(URL);
+        assertArrayEquals(IMAGE, second.content().getContentAsByteArray());
+        verify(restTemplate, times(1)).execute(eq(URL), eq(HttpMethod.GET), any(), any());
+    }
+
+    @Test
+    @DisplayName("a cached image evicted between get and reading the body is still read whole")
+    void evictedAfterGetStillRead() throws Exception {
+        stubImage();
+        cache.get(URL).content().getContentAsByteArray();
+
+        ImageProxyCache.Served served = cache.get(URL);
+        try (Stream<Path> files = Files.list(dir)) {
+            // What an eviction by another request's fetch does to the file.
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+
+        assertArrayEquals(IMAGE, served.content().getContentAsByteArray());
+        assertEquals(IMAGE.length, served.content().contentLength());
+    }
+
+    @Test
+    @DisplayName("a failed fetch is answered from memory until it expires")
+    void failureRemembered() {
+        when(restTemplate.execute(eq(URL), eq(HttpMethod.GET), any(), any()))
+                .thenThrow(new HttpClientErrorException(HttpStatus.NOT_FOUND));
+
+        ResponseStatusException first = assertThrows(ResponseStatusException.class, () -> cache.get(URL));
+        ResponseStatusException second = assertThrows(ResponseStatusException.class, () -> cache.get(URL));
+
+        assertEquals(HttpStatus.NOT_FOUND, first.getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, second.getStatusCode());
+        verify(restTemplate, times(1)).execute(eq(URL), eq(HttpMethod.GET), any(), any());
+    }
+
+    private void stubImage() {
+        when(restTemplate.execute(eq(URL), eq(HttpMethod.GET), any(), any())).thenAnswer(invocation -> {
+            ClientHttpResponse response = mock(ClientHttpResponse.class);
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.IMAGE_PNG);
+            when(response.getHeaders()).thenReturn(headers);
+            when(response.getBody()).thenReturn(new ByteArrayInputStream(IMAGE));
+            return invocation.<ResponseExtractor<?>>getArgument(3).extractData(response);
+        });
+    }
+}
@@ -0,0 +1,81 @@
+package com.clele.parts.service;
+
+import com.clele.parts.model.ImageVariant;
+import com.clele.parts.repository.AttachmentVariantRepository;
+import com.clele.parts.repository.AttachmentVariantRepository.Variant;
+import com.clele.parts.storage.BlobStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pins what a photo's renditions are. A large photo is scaled to each size with its proportions
+ * kept, and an opaque one goes out as JPEG; a photo already smaller than a size is not scaled up
+ * or copied, only named.
+ */
+class ImageVariantServiceTest {
+
+    private static final String SOURCE = "ab".repeat(32);
+
+    private BlobStore blobStore;
+    private AttachmentVariantRepository variantRepository;
+    private ImageVariantService service;
+
+    @BeforeEach
+    void setUp() {
+        blobStore = mock(BlobStore.class);
+        variantRepository = mock(AttachmentVariantRepository.class);
+        service = new ImageVariantService(blobStore, variantRepository);
+        when(variantRepository.find(anyString(), any())).thenReturn(Optional.empty());
+        when(blobStore.put(any())).thenReturn("cd".repeat(32));
+    }
+
+    @Test
+    @DisplayName("a large opaque photo is scaled to each size, proportions kept, as JPEG")
+    void largePhotoScaled() throws Exception {
+        when(blobStore.get(SOURCE)).thenReturn(png(new BufferedImage(2000, 1000, BufferedImage.TYPE_INT_ARGB), true));
+
+        service.generate(SOURCE);
+
+        verify(variantRepository).save(SOURCE, ImageVariant.THUMB, new Variant("cd".repeat(32), "image/jpeg", 128, 64));
+        verify(variantRepository).save(SOURCE, ImageVariant.MEDIUM, new Variant("cd".repeat(32), "image/jpeg", 512, 256));
+    }
+
+    @Test
+    @DisplayName("a photo smaller than a size is its own rendition, and nothing is stored")
+    void smallPhotoNamedNotCopied() throws Exception {
+        when(blobStore.get(SOURCE)).thenReturn(png(new BufferedImage(100, 80, BufferedImage.TYPE_INT_ARGB), false));
+
+        service.generate(SOURCE);
+
+        verify(variantRepository).save(SOURCE, ImageVariant.THUMB, new Variant(SOURCE, "image/png", 100, 80));
+        verify(variantRepository).save(SOURCE, ImageVariant.MEDIUM, new Variant(SOURCE, "image/png", 100, 80));
+        verify(blobStore, never()).put(any());
+    }
+
+    private static ByteArrayResource png(BufferedImage image, boolean opaque) throws Exception {
+        if (opaque) {
+            for (int y = 0; y < image.getHeight(); y++) {
+                for (int x = 0; x < image.getWidth(); x++) {
+                    image.setRGB(x, y, 0xFF336699);
+                }
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return new ByteArrayResource(out.toByteArray());
+    }
+}
@@ -0,0 +1,79 @@
+package com.clele.parts.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pins the queue the photo renditions and datasheet text share: a key is worked on once however often
+ * it is asked for, a full queue drops rather than blocks the caller, and shutting down lets the key
+ * being worked on finish and takes no more.
+ */
+class KeyedWorkQueueTest {
+
+    @Test
+    @DisplayName("a key asked for twice is worked on once, and a full queue drops the request")
+    void dedupesAndDrops() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> done = new CopyOnWriteArrayList<>();
+        KeyedWorkQueue queue = new KeyedWorkQueue("test-queue", 1, 1, key -> {
+            started.countDown();
+            await(release);
+            done.add(key);
+        });
+        try {
+            queue.request("a");
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            queue.request("a");
+            queue.request("b");
+            release.countDown();
+        } finally {
+            queue.shutdown();
+        }
+        assertEquals(List.of("a"), done);
+    }
+
+    @Test
+    @DisplayName("shutdown waits for the key being worked on and takes no more")
+    void shutdownFinishesRunningKey() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        List<String> done = new CopyOnWriteArrayList<>();
+        KeyedWorkQueue queue = new KeyedWorkQueue("test-queue", 1, 4, key -> {
+            started.countDown();
+            sleep(200);
+            done.add(key);
+        });
+        queue.request("a");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        queue.request("b");
+
+        queue.shutdown();
+        queue.request("c");
+
+        assertEquals(List.of("a"), done);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
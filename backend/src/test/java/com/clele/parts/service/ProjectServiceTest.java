@@ -0,0 +1,210 @@
+package com.clele.parts.service;
+
+import com.clele.parts.dto.ProjectBomEntryDTO;
+import com.clele.parts.dto.ProjectBomRequest;
+import com.clele.parts.dto.ProjectDTO;
+import com.clele.parts.dto.PullStockRequest;
+import com.clele.parts.model.AppUser;
+import com.clele.parts.model.Location;
+import com.clele.parts.model.MovementType;
+import com.clele.parts.model.Part;
+import com.clele.parts.model.Project;
+import com.clele.parts.model.ProjectPart;
+import com.clele.parts.model.ProjectStatus;
+import com.clele.parts.model.ProjectStock;
+import com.clele.parts.model.StockReservation;
+import com.clele.parts.repository.LocationRepository;
+import com.clele.parts.repository.PartRepository;
+import com.clele.parts.repository.ProjectPartRepository;
+import com.clele.parts.repository.ProjectRepository;
+import com.clele.parts.repository.ProjectStockRepository;
+import com.clele.parts.repository.StockEntryRepository;
+import com.clele.parts.repository.StockReservationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pins the number of statements a project read issues. The detail and list screens used to ask
+ * one question per BOM entry and one per project, which nobody notices on a ten-line test board
+ * and everybody notices on a 300-line one. The figures here must not grow with the data.
+ *
+ * <p>Also pins the order of a pull against a reservation: the project's own claim is handed back
+ * before the take, or the take would be refused for dipping into reserved stock.
+ */
+class ProjectServiceTest {
+
+    private static final Long ORG_ID = 7L;
+    private static final Long PROJECT_ID = 42L;
+
+    private ProjectRepository projectRepository;
+    private ProjectPartRepository projectPartRepository;
+    private ProjectStockRepository projectStockRepository;
+    private PartRepository partRepository;
+    private LocationRepository locationRepository;
+    private StockEntryRepository stockEntryRepository;
+    private StockReservationRepository stockReservationRepository;
+    private StockMovementService stockMovementService;
+    private ProjectService service;
+    private AppUser me;
+
+    @BeforeEach
+    void setUp() {
+        projectRepository = mock(ProjectRepository.class);
+        projectPartRepository = mock(ProjectPartRepository.class);
+        projectStockRepository = mock(ProjectStockRepository.class);
+        partRepository = mock(PartRepository.class);
+        locationRepository = mock(LocationRepository.class);
+        stockEntryRepository = mock(StockEntryRepository.class);
+        stockReservationRepository = mock(StockReservationRepository.class);
+        stockMovementService = mock(StockMovementService.class);
+        CurrentUserService currentUserService = mock(CurrentUserService.class);
+        CurrentOrganisationService currentOrganisationService = mock(CurrentOrganisationService.class);
+
+        me = new AppUser();
+        me.setId(1L);
+        me.setEmail("me@example.com");
+        when(currentUserService.current()).thenReturn(me);
+        when(currentOrganisationService.currentId()).thenReturn(ORG_ID);
+
+        service = new ProjectService(projectRepository, projectPartRepository, projectStockRepository,
+                partRepository, locationRepository, stockEntryRepository, stockReservationRepository,
+                stockMovementService, currentUserService, currentOrganisationService);
+    }
+
+    @Test
+    @DisplayName("the detail view reads pulled totals for a 300-line BOM in one grouped query")
+    void detailIsConstantInBomSize() {
+        Project project = project(PROJECT_ID);
+        when(projectRepository.findByIdAndOrganisationIdAndOwnerId(PROJECT_ID, ORG_ID, me.getId()))
+                .thenReturn(Optional.of(project));
+        List<ProjectPart> bom = new ArrayList<>();
+        for (long i = 1; i <= 300; i++) {
+            bom.add(ProjectPart.builder().id(i).project(project).part(part(i)).qtyPerInstance(2).build());
+        }
+        when(projectPartRepository.findByProjectIdWithPart(PROJECT_ID)).thenReturn(bom);
+        when(projectStockRepository.findByProjectIdWithDetails(PROJECT_ID)).thenReturn(List.of());
+        when(stockReservationRepository.findByProjectIdWithDetails(PROJECT_ID)).thenReturn(List.of());
+        when(projectStockRepository.sumQuantityByPartIdForProject(PROJECT_ID))
+                .thenReturn(List.<Object[]>of(new Object[]{5L, 3L}, new Object[]{9L, 1L}));
+
+        ProjectDTO dto = service.findById(PROJECT_ID);
+
+        verify(projectStockRepository, times(1)).sumQuantityByPartIdForProject(PROJECT_ID);
+        verify(projectStockRepository, never()).sumQuantityByProjectIdAndPartId(anyLong(), anyLong());
+        assertEquals(300, dto.getBom().size());
+        assertEquals(3, pulled(dto, 5L));
+        assertEquals(1, pulled(dto, 9L));
+        assertEquals(0, pulled(dto, 6L));
+    }
+
+    @Test
+    @DisplayName("the project list counts every project's BOM in one grouped query")
+    void listIsConstantInProjectCount() {
+        List<Project> projects = new ArrayList<>();
+        for (long i = 1; i <= 50; i++) {
+            projects.add(project(i));
+        }
+        when(projectRepository.findByOrganisationIdAndOwnerIdOrderByUpdatedAtDesc(ORG_ID, me.getId()))
+                .thenReturn(projects);
+        when(projectPartRepository.countByProjectIds(anyList()))
+                .thenReturn(List.<Object[]>of(new Object[]{2L, 12L}));
+
+        List<ProjectDTO> list = service.findAll();
+
+        verify(projectPartRepository, times(1)).countByProjectIds(anyList());
+        verify(projectPartRepository, never()).countByProjectId(any());
+        assertEquals(50, list.size());
+        assertEquals(12, list.get(1).getBomPartCount());
+        assertEquals(0, list.get(0).getBomPartCount());
+    }
+
+    @Test
+    @DisplayName("a pull takes the project's own reservation first and leaves the rest of it standing")
+    void pullConsumesOwnReservation() {
+        Project project = project(PROJECT_ID);
+        Part part = part(5L);
+        Location location = new Location();
+        location.setId(3L);
+        location.setName("Drawer");
+        when(projectRepository.findByIdAndOrganisationIdAndOwnerId(PROJECT_ID, ORG_ID, me.getId()))
+                .thenReturn(Optional.of(project));
+        when(partRepository.findByIdAndOrganisationId(5L, ORG_ID)).thenReturn(Optional.of(part));
+        when(locationRepository.findByIdAndOrganisationId(3L, ORG_ID)).thenReturn(Optional.of(location));
+        StockReservation reservation = StockReservation.builder()
+                .id(11L).project(project).part(part).location(location).quantity(10).build();
+        when(stockReservationRepository.findForUpdate(PROJECT_ID, 5L, 3L)).thenReturn(Optional.of(reservation));
+        when(stockEntryRepository.release(5L, 3L, 4)).thenReturn(1);
+        when(stockEntryRepository.findByPartIdAndLocationId(5L, 3L)).thenReturn(Optional.empty());
+        when(projectStockRepository.save(any(ProjectStock.class))).thenAnswer(i -> i.getArgument(0));
+
+        service.pullStock(PROJECT_ID, new PullStockRequest(5L, 3L, 4, null));
+
+        InOrder order = inOrder(stockEntryRepository, stockMovementService);
+        order.verify(stockEntryRepository).release(5L, 3L, 4);
+        order.verify(stockMovementService).applyForProject(eq(part), eq(location), eq(-4), any(),
+                anyString(), eq(MovementType.PROJECT_OUT), eq(project));
+        assertEquals(6, reservation.getQuantity());
+        verify(stockReservationRepository).save(reservation);
+        verify(stockReservationRepository, never()).delete(any());
+    }
+
+    @Test
+    @DisplayName("an updated BOM entry reports what the project holds reserved of its part")
+    void updatedEntryCarriesReservedTotal() {
+        Project project = project(PROJECT_ID);
+        ProjectPart pp = ProjectPart.builder().id(9L).project(project).part(part(5L)).qtyPerInstance(2).build();
+        when(projectRepository.findByIdAndOrganisationIdAndOwnerId(PROJECT_ID, ORG_ID, me.getId()))
+                .thenReturn(Optional.of(project));
+        when(projectPartRepository.findById(9L)).thenReturn(Optional.of(pp));
+        when(projectPartRepository.save(pp)).thenReturn(pp);
+        when(stockReservationRepository.sumQuantityByProjectIdAndPartId(PROJECT_ID, 5L)).thenReturn(6);
+
+        ProjectBomEntryDTO dto = service.updateBomEntry(PROJECT_ID, 9L, new ProjectBomRequest(5L, 3, null));
+
+        assertEquals(6, dto.getReservedTotal());
+        assertEquals(3, dto.getQtyPerInstance());
+    }
+
+    private Project project(Long id) {
+        Project p = new Project();
+        p.setId(id);
+        p.setName("Board " + id);
+        p.setInstanceCount(2);
+        p.setStatus(ProjectStatus.BUILDING);
+        p.setOwner(me);
+        return p;
+    }
+
+    private static Part part(Long id) {
+        Part part = new Part();
+        part.setId(id);
+        part.setPartNumber("P" + id);
+        return part;
+    }
+
+    private static int pulled(ProjectDTO dto, Long partId) {
+        return dto.getBom().stream()
+                .filter(e -> e.getPartId().equals(partId))
+                .mapToInt(ProjectBomEntryDTO::getPulledTotal)
+                .findFirst().orElseThrow();
+    }
+}
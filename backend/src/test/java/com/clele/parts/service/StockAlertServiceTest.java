@@ -0,0 +1,103 @@
+package com.clele.parts.service;
+
+import com.clele.parts.config.AppProperties;
+import com.clele.parts.dto.StockAlertDTO;
+import com.clele.parts.model.AppUser;
+import com.clele.parts.model.Permissions;
+import com.clele.parts.repository.AppUserRepository;
+import com.clele.parts.repository.StockAlertRepository;
+import com.clele.parts.repository.StockAlertRepository.Alert;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pins who hears about a low-stock alert. Every instance pushes an alert to its own streams, but
+ * only the one that wins the claim mails it; and a mail about stock that has already been
+ * replenished is noise, so it is dropped. A mail handed over before shutdown still goes out.
+ */
+class StockAlertServiceTest {
+
+    private static final Long ORG_ID = 7L;
+
+    private StockAlertRepository alertRepository;
+    private NotificationService notificationService;
+    private MailService mailService;
+    private StockAlertService service;
+
+    @BeforeEach
+    void setUp() {
+        alertRepository = mock(StockAlertRepository.class);
+        notificationService = mock(NotificationService.class);
+        mailService = mock(MailService.class);
+        AppUserRepository userRepository = mock(AppUserRepository.class);
+        AppUser admin = AppUser.builder().email("admin@example.com").build();
+        when(userRepository.findByOrganisationPermission(ORG_ID, Permissions.ORG_ADMIN)).thenReturn(List.of(admin));
+        service = new StockAlertService(mock(DatabaseNotificationListener.class), alertRepository,
+                notificationService, mailService, userRepository, new AppProperties());
+    }
+
+    @Test
+    @DisplayName("a drop below minimum is pushed to the organisation and mailed by the claim winner")
+    void dropIsPushedAndMailedOnce() {
+        Alert alert = alert(1L, true, true);
+        when(alertRepository.find(1L)).thenReturn(Optional.of(alert));
+        when(alertRepository.claimMail(1L)).thenReturn(true);
+
+        service.onNotification("1");
+
+        verify(notificationService).publish(eq(ORG_ID), eq(StockAlertService.EVENT),
+                argThat(dto -> dto instanceof StockAlertDTO a && a.isBelowMinimum() && a.getPartNumber().equals("R1")));
+        verify(mailService, timeout(2000)).sendStockAlert(alert, List.of("admin@example.com"));
+    }
+
+    @Test
+    @DisplayName("no mail when another instance claimed it, or the stock is back up by then")
+    void noMailWhenClaimedElsewhereOrResolved() {
+        when(alertRepository.find(1L)).thenReturn(Optional.of(alert(1L, true, true)));
+        when(alertRepository.claimMail(1L)).thenReturn(false);
+        when(alertRepository.find(2L)).thenReturn(Optional.of(alert(2L, true, false)));
+        when(alertRepository.claimMail(2L)).thenReturn(true);
+
+        service.onNotification("1");
+        service.onNotification("2");
+
+        verify(notificationService, times(2)).publish(eq(ORG_ID), any(), any());
+        verify(alertRepository, timeout(2000)).claimMail(2L);
+        verify(mailService, after(200).never()).sendStockAlert(any(), anyList());
+    }
+
+    @Test
+    @DisplayName("shutting down sends the mail already handed to the mail thread before returning")
+    void stopWaitsForMail() {
+        Alert alert = alert(1L, true, true);
+        when(alertRepository.find(1L)).thenReturn(Optional.of(alert));
+        when(alertRepository.claimMail(1L)).thenReturn(true);
+
+        service.onNotification("1");
+        service.stop();
+
+        verify(mailService).sendStockAlert(alert, List.of("admin@example.com"));
+    }
+
+    private static Alert alert(Long id, boolean below, boolean stillBelow) {
+        return new Alert(id, ORG_ID, 3L, 4L, "R1", 5L, "Shelf", below, 2, 10, stillBelow,
+                LocalDateTime.of(2026, 1, 1, 12, 0));
+    }
+}
@@ -0,0 +1,121 @@
+package com.clele.parts.service;
+
+import com.clele.parts.repository.LocationRepository;
+import com.clele.parts.repository.PartRepository;
+import com.clele.parts.repository.StockCheckpointRepository;
+import com.clele.parts.repository.StockCheckpointRepository.Checkpoint;
+import com.clele.parts.repository.StockCheckpointRepository.Line;
+import com.clele.parts.repository.StockCheckpointRepository.Movement;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pins the replay behind as-of queries and checkpoints. A checkpoint is only worth having if starting
+ * from it gives the answer starting from the first movement would; and the replayed price has to
+ * follow the live entry's rules, or a quarter-end valuation drifts from what the entries said then.
+ */
+class StockAsOfServiceTest {
+
+    private static final Long ORG_ID = 7L;
+    private static final Long PART = 5L;
+    private static final Long BIN_A = 1L;
+    private static final Long BIN_B = 2L;
+    private static final LocalDateTime DAY_1 = LocalDateTime.of(2026, 1, 1, 0, 0);
+    private static final LocalDateTime DAY_2 = DAY_1.plusDays(1);
+
+    private StockCheckpointRepository checkpointRepository;
+    private StockAsOfService service;
+
+    /** A tiny ledger the mocked repository serves ranges of. */
+    private record Stamped(LocalDateTime movedAt, Movement movement) {}
+    private final List<Stamped> ledger = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        checkpointRepository = mock(StockCheckpointRepository.class);
+        service = new StockAsOfService(checkpointRepository, mock(PartRepository.class),
+                mock(LocationRepository.class), mock(CurrentOrganisationService.class));
+        doAnswer(i -> {
+            LocalDateTime from = i.getArgument(1);
+            LocalDateTime to = i.getArgument(2);
+            Consumer<Movement> sink = i.getArgument(3);
+            ledger.stream()
+                    .filter(s -> from == null || !s.movedAt().isBefore(from))
+                    .filter(s -> to == null || s.movedAt().isBefore(to))
+                    .forEach(s -> sink.accept(s.movement()));
+            return null;
+        }).when(checkpointRepository).movements(eq(ORG_ID), any(), any(), any(Consumer.class));
+    }
+
+    @Test
+    @DisplayName("a move lands at the source's price and averages into what the target held")
+    void moveAveragesIntoTarget() {
+        when(checkpointRepository.latest(ORG_ID, null)).thenReturn(Optional.empty());
+        record(DAY_1.minusHours(3), new Movement(PART, BIN_A, null, 10, new BigDecimal("1.00")));
+        record(DAY_1.minusHours(2), new Movement(PART, BIN_B, null, 10, new BigDecimal("2.00")));
+        record(DAY_1.minusHours(1), new Movement(PART, BIN_A, BIN_B, -10, new BigDecimal("1.00")));
+
+        Map<StockAsOfService.Key, StockAsOfService.Position> held = service.positions(ORG_ID, null);
+
+        assertEquals(new StockAsOfService.Position(0, new BigDecimal("1.00")), held.get(key(BIN_A)));
+        assertEquals(new StockAsOfService.Position(20, new BigDecimal("1.50")), held.get(key(BIN_B)));
+    }
+
+    @Test
+    @DisplayName("starting from a checkpoint gives the same answer as replaying the whole ledger")
+    @SuppressWarnings("unchecked")
+    void checkpointPlusTailEqualsFullReplay() {
+        record(DAY_1.minusHours(5), new Movement(PART, BIN_A, null, 7, new BigDecimal("0.30")));
+        record(DAY_1.minusHours(4), new Movement(PART, BIN_A, null, 5, null));
+        record(DAY_1.minusHours(3), new Movement(PART, BIN_A, null, -4, new BigDecimal("0.30")));
+        record(DAY_1.plusHours(1), new Movement(PART, BIN_A, null, 3, new BigDecimal("0.45")));
+        record(DAY_1.plusHours(2), new Movement(PART, BIN_A, BIN_B, -6, new BigDecimal("0.34")));
+        record(DAY_1.plusHours(3), new Movement(PART, BIN_B, null, 1, new BigDecimal("0.99")));
+
+        when(checkpointRepository.latest(eq(ORG_ID), any())).thenReturn(Optional.empty());
+        Map<StockAsOfService.Key, StockAsOfService.Position> full = service.positions(ORG_ID, DAY_2);
+
+        service.checkpoint(ORG_ID, DAY_1);
+        ArgumentCaptor<List<Line>> written = ArgumentCaptor.forClass(List.class);
+        verify(checkpointRepository).insert(eq(ORG_ID), eq(DAY_1), written.capture());
+
+        when(checkpointRepository.latest(ORG_ID, DAY_2)).thenReturn(Optional.of(new Checkpoint(99L, DAY_1)));
+        doAnswer(i -> {
+            Consumer<Line> sink = i.getArgument(1);
+            written.getValue().forEach(sink);
+            return null;
+        }).when(checkpointRepository).lines(anyLong(), any(Consumer.class));
+
+        assertEquals(full, service.positions(ORG_ID, DAY_2));
+        assertEquals(new StockAsOfService.Position(5, new BigDecimal("0.34")), full.get(key(BIN_A)));
+        assertEquals(new StockAsOfService.Position(7, new BigDecimal("0.43")), full.get(key(BIN_B)));
+    }
+
+    private void record(LocalDateTime movedAt, Movement movement) {
+        ledger.add(new Stamped(movedAt, movement));
+    }
+
+    private static StockAsOfService.Key key(Long locationId) {
+        return new StockAsOfService.Key(PART, locationId);
+    }
+}
@@ -0,0 +1,83 @@
+package com.clele.parts.service;
+
+import com.clele.parts.dto.StockChangeDTO;
+import com.clele.parts.model.MovementType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Pins what the live stock stream says and when. Nothing may go out before the transaction is
+ * about to commit — a rolled-back take announced to every screen would be worse than no stream —
+ * and a part changed twice in one transaction is announced once, as it ended up.
+ */
+class StockChangeStreamTest {
+
+    private static final Long ORG_ID = 7L;
+
+    private NamedParameterJdbcTemplate jdbc;
+    private NotificationService notificationService;
+    private StockChangeStream stream;
+
+    @BeforeEach
+    void setUp() {
+        jdbc = mock(NamedParameterJdbcTemplate.class);
+        notificationService = mock(NotificationService.class);
+        stream = new StockChangeStream(mock(DatabaseNotificationListener.class), notificationService, jdbc,
+                new ObjectMapper());
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.unbindResourceIfPossible(stream);
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    @DisplayName("changes are notified once, just before commit, the last one per part and location")
+    void coalescedAndSentBeforeCommit() throws Exception {
+        stream.record(ORG_ID, change(1L, 10, MovementType.PURCHASE));
+        stream.record(ORG_ID, change(2L, 4, MovementType.MOVE));
+        stream.record(ORG_ID, change(1L, 7, MovementType.CONSUME));
+
+        verify(jdbc, never()).query(anyString(), any(SqlParameterSource.class), any(RowCallbackHandler.class));
+        for (TransactionSynchronization sync : TransactionSynchronizationManager.getSynchronizations()) {
+            sync.beforeCommit(false);
+        }
+
+        ArgumentCaptor<MapSqlParameterSource> params = ArgumentCaptor.forClass(MapSqlParameterSource.class);
+        verify(jdbc).query(eq("SELECT pg_notify(:channel, :payload)"), params.capture(),
+                any(RowCallbackHandler.class));
+        String payload = (String) params.getValue().getValue("payload");
+
+        stream.onNotification(payload);
+
+        verify(notificationService).publish(ORG_ID, StockChangeStream.EVENT,
+                List.of(change(2L, 4, MovementType.MOVE), change(1L, 7, MovementType.CONSUME)));
+        assertEquals(StockChangeStream.CHANNEL, params.getValue().getValue("channel"));
+    }
+
+    private static StockChangeDTO change(Long locationId, int quantity, MovementType type) {
+        return new StockChangeDTO(5L, locationId, quantity, 0, type);
+    }
+}
@@ -0,0 +1,122 @@
+package com.clele.parts.service;
+
+import com.clele.parts.dto.StockAdjustRequest;
+import com.clele.parts.dto.StockReceiptRequest;
+import com.clele.parts.dto.StockReceiptResultDTO;
+import com.clele.parts.repository.LocationRepository;
+import com.clele.parts.repository.PartRepository;
+import com.clele.parts.repository.StockEntryRepository;
+import com.clele.parts.repository.StockLedgerRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pins the shape of a bulk receipt. Booking in an 80-line order used to be 80 requests, each
+ * looking up its part and location on its own; the receipt must check the lot in two queries and
+ * hand every good line to the ledger in one call — and a bad line must cost only itself.
+ */
+class StockEntryServiceTest {
+
+    private static final Long ORG_ID = 7L;
+
+    private PartRepository partRepository;
+    private LocationRepository locationRepository;
+    private StockMovementService stockMovementService;
+    private StockEntryService service;
+
+    @BeforeEach
+    void setUp() {
+        partRepository = mock(PartRepository.class);
+        locationRepository = mock(LocationRepository.class);
+        stockMovementService = mock(StockMovementService.class);
+        CurrentOrganisationService currentOrganisationService = mock(CurrentOrganisationService.class);
+        when(currentOrganisationService.currentId()).thenReturn(ORG_ID);
+
+        service = new StockEntryService(mock(StockEntryRepository.class), mock(StockLedgerRepository.class),
+                partRepository, locationRepository, stockMovementService, mock(CurrentUserService.class),
+                currentOrganisationService);
+    }
+
+    @Test
+    @DisplayName("a 200-line receipt checks parts and locations in one query each and writes in one call")
+    void receiptIsSetBased() {
+        List<StockAdjustRequest> items = new ArrayList<>();
+        List<Long> partIds = new ArrayList<>();
+        for (long i = 1; i <= 200; i++) {
+            items.add(new StockAdjustRequest(i, 3L, 5, new BigDecimal("0.10"), null));
+            partIds.add(i);
+        }
+        when(partRepository.findIdsByOrganisationIdAndIdIn(eq(ORG_ID), anyCollection())).thenReturn(partIds);
+        when(locationRepository.findIdsByOrganisationIdAndIdIn(eq(ORG_ID), anyCollection())).thenReturn(List.of(3L));
+        when(stockMovementService.receive(anyList())).thenAnswer(i -> received(i.getArgument(0)));
+
+        StockReceiptResultDTO result = service.receive(new StockReceiptRequest(items, "PO 4711"));
+
+        assertEquals(200, result.getReceived());
+        assertEquals(0, result.getRejected());
+        verify(partRepository, times(1)).findIdsByOrganisationIdAndIdIn(eq(ORG_ID), anyCollection());
+        verify(locationRepository, times(1)).findIdsByOrganisationIdAndIdIn(eq(ORG_ID), anyCollection());
+        verify(partRepository, never()).findByIdAndOrganisationId(any(), any());
+        verify(stockMovementService, times(1)).receive(anyList());
+    }
+
+    @Test
+    @DisplayName("a line naming a foreign part is rejected on its own; the others are booked in, in order")
+    void badLineCostsOnlyItself() {
+        List<StockAdjustRequest> items = List.of(
+                new StockAdjustRequest(1L, 3L, 5, null, "reel 1"),
+                new StockAdjustRequest(99L, 3L, 2, null, null),
+                new StockAdjustRequest(2L, 3L, 7, null, null));
+        when(partRepository.findIdsByOrganisationIdAndIdIn(eq(ORG_ID), anyCollection())).thenReturn(List.of(1L, 2L));
+        when(locationRepository.findIdsByOrganisationIdAndIdIn(eq(ORG_ID), anyCollection())).thenReturn(List.of(3L));
+        when(stockMovementService.receive(anyList())).thenAnswer(i -> received(i.getArgument(0)));
+
+        StockReceiptResultDTO result = service.receive(new StockReceiptRequest(items, "PO 4711"));
+
+        assertEquals(2, result.getReceived());
+        assertEquals(1, result.getRejected());
+        StockReceiptResultDTO.Line rejected = result.getLines().get(1);
+        assertFalse(rejected.isAccepted());
+        assertTrue(rejected.getError().contains("99"));
+        assertNull(rejected.getMovementId());
+        assertEquals(Long.valueOf(1002), result.getLines().get(2).getMovementId(),
+                "results line up with the request even with a hole in the middle");
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<StockLedgerRepository.Receipt>> written = ArgumentCaptor.forClass(List.class);
+        verify(stockMovementService).receive(written.capture());
+        assertEquals("reel 1", written.getValue().get(0).comments());
+        assertEquals("PO 4711", written.getValue().get(1).comments(), "the shipment's note fills in");
+    }
+
+    /** Pretends the ledger wrote each receipt: movement 1001, 1002, ... with its quantity on hand. */
+    private static List<StockMovementService.Received> received(List<StockLedgerRepository.Receipt> receipts) {
+        List<StockMovementService.Received> out = new ArrayList<>();
+        for (int i = 0; i < receipts.size(); i++) {
+            StockLedgerRepository.Receipt r = receipts.get(i);
+            out.add(new StockMovementService.Received(1001L + i,
+                    new StockLedgerRepository.Applied(500L + i, r.quantity(), 0, r.unitPrice())));
+        }
+        return out;
+    }
+}
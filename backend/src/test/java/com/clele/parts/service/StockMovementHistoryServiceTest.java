@@ -0,0 +1,98 @@
+package com.clele.parts.service;
+
+import com.clele.parts.dto.StockMovementDTO;
+import com.clele.parts.dto.StockMovementPageDTO;
+import com.clele.parts.repository.StockMovementHistoryRepository;
+import com.clele.parts.repository.StockMovementHistoryRepository.Cursor;
+import com.clele.parts.repository.StockMovementHistoryRepository.Filter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pins the paging contract: a page asks the database for one row more than it returns (that row is
+ * how "is there more?" is answered without a count), the cursor names the last row actually
+ * returned, and it survives the trip through a client intact — microseconds included, since a
+ * cursor that rounds them off would skip or repeat rows at the page edge.
+ */
+class StockMovementHistoryServiceTest {
+
+    private static final Long ORG_ID = 7L;
+
+    private StockMovementHistoryRepository repository;
+    private StockMovementHistoryService service;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(StockMovementHistoryRepository.class);
+        CurrentOrganisationService currentOrganisationService = mock(CurrentOrganisationService.class);
+        when(currentOrganisationService.currentId()).thenReturn(ORG_ID);
+        service = new StockMovementHistoryService(repository, mock(ProjectService.class), currentOrganisationService);
+    }
+
+    @Test
+    @DisplayName("a full page carries a cursor naming its last row; the next request starts after it")
+    void cursorPointsPastTheLastRow() {
+        when(repository.page(any(), any(), anyInt())).thenReturn(rows(11));
+
+        StockMovementPageDTO page = service.page(5L, null, null, null, null, null, 10);
+
+        assertEquals(10, page.getItems().size());
+        verify(repository).page(any(), eq(null), eq(11));
+        Cursor next = StockMovementHistoryService.decode(page.getNextCursor());
+        assertEquals(page.getItems().get(9).getId(), next.id());
+        assertEquals(page.getItems().get(9).getMovedAt(), next.movedAt());
+    }
+
+    @Test
+    @DisplayName("the last page has no cursor")
+    void lastPageHasNoCursor() {
+        when(repository.page(any(), any(), anyInt())).thenReturn(rows(3));
+
+        StockMovementPageDTO page = service.page(null, 4L, null, null, null, null, 10);
+
+        assertEquals(3, page.getItems().size());
+        assertNull(page.getNextCursor());
+        verify(repository).page(eq(new Filter(ORG_ID, null, 4L, null, null, null)), eq(null), eq(11));
+    }
+
+    @Test
+    @DisplayName("page size is capped, and a cursor that is not one of ours is a 400")
+    void limitsAndBadCursors() {
+        when(repository.page(any(), any(), anyInt())).thenReturn(List.of());
+
+        service.page(null, null, null, null, null, null, 100_000);
+        verify(repository).page(any(), any(), eq(StockMovementHistoryService.MAX_LIMIT + 1));
+
+        assertThrows(ResponseStatusException.class,
+                () -> service.page(null, null, null, null, null, "not-a-cursor", null));
+    }
+
+    /** {@code n} movements, newest first, sharing a timestamp to the microsecond in pairs. */
+    private static List<StockMovementDTO> rows(int n) {
+        LocalDateTime base = LocalDateTime.of(2024, 3, 1, 12, 0, 0, 123_456_000);
+        List<StockMovementDTO> rows = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            rows.add(StockMovementDTO.builder()
+                    .id(1000L - i)
+                    .movedAt(base.minusSeconds(i / 2))
+                    .build());
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,110 @@
+package com.clele.parts.service;
+
+import com.clele.parts.model.AppUser;
+import com.clele.parts.model.Location;
+import com.clele.parts.model.Organisation;
+import com.clele.parts.repository.StockEntryRepository;
+import com.clele.parts.repository.StockLedgerRepository;
+import com.clele.parts.repository.StockMovementRepository;
+import com.clele.parts.repository.StockReservationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pins the shape of a subtree relocation: the whole subtree emptied in one statement, the target
+ * credited in one batch in entry order, one MOVE row per emptied entry — and the reservations
+ * carried along, so a project does not lose the parts it set aside because their drawer moved.
+ */
+class StockMovementServiceTest {
+
+    private static final Long ORG_ID = 7L;
+
+    private StockLedgerRepository ledger;
+    private StockReservationRepository reservations;
+    private StockMovementService service;
+    private Location from;
+    private Location to;
+
+    @BeforeEach
+    void setUp() {
+        ledger = mock(StockLedgerRepository.class);
+        reservations = mock(StockReservationRepository.class);
+        CurrentUserService currentUserService = mock(CurrentUserService.class);
+        when(currentUserService.current()).thenReturn(AppUser.builder().email("a@b.c").build());
+        CurrentOrganisationService currentOrganisationService = mock(CurrentOrganisationService.class);
+        when(currentOrganisationService.currentId()).thenReturn(ORG_ID);
+
+        service = new StockMovementService(mock(StockMovementRepository.class), mock(StockEntryRepository.class),
+                ledger, reservations, currentUserService, currentOrganisationService,
+                mock(StockChangeStream.class));
+
+        Organisation org = Organisation.builder().id(ORG_ID).build();
+        from = Location.builder().id(1L).organisation(org).build();
+        to = Location.builder().id(9L).organisation(org).build();
+    }
+
+    @Test
+    @DisplayName("relocate empties the subtree once, credits the target in entry order and moves reservations")
+    void relocateIsSetBased() {
+        BigDecimal price = new BigDecimal("0.10");
+        when(ledger.drain(1L)).thenReturn(List.of(
+                new StockLedgerRepository.Drained(100L, 5L, 1L, 10, 2, price),
+                new StockLedgerRepository.Drained(101L, 5L, 2L, 4, 1, price),
+                new StockLedgerRepository.Drained(102L, 6L, 2L, 3, 0, price)));
+        when(ledger.addAll(anyList())).thenReturn(List.of(
+                new StockLedgerRepository.Applied(200L, 10, 0, price),
+                new StockLedgerRepository.Applied(200L, 14, 0, price),
+                new StockLedgerRepository.Applied(201L, 3, 0, price)));
+
+        StockMovementService.Relocated relocated = service.relocate(from, to, "moved shelf");
+
+        assertEquals(3, relocated.entries());
+        assertEquals(17, relocated.quantity());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<StockLedgerRepository.Receipt>> credits = ArgumentCaptor.forClass(List.class);
+        verify(ledger).addAll(credits.capture());
+        assertEquals(List.of(10, 4, 3), credits.getValue().stream().map(StockLedgerRepository.Receipt::quantity).toList());
+        credits.getValue().forEach(r -> assertEquals(9L, r.locationId()));
+
+        verify(reservations).relocateSubtree(1L, 9L);
+        verify(ledger).addReserved(9L, Map.of(5L, 3));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<StockLedgerRepository.Move>> moves = ArgumentCaptor.forClass(List.class);
+        verify(ledger).recordMoves(moves.capture(), eq("a@b.c"), any());
+        assertEquals(List.of(1L, 2L, 2L), moves.getValue().stream()
+                .map(StockLedgerRepository.Move::fromLocationId).toList());
+    }
+
+    @Test
+    @DisplayName("relocating an empty subtree writes nothing")
+    void emptySubtree() {
+        when(ledger.drain(1L)).thenReturn(List.of());
+
+        assertEquals(0, service.relocate(from, to, null).entries());
+
+        verify(ledger, never()).addAll(anyList());
+        verify(ledger, never()).recordMoves(anyList(), anyString(), any());
+        verify(reservations, never()).relocateSubtree(anyLong(), anyLong());
+        verify(ledger, never()).addReserved(anyLong(), anyMap());
+    }
+}
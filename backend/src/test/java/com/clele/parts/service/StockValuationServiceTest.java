@@ -0,0 +1,120 @@
+package com.clele.parts.service;
+
+import com.clele.parts.repository.StockValuationRepository;
+import com.clele.parts.repository.StockValuationRepository.Issue;
+import com.clele.parts.repository.StockValuationRepository.Movement;
+import com.clele.parts.repository.StockValuationRepository.PartState;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pins the valuation fold. The average must not drift the way a price rounded at every receipt
+ * does, FIFO must consume the oldest layers first, and — since each run picks up where the stored
+ * state left off — folding a history in two runs must come out exactly as folding it in one. A run
+ * must not go past a transaction still open, or the movements it commits later are never valued.
+ */
+class StockValuationServiceTest {
+
+    private static final Long PART = 5L;
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 1, 1, 9, 0);
+
+    private static final List<Movement> HISTORY = List.of(
+            receipt(1, 3, "0.10"),
+            receipt(2, 3, "0.11"),
+            receipt(3, 1, "0.11"),
+            issue(4, -2, "CONSUME", null),
+            receipt(5, 2, null),
+            issue(6, -4, "PROJECT_OUT", 9L),
+            issue(7, -3, "ADJUST", null));
+
+    @Test
+    @DisplayName("the average is kept at full precision and the last unit out takes what is left")
+    void averageDoesNotDrift() {
+        StockValuationService.Fold fold = new StockValuationService.Fold();
+        HISTORY.forEach(fold::apply);
+
+        // 0.30 + 0.33 + 0.11 over 7 units; rounded to cents each time, as the entries do, it would be 0.11.
+        Issue first = fold.issues.get(0);
+        assertEquals(0, new BigDecimal("0.74").multiply(BigDecimal.valueOf(2))
+                .divide(BigDecimal.valueOf(7), StockValuationService.PRECISION).compareTo(first.wacCost()));
+
+        // Everything received is gone again: the issues together cost exactly what came in.
+        BigDecimal wacTotal = fold.issues.stream().map(Issue::wacCost).reduce(BigDecimal.ZERO, BigDecimal::add);
+        PartState end = fold.changedParts().get(0);
+        assertEquals(0, end.quantity());
+        assertEquals(0, BigDecimal.ZERO.compareTo(end.value()));
+        assertEquals(0, wacTotal.compareTo(fifoTotal(fold)));
+    }
+
+    @Test
+    @DisplayName("a refresh stops at the start of the oldest transaction still open with writes")
+    void refreshHeldByOpenTransaction() {
+        StockValuationRepository repository = mock(StockValuationRepository.class);
+        LocalDateTime openSince = LocalDateTime.now().minusHours(1);
+        when(repository.lockRun(7L)).thenReturn(Optional.empty());
+        when(repository.oldestOpenWrite()).thenReturn(Optional.of(openSince));
+        StockValuationService service = new StockValuationService(repository, null);
+
+        assertEquals(openSince, service.refresh(7L));
+        verify(repository).hasMovements(7L, null, openSince);
+        verify(repository).save(eq(7L), eq(openSince), anyList(), anyList(), any());
+    }
+
+    @Test
+    @DisplayName("FIFO takes the oldest receipts first")
+    void fifoOldestFirst() {
+        StockValuationService.Fold fold = new StockValuationService.Fold();
+        HISTORY.forEach(fold::apply);
+
+        assertEquals(0, new BigDecimal("0.20").compareTo(fold.issues.get(0).fifoCost()));
+        // One left at 0.10, three at 0.11.
+        assertEquals(0, new BigDecimal("0.43").compareTo(fold.issues.get(1).fifoCost()));
+        assertEquals(9L, fold.issues.get(1).projectId());
+    }
+
+    @Test
+    @DisplayName("a history folded in two runs through the stored state comes out as folded in one")
+    void incrementalMatchesFull() {
+        StockValuationService.Fold whole = new StockValuationService.Fold();
+        HISTORY.forEach(whole::apply);
+
+        StockValuationService.Fold first = new StockValuationService.Fold();
+        HISTORY.subList(0, 4).forEach(first::apply);
+        StockValuationService.Fold second = new StockValuationService.Fold();
+        first.changedParts().forEach(second::seed);
+        first.changedLayers().forEach(second::seed);
+        HISTORY.subList(4, HISTORY.size()).forEach(second::apply);
+
+        List<Issue> issues = new ArrayList<>(first.issues);
+        issues.addAll(second.issues);
+        assertEquals(whole.issues, issues);
+        assertEquals(whole.changedParts(), second.changedParts());
+    }
+
+    private static BigDecimal fifoTotal(StockValuationService.Fold fold) {
+        return fold.issues.stream().map(Issue::fifoCost).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private static Movement receipt(long id, int quantity, String price) {
+        return new Movement(id, PART, quantity, price == null ? null : new BigDecimal(price), "PURCHASE",
+                null, T0.plusMinutes(id));
+    }
+
+    private static Movement issue(long id, int quantity, String type, Long projectId) {
+        return new Movement(id, PART, quantity, null, type, projectId, T0.plusMinutes(id));
+    }
+}
@@ -0,0 +1,86 @@
+package com.clele.parts.service.bom;
+
+import com.clele.parts.repository.ProjectBomExportRepository;
+import com.clele.parts.repository.ProjectBomExportRepository.ExportRow;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Pins the export's cost column: a line picked from several locations is costed once, so adding up
+ * the column gives the cost of the build and not that cost again for every shelf the part is on;
+ * and a line that is not bought is not costed.
+ */
+class ProjectBomExportServiceTest {
+
+    @Test
+    @DisplayName("a line stocked in two locations has its line cost on one row only")
+    void lineCostOncePerLine() throws Exception {
+        // Picking order: the shelves first, so line 1's two locations are not adjacent.
+        List<String> lines = export(
+                row(1, "Shelf A", 30),
+                row(2, "Shelf A", 5),
+                row(1, "Shelf B", 20));
+
+        assertEquals(4, lines.size());
+        // 2 per board × 2 boards × 0.1000
+        assertEquals("0.40", lastColumn(lines.get(1)));
+        assertEquals("0.40", lastColumn(lines.get(2)));
+        assertEquals("", lastColumn(lines.get(3)));
+    }
+
+    @Test
+    @DisplayName("a do-not-populate, excluded or provided line has no line cost")
+    void unboughtLinesNotCosted() throws Exception {
+        List<String> lines = export(
+                row(1, "Shelf A", 30, true, "EXCLUDED"),
+                row(2, "Shelf A", 30, true, "MATCHED"),
+                row(3, "Shelf A", 30, false, "PROVIDED"),
+                row(4, "Shelf A", 30, false, "MATCHED"));
+
+        assertEquals("", lastColumn(lines.get(1)));
+        assertEquals("", lastColumn(lines.get(2)));
+        assertEquals("", lastColumn(lines.get(3)));
+        assertEquals("0.40", lastColumn(lines.get(4)));
+    }
+
+    /** The export of these rows, header first, for an order of two boards. */
+    private static List<String> export(ExportRow... rows) throws Exception {
+        ProjectBomExportRepository exportRepository = mock(ProjectBomExportRepository.class);
+        doAnswer(invocation -> {
+            Consumer<ExportRow> sink = invocation.getArgument(2);
+            List.of(rows).forEach(sink);
+            return null;
+        }).when(exportRepository).stream(eq(1L), eq(7L), any());
+        ProjectBomExportService service = new ProjectBomExportService(null, exportRepository, null, null);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.write(new ProjectBomExportService.Export(1L, 7L, 2, "board-bom.csv"),
+                ProjectBomExportService.Format.CSV, out);
+        return out.toString(StandardCharsets.UTF_8).lines().toList();
+    }
+
+    private static ExportRow row(int lineNo, String location, int quantity) {
+        return row(lineNo, location, quantity, false, "MATCHED");
+    }
+
+    private static ExportRow row(int lineNo, String location, int quantity, boolean dnp, String status) {
+        return new ExportRow(lineNo, "R" + lineNo, "10k", "0603", null, null, 2, dnp, status,
+                "RES-10K", location, quantity, 0, new BigDecimal("0.10"), 50L, new BigDecimal("0.10"));
+    }
+
+    private static String lastColumn(String csvLine) {
+        return csvLine.substring(csvLine.lastIndexOf(',') + 1);
+    }
+}
@@ -227,7 +227,51 @@ class ProjectBomImportServiceTest {
         assertEquals(0, preview.getAdded());
         assertEquals(0, preview.getRemoved());
         assertEquals(1, preview.getUnchanged());
-        assertEquals("CAP-100N", preview.getLines().get(0).getMatchedPartNumber());
+        assertTrue(preview.getLines().isEmpty(), "an unchanged line is counted, not listed");
+        assertEquals("CAP-100N", storedLines.get(0).getPart().getPartNumber());
+    }
+
+    @Test
+    @DisplayName("a small revision of a big BOM previews and writes only the lines that moved")
+    void reimportReportsOnlyTheDelta() {
+        StringBuilder csv = new StringBuilder("Reference,Value,Footprint,Qty\n");
+        List<ProjectBomLine> lines = new ArrayList<>();
+        for (int i = 1; i <= 300; i++) {
+            ProjectBomLine line = matchedLine(i, "R" + i, "10k", "R_0805", part(400L + i, "RES-" + i));
+            line.setContentHash(BomLineFingerprint.of(line));
+            lines.add(line);
+            csv.append("R").append(i).append(',').append(i == 150 ? "4k7" : "10k").append(",R_0805,1\n");
+        }
+        givenStoredBom(lines.toArray(ProjectBomLine[]::new));
+
+        BomImportPreviewDTO result = service.commit(PROJECT_ID, file(csv.toString()), null);
+
+        assertEquals(299, result.getUnchanged());
+        assertEquals(1, result.getUpdated());
+        assertEquals(1, result.getLines().size());
+        assertEquals("R150", result.getLines().get(0).getDesignators());
+        verify(lineRepository).saveAll(argThat((List<ProjectBomLine> saved) ->
+                saved.size() == 1 && "R150".equals(saved.get(0).getDesignators())));
+        verify(partRepository, never()).findByOrganisationIdAndPartNumberIgnoreCase(anyLong(), anyString());
+    }
+
+    @Test
+    @DisplayName("an unchanged line that moved down the file is renumbered, not reported")
+    void renumberedLineIsNotADelta() {
+        ProjectBomLine r1 = matchedLine(1, "R1", "10k", "R_0805", part(320L, "RES-10K"));
+        givenStoredBom(r1);
+
+        BomImportPreviewDTO result = service.commit(PROJECT_ID, file("""
+                Reference,Value,Footprint,Qty
+                C1,100nF,C_0805,1
+                R1,10k,R_0805,1
+                """), null);
+
+        assertEquals(1, result.getUnchanged());
+        assertEquals(0, result.getUpdated());
+        assertEquals(2, r1.getLineNo());
+        assertTrue(result.getLines().stream().noneMatch(l -> "R1".equals(l.getDesignators())));
+        assertNotNull(r1.getContentHash(), "a line stored before fingerprints gets one on first pairing");
     }
 
     @Test
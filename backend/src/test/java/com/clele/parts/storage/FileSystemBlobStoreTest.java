@@ -0,0 +1,99 @@
+package com.clele.parts.storage;
+
+import com.clele.parts.config.AppProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pins the blob store's promises: bytes are named by their SHA-256 and stored once however often
+ * they are put, and a blob used since the collector's cut-off survives a delete — that is what
+ * keeps an upload whose row has not committed yet from losing its content. Streamed content is
+ * named before it is stored, and leaves nothing behind unless committed.
+ */
+class FileSystemBlobStoreTest {
+
+    private static final byte[] DATA = "%PDF-1.4 datasheet".getBytes(StandardCharsets.US_ASCII);
+
+    @TempDir
+    Path dir;
+
+    private FileSystemBlobStore store;
+
+    @BeforeEach
+    void setUp() {
+        AppProperties properties = new AppProperties();
+        properties.getStorage().setBlobDir(dir.toString());
+        store = new FileSystemBlobStore(properties);
+    }
+
+    @Test
+    @DisplayName("the same bytes are stored once, under their SHA-256, in a sharded path")
+    void contentAddressed() throws Exception {
+        String hash = store.put(DATA);
+        assertEquals(hash, store.put(DATA.clone()));
+
+        assertEquals(BlobStore.hash(DATA), hash);
+        assertTrue(Files.isRegularFile(dir.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash)));
+        assertArrayEquals(DATA, store.read(hash));
+        try (Stream<Path> files = Files.walk(dir)) {
+            assertEquals(1, files.filter(Files::isRegularFile).count());
+        }
+    }
+
+    @Test
+    @DisplayName("a blob used after the cut-off is neither listed nor deleted")
+    void graceKeepsRecentBlobs() {
+        String hash = store.put(DATA);
+        Instant before = Instant.now().minusSeconds(3600);
+
+        List<String> unused = new ArrayList<>();
+        store.forEachUnusedSince(before, unused::add);
+        assertTrue(unused.isEmpty());
+        assertFalse(store.delete(hash, before));
+
+        Instant after = Instant.now().plusSeconds(1);
+        store.forEachUnusedSince(after, unused::add);
+        assertEquals(List.of(hash), unused);
+        assertTrue(store.delete(hash, after));
+        assertThrows(IllegalStateException.class, () -> store.get(hash));
+    }
+
+    @Test
+    @DisplayName("staged content is hashed on the way in, and stored only when committed")
+    void stagedUntilCommitted() throws Exception {
+        try (StagedBlob staged = store.stage(new ByteArrayInputStream(DATA))) {
+            assertEquals(BlobStore.hash(DATA), staged.hash());
+            assertEquals(DATA.length, staged.size());
+            assertArrayEquals(DATA, staged.content().getContentAsByteArray());
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            assertEquals(0, files.filter(Files::isRegularFile).count());
+        }
+
+        String hash;
+        try (StagedBlob staged = store.stage(new ByteArrayInputStream(DATA))) {
+            hash = staged.commit();
+        }
+        assertArrayEquals(DATA, store.read(hash));
+        try (Stream<Path> files = Files.walk(dir)) {
+            assertEquals(1, files.filter(Files::isRegularFile).count());
+        }
+    }
+}
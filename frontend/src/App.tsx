@@ -10,6 +10,7 @@ import LocationsPage from './pages/Locations';
 import AcceptInvitationPage from './pages/AcceptInvitation';
 import LoginPage from './pages/Login';
 import LowStockPage from './pages/LowStock';
+import DatasheetSearchPage from './pages/DatasheetSearch';
 import PartDetailPage from './pages/PartDetail';
 import PartsPage from './pages/Parts';
 import PartKitTemplatesPage from './pages/PartKitTemplates';
@@ -90,6 +91,7 @@ export default function App() {
             <Route path="specs/:groupId" element={<SpecGroupDetailPage />} />
             <Route path="locations" element={<LocationsPage />} />
             <Route path="low-stock" element={<LowStockPage />} />
+            <Route path="datasheet-search" element={<DatasheetSearchPage />} />
             <Route
               path="part-kits"
               element={
@@ -14,6 +14,7 @@ import type {
   ComponentCacheMatch,
   ComponentCacheStatus,
   Dashboard,
+  DatasheetContentHit,
   DatasheetExtraction,
   DatasheetSearchResponse,
   EmailLookup,
@@ -22,6 +23,7 @@ import type {
   ImageSuggestion,
   Location,
   LocationRequest,
+  LocationRelocateResult,
   LocationStats,
   LocationTree,
   OctopartApplyRequest,
@@ -38,6 +40,7 @@ import type {
   PrintingPreferenceRequest,
   PrintJob,
   AttachmentType,
+  ImageSize,
   ConvertToNumberRequest,
   ConvertToNumberResult,
   Part,
@@ -58,6 +61,8 @@ import type {
   ProjectRequest,
   ProjectStockEntry,
   PullStockRequest,
+  ReserveStockRequest,
+  StockReservation,
   QuickAddRequest,
   QuickAddResponse,
   SpecDefinition,
@@ -67,10 +72,18 @@ import type {
   MergeSpecsRequest,
   MoveSpecsRequest,
   StockAdjustRequest,
+  StockAsOf,
+  StockConsumption,
+  StockMovementPage,
+  StockMovementQuery,
+  StockReceiptRequest,
+  StockReceiptResult,
   StockEntry,
   StockEntryRequest,
   StockMoveRequest,
-  StockMovement,
+  StockValuation,
+  StockAlert,
+  StockChange,
   StockThreshold,
   StockThresholdRequest,
   Tag,
@@ -138,8 +151,8 @@ export const getPart = (id: number) =>
 export const getPartStock = (id: number) =>
   client.get<StockEntry[]>(`/parts/${id}/stock`).then((r) => r.data);
 
-export const getPartMovements = (id: number) =>
-  client.get<StockMovement[]>(`/parts/${id}/movements`).then((r) => r.data);
+export const getMovements = (query: StockMovementQuery) =>
+  client.get<StockMovementPage>('/movements', { params: query }).then((r) => r.data);
 
 export const createPart = (data: PartCreateRequest) =>
   client.post<Part>('/parts', data).then((r) => r.data);
@@ -198,6 +211,11 @@ export const deleteLocation = (id: number) =>
 export const mergeLocation = (id: number, targetId: number) =>
   client.post(`/locations/${id}/merge`, { targetId });
 
+export const relocateLocation = (id: number, targetId: number, comments?: string) =>
+  client
+    .post<LocationRelocateResult>(`/locations/${id}/relocate`, { targetId, comments })
+    .then((r) => r.data);
+
 // Auth
 export const login = (email: string, password: string) =>
   client.post<AuthUser>('/auth/login', { email, password }).then((r) => r.data);
@@ -338,6 +356,20 @@ export const deleteStockEntry = (id: number) =>
 export const addStock = (data: StockAdjustRequest) =>
   client.post<StockEntry>('/stock/add', data).then((r) => r.data);
 
+// Book in a whole shipment: many adds in one request, with a result per line.
+export const receiveStock = (data: StockReceiptRequest) =>
+  client.post<StockReceiptResult>('/stock/receive', data).then((r) => r.data);
+
+// Stock and its value as they stood at a moment in the past (ISO local date-time).
+export const getStockAsOf = (at: string) =>
+  client.get<StockAsOf>('/stock/as-of', { params: { at } }).then((r) => r.data);
+
+export const getStockValuation = () =>
+  client.get<StockValuation>('/stock/valuation').then((r) => r.data);
+
+export const getStockConsumption = (params: { from?: string; to?: string; projectId?: number }) =>
+  client.get<StockConsumption>('/stock/valuation/consumed', { params }).then((r) => r.data);
+
 // Take a quantity of stock from a location.
 export const takeStock = (data: StockAdjustRequest) =>
   client.post<StockEntry>('/stock/take', data).then((r) => r.data);
@@ -368,8 +400,9 @@ export const uploadPartAttachment = (partId: number, file: File, type: Attachmen
 export const deletePartAttachment = (partId: number, attachmentId: number) =>
   client.delete(`/parts/${partId}/attachments/${attachmentId}`);
 
-export const attachmentUrl = (partId: number, attachmentId: number) =>
-  `${import.meta.env.BASE_URL}api/parts/${partId}/attachments/${attachmentId}`;
+/** `size` asks for a photo's thumbnail or medium rendition instead of the full-size original. */
+export const attachmentUrl = (partId: number, attachmentId: number, size?: ImageSize) =>
+  `${import.meta.env.BASE_URL}api/parts/${partId}/attachments/${attachmentId}${size ? `?size=${size}` : ''}`;
 
 export const addAttachmentFromUrl = (partId: number, url: string, type: AttachmentType) =>
   client.post<PartAttachment>(`/parts/${partId}/attachments/from-url`, { url, type }).then((r) => r.data);
@@ -429,6 +462,10 @@ export const getSpecsForCategory = (categoryId: number | null) =>
 export const searchPartsOnline = (q: string) =>
   client.get<PartSearchResult[]>('/parts-search', { params: { q } }).then((r) => r.data);
 
+/** Full-text search inside the organisation's stored datasheets: parts with their best pages. */
+export const searchDatasheetText = (q: string) =>
+  client.get<DatasheetContentHit[]>('/parts/datasheet-search', { params: { q } }).then((r) => r.data);
+
 /** Quick Add: fuzzy-match existing parts by part number before searching the Internet. */
 export const findLocalParts = (q: string) =>
   client.get<Part[]>('/parts/local-match', { params: { q } }).then((r) => r.data);
@@ -565,6 +602,12 @@ export const startBuild = (projectId: number) =>
 export const pullStock = (projectId: number, data: PullStockRequest) =>
   client.post<ProjectStockEntry>(`/projects/${projectId}/pull-stock`, data).then((r) => r.data);
 
+export const reserveStock = (projectId: number, data: ReserveStockRequest) =>
+  client.post<StockReservation>(`/projects/${projectId}/reservations`, data).then((r) => r.data);
+
+export const releaseReservation = (projectId: number, reservationId: number) =>
+  client.delete(`/projects/${projectId}/reservations/${reservationId}`);
+
 export const completeProject = (projectId: number) =>
   client.post<Project>(`/projects/${projectId}/complete`).then((r) => r.data);
 
@@ -603,6 +646,9 @@ export const importBomFile = (
 export const bomFileUrl = (projectId: number) =>
   `${import.meta.env.BASE_URL}api/projects/${projectId}/bom/file`;
 
+export const bomExportUrl = (projectId: number, format: 'csv' | 'excel' = 'csv') =>
+  `${import.meta.env.BASE_URL}api/projects/${projectId}/bom/export?format=${format}`;
+
 export const getBomLineCandidates = (projectId: number, lineId: number) =>
   client
     .get<BomCandidate[]>(`/projects/${projectId}/bom/lines/${lineId}/candidates`)
@@ -673,3 +719,22 @@ export const deletePartKitImage = (id: number, attachmentId: number) =>
 
 export const partKitImageUrl = (id: number, attachmentId: number) =>
   `${import.meta.env.BASE_URL}api/part-kit-templates/${id}/images/${attachmentId}`;
+
+// Server-sent notifications for the current organisation. EventSource reconnects by itself when the
+// stream drops, and anything sent in between is lost: onOpen fires on every (re)connect, which is
+// the moment to refetch what the screen shows. Call the returned function to close it for good.
+export const openNotificationStream = (handlers: {
+  onOpen?: () => void;
+  onStockAlert?: (alert: StockAlert) => void;
+  onStockChange?: (changes: StockChange[]) => void;
+}) => {
+  const source = new EventSource(`${import.meta.env.BASE_URL}api/notifications/stream`, {
+    withCredentials: true,
+  });
+  source.addEventListener('open', () => handlers.onOpen?.());
+  source.addEventListener('stock-alert', (e) =>
+    handlers.onStockAlert?.(JSON.parse((e as MessageEvent).data) as StockAlert));
+  source.addEventListener('stock-change', (e) =>
+    handlers.onStockChange?.(JSON.parse((e as MessageEvent).data) as StockChange[]));
+  return () => source.close();
+};
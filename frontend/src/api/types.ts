@@ -116,6 +116,8 @@ export interface Part {
   createdAt: string;
   updatedAt: string;
   totalQuantity?: number;
+  /** Part of totalQuantity held by project reservations. */
+  reservedQuantity?: number;
   /** First photo attachment id — set on list/search results only; absent when the part has no photo. */
   thumbnailId?: number;
   tags?: string[];
@@ -223,6 +225,11 @@ export interface LocationTree {
 }
 
 /** Stock roll-up for one location: held directly there, and across its whole subtree. */
+export interface LocationRelocateResult {
+  entries: number;
+  quantity: number;
+}
+
 export interface LocationStats {
   locationId: number;
   directParts: number;
@@ -406,6 +413,8 @@ export interface StockEntry {
   locationBreadcrumb: string;
   quantity: number;
   unitPrice?: number | null;
+  /** Part of quantity held by project reservations; the rest is free to take. */
+  reserved: number;
 }
 
 /** Add or take a quantity of stock at a single location. */
@@ -417,6 +426,88 @@ export interface StockAdjustRequest {
   comments?: string | null;
 }
 
+/** A whole shipment booked in at once; `comments` fills in for lines without their own. */
+export interface StockReceiptRequest {
+  items: StockAdjustRequest[];
+  comments?: string | null;
+}
+
+export interface StockReceiptLine {
+  index: number;
+  partId: number;
+  locationId: number;
+  quantity: number;
+  accepted: boolean;
+  error?: string | null;
+  movementId?: number | null;
+  stockEntryId?: number | null;
+  onHand?: number | null;
+  unitPrice?: number | null;
+}
+
+export interface StockReceiptResult {
+  received: number;
+  rejected: number;
+  lines: StockReceiptLine[];
+}
+
+/** Stock as it stood at a moment, worked out from the ledger (GET /stock/as-of). */
+export interface StockAsOf {
+  at: string;
+  totalQuantity: number;
+  totalValue: number;
+  lines: StockAsOfLine[];
+}
+
+export interface StockAsOfLine {
+  partId: number;
+  partNumber: string;
+  locationId: number;
+  locationName: string;
+  locationBreadcrumb: string;
+  quantity: number;
+  unitPrice: number | null;
+}
+
+/** What the stock on hand cost, by average and by FIFO (GET /stock/valuation). */
+export interface StockValuation {
+  valuedTo: string;
+  totalQuantity: number;
+  wacValue: number;
+  fifoValue: number;
+  lines: StockValuationLine[];
+}
+
+export interface StockValuationLine {
+  partId: number;
+  partNumber: string;
+  quantity: number;
+  wacUnitCost: number | null;
+  wacValue: number;
+  fifoValue: number;
+}
+
+/** Cost of the stock that went out in a period (GET /stock/valuation/consumed). */
+export interface StockConsumption {
+  from: string | null;
+  to: string | null;
+  valuedTo: string;
+  wacCost: number;
+  fifoCost: number;
+  lines: StockConsumptionLine[];
+}
+
+export interface StockConsumptionLine {
+  projectId: number | null;
+  projectName: string | null;
+  partId: number;
+  partNumber: string;
+  type: string;
+  quantity: number;
+  wacCost: number;
+  fifoCost: number;
+}
+
 export interface StockThreshold {
   id: number;
   partId: number;
@@ -429,6 +520,29 @@ export interface StockThreshold {
   lowStock: boolean;
 }
 
+/** A threshold crossing its minimum, either way (event "stock-alert" on /notifications/stream). */
+export interface StockAlert {
+  id: number;
+  thresholdId: number;
+  partId: number;
+  partNumber: string;
+  locationId: number;
+  locationName: string;
+  belowMinimum: boolean;
+  totalQuantity: number;
+  minimumQuantity: number;
+  createdAt: string;
+}
+
+/** A stock entry as a committed movement left it (event "stock-change", sent as a list). */
+export interface StockChange {
+  partId: number;
+  locationId: number;
+  quantity: number;
+  reserved: number;
+  type: string;
+}
+
 export interface StockThresholdRequest {
   partId: number;
   locationId: number;
@@ -463,6 +577,24 @@ export interface StockMovement {
   projectName?: string | null;
 }
 
+/** A page of movement history, newest first; pass `nextCursor` back as `cursor` for the next one. */
+export interface StockMovementPage {
+  items: StockMovement[];
+  nextCursor?: string | null;
+}
+
+export interface StockMovementQuery {
+  partId?: number;
+  locationId?: number;
+  projectId?: number;
+  /** ISO date-time, inclusive. */
+  from?: string;
+  /** ISO date-time, exclusive. */
+  to?: string;
+  cursor?: string | null;
+  limit?: number;
+}
+
 // Projects
 export type ProjectStatus = 'PLANNING' | 'BUILDING' | 'COMPLETED' | 'CANCELLED';
 
@@ -482,6 +614,8 @@ export interface Project {
   bom?: ProjectBomEntry[];
   /** Populated only by the detail endpoint. */
   stock?: ProjectStockEntry[];
+  /** Populated only by the detail endpoint. */
+  reservations?: StockReservation[];
 }
 
 export interface ProjectBomEntry {
@@ -492,6 +626,8 @@ export interface ProjectBomEntry {
   qtyPerInstance: number;
   totalNeeded: number;
   pulledTotal: number;
+  /** Still reserved for this project, not yet pulled. */
+  reservedTotal: number;
   notes?: string;
 }
 
@@ -522,6 +658,23 @@ export interface ProjectBomRequest {
   notes?: string;
 }
 
+export interface StockReservation {
+  id: number;
+  partId: number;
+  partNumber: string;
+  locationId: number;
+  locationName: string;
+  locationBreadcrumb: string;
+  quantity: number;
+  createdAt: string;
+}
+
+export interface ReserveStockRequest {
+  partId: number;
+  locationId: number;
+  quantity: number;
+}
+
 export interface PullStockRequest {
   partId: number;
   locationId: number;
@@ -584,6 +737,8 @@ export interface ImportedBomLine {
   partNumber?: string | null;
   partDescription?: string | null;
   onHand?: number | null;
+  /** Part of onHand already reserved by projects (this one included). */
+  reserved?: number | null;
   totalNeeded: number;
 }
 
@@ -609,7 +764,7 @@ export interface ImportedBom {
 }
 
 export interface BomImportLinePreview {
-  action: 'ADDED' | 'UPDATED' | 'UNCHANGED' | 'REMOVED';
+  action: 'ADDED' | 'UPDATED' | 'REMOVED';
   designators?: string | null;
   value?: string | null;
   footprint?: string | null;
@@ -678,6 +833,25 @@ export interface StockEntryRequest {
   comments?: string | null;
 }
 
+/** One page of a datasheet that matched a full-text search. */
+export interface DatasheetPageHit {
+  attachmentId: number;
+  filename?: string;
+  /** 1-based. */
+  page: number;
+  /** The page's text around the match, with matched words wrapped in « and ». */
+  snippet: string;
+}
+
+/** A part whose stored datasheet matched, with its best pages first. */
+export interface DatasheetContentHit {
+  partId: number;
+  partNumber: string;
+  description?: string;
+  manufacturer?: string;
+  pages: DatasheetPageHit[];
+}
+
 export interface PartSearchResult {
   mpn: string;
   manufacturer?: string;
@@ -908,6 +1082,9 @@ export interface DatasheetSearchResponse {
 
 export type AttachmentType = 'PHOTO' | 'DATASHEET' | 'ATTACHMENT';
 
+/** A photo rendition the attachment endpoint serves in place of the original. */
+export type ImageSize = 'thumb' | 'medium';
+
 export interface PartAttachment {
   id: number;
   /** Absent on a kit template's images — the same content, with no part behind it yet. */
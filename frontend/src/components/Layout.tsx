@@ -1,8 +1,11 @@
 import { type ReactNode, useEffect, useState } from 'react';
 import { NavLink, Outlet, useLocation, useNavigate } from 'react-router-dom';
-import { getUnreadChanges, markChangesRead, switchOrganisation } from '../api';
+import { getUnreadChanges, markChangesRead, openNotificationStream, switchOrganisation } from '../api';
+import type { StockAlert } from '../api/types';
 import { useAuth } from '../auth/AuthContext';
+import { StockChangesProvider, createStockChangeHub } from '../notifications/StockChangesContext';
 import ChangesPanel from './ChangesPanel';
+import StockAlertToasts from './StockAlertToasts';
 
 // Shared stroke style for the nav glyphs — matches the icons on the Dashboard
 // so the whole app speaks one visual language instead of mixing emoji in.
@@ -70,6 +73,15 @@ const icons: Record<string, ReactNode> = {
       <circle cx="12" cy="10" r="2.5" />
     </svg>
   ),
+  // A page with a magnifier over it — searching inside datasheets
+  datasheetSearch: (
+    <svg {...icon}>
+      <path d="M13 3H6.5A1.5 1.5 0 0 0 5 4.5v15A1.5 1.5 0 0 0 6.5 21H11" />
+      <path d="M8.5 8h6M8.5 11.5h3" />
+      <circle cx="16" cy="15" r="3.5" />
+      <path d="m21 20-2.5-2.5" />
+    </svg>
+  ),
   lowStock: (
     <svg {...icon}>
       <path d="M10.3 4.3 2.6 17.5A1.5 1.5 0 0 0 3.9 19.8h16.2a1.5 1.5 0 0 0 1.3-2.3L13.7 4.3a1.6 1.6 0 0 0-2.8 0Z" />
@@ -128,6 +140,7 @@ const navItems: NavItem[] = [
   { to: '/specs', label: 'Spec Fields', icon: icons.specs },
   { to: '/locations', label: 'Locations', icon: icons.locations },
   { to: '/low-stock', label: 'Low Stock', icon: icons.lowStock },
+  { to: '/datasheet-search', label: 'Datasheet Search', icon: icons.datasheetSearch },
   { to: '/part-kits', label: 'Part Kits', icon: icons.partKits, permission: 'PARTS_EDIT' },
   { to: '/projects', label: 'Projects', icon: icons.projects, permission: 'PARTS_EDIT' },
   { to: '/users', label: 'Users', icon: icons.users, permission: 'ORG_ADMIN' },
@@ -136,6 +149,10 @@ const navItems: NavItem[] = [
   { to: '/admin-actions', label: 'Admin Actions', icon: icons.adminActions, permission: 'ORG_ADMIN' },
 ];
 
+// How long a stock alert stays on screen, and how many are shown at once.
+const ALERT_MS = 15000;
+const MAX_ALERTS = 4;
+
 // Bolt-in-hex brand mark — a fastener head, echoing the app's name.
 const BrandMark = (
   <svg viewBox="0 0 24 24" className="h-7 w-7" aria-hidden="true">
@@ -166,6 +183,8 @@ export default function Layout() {
   // Drawer state for the small-screen sidebar. Desktop (md+) ignores it entirely — the sidebar is
   // statically laid out there and never translated away.
   const [navOpen, setNavOpen] = useState(false);
+  const [alerts, setAlerts] = useState<StockAlert[]>([]);
+  const [stockHub] = useState(createStockChangeHub);
 
   const organisations = user?.selectableOrganisations ?? [];
 
@@ -198,6 +217,23 @@ export default function Layout() {
       .catch(() => {});
   }, []);
 
+  // One notification stream for the whole session: low-stock alerts show up on whatever page is
+  // open, and stock changes go to the pages listening for them (useStockChanges). EventSource
+  // reconnects by itself; the stream is closed on logout, when Layout unmounts.
+  useEffect(() => {
+    const dismissLater = (id: number) =>
+      window.setTimeout(() => setAlerts((current) => current.filter((a) => a.id !== id)), ALERT_MS);
+    return openNotificationStream({
+      onOpen: stockHub.connected,
+      onStockChange: stockHub.publish,
+      onStockAlert: (alert) => {
+        setAlerts((current) => [...current.filter((a) => a.thresholdId !== alert.thresholdId), alert]
+          .slice(-MAX_ALERTS));
+        dismissLater(alert.id);
+      },
+    });
+  }, [stockHub]);
+
   // Navigating closes the drawer — on a phone the destination is behind it.
   useEffect(() => {
     setNavOpen(false);
@@ -414,10 +450,17 @@ export default function Layout() {
         </header>
 
         <main className="min-w-0 flex-1 overflow-auto">
-          <Outlet />
+          <StockChangesProvider hub={stockHub}>
+            <Outlet />
+          </StockChangesProvider>
         </main>
       </div>
 
+      <StockAlertToasts
+        alerts={alerts}
+        onDismiss={(id) => setAlerts((current) => current.filter((a) => a.id !== id))}
+      />
+
       {changesPanel && (
         <ChangesPanel
           html={changesPanel.html}
@@ -0,0 +1,61 @@
+import { Link } from 'react-router-dom';
+import type { StockAlert } from '../api/types';
+
+interface Props {
+  alerts: StockAlert[];
+  onDismiss: (id: number) => void;
+}
+
+const closeIcon = (
+  <svg viewBox="0 0 24 24" className="h-4 w-4" fill="none" stroke="currentColor"
+       strokeWidth={1.7} strokeLinecap="round" strokeLinejoin="round">
+    <path d="M18 6 6 18M6 6l12 12" />
+  </svg>
+);
+
+/**
+ * Low-stock alerts as they arrive on the notification stream, stacked in the corner. A drop below
+ * minimum is amber, a recovery green; each links to its part and is dismissed by hand or by time.
+ */
+export default function StockAlertToasts({ alerts, onDismiss }: Props) {
+  if (alerts.length === 0) return null;
+  return (
+    <div className="fixed bottom-4 right-4 z-50 flex w-80 max-w-[calc(100vw-2rem)] flex-col gap-2" aria-live="polite">
+      {alerts.map((alert) => (
+        <div
+          key={alert.id}
+          role="status"
+          className={`flex items-start gap-3 rounded-lg border bg-surface px-4 py-3 shadow-lg ${
+            alert.belowMinimum ? 'border-amber-300' : 'border-green-300'
+          }`}
+        >
+          <span
+            className={`mt-1.5 h-2 w-2 shrink-0 rounded-full ${
+              alert.belowMinimum ? 'bg-amber-500' : 'bg-green-500'
+            }`}
+          />
+          <div className="min-w-0 flex-1 text-sm">
+            <Link
+              to={`/parts/${alert.partId}`}
+              onClick={() => onDismiss(alert.id)}
+              className="font-medium text-gray-900 hover:text-blue-600"
+            >
+              {alert.partNumber}
+            </Link>
+            <p className="text-gray-600">
+              {alert.belowMinimum ? 'Below minimum' : 'Back above minimum'} in {alert.locationName}:{' '}
+              {alert.totalQuantity} of {alert.minimumQuantity}
+            </p>
+          </div>
+          <button
+            onClick={() => onDismiss(alert.id)}
+            className="rounded-md p-1 text-gray-400 transition-colors hover:bg-gray-100 hover:text-gray-600"
+            aria-label="Dismiss"
+          >
+            {closeIcon}
+          </button>
+        </div>
+      ))}
+    </div>
+  );
+}
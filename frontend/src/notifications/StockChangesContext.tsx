@@ -0,0 +1,69 @@
+import { createContext, useContext, useEffect, useRef, type ReactNode } from 'react';
+import type { StockChange } from '../api/types';
+
+interface Listener {
+  onChange: (changes: StockChange[]) => void;
+  onReconnect?: () => void;
+}
+
+/**
+ * Hands the stock changes arriving on the session's one notification stream (opened by Layout) to
+ * whichever pages are listening, so a page does not open a stream of its own.
+ */
+export interface StockChangeHub {
+  publish: (changes: StockChange[]) => void;
+  /** Call on every (re)connect of the stream; listeners hear of the reconnects, not the first. */
+  connected: () => void;
+  subscribe: (listener: Listener) => () => void;
+}
+
+// eslint-disable-next-line react-refresh/only-export-components
+export function createStockChangeHub(): StockChangeHub {
+  const listeners = new Set<Listener>();
+  let opened = false;
+  return {
+    publish: (changes) => listeners.forEach((l) => l.onChange(changes)),
+    connected: () => {
+      if (opened) listeners.forEach((l) => l.onReconnect?.());
+      opened = true;
+    },
+    subscribe: (listener) => {
+      listeners.add(listener);
+      return () => {
+        listeners.delete(listener);
+      };
+    },
+  };
+}
+
+const StockChangesContext = createContext<StockChangeHub | undefined>(undefined);
+
+export function StockChangesProvider({ hub, children }: { hub: StockChangeHub; children: ReactNode }) {
+  return <StockChangesContext.Provider value={hub}>{children}</StockChangesContext.Provider>;
+}
+
+/**
+ * Calls `onChange` with every batch of committed stock changes while the component is mounted.
+ * Events sent while the stream was down are lost, so `onReconnect` should refetch what the page
+ * shows. The latest callbacks are used; they need not be memoised.
+ */
+// eslint-disable-next-line react-refresh/only-export-components
+export function useStockChanges(
+  onChange: (changes: StockChange[]) => void,
+  onReconnect?: () => void,
+) {
+  const hub = useContext(StockChangesContext);
+  if (!hub) throw new Error('useStockChanges must be used within a StockChangesProvider');
+  const handlers = useRef({ onChange, onReconnect });
+  useEffect(() => {
+    handlers.current = { onChange, onReconnect };
+  });
+  useEffect(
+    () =>
+      hub.subscribe({
+        onChange: (changes) => handlers.current.onChange(changes),
+        onReconnect: () => handlers.current.onReconnect?.(),
+      }),
+    [hub],
+  );
+}
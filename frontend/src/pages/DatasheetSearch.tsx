@@ -0,0 +1,107 @@
+import { type FormEvent, useState } from 'react';
+import { Link } from 'react-router-dom';
+import { attachmentUrl, searchDatasheetText } from '../api';
+import type { DatasheetContentHit } from '../api/types';
+
+/** Renders a snippet, turning the server's «…» hit markers into highlights. */
+function Snippet({ text }: { text: string }) {
+  return (
+    <>
+      {text.split(/(«[^»]*»)/).map((part, i) =>
+        part.startsWith('«') && part.endsWith('»') ? (
+          <mark key={i} className="rounded bg-yellow-100 px-0.5">
+            {part.slice(1, -1)}
+          </mark>
+        ) : (
+          <span key={i}>{part}</span>
+        ),
+      )}
+    </>
+  );
+}
+
+export default function DatasheetSearchPage() {
+  const [query, setQuery] = useState('');
+  const [results, setResults] = useState<DatasheetContentHit[] | null>(null);
+  const [loading, setLoading] = useState(false);
+  const [error, setError] = useState<string | null>(null);
+
+  const search = (e: FormEvent) => {
+    e.preventDefault();
+    if (!query.trim()) return;
+    setLoading(true);
+    setError(null);
+    searchDatasheetText(query.trim())
+      .then(setResults)
+      .catch((err: Error) => setError(err.message))
+      .finally(() => setLoading(false));
+  };
+
+  return (
+    <div className="p-4 md:p-8">
+      <h1 className="mb-2 text-2xl font-bold text-gray-900">Datasheet Search</h1>
+      <p className="mb-6 text-sm text-gray-500">
+        Searches the text of the datasheets stored on your parts. Use quotes for a phrase
+        (&quot;rail-to-rail output&quot;), <code>or</code> for alternatives and a leading minus to
+        exclude a word. Scanned datasheets without a text layer are not searchable.
+      </p>
+
+      <form onSubmit={search} className="mb-6 flex gap-2">
+        <input
+          type="search"
+          value={query}
+          onChange={(e) => setQuery(e.target.value)}
+          placeholder="e.g. AEC-Q100"
+          className="block w-full max-w-xl rounded-md border border-gray-300 px-3 py-2 text-sm shadow-sm focus:border-blue-500 focus:outline-none focus:ring-1 focus:ring-blue-500"
+        />
+        <button
+          type="submit"
+          disabled={loading || !query.trim()}
+          className="rounded-md bg-blue-600 px-4 py-2 text-sm font-medium text-white hover:bg-blue-700 disabled:opacity-50"
+        >
+          Search
+        </button>
+      </form>
+
+      {loading && <p className="text-gray-500">Searching...</p>}
+      {error && <p className="text-red-600">{error}</p>}
+
+      {!loading && results !== null && results.length === 0 && (
+        <p className="text-gray-500">No datasheet mentions that.</p>
+      )}
+
+      {!loading && results && results.length > 0 && (
+        <ul className="space-y-4">
+          {results.map((hit) => (
+            <li key={hit.partId} className="rounded-xl border border-gray-200 bg-white p-4 shadow-sm">
+              <div className="mb-2">
+                <Link to={`/parts/${hit.partId}`} className="font-medium text-blue-600 hover:underline">
+                  {hit.partNumber}
+                </Link>
+                {hit.manufacturer && <span className="ml-2 text-sm text-gray-500">{hit.manufacturer}</span>}
+                {hit.description && <p className="text-sm text-gray-600">{hit.description}</p>}
+              </div>
+              <ul className="space-y-2">
+                {hit.pages.map((page) => (
+                  <li key={`${page.attachmentId}-${page.page}`} className="text-sm">
+                    <a
+                      href={`${attachmentUrl(hit.partId, page.attachmentId)}#page=${page.page}`}
+                      target="_blank"
+                      rel="noreferrer"
+                      className="text-blue-600 hover:underline"
+                    >
+                      {page.filename ?? 'Datasheet'}, page {page.page}
+                    </a>
+                    <p className="mt-0.5 whitespace-pre-line text-gray-700">
+                      <Snippet text={page.snippet} />
+                    </p>
+                  </li>
+                ))}
+              </ul>
+            </li>
+          ))}
+        </ul>
+      )}
+    </div>
+  );
+}
@@ -17,7 +17,7 @@ import {
   getOctopartUsage,
   getPart,
   getPartAttachments,
-  getPartMovements,
+  getMovements,
   getPartStock,
   getSpecDefinitions,
   getStockThresholds,
@@ -55,6 +55,7 @@ import type {
 } from '../api/types';
 import { useAuth } from '../auth/AuthContext';
 import { useSettings } from '../settings/SettingsContext';
+import { useStockChanges } from '../notifications/StockChangesContext';
 import Badge from '../components/Badge';
 import DataTable from '../components/DataTable';
 import type { Column } from '../components/DataTable';
@@ -276,6 +277,8 @@ export default function PartDetailPage() {
   const [part, setPart] = useState<Part | null>(null);
   const [stock, setStock] = useState<StockEntry[]>([]);
   const [movements, setMovements] = useState<StockMovement[]>([]);
+  const [movementsCursor, setMovementsCursor] = useState<string | null>(null);
+  const [loadingMovements, setLoadingMovements] = useState(false);
   const [stockTab, setStockTab] = useState<'locations' | 'thresholds' | 'movements'>('locations');
   const [locations, setLocations] = useState<Location[]>([]);
   const [allLocations, setAllLocations] = useState<Location[]>([]);
@@ -415,8 +418,11 @@ export default function PartDetailPage() {
         setAllLocations(all);
         splitAttachments(atts);
         // Movement history is supplementary — load best-effort, don't fail the page
-        getPartMovements(partId)
-          .then(setMovements)
+        getMovements({ partId })
+          .then((page) => {
+            setMovements(page.items);
+            setMovementsCursor(page.nextCursor ?? null);
+          })
           .catch(() => setMovements([]));
         // Match against the full definition list (every key has a name + group),
         // not the category-scoped subset. Best-effort — don't fail the page if unavailable.
@@ -434,6 +440,38 @@ export default function PartDetailPage() {
 
   useEffect(loadData, [partId]);
 
+  // Stock taken or added elsewhere — another tab, another user, a project pull — is patched in as
+  // it commits. A location not listed yet needs its name and path, so then the list is refetched;
+  // so it is after a reconnect, which may have missed changes.
+  const reloadStock = () => getPartStock(partId).then(setStock).catch(() => {});
+  useStockChanges((changes) => {
+    const mine = changes.filter((c) => c.partId === partId);
+    if (mine.length === 0) return;
+    if (mine.some((c) => !stock.some((s) => s.locationId === c.locationId))) {
+      reloadStock();
+      return;
+    }
+    setStock((prev) =>
+      prev.map((s) => {
+        const change = mine.find((c) => c.locationId === s.locationId);
+        return change ? { ...s, quantity: change.quantity, reserved: change.reserved } : s;
+      }),
+    );
+  }, reloadStock);
+
+  // Movement history comes a page at a time; older pages are fetched on request.
+  const loadOlderMovements = () => {
+    if (!movementsCursor) return;
+    setLoadingMovements(true);
+    getMovements({ partId, cursor: movementsCursor })
+      .then((page) => {
+        setMovements((prev) => [...prev, ...page.items]);
+        setMovementsCursor(page.nextCursor ?? null);
+      })
+      .catch(() => setMovementsCursor(null))
+      .finally(() => setLoadingMovements(false));
+  };
+
   // Is the component cache installed? An installation without the snapshot must not show a button
   // that can only ever find nothing, and a failure here simply means "no cache".
   useEffect(() => {
@@ -1181,7 +1219,7 @@ export default function PartDetailPage() {
             <div className="flex h-52 w-52 items-center justify-center overflow-hidden rounded-lg border border-gray-200 bg-gray-50">
               {primaryImage ? (
                 <img
-                  src={attachmentUrl(partId, primaryImage.id)}
+                  src={attachmentUrl(partId, primaryImage.id, 'medium')}
                   alt={part.partNumber}
                   className="h-full w-full object-contain"
                 />
@@ -1217,7 +1255,7 @@ export default function PartDetailPage() {
                       }
                     >
                       <img
-                        src={attachmentUrl(partId, img.id)}
+                        src={attachmentUrl(partId, img.id, 'thumb')}
                         alt=""
                         className={`h-12 w-12 rounded border object-contain ${
                           img.id === primaryImage?.id
@@ -1687,7 +1725,10 @@ export default function PartDetailPage() {
               [
                 { key: 'locations', label: 'Locations' },
                 { key: 'thresholds', label: 'Thresholds' },
-                { key: 'movements', label: `Movements${movements.length ? ` (${movements.length})` : ''}` },
+                {
+                  key: 'movements',
+                  label: `Movements${movements.length ? ` (${movements.length}${movementsCursor ? '+' : ''})` : ''}`,
+                },
               ] as const
             ).map((tab) => (
               <button
@@ -1862,12 +1903,25 @@ export default function PartDetailPage() {
             {movements.length === 0 ? (
               <p className="text-sm text-gray-500">No stock movements recorded for this part.</p>
             ) : (
-              <DataTable
-                autoWidth
-                columns={movementColumns}
-                data={movements}
-                keyExtractor={(m) => m.id}
-              />
+              <>
+                <DataTable
+                  autoWidth
+                  columns={movementColumns}
+                  data={movements}
+                  keyExtractor={(m) => m.id}
+                />
+                {movementsCursor && (
+                  <div className="mt-3 flex justify-center">
+                    <button
+                      onClick={loadOlderMovements}
+                      disabled={loadingMovements}
+                      className="rounded-lg border border-gray-300 px-3 py-1.5 text-sm font-medium text-gray-700 hover:bg-gray-50 disabled:opacity-50"
+                    >
+                      {loadingMovements ? 'Loading…' : 'Load older movements'}
+                    </button>
+                  </div>
+                )}
+              </>
             )}
           </div>
         )}
@@ -5,6 +5,7 @@ import {
   createPart,
   getCategoryTree,
   getLocations,
+  getPart,
   getParts,
   getSpecDefinitions,
   getSpecsForCategory,
@@ -23,6 +24,7 @@ import { SPARSE_SPEC_THRESHOLD, SPEC_OP_LABELS } from '../api/types';
 import { unitFamily } from '../utils/units';
 import { useAuth } from '../auth/AuthContext';
 import { useSettings } from '../settings/SettingsContext';
+import { useStockChanges } from '../notifications/StockChangesContext';
 import Badge from '../components/Badge';
 import CategoryPicker from '../components/CategoryPicker';
 import DataTable from '../components/DataTable';
@@ -318,6 +320,25 @@ export default function PartsPage() {
       .catch((e: Error) => setError(e.message));
   };
 
+  // A stock change carries one location's count, not the part's total, so the listed parts it
+  // touches are fetched again — a handful of rows, not the search. A reconnect may have missed
+  // changes; the search is rerun then.
+  useStockChanges(
+    (changes) => {
+      const touched = new Set(changes.map((c) => c.partId));
+      parts
+        .filter((p) => touched.has(p.id))
+        .forEach((p) =>
+          getPart(p.id)
+            .then((fresh) => setParts((prev) => prev.map((x) => (x.id === fresh.id ? fresh : x))))
+            .catch(() => {}),
+        );
+    },
+    () => {
+      if (searched) loadParts(criteriaFromParams(searchParams));
+    },
+  );
+
   // Persist the criteria to the URL (so Back / reload restores them) and run the search.
   const runSearch = (c: Criteria) => {
     setSearchParams(paramsFromCriteria(c), { replace: true });
@@ -442,7 +463,7 @@ export default function PartsPage() {
       render: (row) =>
         row.thumbnailId ? (
           <img
-            src={attachmentUrl(row.id, row.thumbnailId)}
+            src={attachmentUrl(row.id, row.thumbnailId, 'thumb')}
             alt=""
             loading="lazy"
             className="h-10 w-10 rounded-md object-contain ring-1 ring-gray-200 bg-white"
@@ -2,6 +2,7 @@ import { useCallback, useEffect, useMemo, useRef, useState } from 'react';
 import { Link, useParams } from 'react-router-dom';
 import {
   applyImportedBom,
+  bomExportUrl,
   bomFileUrl,
   deleteImportedBom,
   getBomLineCandidates,
@@ -312,6 +313,12 @@ export default function ProjectBomPage() {
                 >
                   Download original
                 </a>
+                <a
+                  href={bomExportUrl(projectId, 'excel')}
+                  className="rounded-lg border border-gray-300 px-3 py-1.5 text-sm font-medium text-gray-700 hover:bg-gray-50"
+                >
+                  Export pick list
+                </a>
                 <button
                   onClick={() => setConfirmDelete(true)}
                   className="rounded-lg border border-red-200 px-3 py-1.5 text-sm font-medium text-red-600 hover:bg-red-50"
@@ -437,6 +444,9 @@ export default function ProjectBomPage() {
                           {line.partId ? (
                             <span className={shortfall(line) ? 'font-medium text-red-600' : 'text-green-700'}>
                               {line.onHand ?? 0}
+                              {(line.reserved ?? 0) > 0 && (
+                                <span className="block text-xs font-normal text-gray-400">{line.reserved} reserved</span>
+                              )}
                             </span>
                           ) : (
                             <span className="text-gray-300">—</span>
@@ -564,6 +574,13 @@ export default function ProjectBomPage() {
                       <td className="px-4 py-1.5 text-gray-600">{line.matchedPartNumber ?? '—'}</td>
                     </tr>
                   ))}
+                  {preview.lines.length === 0 && (
+                    <tr>
+                      <td colSpan={5} className="px-4 py-3 text-center text-gray-500">
+                        Nothing in this file differs from the stored BOM.
+                      </td>
+                    </tr>
+                  )}
                 </tbody>
               </table>
             </div>